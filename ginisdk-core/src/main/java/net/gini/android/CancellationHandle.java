@@ -0,0 +1,71 @@
+package net.gini.android;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * A handle to cancel a running SDK operation, e.g. the upload of a document. Pass a new instance to the method which
+ * starts the operation and call {@link #cancel()} when the operation's result is not needed anymore.
+ * </p>
+ * <p>
+ * Cancelling cancels the underlying Volley requests, aborts running uploads and resolves the operation's task as
+ * cancelled. A handle can't be reset, use a new instance for every operation.
+ * </p>
+ */
+public class CancellationHandle {
+
+    /**
+     * Listener which is informed when the handle is cancelled.
+     */
+    public interface OnCancelListener {
+
+        void onCancel();
+    }
+
+    private final List<OnCancelListener> mListeners = new ArrayList<OnCancelListener>();
+    private boolean mIsCancelled;
+
+    /**
+     * Cancels the operation. Calling this method more than once has no further effect.
+     */
+    public void cancel() {
+        final List<OnCancelListener> listeners;
+        synchronized (this) {
+            if (mIsCancelled) {
+                return;
+            }
+            mIsCancelled = true;
+            listeners = new ArrayList<OnCancelListener>(mListeners);
+            mListeners.clear();
+        }
+        for (OnCancelListener listener : listeners) {
+            listener.onCancel();
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return mIsCancelled;
+    }
+
+    /**
+     * Adds a listener which is called when the handle is cancelled. If the handle was already cancelled, the listener
+     * is called immediately.
+     */
+    public void addOnCancelListener(final OnCancelListener listener) {
+        checkNotNull(listener);
+        synchronized (this) {
+            if (!mIsCancelled) {
+                mListeners.add(listener);
+                return;
+            }
+        }
+        listener.onCancel();
+    }
+
+    public synchronized void removeOnCancelListener(final OnCancelListener listener) {
+        mListeners.remove(listener);
+    }
+}
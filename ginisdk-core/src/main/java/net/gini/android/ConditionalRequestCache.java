@@ -0,0 +1,77 @@
+package net.gini.android;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Remembers the validators (ETag and Last-Modified) of the Gini API's responses together with the models which were
+ * parsed from them. When a {@link DocumentTaskManager} has a cache, it requests documents and extractions
+ * conditionally and a 304 Not Modified response resolves to the remembered model without any JSON parsing.
+ * </p>
+ * <p>
+ * The least recently used entries are evicted when the cache is full. The cache is thread-safe.
+ * </p>
+ */
+public class ConditionalRequestCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+
+    static final class Entry {
+        final String mETag;
+        final String mLastModified;
+        final Object mModel;
+
+        private Entry(@Nullable final String eTag, @Nullable final String lastModified, final Object model) {
+            mETag = eTag;
+            mLastModified = lastModified;
+            mModel = model;
+        }
+    }
+
+    private final Map<String, Entry> mEntries;
+
+    public ConditionalRequestCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public ConditionalRequestCache(final int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        mEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Nullable
+    synchronized Entry get(final String key) {
+        return mEntries.get(key);
+    }
+
+    /**
+     * Remembers the model, if the response had at least one validator. Otherwise a previous entry is removed, since
+     * it can't be validated anymore.
+     */
+    synchronized void put(final String key, @Nullable final String eTag, @Nullable final String lastModified,
+                          final Object model) {
+        if (eTag == null && lastModified == null) {
+            mEntries.remove(key);
+        } else {
+            mEntries.put(key, new Entry(eTag, lastModified, model));
+        }
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+    }
+}
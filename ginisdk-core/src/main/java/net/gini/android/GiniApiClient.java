@@ -0,0 +1,274 @@
+package net.gini.android;
+
+import net.gini.android.requests.UploadProgressListener;
+import net.gini.android.transport.Gzip;
+import net.gini.android.transport.HttpRequest;
+import net.gini.android.transport.HttpResponse;
+import net.gini.android.transport.HttpStatusException;
+import net.gini.android.transport.Transport;
+
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * A client of the Gini API for plain Java platforms, e.g. server-side batch processing. It builds the requests of the
+ * Gini API's endpoints, performs them with a {@link Transport}, like the {@link
+ * net.gini.android.transport.UrlConnectionTransport}, and parses the responses. Android apps use the Android SDK's
+ * {@code DocumentTaskManager} and {@code ApiCommunicator} instead, which share the endpoints' {@link GiniApiUrls}.
+ * </p>
+ * <p>
+ * Like the {@code ApiCommunicator} it only converts the responses to more convenient objects, but does not interpret
+ * them. The requests are authorized with the access token of a session, which has to be obtained by the caller.
+ * </p>
+ * <p>
+ * The returned futures fail with an {@link HttpStatusException}, if the Gini API responded with an error status
+ * code, with an {@link IOException}, if the request failed, and with a {@link JSONException}, if the response could
+ * not be parsed. Cancelling a future cancels its request.
+ * </p>
+ */
+public class GiniApiClient {
+
+    private final GiniApiUrls mUrls;
+    private final Transport mTransport;
+
+    /**
+     * @param baseUrl   The base URL of the Gini API, e.g. "https://api.gini.net/".
+     * @param transport The transport which performs the requests.
+     */
+    public GiniApiClient(final String baseUrl, final Transport transport) {
+        mUrls = new GiniApiUrls(baseUrl);
+        mTransport = checkNotNull(transport);
+    }
+
+    public GiniApiUrls getUrls() {
+        return mUrls;
+    }
+
+    /**
+     * Uploads a document.
+     *
+     * @param progressListener   Optional a listener which is informed about the number of uploaded bytes.
+     * @param cancellationHandle Optional a handle to cancel the upload.
+     *
+     * @return A future which resolves to the URL of the created document.
+     */
+    public SdkFuture<String> uploadDocument(final byte[] documentData, final String contentType,
+                                            @Nullable final String documentName, @Nullable final String docTypeHint,
+                                            final String accessToken,
+                                            @Nullable final UploadProgressListener progressListener,
+                                            @Nullable final CancellationHandle cancellationHandle) {
+        final HttpRequest request =
+                newRequest(HttpRequest.POST, mUrls.documents(documentName, docTypeHint), accessToken)
+                .setBody(checkNotNull(documentData), checkNotNull(contentType))
+                .setUploadProgressListener(progressListener)
+                .build();
+        return execute(request, LOCATION_PARSER, cancellationHandle);
+    }
+
+    /**
+     * Uploads a document file. The file must not be changed until the returned future is completed.
+     *
+     * @param progressListener   Optional a listener which is informed about the number of uploaded bytes.
+     * @param cancellationHandle Optional a handle to cancel the upload.
+     *
+     * @return A future which resolves to the URL of the created document.
+     */
+    public SdkFuture<String> uploadDocument(final File documentFile, final String contentType,
+                                            @Nullable final String documentName, @Nullable final String docTypeHint,
+                                            final String accessToken,
+                                            @Nullable final UploadProgressListener progressListener,
+                                            @Nullable final CancellationHandle cancellationHandle) {
+        final HttpRequest request =
+                newRequest(HttpRequest.POST, mUrls.documents(documentName, docTypeHint), accessToken)
+                .setBody(checkNotNull(documentFile), checkNotNull(contentType))
+                .setUploadProgressListener(progressListener)
+                .build();
+        return execute(request, LOCATION_PARSER, cancellationHandle);
+    }
+
+    /**
+     * Creates a composite document from already uploaded partial documents, in the order of the given URLs.
+     *
+     * @return A future which resolves to the URL of the composite document.
+     */
+    public SdkFuture<String> createCompositeDocument(final List<String> partialDocumentUrls,
+                                                     @Nullable final String documentName,
+                                                     @Nullable final String docTypeHint, final String accessToken,
+                                                     @Nullable final CancellationHandle cancellationHandle)
+            throws JSONException {
+        final JSONArray partialDocuments = new JSONArray();
+        for (final String partialDocumentUrl : checkNotNull(partialDocumentUrls)) {
+            final JSONObject partialDocument = new JSONObject();
+            partialDocument.put("document", checkNotNull(partialDocumentUrl));
+            partialDocument.put("rotationDelta", 0);
+            partialDocuments.put(partialDocument);
+        }
+        final JSONObject compositeDocument = new JSONObject();
+        compositeDocument.put("partialDocuments", partialDocuments);
+        return uploadDocument(compositeDocument.toString().getBytes(Utils.CHARSET_UTF8),
+                MediaTypes.GINI_COMPOSITE_JSON, documentName, docTypeHint, accessToken, null, cancellationHandle);
+    }
+
+    public SdkFuture<JSONObject> getDocument(final String documentId, final String accessToken,
+                                             @Nullable final CancellationHandle cancellationHandle) {
+        return getJson(mUrls.document(documentId), accessToken, cancellationHandle);
+    }
+
+    public SdkFuture<JSONObject> getExtractions(final String documentId, final String accessToken,
+                                                @Nullable final CancellationHandle cancellationHandle) {
+        return getJson(mUrls.extractions(documentId), accessToken, cancellationHandle);
+    }
+
+    /**
+     * Gets the incubator extractions, which are discriminated from the "normal" extractions by the accept header.
+     */
+    public SdkFuture<JSONObject> getIncubatorExtractions(final String documentId, final String accessToken,
+                                                         @Nullable final CancellationHandle cancellationHandle) {
+        final HttpRequest request = newRequest(HttpRequest.GET, mUrls.extractions(documentId), accessToken)
+                .setHeader("Accept", MediaTypes.GINI_JSON_INCUBATOR)
+                .build();
+        return execute(request, JSON_OBJECT_PARSER, cancellationHandle);
+    }
+
+    /**
+     * Sends the corrected extractions of a document.
+     *
+     * @param extractions The extractions as the Gini API expects them in the "feedback" property.
+     */
+    public SdkFuture<JSONObject> sendFeedback(final String documentId, final JSONObject extractions,
+                                              final String accessToken,
+                                              @Nullable final CancellationHandle cancellationHandle)
+            throws JSONException {
+        final JSONObject requestData = new JSONObject();
+        requestData.put("feedback", checkNotNull(extractions));
+        final HttpRequest request = newRequest(HttpRequest.PUT, mUrls.extractions(documentId), accessToken)
+                .setBody(requestData.toString().getBytes(Utils.CHARSET_UTF8), MediaTypes.GINI_JSON_V1)
+                .build();
+        return execute(request, JSON_OBJECT_PARSER, cancellationHandle);
+    }
+
+    public SdkFuture<JSONObject> errorReportForDocument(final String documentId, @Nullable final String summary,
+                                                        @Nullable final String description, final String accessToken,
+                                                        @Nullable final CancellationHandle cancellationHandle) {
+        final HttpRequest request =
+                newRequest(HttpRequest.POST, mUrls.errorReport(documentId, summary, description), accessToken).build();
+        return execute(request, JSON_OBJECT_PARSER, cancellationHandle);
+    }
+
+    public SdkFuture<Void> deleteDocument(final String documentId, final String accessToken,
+                                          @Nullable final CancellationHandle cancellationHandle) {
+        final HttpRequest request = newRequest(HttpRequest.DELETE, mUrls.document(documentId), accessToken).build();
+        return execute(request, new ResponseParser<Void>() {
+            @Override
+            public Void parse(final HttpResponse response) {
+                return null;
+            }
+        }, cancellationHandle);
+    }
+
+    public SdkFuture<JSONObject> getLayout(final String documentId, final String accessToken,
+                                           @Nullable final CancellationHandle cancellationHandle) {
+        return getJson(mUrls.layout(documentId), accessToken, cancellationHandle);
+    }
+
+    public SdkFuture<JSONObject> getDocumentList(final int offset, final int limit, final String accessToken,
+                                                 @Nullable final CancellationHandle cancellationHandle) {
+        return getJson(mUrls.documentList(offset, limit), accessToken, cancellationHandle);
+    }
+
+    public SdkFuture<JSONObject> searchDocuments(final String searchTerm, @Nullable final String docType,
+                                                 final int offset, final int limit, final String accessToken,
+                                                 @Nullable final CancellationHandle cancellationHandle) {
+        return getJson(mUrls.search(searchTerm, docType, offset, limit), accessToken, cancellationHandle);
+    }
+
+    private SdkFuture<JSONObject> getJson(final String url, final String accessToken,
+                                          @Nullable final CancellationHandle cancellationHandle) {
+        return execute(newRequest(HttpRequest.GET, url, accessToken).build(), JSON_OBJECT_PARSER,
+                cancellationHandle);
+    }
+
+    private static HttpRequest.Builder newRequest(final String method, final String url, final String accessToken) {
+        return new HttpRequest.Builder(method, url)
+                .setHeader("Accept", String.format("%s, %s", MediaTypes.APPLICATION_JSON, MediaTypes.GINI_JSON_V1))
+                .setHeader("Authorization", "BEARER " + checkNotNull(accessToken))
+                .setHeader(Gzip.ACCEPT_ENCODING_HEADER, Gzip.GZIP);
+    }
+
+    /**
+     * Performs the request and completes the returned future with the parsed response. If no handle is given, the
+     * future's own handle is used, so cancelling the future cancels the request.
+     */
+    private <T> SdkFuture<T> execute(final HttpRequest request, final ResponseParser<T> parser,
+                                     @Nullable final CancellationHandle cancellationHandle) {
+        final SdkFuture<T> future =
+                new SdkFuture<T>(cancellationHandle != null ? cancellationHandle : new CancellationHandle());
+        mTransport.execute(request, new Transport.Callback() {
+            @Override
+            public void onResponse(final HttpResponse response) {
+                if (!response.isSuccessful()) {
+                    future.fail(new HttpStatusException(response));
+                    return;
+                }
+                try {
+                    future.complete(parser.parse(response));
+                } catch (Exception e) {
+                    future.fail(e);
+                }
+            }
+
+            @Override
+            public void onFailure(final Exception error) {
+                if (error instanceof CancellationException) {
+                    future.cancel(false);
+                } else {
+                    future.fail(error);
+                }
+            }
+        }, future.getCancellationHandle());
+        return future;
+    }
+
+    /**
+     * Parses a successful response.
+     */
+    interface ResponseParser<T> {
+
+        T parse(HttpResponse response) throws Exception;
+    }
+
+    /**
+     * Parses the body as a JSON object. An empty body is parsed to null.
+     */
+    static final ResponseParser<JSONObject> JSON_OBJECT_PARSER = new ResponseParser<JSONObject>() {
+        @Override
+        public JSONObject parse(final HttpResponse response) throws JSONException {
+            final String body = response.getBodyAsString();
+            return body.length() > 0 ? new JSONObject(body) : null;
+        }
+    };
+
+    /**
+     * Returns the URL of the Location header, which points to a created resource.
+     */
+    static final ResponseParser<String> LOCATION_PARSER = new ResponseParser<String>() {
+        @Override
+        public String parse(final HttpResponse response) throws IOException {
+            final String location = response.getHeader("Location");
+            if (location == null) {
+                throw new IOException("The response has no Location header");
+            }
+            return location;
+        }
+    };
+}
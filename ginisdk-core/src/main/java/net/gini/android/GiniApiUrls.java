@@ -0,0 +1,137 @@
+package net.gini.android;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URI;
+import java.util.HashMap;
+
+import static net.gini.android.Utils.checkNotNull;
+import static net.gini.android.Utils.mapToUrlEncodedString;
+
+/**
+ * <p>
+ * Builds the URLs of the Gini API's endpoints. Both the Android SDK's {@code ApiCommunicator} and the {@link
+ * GiniApiClient} use it, so the endpoints are defined only once.
+ * </p>
+ * <p>
+ * Only the scheme and the authority of the base URL are used. Path segments and query parameters are percent-encoded
+ * like Android's {@code Uri.Builder} encodes them.
+ * </p>
+ */
+public class GiniApiUrls {
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final String mOrigin;
+
+    /**
+     * @param baseUrl The base URL of the Gini API, e.g. "https://api.gini.net/".
+     */
+    public GiniApiUrls(final String baseUrl) {
+        final URI baseUri = URI.create(checkNotNull(baseUrl));
+        if (baseUri.getScheme() == null || baseUri.getRawAuthority() == null) {
+            throw new IllegalArgumentException("The base URL " + baseUrl + " has no scheme or authority");
+        }
+        mOrigin = baseUri.getScheme() + "://" + baseUri.getRawAuthority();
+    }
+
+    /**
+     * The URL to which documents are uploaded.
+     */
+    public String documents(@Nullable final String documentName, @Nullable final String docTypeHint) {
+        final HashMap<String, String> requestQueryData = new HashMap<String, String>();
+        if (documentName != null) {
+            requestQueryData.put("filename", documentName);
+        }
+        if (docTypeHint != null) {
+            requestQueryData.put("doctype", docTypeHint);
+        }
+        return build("documents/", mapToUrlEncodedString(requestQueryData));
+    }
+
+    public String document(final String documentId) {
+        return build("documents/" + checkNotNull(documentId), null);
+    }
+
+    public String extractions(final String documentId) {
+        return build(String.format("documents/%s/extractions", checkNotNull(documentId)), null);
+    }
+
+    public String errorReport(final String documentId, @Nullable final String summary,
+                              @Nullable final String description) {
+        final HashMap<String, String> requestParams = new HashMap<String, String>();
+        requestParams.put("summary", summary);
+        requestParams.put("description", description);
+        return build("documents/" + checkNotNull(documentId) + "/errorreport", mapToUrlEncodedString(requestParams));
+    }
+
+    /**
+     * @param dimensions The maximal dimensions of the preview, e.g. "750x900".
+     */
+    public String preview(final String documentId, final int pageNumber, final String dimensions) {
+        return build(String.format("documents/%s/pages/%s/%s", checkNotNull(documentId), pageNumber,
+                checkNotNull(dimensions)), null);
+    }
+
+    public String layout(final String documentId) {
+        return build(String.format("/documents/%s/layout", checkNotNull(documentId)), null);
+    }
+
+    public String documentList(final int offset, final int limit) {
+        return build("/documents", "offset=" + offset + "&limit=" + limit);
+    }
+
+    public String search(final String searchTerm, @Nullable final String docType, final int offset,
+                         final int limit) {
+        final StringBuilder query = new StringBuilder();
+        query.append("q=").append(encode(checkNotNull(searchTerm), false))
+                .append("&offset=").append(offset)
+                .append("&limit=").append(limit);
+        if (docType != null) {
+            query.append("&docType=").append(encode(docType, false));
+        }
+        return build("/search", query.toString());
+    }
+
+    /**
+     * Returns the URL with the given path and query on the Gini API's origin, e.g. to request a document URL which
+     * the Gini API returned on the configured origin.
+     *
+     * @param path  The decoded path.
+     * @param query Optional the decoded query. It is encoded as a whole, including its separators, like {@code
+     *              Uri.Builder#query(String)} does.
+     */
+    public String relativeToBase(@Nullable final String path, @Nullable final String query) {
+        return build(path != null ? path : "", query != null ? encode(query, false) : null);
+    }
+
+    private String build(final String path, @Nullable final String encodedQuery) {
+        final StringBuilder url = new StringBuilder(mOrigin);
+        if (!path.startsWith("/")) {
+            url.append('/');
+        }
+        url.append(encode(path, true));
+        if (encodedQuery != null && !encodedQuery.isEmpty()) {
+            url.append('?').append(encodedQuery);
+        }
+        return url.toString();
+    }
+
+    /**
+     * Percent-encodes everything but the unreserved characters of RFC 3986 and the characters "!", "'", "(", ")" and
+     * "*", like Android's {@code Uri.encode()}.
+     */
+    static String encode(final String value, final boolean allowSlash) {
+        final StringBuilder encoded = new StringBuilder(value.length());
+        for (final byte b : value.getBytes(Utils.CHARSET_UTF8)) {
+            final char c = (char) (b & 0xff);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || "_-!.~'()*".indexOf(c) != -1 || (allowSlash && c == '/')) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(HEX_DIGITS[(b >> 4) & 0x0f]).append(HEX_DIGITS[b & 0x0f]);
+            }
+        }
+        return encoded.toString();
+    }
+}
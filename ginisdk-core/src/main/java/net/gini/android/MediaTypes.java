@@ -0,0 +1,97 @@
+package net.gini.android;
+
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+public class MediaTypes {
+
+    public static final String IMAGE_JPEG = "image/jpeg";
+    public static final String IMAGE_PNG = "image/png";
+    public static final String IMAGE_TIFF = "image/tiff";
+    public static final String APPLICATION_PDF = "application/pdf";
+    public static final String GINI_JSON_V1 = "application/vnd.gini.v1+json";
+    public static final String GINI_JSON_INCUBATOR = "application/vnd.gini.incubator+json";
+    public static final String APPLICATION_JSON = "application/json";
+    public static final String APPLICATION_FORM_URLENCODED = "application/x-www-form-urlencoded";
+    public static final String GINI_PARTIAL_JPEG = "application/vnd.gini.v2.partial+jpeg";
+    public static final String GINI_COMPOSITE_JSON = "application/vnd.gini.v2.composite+json";
+
+    /**
+     * The number of leading bytes which are needed to detect the media type of a document.
+     */
+    static final int SIGNATURE_LENGTH = 8;
+
+    private static final byte[] JPEG_SIGNATURE = {(byte) 0xff, (byte) 0xd8, (byte) 0xff};
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final byte[] PDF_SIGNATURE = {'%', 'P', 'D', 'F', '-'};
+    private static final byte[] TIFF_LITTLE_ENDIAN_SIGNATURE = {'I', 'I', 42, 0};
+    private static final byte[] TIFF_BIG_ENDIAN_SIGNATURE = {'M', 'M', 0, 42};
+
+    private MediaTypes() {
+
+    }
+
+    /**
+     * Detects the media type of a document from its leading bytes. JPEG, PNG, TIFF and PDF documents are detected.
+     *
+     * @param data The document or at least its first {@link #SIGNATURE_LENGTH} bytes.
+     * @return The media type or null, if it is none of the detected types.
+     */
+    @Nullable
+    public static String detect(final byte[] data) {
+        return detect(data, data.length);
+    }
+
+    /**
+     * Detects the media type of a document file from its leading bytes. Only these bytes are read.
+     *
+     * @return The media type or null, if it is none of the detected types.
+     */
+    @Nullable
+    public static String detect(final File file) throws IOException {
+        final byte[] signature = new byte[SIGNATURE_LENGTH];
+        final FileInputStream inputStream = new FileInputStream(file);
+        int length = 0;
+        try {
+            int read;
+            while (length < signature.length
+                    && (read = inputStream.read(signature, length, signature.length - length)) != -1) {
+                length += read;
+            }
+        } finally {
+            inputStream.close();
+        }
+        return detect(signature, length);
+    }
+
+    @Nullable
+    private static String detect(final byte[] data, final int length) {
+        if (startsWith(data, length, JPEG_SIGNATURE)) {
+            return IMAGE_JPEG;
+        } else if (startsWith(data, length, PNG_SIGNATURE)) {
+            return IMAGE_PNG;
+        } else if (startsWith(data, length, PDF_SIGNATURE)) {
+            return APPLICATION_PDF;
+        } else if (startsWith(data, length, TIFF_LITTLE_ENDIAN_SIGNATURE)
+                || startsWith(data, length, TIFF_BIG_ENDIAN_SIGNATURE)) {
+            return IMAGE_TIFF;
+        }
+        return null;
+    }
+
+    private static boolean startsWith(final byte[] data, final int length, final byte[] signature) {
+        if (length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (data[i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
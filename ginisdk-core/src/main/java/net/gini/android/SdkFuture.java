@@ -0,0 +1,212 @@
+package net.gini.android;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * The result of an asynchronous SDK operation, returned by the future based facade of the SDK. It is a plain
+ * {@link Future} with callbacks, so it can be bridged into other async libraries, e.g. by completing a {@code
+ * CompletableFuture} in a callback, without going through Bolts' continuations.
+ * </p>
+ * <p>
+ * Callbacks which are added without an executor are called directly on the thread which completes the future, i.e.
+ * on the thread which finished the operation's last step. Pass an executor to {@link #addCallback(Callback,
+ * Executor)} to choose the thread yourself.
+ * </p>
+ * <p>
+ * Cancelling the future cancels its {@link CancellationHandle}, which cancels the operation's underlying requests if
+ * the operation supports it. The future is cancelled immediately in any case.
+ * </p>
+ */
+public class SdkFuture<T> implements Future<T> {
+
+    /**
+     * Callback which is informed when the future is completed.
+     */
+    public interface Callback<T> {
+
+        void onSuccess(T result);
+
+        /**
+         * Called when the operation failed or, with a {@link CancellationException}, when the future was cancelled.
+         */
+        void onFailure(Exception error);
+    }
+
+    private enum State {
+        RUNNING, SUCCEEDED, FAILED, CANCELLED
+    }
+
+    private final CancellationHandle mCancellationHandle;
+    private final CountDownLatch mDone = new CountDownLatch(1);
+    private final List<Runnable> mCallbacks = new ArrayList<Runnable>();
+    private State mState = State.RUNNING;
+    private T mResult;
+    private Exception mError;
+
+    SdkFuture(final CancellationHandle cancellationHandle) {
+        mCancellationHandle = checkNotNull(cancellationHandle);
+    }
+
+    /**
+     * Returns the handle which is cancelled together with this future.
+     */
+    CancellationHandle getCancellationHandle() {
+        return mCancellationHandle;
+    }
+
+    /**
+     * Completes the future with the given result. Has no effect, if the future is already completed.
+     */
+    boolean complete(@Nullable final T result) {
+        return finish(State.SUCCEEDED, result, null);
+    }
+
+    /**
+     * Completes the future with the given error. Has no effect, if the future is already completed.
+     */
+    boolean fail(final Exception error) {
+        return finish(State.FAILED, null, checkNotNull(error));
+    }
+
+    /**
+     * Cancels the future and its {@link CancellationHandle}. The argument is ignored, the operations of the SDK are
+     * cancelled by aborting their requests instead of interrupting threads.
+     */
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        if (!finish(State.CANCELLED, null, new CancellationException())) {
+            return false;
+        }
+        mCancellationHandle.cancel();
+        return true;
+    }
+
+    private boolean finish(final State state, @Nullable final T result, @Nullable final Exception error) {
+        final List<Runnable> callbacks;
+        synchronized (this) {
+            if (mState != State.RUNNING) {
+                return false;
+            }
+            mState = state;
+            mResult = result;
+            mError = error;
+            callbacks = new ArrayList<Runnable>(mCallbacks);
+            mCallbacks.clear();
+        }
+        mDone.countDown();
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mState == State.CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return mState != State.RUNNING;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        mDone.await();
+        return getResult();
+    }
+
+    @Override
+    public T get(final long timeout, final TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!mDone.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return getResult();
+    }
+
+    private synchronized T getResult() throws ExecutionException {
+        switch (mState) {
+            case SUCCEEDED:
+                return mResult;
+            case CANCELLED:
+                throw new CancellationException();
+            default:
+                throw new ExecutionException(mError);
+        }
+    }
+
+    /**
+     * Adds a callback which is called on the thread which completes the future. If the future is already completed,
+     * the callback is called immediately on the calling thread. The callback should return quickly.
+     */
+    public SdkFuture<T> addCallback(final Callback<T> callback) {
+        checkNotNull(callback);
+        addCallbackRunnable(new Runnable() {
+            @Override
+            public void run() {
+                notifyCallback(callback);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Adds a callback which is called on the given executor when the future is completed.
+     */
+    public SdkFuture<T> addCallback(final Callback<T> callback, final Executor executor) {
+        checkNotNull(callback);
+        checkNotNull(executor);
+        addCallbackRunnable(new Runnable() {
+            @Override
+            public void run() {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        notifyCallback(callback);
+                    }
+                });
+            }
+        });
+        return this;
+    }
+
+    private void addCallbackRunnable(final Runnable runnable) {
+        synchronized (this) {
+            if (mState == State.RUNNING) {
+                mCallbacks.add(runnable);
+                return;
+            }
+        }
+        runnable.run();
+    }
+
+    private void notifyCallback(final Callback<T> callback) {
+        final State state;
+        final T result;
+        final Exception error;
+        synchronized (this) {
+            state = mState;
+            result = mResult;
+            error = mError;
+        }
+        if (state == State.SUCCEEDED) {
+            callback.onSuccess(result);
+        } else {
+            callback.onFailure(error);
+        }
+    }
+}
@@ -1,11 +1,8 @@
 package net.gini.android;
 
-
-import org.apache.http.client.utils.URLEncodedUtils;
-import org.apache.http.message.BasicNameValuePair;
-
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
 import java.util.Map;
 
 public class Utils {
@@ -35,11 +32,26 @@ public class Utils {
      * @return      The urlencoded data.
      */
     public static String mapToUrlEncodedString(Map<String, String> data) {
-        ArrayList<BasicNameValuePair> parameters = new ArrayList<BasicNameValuePair>(data.size());
+        final StringBuilder result = new StringBuilder();
         for (Map.Entry<String, String> entry : data.entrySet()) {
-            parameters.add(new BasicNameValuePair(entry.getKey(), entry.getValue()));
+            if (result.length() > 0) {
+                result.append('&');
+            }
+            result.append(urlEncode(entry.getKey())).append('=');
+            if (entry.getValue() != null) {
+                result.append(urlEncode(entry.getValue()));
+            }
+        }
+        return result.toString();
+    }
+
+    private static String urlEncode(final String content) {
+        try {
+            return URLEncoder.encode(content, "utf-8");
+        } catch (UnsupportedEncodingException e) {
+            // Every Java and Android platform is required to support UTF-8.
+            throw new IllegalStateException(e);
         }
-        return URLEncodedUtils.format(parameters, "utf-8");
     }
 
     public static Charset CHARSET_UTF8 = Charset.forName("utf-8");
@@ -0,0 +1,19 @@
+package net.gini.android.requests;
+
+/**
+ * Listener which is informed about the progress of a document upload.
+ */
+public interface UploadProgressListener {
+
+    /**
+     * Called when a part of the document was sent to the Gini API. The calls are throttled to at most ten calls per
+     * second, but the call for the last byte is always made.
+     *
+     * <b>This method is called on the thread which performs the upload, e.g. one of Volley's network threads, and
+     * therefore must not block.</b>
+     *
+     * @param bytesWritten The number of bytes which were sent so far.
+     * @param totalBytes   The size of the document in bytes.
+     */
+    void onProgress(long bytesWritten, long totalBytes);
+}
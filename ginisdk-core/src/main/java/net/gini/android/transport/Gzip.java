@@ -0,0 +1,94 @@
+package net.gini.android.transport;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Helpers for the gzip compression of request and response bodies, independent of the HTTP stack.
+ */
+public final class Gzip {
+
+    public static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    public static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+    public static final String GZIP = "gzip";
+
+    /**
+     * Request bodies smaller than this are not worth compressing, since the gzip header and trailer alone take 18
+     * bytes.
+     */
+    public static final int MIN_COMPRESSION_SIZE = 1024;
+
+    static final int BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * The upper bound of the initial capacity for decompressed bodies. Larger bodies grow the buffer as they are read.
+     */
+    private static final int MAX_INITIAL_BODY_CAPACITY = 1024 * 1024;
+
+    private Gzip() {
+    }
+
+    /**
+     * Returns true, if the headers declare a gzip compressed body. Header names are compared case-insensitively.
+     */
+    public static boolean isGzipped(@Nullable final Map<String, String> headers) {
+        if (headers == null) {
+            return false;
+        }
+        final String contentEncoding = HttpResponse.getHeader(headers, CONTENT_ENCODING_HEADER);
+        return contentEncoding != null && GZIP.equalsIgnoreCase(contentEncoding.trim());
+    }
+
+    /**
+     * Compresses the given body with gzip.
+     *
+     * @return The compressed body or null, if the body was null.
+     */
+    @Nullable
+    public static byte[] compress(@Nullable final byte[] body) {
+        if (body == null) {
+            return null;
+        }
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(body.length / 4 + 32);
+        try {
+            final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, BUFFER_SIZE);
+            gzipOutputStream.write(body);
+            gzipOutputStream.close();
+        } catch (IOException e) {
+            // Can't happen, since the data is written to memory.
+            throw new IllegalStateException(e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Decompresses the given gzip compressed body.
+     */
+    public static byte[] decompress(final byte[] body) throws IOException {
+        final InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(body), BUFFER_SIZE);
+        try {
+            // Compressed JSON usually shrinks by a factor between 5 and 10. Computed with longs to not overflow.
+            final int capacity = (int) Math.min((long) body.length * 4, MAX_INITIAL_BODY_CAPACITY);
+            return readFully(inputStream, capacity);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    static byte[] readFully(final InputStream inputStream, final int initialCapacity) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(initialCapacity);
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+}
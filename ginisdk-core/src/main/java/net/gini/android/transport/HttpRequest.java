@@ -0,0 +1,168 @@
+package net.gini.android.transport;
+
+import net.gini.android.requests.UploadProgressListener;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * A request which is performed by a {@link Transport}. Requests are immutable, use the {@link Builder} to create them.
+ * </p>
+ * <p>
+ * The body is either a byte array or a file. Transports stream file bodies to the connection, so a file is never read
+ * into memory as a whole, if the transport supports it.
+ * </p>
+ */
+public final class HttpRequest {
+
+    public static final String GET = "GET";
+    public static final String POST = "POST";
+    public static final String PUT = "PUT";
+    public static final String DELETE = "DELETE";
+
+    private final String mMethod;
+    private final String mUrl;
+    private final Map<String, String> mHeaders;
+    private final byte[] mBody;
+    private final File mBodyFile;
+    private final String mContentType;
+    private final UploadProgressListener mUploadProgressListener;
+
+    private HttpRequest(final Builder builder) {
+        mMethod = builder.mMethod;
+        mUrl = builder.mUrl;
+        mHeaders = Collections.unmodifiableMap(new LinkedHashMap<String, String>(builder.mHeaders));
+        mBody = builder.mBody;
+        mBodyFile = builder.mBodyFile;
+        mContentType = builder.mContentType;
+        mUploadProgressListener = builder.mUploadProgressListener;
+    }
+
+    public String getMethod() {
+        return mMethod;
+    }
+
+    public String getUrl() {
+        return mUrl;
+    }
+
+    /**
+     * The request's headers, without the Content-Type header. The transport sets it from {@link #getContentType()}.
+     */
+    public Map<String, String> getHeaders() {
+        return mHeaders;
+    }
+
+    public boolean hasBody() {
+        return mBody != null || mBodyFile != null;
+    }
+
+    /**
+     * The body, if the request has a byte array body.
+     */
+    @Nullable
+    public byte[] getBody() {
+        return mBody;
+    }
+
+    /**
+     * The file whose content is the body, if the request has a file body.
+     */
+    @Nullable
+    public File getBodyFile() {
+        return mBodyFile;
+    }
+
+    /**
+     * The length of the body in bytes or 0, if the request has no body.
+     */
+    public long getBodyLength() {
+        if (mBody != null) {
+            return mBody.length;
+        }
+        return mBodyFile != null ? mBodyFile.length() : 0;
+    }
+
+    @Nullable
+    public String getContentType() {
+        return mContentType;
+    }
+
+    @Nullable
+    public UploadProgressListener getUploadProgressListener() {
+        return mUploadProgressListener;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpRequest{" + mMethod + " " + mUrl + '}';
+    }
+
+    /**
+     * Builds {@link HttpRequest} instances.
+     */
+    public static class Builder {
+
+        private final String mMethod;
+        private final String mUrl;
+        private final Map<String, String> mHeaders = new LinkedHashMap<String, String>();
+        private byte[] mBody;
+        private File mBodyFile;
+        private String mContentType;
+        private UploadProgressListener mUploadProgressListener;
+
+        /**
+         * @param method The HTTP method, e.g. {@link #GET}.
+         * @param url    The full URL of the request.
+         */
+        public Builder(final String method, final String url) {
+            mMethod = checkNotNull(method);
+            mUrl = checkNotNull(url);
+        }
+
+        public Builder setHeader(final String name, final String value) {
+            mHeaders.put(checkNotNull(name), checkNotNull(value));
+            return this;
+        }
+
+        /**
+         * Sets a byte array body. Replaces a previously set body.
+         */
+        public Builder setBody(final byte[] body, final String contentType) {
+            mBody = checkNotNull(body);
+            mBodyFile = null;
+            mContentType = checkNotNull(contentType);
+            return this;
+        }
+
+        /**
+         * Sets a file body. The file must not be changed until the request is completed. Replaces a previously set
+         * body.
+         */
+        public Builder setBody(final File bodyFile, final String contentType) {
+            mBodyFile = checkNotNull(bodyFile);
+            mBody = null;
+            mContentType = checkNotNull(contentType);
+            return this;
+        }
+
+        /**
+         * Sets a listener which is informed about the number of sent bytes of the body.
+         */
+        public Builder setUploadProgressListener(@Nullable final UploadProgressListener uploadProgressListener) {
+            mUploadProgressListener = uploadProgressListener;
+            return this;
+        }
+
+        public HttpRequest build() {
+            return new HttpRequest(this);
+        }
+    }
+}
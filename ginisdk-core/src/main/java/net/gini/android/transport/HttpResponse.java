@@ -0,0 +1,81 @@
+package net.gini.android.transport;
+
+import net.gini.android.Utils;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * The response to an {@link HttpRequest}. The body is already decompressed, if it was sent gzip compressed.
+ */
+public final class HttpResponse {
+
+    private final int mStatusCode;
+    private final Map<String, String> mHeaders;
+    private final byte[] mBody;
+
+    /**
+     * @param headers The response's headers. Header names are compared case-insensitively by {@link
+     *                #getHeader(String)}.
+     * @param body    The (decompressed) body or an empty array, if the response has no body.
+     */
+    public HttpResponse(final int statusCode, final Map<String, String> headers, final byte[] body) {
+        mStatusCode = statusCode;
+        mHeaders = Collections.unmodifiableMap(new LinkedHashMap<String, String>(checkNotNull(headers)));
+        mBody = checkNotNull(body);
+    }
+
+    public int getStatusCode() {
+        return mStatusCode;
+    }
+
+    /**
+     * Returns true, if the status code is in the range from 200 to 299.
+     */
+    public boolean isSuccessful() {
+        return mStatusCode >= 200 && mStatusCode < 300;
+    }
+
+    public Map<String, String> getHeaders() {
+        return mHeaders;
+    }
+
+    /**
+     * Returns the value of the header with the given name or null, if the response has no such header. The name is
+     * compared case-insensitively, since HTTP stacks don't agree on the case of header names.
+     */
+    @Nullable
+    public String getHeader(final String name) {
+        return getHeader(mHeaders, name);
+    }
+
+    static String getHeader(final Map<String, String> headers, final String name) {
+        for (final Map.Entry<String, String> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey())) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    public byte[] getBody() {
+        return mBody;
+    }
+
+    /**
+     * Returns the body as a UTF-8 string. The Gini API always uses UTF-8.
+     */
+    public String getBodyAsString() {
+        return new String(mBody, Utils.CHARSET_UTF8);
+    }
+
+    @Override
+    public String toString() {
+        return "HttpResponse{statusCode=" + mStatusCode + ", bodyLength=" + mBody.length + '}';
+    }
+}
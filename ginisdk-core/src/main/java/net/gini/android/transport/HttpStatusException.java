@@ -0,0 +1,27 @@
+package net.gini.android.transport;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * Thrown when the Gini API responded with a status code which is not in the range from 200 to 299.
+ */
+public class HttpStatusException extends Exception {
+
+    private final HttpResponse mResponse;
+
+    public HttpStatusException(final HttpResponse response) {
+        super("The request failed with the status code " + checkNotNull(response).getStatusCode());
+        mResponse = response;
+    }
+
+    public int getStatusCode() {
+        return mResponse.getStatusCode();
+    }
+
+    /**
+     * The error response, its body usually contains the Gini API's description of the error.
+     */
+    public HttpResponse getResponse() {
+        return mResponse;
+    }
+}
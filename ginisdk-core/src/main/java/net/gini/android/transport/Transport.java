@@ -0,0 +1,43 @@
+package net.gini.android.transport;
+
+import net.gini.android.CancellationHandle;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * Performs HTTP requests for the {@link net.gini.android.GiniApiClient}. Implementations adapt an HTTP stack, e.g. the
+ * {@link UrlConnectionTransport} on any Java platform.
+ * </p>
+ * <p>
+ * Implementations must not block the calling thread. The callback is called exactly once and may be called on any
+ * thread.
+ * </p>
+ */
+public interface Transport {
+
+    /**
+     * Callback which is informed about the outcome of a request.
+     */
+    interface Callback {
+
+        /**
+         * Called with every response the server sent, including responses with an error status code.
+         */
+        void onResponse(HttpResponse response);
+
+        /**
+         * Called when no response was received, e.g. because of a network error, or with a {@link
+         * java.util.concurrent.CancellationException}, when the request was cancelled.
+         */
+        void onFailure(Exception error);
+    }
+
+    /**
+     * Performs the request asynchronously.
+     *
+     * @param cancellationHandle Optional a handle to cancel the request. Cancelling aborts the running request and
+     *                           informs the callback with a {@link java.util.concurrent.CancellationException}.
+     */
+    void execute(HttpRequest request, Callback callback, @Nullable CancellationHandle cancellationHandle);
+}
@@ -0,0 +1,310 @@
+package net.gini.android.transport;
+
+import net.gini.android.CancellationHandle;
+import net.gini.android.requests.UploadProgressListener;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * A {@link Transport} which performs the requests with {@link HttpURLConnection}, so it runs on any Java platform
+ * without further dependencies.
+ * </p>
+ * <p>
+ * Each request blocks a thread of the given executor while it is performed. Bodies are streamed to the connection with
+ * a fixed length, file bodies are never read into memory as a whole. Gzip compressed responses are decompressed.
+ * Cancelling a request disconnects its connection.
+ * </p>
+ */
+public class UrlConnectionTransport implements Transport {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT_MS = 15000;
+    public static final int DEFAULT_READ_TIMEOUT_MS = 60000;
+
+    /**
+     * The minimal time in milliseconds between two calls of the {@link UploadProgressListener}.
+     */
+    private static final long PROGRESS_INTERVAL_MS = 100;
+
+    private final Executor mExecutor;
+    private final int mConnectTimeoutMs;
+    private final int mReadTimeoutMs;
+
+    /**
+     * Creates a transport with the {@link #DEFAULT_CONNECT_TIMEOUT_MS} and the {@link #DEFAULT_READ_TIMEOUT_MS}.
+     *
+     * @param executor The executor on which the requests are performed.
+     */
+    public UrlConnectionTransport(final Executor executor) {
+        this(executor, DEFAULT_CONNECT_TIMEOUT_MS, DEFAULT_READ_TIMEOUT_MS);
+    }
+
+    /**
+     * @param executor         The executor on which the requests are performed.
+     * @param connectTimeoutMs The timeout for establishing a connection.
+     * @param readTimeoutMs    The timeout for reading from the connection. Long polling requests are held by the Gini
+     *                         API, so it has to be longer than their wait time.
+     */
+    public UrlConnectionTransport(final Executor executor, final int connectTimeoutMs, final int readTimeoutMs) {
+        mExecutor = checkNotNull(executor);
+        mConnectTimeoutMs = connectTimeoutMs;
+        mReadTimeoutMs = readTimeoutMs;
+    }
+
+    @Override
+    public void execute(final HttpRequest request, final Callback callback,
+                        @Nullable final CancellationHandle cancellationHandle) {
+        final Call call = new Call(checkNotNull(request), checkNotNull(callback), cancellationHandle);
+        if (cancellationHandle != null) {
+            cancellationHandle.addOnCancelListener(call);
+        }
+        mExecutor.execute(call);
+    }
+
+    /**
+     * Opens the connection of a request. Override to configure the connection, e.g. to set a socket factory.
+     */
+    protected HttpURLConnection openConnection(final URL url) throws IOException {
+        return (HttpURLConnection) url.openConnection();
+    }
+
+    private class Call implements Runnable, CancellationHandle.OnCancelListener {
+
+        private final HttpRequest mRequest;
+        private final Callback mCallback;
+        private final CancellationHandle mCancellationHandle;
+        private final AtomicBoolean mFinished = new AtomicBoolean();
+        private volatile boolean mCancelled;
+        private volatile HttpURLConnection mConnection;
+
+        Call(final HttpRequest request, final Callback callback,
+             @Nullable final CancellationHandle cancellationHandle) {
+            mRequest = request;
+            mCallback = callback;
+            mCancellationHandle = cancellationHandle;
+        }
+
+        @Override
+        public void onCancel() {
+            mCancelled = true;
+            final HttpURLConnection connection = mConnection;
+            if (connection != null) {
+                connection.disconnect();
+            }
+            if (mFinished.compareAndSet(false, true)) {
+                mCallback.onFailure(new CancellationException());
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (mCancelled) {
+                    return;
+                }
+                final HttpResponse response;
+                try {
+                    response = perform();
+                } catch (IOException e) {
+                    if (mFinished.compareAndSet(false, true)) {
+                        mCallback.onFailure(e);
+                    }
+                    return;
+                }
+                if (mFinished.compareAndSet(false, true)) {
+                    mCallback.onResponse(response);
+                }
+            } finally {
+                if (mCancellationHandle != null) {
+                    mCancellationHandle.removeOnCancelListener(this);
+                }
+            }
+        }
+
+        private void checkNotCancelled() throws InterruptedIOException {
+            if (mCancelled) {
+                throw new InterruptedIOException("The request was cancelled");
+            }
+        }
+
+        private HttpResponse perform() throws IOException {
+            final HttpURLConnection connection = openConnection(new URL(mRequest.getUrl()));
+            mConnection = connection;
+            try {
+                checkNotCancelled();
+                connection.setConnectTimeout(mConnectTimeoutMs);
+                connection.setReadTimeout(mReadTimeoutMs);
+                connection.setUseCaches(false);
+                connection.setDoInput(true);
+                connection.setRequestMethod(mRequest.getMethod());
+                for (final Map.Entry<String, String> header : mRequest.getHeaders().entrySet()) {
+                    connection.setRequestProperty(header.getKey(), header.getValue());
+                }
+                if (mRequest.hasBody()) {
+                    writeBody(connection);
+                }
+                final int statusCode = connection.getResponseCode();
+                checkNotCancelled();
+                final Map<String, String> headers = readHeaders(connection);
+                byte[] body = readBody(connection, statusCode);
+                if (Gzip.isGzipped(headers)) {
+                    body = Gzip.decompress(body);
+                }
+                return new HttpResponse(statusCode, headers, body);
+            } finally {
+                connection.disconnect();
+            }
+        }
+
+        private void writeBody(final HttpURLConnection connection) throws IOException {
+            final long bodyLength = mRequest.getBodyLength();
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", mRequest.getContentType());
+            // The long variant is only available since Java 7 and Android API level 19.
+            if (bodyLength <= Integer.MAX_VALUE) {
+                connection.setFixedLengthStreamingMode((int) bodyLength);
+            } else {
+                connection.setChunkedStreamingMode(0);
+            }
+            final OutputStream outputStream = new ProgressOutputStream(connection.getOutputStream(), bodyLength,
+                    mRequest.getUploadProgressListener());
+            try {
+                final byte[] body = mRequest.getBody();
+                if (body != null) {
+                    outputStream.write(body);
+                } else {
+                    writeFile(checkNotNull(mRequest.getBodyFile()), bodyLength, outputStream);
+                }
+            } finally {
+                outputStream.close();
+            }
+        }
+
+        private void writeFile(final File file, final long bodyLength, final OutputStream outputStream)
+                throws IOException {
+            final InputStream inputStream = new FileInputStream(file);
+            try {
+                final byte[] buffer = new byte[Gzip.BUFFER_SIZE];
+                long written = 0;
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    checkNotCancelled();
+                    outputStream.write(buffer, 0, read);
+                    written += read;
+                }
+                if (written != bodyLength) {
+                    throw new IOException("The document " + file + " was changed during the upload");
+                }
+            } finally {
+                inputStream.close();
+            }
+        }
+
+        private Map<String, String> readHeaders(final HttpURLConnection connection) {
+            final Map<String, String> headers = new LinkedHashMap<String, String>();
+            for (final Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+                // The status line is returned with a null name.
+                if (header.getKey() == null || header.getValue() == null || header.getValue().isEmpty()) {
+                    continue;
+                }
+                final StringBuilder value = new StringBuilder();
+                for (final String part : header.getValue()) {
+                    if (value.length() > 0) {
+                        value.append(", ");
+                    }
+                    value.append(part);
+                }
+                headers.put(header.getKey(), value.toString());
+            }
+            return headers;
+        }
+
+        private byte[] readBody(final HttpURLConnection connection, final int statusCode) throws IOException {
+            final InputStream inputStream;
+            if (statusCode >= 400) {
+                inputStream = connection.getErrorStream();
+            } else {
+                inputStream = connection.getInputStream();
+            }
+            if (inputStream == null) {
+                return new byte[0];
+            }
+            try {
+                final int contentLength = connection.getContentLength();
+                return Gzip.readFully(inputStream, contentLength > 0 ? contentLength : Gzip.BUFFER_SIZE);
+            } finally {
+                inputStream.close();
+            }
+        }
+
+        /**
+         * Reports the written bytes to the request's progress listener and aborts the upload when the request is
+         * cancelled.
+         */
+        private class ProgressOutputStream extends FilterOutputStream {
+
+            private final long mTotalBytes;
+            private final UploadProgressListener mProgressListener;
+            private long mBytesWritten;
+            private long mLastProgressTime;
+
+            ProgressOutputStream(final OutputStream outputStream, final long totalBytes,
+                                 @Nullable final UploadProgressListener progressListener) {
+                super(outputStream);
+                mTotalBytes = totalBytes;
+                mProgressListener = progressListener;
+            }
+
+            @Override
+            public void write(final int oneByte) throws IOException {
+                checkNotCancelled();
+                out.write(oneByte);
+                onWritten(1);
+            }
+
+            @Override
+            public void write(final byte[] buffer, final int offset, final int length) throws IOException {
+                // Writes large arrays in chunks, so the progress is reported and cancelling aborts the upload.
+                int position = offset;
+                final int end = offset + length;
+                while (position < end) {
+                    checkNotCancelled();
+                    final int chunkLength = Math.min(Gzip.BUFFER_SIZE, end - position);
+                    out.write(buffer, position, chunkLength);
+                    position += chunkLength;
+                    onWritten(chunkLength);
+                }
+            }
+
+            private void onWritten(final int length) {
+                mBytesWritten += length;
+                if (mProgressListener == null) {
+                    return;
+                }
+                final long now = System.currentTimeMillis();
+                if (mBytesWritten == mTotalBytes || now - mLastProgressTime >= PROGRESS_INTERVAL_MS) {
+                    mLastProgressTime = now;
+                    mProgressListener.onProgress(mBytesWritten, mTotalBytes);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package net.gini.android;
+
+import junit.framework.TestCase;
+
+public class CancellationHandleTest extends TestCase {
+
+    public void testIsNotCancelledInitially() {
+        assertFalse(new CancellationHandle().isCancelled());
+    }
+
+    public void testCancelNotifiesListeners() {
+        final CancellationHandle cancellationHandle = new CancellationHandle();
+        final int[] calls = new int[1];
+        cancellationHandle.addOnCancelListener(new CancellationHandle.OnCancelListener() {
+            @Override
+            public void onCancel() {
+                calls[0]++;
+            }
+        });
+
+        cancellationHandle.cancel();
+        cancellationHandle.cancel();
+
+        assertTrue(cancellationHandle.isCancelled());
+        assertEquals(1, calls[0]);
+    }
+
+    public void testListenerAddedAfterCancelIsNotifiedImmediately() {
+        final CancellationHandle cancellationHandle = new CancellationHandle();
+        cancellationHandle.cancel();
+        final boolean[] called = new boolean[1];
+
+        cancellationHandle.addOnCancelListener(new CancellationHandle.OnCancelListener() {
+            @Override
+            public void onCancel() {
+                called[0] = true;
+            }
+        });
+
+        assertTrue(called[0]);
+    }
+
+    public void testRemovedListenerIsNotNotified() {
+        final CancellationHandle cancellationHandle = new CancellationHandle();
+        final boolean[] called = new boolean[1];
+        final CancellationHandle.OnCancelListener listener = new CancellationHandle.OnCancelListener() {
+            @Override
+            public void onCancel() {
+                called[0] = true;
+            }
+        };
+        cancellationHandle.addOnCancelListener(listener);
+        cancellationHandle.removeOnCancelListener(listener);
+
+        cancellationHandle.cancel();
+
+        assertFalse(called[0]);
+    }
+}
@@ -0,0 +1,196 @@
+package net.gini.android;
+
+import junit.framework.TestCase;
+
+import net.gini.android.transport.HttpRequest;
+import net.gini.android.transport.HttpResponse;
+import net.gini.android.transport.HttpStatusException;
+import net.gini.android.transport.Transport;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class GiniApiClientTest extends TestCase {
+
+    private FakeTransport mTransport;
+    private GiniApiClient mApiClient;
+
+    /**
+     * Records the requests and completes them only when the test asks for it.
+     */
+    private static class FakeTransport implements Transport {
+
+        HttpRequest mRequest;
+        Callback mCallback;
+        CancellationHandle mCancellationHandle;
+
+        @Override
+        public void execute(final HttpRequest request, final Callback callback,
+                            final CancellationHandle cancellationHandle) {
+            mRequest = request;
+            mCallback = callback;
+            mCancellationHandle = cancellationHandle;
+        }
+
+        void respond(final int statusCode, final String body, final Map<String, String> headers) {
+            mCallback.onResponse(new HttpResponse(statusCode, headers, body.getBytes(Utils.CHARSET_UTF8)));
+        }
+
+        void respond(final int statusCode, final String body) {
+            respond(statusCode, body, Collections.<String, String>emptyMap());
+        }
+    }
+
+    @Override
+    protected void setUp() {
+        mTransport = new FakeTransport();
+        mApiClient = new GiniApiClient("https://api.gini.net/", mTransport);
+    }
+
+    public void testGetDocumentSendsAuthorizedRequest() throws Exception {
+        final SdkFuture<JSONObject> future = mApiClient.getDocument("1234", "access-token", null);
+
+        assertEquals(HttpRequest.GET, mTransport.mRequest.getMethod());
+        assertEquals("https://api.gini.net/documents/1234", mTransport.mRequest.getUrl());
+        assertEquals("BEARER access-token", mTransport.mRequest.getHeaders().get("Authorization"));
+        assertEquals("application/json, application/vnd.gini.v1+json",
+                mTransport.mRequest.getHeaders().get("Accept"));
+        assertEquals("gzip", mTransport.mRequest.getHeaders().get("Accept-Encoding"));
+        assertFalse(mTransport.mRequest.hasBody());
+
+        mTransport.respond(200, "{\"id\":\"1234\"}");
+        assertEquals("1234", future.get(1, TimeUnit.SECONDS).getString("id"));
+    }
+
+    public void testIncubatorExtractionsUseIncubatorMediaType() throws Exception {
+        mApiClient.getIncubatorExtractions("1234", "access-token", null);
+
+        assertEquals("https://api.gini.net/documents/1234/extractions", mTransport.mRequest.getUrl());
+        assertEquals(MediaTypes.GINI_JSON_INCUBATOR, mTransport.mRequest.getHeaders().get("Accept"));
+    }
+
+    public void testEmptyBodyIsParsedToNull() throws Exception {
+        final SdkFuture<JSONObject> future =
+                mApiClient.sendFeedback("1234", new JSONObject(), "access-token", null);
+        mTransport.respond(204, "");
+
+        assertNull(future.get(1, TimeUnit.SECONDS));
+    }
+
+    public void testSendFeedbackWrapsExtractions() throws Exception {
+        final JSONObject extractions = new JSONObject();
+        extractions.put("amountToPay", new JSONObject().put("value", "42:EUR"));
+
+        mApiClient.sendFeedback("1234", extractions, "access-token", null);
+
+        assertEquals(HttpRequest.PUT, mTransport.mRequest.getMethod());
+        assertEquals(MediaTypes.GINI_JSON_V1, mTransport.mRequest.getContentType());
+        final JSONObject body = new JSONObject(new String(mTransport.mRequest.getBody(), Utils.CHARSET_UTF8));
+        assertEquals("42:EUR", body.getJSONObject("feedback").getJSONObject("amountToPay").getString("value"));
+    }
+
+    public void testErrorStatusFailsWithResponse() throws Exception {
+        final SdkFuture<JSONObject> future = mApiClient.getDocument("1234", "access-token", null);
+        mTransport.respond(404, "{\"message\":\"not found\"}");
+
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("Exception not thrown");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof HttpStatusException);
+            final HttpStatusException statusException = (HttpStatusException) e.getCause();
+            assertEquals(404, statusException.getStatusCode());
+            assertEquals("{\"message\":\"not found\"}", statusException.getResponse().getBodyAsString());
+        }
+    }
+
+    public void testInvalidJsonFailsTheFuture() throws Exception {
+        final SdkFuture<JSONObject> future = mApiClient.getDocument("1234", "access-token", null);
+        mTransport.respond(200, "<html>");
+
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("Exception not thrown");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof org.json.JSONException);
+        }
+    }
+
+    public void testUploadReturnsLocation() throws Exception {
+        final byte[] data = "%PDF-1.4\n".getBytes(Utils.CHARSET_UTF8);
+        final SdkFuture<String> future = mApiClient.uploadDocument(data, MediaTypes.APPLICATION_PDF, "invoice.pdf",
+                null, "access-token", null, null);
+
+        assertEquals(HttpRequest.POST, mTransport.mRequest.getMethod());
+        assertEquals("https://api.gini.net/documents/?filename=invoice.pdf", mTransport.mRequest.getUrl());
+        assertEquals(MediaTypes.APPLICATION_PDF, mTransport.mRequest.getContentType());
+        assertTrue(Arrays.equals(data, mTransport.mRequest.getBody()));
+
+        mTransport.respond(201, "",
+                Collections.singletonMap("location", "https://api.gini.net/documents/1234"));
+        assertEquals("https://api.gini.net/documents/1234", future.get(1, TimeUnit.SECONDS));
+    }
+
+    public void testUploadWithoutLocationFails() throws Exception {
+        final SdkFuture<String> future = mApiClient.uploadDocument(new byte[1], MediaTypes.APPLICATION_PDF, null,
+                null, "access-token", null, null);
+        mTransport.respond(201, "");
+
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("Exception not thrown");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    public void testCompositeDocumentReferencesPartialDocuments() throws Exception {
+        mApiClient.createCompositeDocument(Arrays.asList("https://api.gini.net/documents/1",
+                "https://api.gini.net/documents/2"), null, null, "access-token", null);
+
+        assertEquals(MediaTypes.GINI_COMPOSITE_JSON, mTransport.mRequest.getContentType());
+        final JSONObject body = new JSONObject(new String(mTransport.mRequest.getBody(), Utils.CHARSET_UTF8));
+        assertEquals("https://api.gini.net/documents/2",
+                body.getJSONArray("partialDocuments").getJSONObject(1).getString("document"));
+    }
+
+    public void testCancellingFutureCancelsRequest() throws Exception {
+        final SdkFuture<JSONObject> future = mApiClient.getDocument("1234", "access-token", null);
+
+        assertTrue(future.cancel(true));
+
+        assertTrue(mTransport.mCancellationHandle.isCancelled());
+    }
+
+    public void testPassesGivenHandleToTransport() throws Exception {
+        final CancellationHandle cancellationHandle = new CancellationHandle();
+        final SdkFuture<Void> future = mApiClient.deleteDocument("1234", "access-token", cancellationHandle);
+
+        assertEquals(HttpRequest.DELETE, mTransport.mRequest.getMethod());
+        assertSame(cancellationHandle, mTransport.mCancellationHandle);
+
+        cancellationHandle.cancel();
+        mTransport.mCallback.onFailure(new CancellationException());
+        assertTrue(future.isCancelled());
+    }
+
+    public void testTransportFailureFailsTheFuture() throws Exception {
+        final SdkFuture<JSONObject> future = mApiClient.getExtractions("1234", "access-token", null);
+        final IOException error = new IOException("connection reset");
+        mTransport.mCallback.onFailure(error);
+
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("Exception not thrown");
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package net.gini.android;
+
+import junit.framework.TestCase;
+
+public class GiniApiUrlsTest extends TestCase {
+
+    private GiniApiUrls mUrls;
+
+    @Override
+    protected void setUp() {
+        mUrls = new GiniApiUrls("https://api.gini.net/");
+    }
+
+    public void testDocumentsWithoutQuery() {
+        assertEquals("https://api.gini.net/documents/", mUrls.documents(null, null));
+    }
+
+    public void testDocumentsWithFilenameAndDocType() {
+        assertEquals("https://api.gini.net/documents/?filename=foobar.pdf", mUrls.documents("foobar.pdf", null));
+        assertEquals("https://api.gini.net/documents/?doctype=invoice", mUrls.documents(null, "invoice"));
+    }
+
+    public void testDocumentEndpoints() {
+        assertEquals("https://api.gini.net/documents/1234", mUrls.document("1234"));
+        assertEquals("https://api.gini.net/documents/1234-1234/extractions", mUrls.extractions("1234-1234"));
+        assertEquals("https://api.gini.net/documents/1234/pages/1/750x900", mUrls.preview("1234", 1, "750x900"));
+        assertEquals("https://api.gini.net/documents/1234-4321/layout", mUrls.layout("1234-4321"));
+    }
+
+    public void testErrorReportEncodesParameters() {
+        final String url = mUrls.errorReport("1234", "short summary", null);
+
+        assertTrue(url.startsWith("https://api.gini.net/documents/1234/errorreport?"));
+        assertTrue(url.contains("summary=short+summary"));
+        assertTrue(url.contains("description="));
+    }
+
+    public void testDocumentList() {
+        assertEquals("https://api.gini.net/documents?offset=0&limit=23", mUrls.documentList(0, 23));
+    }
+
+    public void testSearchEncodesLikeUriBuilder() {
+        assertEquals("https://api.gini.net/search?q=foo%20b%C3%A4r&offset=0&limit=20",
+                mUrls.search("foo bär", null, 0, 20));
+        assertEquals("https://api.gini.net/search?q=foo%20b%C3%A4r&offset=0&limit=20&docType=invoice",
+                mUrls.search("foo bär", "invoice", 0, 20));
+    }
+
+    public void testPathIsEncodedButSlashesAreKept() {
+        assertEquals("https://api.gini.net/documents/a%20b/c", mUrls.document("a b/c"));
+        assertEquals("https://api.gini.net/documents/%C3%A4%3F~", mUrls.document("ä?~"));
+    }
+
+    public void testOnlyOriginOfBaseUrlIsUsed() {
+        final GiniApiUrls urls = new GiniApiUrls("http://localhost:8080/api/v1/");
+
+        assertEquals("http://localhost:8080/documents/1234", urls.document("1234"));
+    }
+
+    public void testRelativeToBase() {
+        assertEquals("https://api.gini.net/documents/1234", mUrls.relativeToBase("/documents/1234", null));
+        assertEquals("https://api.gini.net/", mUrls.relativeToBase(null, null));
+    }
+
+    public void testRejectsBaseUrlWithoutAuthority() {
+        try {
+            new GiniApiUrls("api.gini.net");
+            fail("Exception not thrown");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package net.gini.android;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class SdkFutureTest extends TestCase {
+
+    private SdkFuture<String> mFuture;
+    private CancellationHandle mCancellationHandle;
+
+    @Override
+    protected void setUp() {
+        mCancellationHandle = new CancellationHandle();
+        mFuture = new SdkFuture<String>(mCancellationHandle);
+    }
+
+    public void testGetReturnsResult() throws Exception {
+        mFuture.complete("result");
+
+        assertTrue(mFuture.isDone());
+        assertFalse(mFuture.isCancelled());
+        assertEquals("result", mFuture.get());
+    }
+
+    public void testGetThrowsError() throws Exception {
+        final Exception error = new Exception("failed");
+        mFuture.fail(error);
+
+        try {
+            mFuture.get();
+            fail("Exception not thrown");
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    public void testGetTimesOut() throws Exception {
+        try {
+            mFuture.get(10, TimeUnit.MILLISECONDS);
+            fail("Exception not thrown");
+        } catch (TimeoutException ignored) {
+        }
+    }
+
+    public void testGetWaitsForCompletion() throws Exception {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                mFuture.complete("result");
+            }
+        }).start();
+
+        assertEquals("result", mFuture.get(5, TimeUnit.SECONDS));
+    }
+
+    public void testOnlyFirstCompletionCounts() throws Exception {
+        assertTrue(mFuture.complete("first"));
+        assertFalse(mFuture.complete("second"));
+        assertFalse(mFuture.fail(new Exception()));
+        assertFalse(mFuture.cancel(true));
+
+        assertEquals("first", mFuture.get());
+        assertFalse(mCancellationHandle.isCancelled());
+    }
+
+    public void testCancelCancelsHandle() throws Exception {
+        assertTrue(mFuture.cancel(false));
+
+        assertTrue(mFuture.isCancelled());
+        assertTrue(mCancellationHandle.isCancelled());
+        try {
+            mFuture.get();
+            fail("Exception not thrown");
+        } catch (CancellationException ignored) {
+        }
+    }
+
+    public void testCallbackIsCalledOnCompletingThread() throws Exception {
+        final List<Thread> callbackThreads = new ArrayList<Thread>();
+        mFuture.addCallback(new RecordingCallback() {
+            @Override
+            public void onSuccess(final String result) {
+                callbackThreads.add(Thread.currentThread());
+            }
+        });
+        final Thread completingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                mFuture.complete("result");
+            }
+        });
+
+        completingThread.start();
+        completingThread.join();
+
+        assertEquals(1, callbackThreads.size());
+        assertSame(completingThread, callbackThreads.get(0));
+    }
+
+    public void testCallbackIsCalledImmediatelyWhenCompleted() {
+        final RecordingCallback callback = new RecordingCallback();
+        mFuture.complete("result");
+
+        mFuture.addCallback(callback);
+
+        assertEquals("result", callback.mResult);
+    }
+
+    public void testCallbackIsCalledOnExecutor() {
+        final List<Runnable> commands = new ArrayList<Runnable>();
+        final RecordingCallback callback = new RecordingCallback();
+        mFuture.addCallback(callback, new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                commands.add(command);
+            }
+        });
+
+        mFuture.complete("result");
+        assertNull(callback.mResult);
+        assertEquals(1, commands.size());
+
+        commands.get(0).run();
+        assertEquals("result", callback.mResult);
+    }
+
+    public void testCallbackIsInformedAboutErrorAndCancellation() {
+        final RecordingCallback failureCallback = new RecordingCallback();
+        final Exception error = new Exception("failed");
+        mFuture.addCallback(failureCallback);
+        mFuture.fail(error);
+
+        final SdkFuture<String> cancelledFuture = new SdkFuture<String>(new CancellationHandle());
+        final RecordingCallback cancellationCallback = new RecordingCallback();
+        cancelledFuture.addCallback(cancellationCallback);
+        cancelledFuture.cancel(false);
+
+        assertSame(error, failureCallback.mError);
+        assertTrue(cancellationCallback.mError instanceof CancellationException);
+    }
+
+    private static class RecordingCallback implements SdkFuture.Callback<String> {
+
+        private String mResult;
+        private Exception mError;
+
+        @Override
+        public void onSuccess(final String result) {
+            mResult = result;
+        }
+
+        @Override
+        public void onFailure(final Exception error) {
+            mError = error;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package net.gini.android;
+
+import junit.framework.TestCase;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class UtilsTest extends TestCase {
+
+    public void testCheckNotNullReturnsReference() {
+        final Object reference = new Object();
+        assertSame(reference, Utils.checkNotNull(reference));
+    }
+
+    public void testCheckNotNullThrowsForNull() {
+        try {
+            Utils.checkNotNull(null);
+            fail("Exception not thrown");
+        } catch (NullPointerException ignored) {
+        }
+    }
+
+    public void testMapToUrlEncodedStringKeepsOrder() {
+        final Map<String, String> data = new LinkedHashMap<String, String>();
+        data.put("grant_type", "password");
+        data.put("username", "foo@example.com");
+
+        assertEquals("grant_type=password&username=foo%40example.com", Utils.mapToUrlEncodedString(data));
+    }
+
+    public void testMapToUrlEncodedStringEncodesNamesAndValues() {
+        final Map<String, String> data = new LinkedHashMap<String, String>();
+        data.put("a b", "c&d=e");
+        data.put("umlaut", "ä");
+
+        assertEquals("a+b=c%26d%3De&umlaut=%C3%A4", Utils.mapToUrlEncodedString(data));
+    }
+
+    public void testMapToUrlEncodedStringWithNullValue() {
+        final Map<String, String> data = new LinkedHashMap<String, String>();
+        data.put("key", null);
+
+        assertEquals("key=", Utils.mapToUrlEncodedString(data));
+    }
+
+    public void testMapToUrlEncodedStringWithEmptyMap() {
+        assertEquals("", Utils.mapToUrlEncodedString(new LinkedHashMap<String, String>()));
+    }
+}
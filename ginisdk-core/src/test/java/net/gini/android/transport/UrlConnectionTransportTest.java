@@ -0,0 +1,278 @@
+package net.gini.android.transport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.TestCase;
+
+import net.gini.android.CancellationHandle;
+import net.gini.android.Utils;
+import net.gini.android.requests.UploadProgressListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class UrlConnectionTransportTest extends TestCase {
+
+    private HttpServer mServer;
+    private ExecutorService mExecutor;
+    private UrlConnectionTransport mTransport;
+    private volatile Exchange mLastExchange;
+
+    /**
+     * The parts of a received request which the tests check.
+     */
+    private static class Exchange {
+        String method;
+        String authorization;
+        String contentType;
+        String contentLength;
+        byte[] body;
+    }
+
+    /**
+     * Waits for the transport's callback.
+     */
+    private static class ResultCallback implements Transport.Callback {
+
+        final CountDownLatch mDone = new CountDownLatch(1);
+        volatile HttpResponse mResponse;
+        volatile Exception mError;
+
+        @Override
+        public void onResponse(final HttpResponse response) {
+            mResponse = response;
+            mDone.countDown();
+        }
+
+        @Override
+        public void onFailure(final Exception error) {
+            mError = error;
+            mDone.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(mDone.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.start();
+        mExecutor = Executors.newCachedThreadPool();
+        mTransport = new UrlConnectionTransport(mExecutor);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    private String url(final String path) {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + path;
+    }
+
+    private void respondWith(final String path, final int statusCode, final byte[] body, final String... headers) {
+        mServer.createContext(path, new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange httpExchange) throws IOException {
+                final Exchange exchange = new Exchange();
+                exchange.method = httpExchange.getRequestMethod();
+                exchange.authorization = httpExchange.getRequestHeaders().getFirst("Authorization");
+                exchange.contentType = httpExchange.getRequestHeaders().getFirst("Content-Type");
+                exchange.contentLength = httpExchange.getRequestHeaders().getFirst("Content-Length");
+                exchange.body = readFully(httpExchange.getRequestBody());
+                mLastExchange = exchange;
+                for (int i = 0; i < headers.length; i += 2) {
+                    httpExchange.getResponseHeaders().add(headers[i], headers[i + 1]);
+                }
+                httpExchange.sendResponseHeaders(statusCode, body.length > 0 ? body.length : -1);
+                final OutputStream outputStream = httpExchange.getResponseBody();
+                outputStream.write(body);
+                outputStream.close();
+            }
+        });
+    }
+
+    private static byte[] readFully(final InputStream inputStream) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+
+    public void testPerformsRequestWithHeaders() throws Exception {
+        respondWith("/documents/1234", 200, "{\"id\":\"1234\"}".getBytes(Utils.CHARSET_UTF8), "ETag", "\"1\"");
+
+        final ResultCallback callback = new ResultCallback();
+        mTransport.execute(new HttpRequest.Builder(HttpRequest.GET, url("/documents/1234"))
+                .setHeader("Authorization", "BEARER 1234").build(), callback, null);
+        callback.await();
+
+        assertNull(callback.mError);
+        assertEquals(200, callback.mResponse.getStatusCode());
+        assertEquals("\"1\"", callback.mResponse.getHeader("etag"));
+        assertEquals("{\"id\":\"1234\"}", callback.mResponse.getBodyAsString());
+        assertEquals("GET", mLastExchange.method);
+        assertEquals("BEARER 1234", mLastExchange.authorization);
+    }
+
+    public void testErrorResponsesAreResponses() throws Exception {
+        respondWith("/documents/1234", 404, "{\"message\":\"not found\"}".getBytes(Utils.CHARSET_UTF8));
+
+        final ResultCallback callback = new ResultCallback();
+        mTransport.execute(new HttpRequest.Builder(HttpRequest.GET, url("/documents/1234")).build(), callback, null);
+        callback.await();
+
+        assertEquals(404, callback.mResponse.getStatusCode());
+        assertFalse(callback.mResponse.isSuccessful());
+        assertEquals("{\"message\":\"not found\"}", callback.mResponse.getBodyAsString());
+    }
+
+    public void testDecompressesGzippedResponses() throws Exception {
+        final byte[] body = "{\"extractions\":{}}".getBytes(Utils.CHARSET_UTF8);
+        respondWith("/documents/1234/extractions", 200, Gzip.compress(body), "Content-Encoding", "gzip");
+
+        final ResultCallback callback = new ResultCallback();
+        mTransport.execute(new HttpRequest.Builder(HttpRequest.GET, url("/documents/1234/extractions"))
+                .setHeader(Gzip.ACCEPT_ENCODING_HEADER, Gzip.GZIP).build(), callback, null);
+        callback.await();
+
+        assertTrue(Arrays.equals(body, callback.mResponse.getBody()));
+    }
+
+    public void testSendsByteArrayBody() throws Exception {
+        respondWith("/documents/", 201, new byte[0], "Location", "https://api.gini.net/documents/1234");
+        final byte[] body = "%PDF-1.4\n".getBytes(Utils.CHARSET_UTF8);
+
+        final ResultCallback callback = new ResultCallback();
+        mTransport.execute(new HttpRequest.Builder(HttpRequest.POST, url("/documents/"))
+                .setBody(body, "application/pdf").build(), callback, null);
+        callback.await();
+
+        assertEquals(201, callback.mResponse.getStatusCode());
+        assertEquals("https://api.gini.net/documents/1234", callback.mResponse.getHeader("Location"));
+        assertEquals("POST", mLastExchange.method);
+        assertEquals("application/pdf", mLastExchange.contentType);
+        assertTrue(Arrays.equals(body, mLastExchange.body));
+    }
+
+    public void testStreamsFileBodyWithFixedLengthAndReportsProgress() throws Exception {
+        respondWith("/documents/", 201, new byte[0], "Location", "https://api.gini.net/documents/1234");
+        final byte[] content = new byte[1024 * 1024];
+        new Random(42).nextBytes(content);
+        final File file = File.createTempFile("upload", ".pdf");
+        try {
+            final FileOutputStream outputStream = new FileOutputStream(file);
+            try {
+                outputStream.write(content);
+            } finally {
+                outputStream.close();
+            }
+            final AtomicLong lastBytesWritten = new AtomicLong();
+            final AtomicLong lastTotalBytes = new AtomicLong();
+
+            final ResultCallback callback = new ResultCallback();
+            mTransport.execute(new HttpRequest.Builder(HttpRequest.POST, url("/documents/"))
+                    .setBody(file, "application/pdf")
+                    .setUploadProgressListener(new UploadProgressListener() {
+                        @Override
+                        public void onProgress(final long bytesWritten, final long totalBytes) {
+                            lastBytesWritten.set(bytesWritten);
+                            lastTotalBytes.set(totalBytes);
+                        }
+                    }).build(), callback, null);
+            callback.await();
+
+            assertEquals(201, callback.mResponse.getStatusCode());
+            assertEquals(String.valueOf(content.length), mLastExchange.contentLength);
+            assertTrue(Arrays.equals(content, mLastExchange.body));
+            assertEquals(content.length, lastBytesWritten.get());
+            assertEquals(content.length, lastTotalBytes.get());
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    public void testConnectionErrorIsFailure() throws Exception {
+        final int port = mServer.getAddress().getPort();
+        mServer.stop(0);
+
+        final ResultCallback callback = new ResultCallback();
+        mTransport.execute(new HttpRequest.Builder(HttpRequest.GET, "http://127.0.0.1:" + port + "/").build(),
+                callback, null);
+        callback.await();
+
+        assertNull(callback.mResponse);
+        assertTrue(callback.mError instanceof IOException);
+    }
+
+    public void testCancelAbortsRunningRequest() throws Exception {
+        final CountDownLatch requestReceived = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        mServer.createContext("/slow", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange httpExchange) throws IOException {
+                requestReceived.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+                httpExchange.sendResponseHeaders(200, -1);
+                httpExchange.close();
+            }
+        });
+        final CancellationHandle cancellationHandle = new CancellationHandle();
+
+        try {
+            final ResultCallback callback = new ResultCallback();
+            mTransport.execute(new HttpRequest.Builder(HttpRequest.GET, url("/slow")).build(), callback,
+                    cancellationHandle);
+            assertTrue(requestReceived.await(10, TimeUnit.SECONDS));
+            cancellationHandle.cancel();
+            callback.await();
+
+            assertNull(callback.mResponse);
+            assertTrue(callback.mError instanceof CancellationException);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    public void testCancelledRequestIsNotSent() throws Exception {
+        respondWith("/documents/1234", 200, new byte[0]);
+        final CancellationHandle cancellationHandle = new CancellationHandle();
+        cancellationHandle.cancel();
+
+        final ResultCallback callback = new ResultCallback();
+        mTransport.execute(new HttpRequest.Builder(HttpRequest.GET, url("/documents/1234")).build(), callback,
+                cancellationHandle);
+        callback.await();
+        mExecutor.shutdown();
+        assertTrue(mExecutor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertTrue(callback.mError instanceof CancellationException);
+        assertNull(mLastExchange);
+    }
+}
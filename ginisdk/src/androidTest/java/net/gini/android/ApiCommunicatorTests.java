@@ -21,13 +21,18 @@ import net.gini.android.authorization.Session;
 import net.gini.android.requests.DefaultRetryPolicyFactory;
 import net.gini.android.requests.RetryPolicyFactory;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.net.URISyntaxException;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 public class ApiCommunicatorTests extends InstrumentationTestCase {
@@ -118,6 +123,23 @@ public class ApiCommunicatorTests extends InstrumentationTestCase {
         assertEquals("BEARER 1234-5678", headers.get("Authorization"));
     }
 
+    public void testCreateCompositeDocumentHasCorrectContentTypeAndBody() throws AuthFailureError, JSONException {
+        final List<Uri> partialDocumentUris = Arrays.asList(Uri.parse("https://api.gini.net/documents/1"),
+                Uri.parse("https://api.gini.net/documents/2"));
+
+        mApiCommunicator.createCompositeDocument(partialDocumentUris, "foobar.pdf", null, createSession());
+
+        ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+        verify(mRequestQueue).add(requestCaptor.capture());
+        final Request request = requestCaptor.getValue();
+        assertEquals(MediaTypes.GINI_COMPOSITE_JSON, request.getBodyContentType());
+        final JSONObject body = new JSONObject(new String(request.getBody(), Utils.CHARSET_UTF8));
+        final JSONArray partialDocuments = body.getJSONArray("partialDocuments");
+        assertEquals(2, partialDocuments.length());
+        assertEquals("https://api.gini.net/documents/1", partialDocuments.getJSONObject(0).getString("document"));
+        assertEquals("https://api.gini.net/documents/2", partialDocuments.getJSONObject(1).getString("document"));
+    }
+
     public void testUploadDocumentHasCorrectContentType() throws AuthFailureError {
         final byte[] documentData = createUploadData();
         final Session session = createSession();
@@ -129,6 +151,27 @@ public class ApiCommunicatorTests extends InstrumentationTestCase {
         assertEquals(MediaTypes.IMAGE_JPEG, requestCaptor.getValue().getBodyContentType());
     }
 
+    public void testUploadDocumentFileHasContentTypeAndFileAsBody() throws Exception {
+        final File file = new File(getInstrumentation().getTargetContext().getCacheDir(), "upload-test.pdf");
+        final byte[] documentData = "%PDF-1.4".getBytes(Utils.CHARSET_UTF8);
+        final FileOutputStream outputStream = new FileOutputStream(file);
+        outputStream.write(documentData);
+        outputStream.close();
+
+        mApiCommunicator.uploadDocument(file, MediaTypes.APPLICATION_PDF, "foobar.pdf", null, createSession(), null,
+                null);
+
+        ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+        verify(mRequestQueue).add(requestCaptor.capture());
+        final Request request = requestCaptor.getValue();
+        assertEquals(MediaTypes.APPLICATION_PDF, request.getBodyContentType());
+        assertEquals("https://api.gini.net/documents/?filename=foobar.pdf", request.getUrl());
+        // Outside of an upload stack the whole file is the body.
+        assertTrue(Arrays.equals(documentData, request.getBody()));
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
     public void testUploadDocumentHasCorrectAcceptHeader() throws AuthFailureError {
         final byte[] documentData = createUploadData();
         final Session session = createSession();
@@ -333,6 +376,33 @@ public class ApiCommunicatorTests extends InstrumentationTestCase {
         assertTrue(((String) request.getHeaders().get("Accept")).contains(MediaTypes.GINI_JSON_V1));
     }
 
+    public void testGetDocumentIfModifiedSendsValidators() throws AuthFailureError {
+        Session session = createSession();
+
+        mApiCommunicator.getDocumentIfModified("1234", session, "\"v1\"", "Wed, 21 Oct 2015 07:28:00 GMT");
+
+        ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+        verify(mRequestQueue).add(requestCaptor.capture());
+        final Request request = requestCaptor.getValue();
+        assertEquals("https://api.gini.net/documents/1234", request.getUrl());
+        assertEquals("\"v1\"", request.getHeaders().get("If-None-Match"));
+        assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", request.getHeaders().get("If-Modified-Since"));
+        assertFalse(request.shouldCache());
+    }
+
+    public void testGetExtractionsIfModifiedWithoutValidatorsIsUnconditional() throws AuthFailureError {
+        Session session = createSession();
+
+        mApiCommunicator.getExtractionsIfModified("1234", session, null, null);
+
+        ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+        verify(mRequestQueue).add(requestCaptor.capture());
+        final Request request = requestCaptor.getValue();
+        assertEquals("https://api.gini.net/documents/1234/extractions", request.getUrl());
+        assertFalse(request.getHeaders().containsKey("If-None-Match"));
+        assertFalse(request.getHeaders().containsKey("If-Modified-Since"));
+    }
+
     public void testGetExtractionsThrowsWithNullArguments() {
         try {
             mApiCommunicator.getExtractions(null, null);
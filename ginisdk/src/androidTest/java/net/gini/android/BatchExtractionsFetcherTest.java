@@ -0,0 +1,163 @@
+package net.gini.android;
+
+import android.test.AndroidTestCase;
+
+import net.gini.android.models.Document;
+import net.gini.android.models.SpecificExtraction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import bolts.Task;
+
+public class BatchExtractionsFetcherTest extends AndroidTestCase {
+
+    private static final Executor IMMEDIATE_EXECUTOR = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
+    private final List<Task<Map<String, SpecificExtraction>>.TaskCompletionSource> mRequests =
+            new ArrayList<Task<Map<String, SpecificExtraction>>.TaskCompletionSource>();
+    private final List<String> mEvents = new ArrayList<String>();
+
+    private final BatchExtractionsFetcher.ExtractionsLoader mLoader = new BatchExtractionsFetcher.ExtractionsLoader() {
+        @Override
+        public Task<Map<String, SpecificExtraction>> load(final Document document) {
+            final Task<Map<String, SpecificExtraction>>.TaskCompletionSource request = Task.create();
+            mRequests.add(request);
+            return request.getTask();
+        }
+    };
+
+    private final DocumentTaskManager.ExtractionsListener mListener = new DocumentTaskManager.ExtractionsListener() {
+        @Override
+        public void onExtractions(final Document document, final Map<String, SpecificExtraction> extractions) {
+            mEvents.add(document.getId());
+        }
+
+        @Override
+        public void onExtractionsFailed(final Document document, final Exception error) {
+            mEvents.add(document.getId() + " failed");
+        }
+    };
+
+    private static List<Document> createDocuments(final int count) {
+        final List<Document> documents = new ArrayList<Document>();
+        for (int i = 0; i < count; i++) {
+            documents.add(new Document(String.valueOf(i), Document.ProcessingState.COMPLETED, "document" + i, 1,
+                    new Date(), Document.SourceClassification.NATIVE));
+        }
+        return documents;
+    }
+
+    private BatchExtractionsFetcher createFetcher(final List<Document> documents,
+                                                  final CancellationHandle cancellationHandle) {
+        return new BatchExtractionsFetcher(documents, mLoader, mListener, IMMEDIATE_EXECUTOR, cancellationHandle);
+    }
+
+    public void testStartChecksMaxConcurrentRequests() {
+        try {
+            createFetcher(createDocuments(1), null).start(0);
+            fail("Exception not thrown");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    public void testLimitsRunningRequests() {
+        final Task<Void> task = createFetcher(createDocuments(5), null).start(2);
+
+        assertEquals(2, mRequests.size());
+
+        mRequests.get(1).setResult(new HashMap<String, SpecificExtraction>());
+
+        assertEquals(3, mRequests.size());
+        assertEquals(Collections.singletonList("1"), mEvents);
+        assertFalse(task.isCompleted());
+    }
+
+    public void testCompletesAfterAllDocuments() {
+        final Task<Void> task = createFetcher(createDocuments(3), null).start(2);
+
+        mRequests.get(0).setResult(new HashMap<String, SpecificExtraction>());
+        mRequests.get(1).setError(new Exception());
+        assertFalse(task.isCompleted());
+        mRequests.get(2).setResult(new HashMap<String, SpecificExtraction>());
+
+        assertTrue(task.isCompleted());
+        assertFalse(task.isFaulted());
+        assertEquals(3, mRequests.size());
+        assertEquals(3, mEvents.size());
+        assertTrue(mEvents.contains("1 failed"));
+    }
+
+    public void testCompletesWithoutDocuments() {
+        final Task<Void> task = createFetcher(createDocuments(0), null).start(2);
+
+        assertTrue(task.isCompleted());
+        assertFalse(task.isCancelled());
+        assertTrue(mRequests.isEmpty());
+    }
+
+    public void testNextRequestStartsOnlyAfterTheListenerReturned() {
+        final List<Integer> requestsDuringCallback = new ArrayList<Integer>();
+        final DocumentTaskManager.ExtractionsListener listener = new DocumentTaskManager.ExtractionsListener() {
+            @Override
+            public void onExtractions(final Document document, final Map<String, SpecificExtraction> extractions) {
+                requestsDuringCallback.add(mRequests.size());
+            }
+
+            @Override
+            public void onExtractionsFailed(final Document document, final Exception error) {
+            }
+        };
+        new BatchExtractionsFetcher(createDocuments(2), mLoader, listener, IMMEDIATE_EXECUTOR, null).start(1);
+
+        mRequests.get(0).setResult(new HashMap<String, SpecificExtraction>());
+
+        assertEquals(Collections.singletonList(1), requestsDuringCallback);
+        assertEquals(2, mRequests.size());
+    }
+
+    public void testCancellationStopsStartingRequests() {
+        final CancellationHandle cancellationHandle = new CancellationHandle();
+        final Task<Void> task = createFetcher(createDocuments(5), cancellationHandle).start(2);
+
+        cancellationHandle.cancel();
+        mRequests.get(0).setResult(new HashMap<String, SpecificExtraction>());
+
+        assertFalse(task.isCompleted());
+        mRequests.get(1).setResult(new HashMap<String, SpecificExtraction>());
+
+        assertTrue(task.isCancelled());
+        assertEquals(2, mRequests.size());
+        assertEquals(2, mEvents.size());
+    }
+
+    public void testListenerExceptionDoesNotStopFetching() {
+        final DocumentTaskManager.ExtractionsListener listener = new DocumentTaskManager.ExtractionsListener() {
+            @Override
+            public void onExtractions(final Document document, final Map<String, SpecificExtraction> extractions) {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public void onExtractionsFailed(final Document document, final Exception error) {
+            }
+        };
+        final Task<Void> task =
+                new BatchExtractionsFetcher(createDocuments(2), mLoader, listener, IMMEDIATE_EXECUTOR, null).start(1);
+
+        mRequests.get(0).setResult(new HashMap<String, SpecificExtraction>());
+        mRequests.get(1).setResult(new HashMap<String, SpecificExtraction>());
+
+        assertTrue(task.isCompleted());
+    }
+}
@@ -0,0 +1,65 @@
+package net.gini.android;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import bolts.Task;
+
+public class ConcurrencyLimiterTest extends AndroidTestCase {
+
+    public void testConstructorChecksMaxConcurrentOperations() {
+        try {
+            new ConcurrencyLimiter(0);
+            fail("Exception not thrown");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    public void testLimitsRunningOperations() {
+        final ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(2);
+        final List<Task<String>.TaskCompletionSource> operations = new ArrayList<Task<String>.TaskCompletionSource>();
+        final List<Task<String>> tasks = new ArrayList<Task<String>>();
+        for (int i = 0; i < 3; i++) {
+            tasks.add(concurrencyLimiter.submit(new Callable<Task<String>>() {
+                @Override
+                public Task<String> call() throws Exception {
+                    final Task<String>.TaskCompletionSource operation = Task.create();
+                    operations.add(operation);
+                    return operation.getTask();
+                }
+            }));
+        }
+
+        assertEquals(2, operations.size());
+
+        operations.get(0).setResult("first");
+
+        assertEquals(3, operations.size());
+        assertEquals("first", tasks.get(0).getResult());
+        assertFalse(tasks.get(2).isCompleted());
+    }
+
+    public void testFailedOperationStartsNextOperation() {
+        final ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(1);
+        final Exception error = new Exception();
+
+        final Task<String> failedTask = concurrencyLimiter.submit(new Callable<Task<String>>() {
+            @Override
+            public Task<String> call() throws Exception {
+                throw error;
+            }
+        });
+        final Task<String> nextTask = concurrencyLimiter.submit(new Callable<Task<String>>() {
+            @Override
+            public Task<String> call() throws Exception {
+                return Task.forResult("next");
+            }
+        });
+
+        assertEquals(error, failedTask.getError());
+        assertEquals("next", nextTask.getResult());
+    }
+}
@@ -0,0 +1,112 @@
+package net.gini.android;
+
+import android.test.InstrumentationTestCase;
+
+import net.gini.android.models.Document;
+import net.gini.android.models.Extraction;
+import net.gini.android.models.SpecificExtraction;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import bolts.Task;
+
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DebouncedFeedbackSenderTest extends InstrumentationTestCase {
+
+    private DocumentTaskManager mDocumentTaskManager;
+    private Document mDocument;
+
+    @Override
+    public void setUp() throws Exception {
+        // https://code.google.com/p/dexmaker/issues/detail?id=2
+        System.setProperty("dexmaker.dexcache", getInstrumentation().getTargetContext().getCacheDir().getPath());
+
+        mDocumentTaskManager = Mockito.mock(DocumentTaskManager.class);
+        when(mDocumentTaskManager.getExecutors()).thenReturn(SdkExecutors.boltsBackground());
+        mDocument = new Document("1234", Document.ProcessingState.COMPLETED, "foobar.jpg", 1, new Date(),
+                Document.SourceClassification.NATIVE);
+        when(mDocumentTaskManager.sendFeedbackForDirtyExtractions(eq(mDocument),
+                anyMapOf(String.class, SpecificExtraction.class))).thenReturn(Task.forResult(mDocument));
+    }
+
+    private Map<String, SpecificExtraction> createExtractions(final String name) {
+        final Map<String, SpecificExtraction> extractions = new HashMap<String, SpecificExtraction>();
+        final SpecificExtraction extraction =
+                new SpecificExtraction(name, "value", "text", null, new ArrayList<Extraction>());
+        extraction.setValue("changed");
+        extractions.put(name, extraction);
+        return extractions;
+    }
+
+    public void testConstructorChecksDelay() {
+        try {
+            new DebouncedFeedbackSender(mDocumentTaskManager, mDocument, -1);
+            fail("Exception not thrown");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testCoalescesSubmissions() throws Exception {
+        final DebouncedFeedbackSender feedbackSender =
+                new DebouncedFeedbackSender(mDocumentTaskManager, mDocument, 100);
+
+        final Task<Document> firstTask = feedbackSender.submit(createExtractions("amountToPay"));
+        final Task<Document> secondTask = feedbackSender.submit(createExtractions("senderName"));
+        secondTask.waitForCompletion();
+        firstTask.waitForCompletion();
+
+        assertEquals(mDocument, firstTask.getResult());
+        assertEquals(mDocument, secondTask.getResult());
+        final ArgumentCaptor<Map> extractionsCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(mDocumentTaskManager, times(1)).sendFeedbackForDirtyExtractions(eq(mDocument),
+                extractionsCaptor.capture());
+        assertTrue(extractionsCaptor.getValue().containsKey("amountToPay"));
+        assertTrue(extractionsCaptor.getValue().containsKey("senderName"));
+    }
+
+    public void testSendsFeedbackFromTheIoExecutorOfTheDocumentTaskManager() throws Exception {
+        final AtomicInteger ioTasks = new AtomicInteger();
+        final Executor ioExecutor = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                ioTasks.incrementAndGet();
+                Task.BACKGROUND_EXECUTOR.execute(command);
+            }
+        };
+        when(mDocumentTaskManager.getExecutors()).thenReturn(new SdkExecutors(Task.BACKGROUND_EXECUTOR, ioExecutor));
+        final DebouncedFeedbackSender feedbackSender =
+                new DebouncedFeedbackSender(mDocumentTaskManager, mDocument, 10);
+
+        feedbackSender.submit(createExtractions("amountToPay")).waitForCompletion();
+
+        // The flush after the delay and the feedback request.
+        assertTrue(ioTasks.get() >= 2);
+    }
+
+    public void testFlushSendsImmediately() throws Exception {
+        final DebouncedFeedbackSender feedbackSender =
+                new DebouncedFeedbackSender(mDocumentTaskManager, mDocument, 60000);
+
+        feedbackSender.submit(createExtractions("amountToPay"));
+        final Task<Document> flushTask = feedbackSender.flush();
+        flushTask.waitForCompletion();
+
+        assertEquals(mDocument, flushTask.getResult());
+        verify(mDocumentTaskManager, times(1)).sendFeedbackForDirtyExtractions(eq(mDocument),
+                anyMapOf(String.class, SpecificExtraction.class));
+    }
+}
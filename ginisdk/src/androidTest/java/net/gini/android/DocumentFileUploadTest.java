@@ -0,0 +1,98 @@
+package net.gini.android;
+
+import android.test.AndroidTestCase;
+
+import net.gini.android.helpers.FakeGiniApi;
+import net.gini.android.models.Document;
+import net.gini.android.requests.UploadProgressListener;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import bolts.Task;
+
+/**
+ * Uploads document files against the local fake Gini API.
+ */
+public class DocumentFileUploadTest extends AndroidTestCase {
+
+    private FakeGiniApi mFakeGiniApi;
+    private File mFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        mFakeGiniApi = new FakeGiniApi().start();
+        mFile = new File(getContext().getCacheDir(), "file-upload-test");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mFakeGiniApi.shutdown();
+        //noinspection ResultOfMethodCallIgnored
+        mFile.delete();
+    }
+
+    private DocumentTaskManager createDocumentTaskManager() {
+        return mFakeGiniApi.createSdkBuilder(getContext(), "file-upload-client")
+                .build()
+                .getDocumentTaskManager();
+    }
+
+    /**
+     * Writes the signature followed by random bytes to the test file and returns the file's content.
+     */
+    private byte[] writeFile(final byte[] signature, final int length) throws IOException {
+        final byte[] content = new byte[length];
+        new Random(42).nextBytes(content);
+        System.arraycopy(signature, 0, content, 0, signature.length);
+        final FileOutputStream outputStream = new FileOutputStream(mFile);
+        try {
+            outputStream.write(content);
+        } finally {
+            outputStream.close();
+        }
+        return content;
+    }
+
+    public void testUploadsPdfWithDetectedMediaType() throws Exception {
+        // Larger than one mapped window of the connection.
+        final byte[] content = writeFile("%PDF-1.4\n".getBytes(Utils.CHARSET_UTF8), 9 * 1024 * 1024 + 123);
+        final AtomicLong uploadedBytes = new AtomicLong();
+
+        final Task<Document> documentTask = createDocumentTaskManager().createDocument(mFile, "invoice.pdf", null,
+                new UploadProgressListener() {
+                    @Override
+                    public void onProgress(final long bytesWritten, final long totalBytes) {
+                        uploadedBytes.set(bytesWritten);
+                    }
+                }, null);
+        documentTask.waitForCompletion();
+
+        assertFalse(String.valueOf(documentTask.getError()), documentTask.isFaulted());
+        final String documentId = documentTask.getResult().getId();
+        assertEquals(MediaTypes.APPLICATION_PDF, mFakeGiniApi.getUploadedContentType(documentId));
+        assertTrue(Arrays.equals(content, mFakeGiniApi.getUploadedContent(documentId)));
+        assertEquals(content.length, uploadedBytes.get());
+    }
+
+    public void testUploadsPngWithDetectedMediaType() throws Exception {
+        writeFile(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'}, 1024);
+
+        final Task<Document> documentTask = createDocumentTaskManager().createDocument(mFile, "page.png", null);
+        documentTask.waitForCompletion();
+
+        assertEquals(MediaTypes.IMAGE_PNG, mFakeGiniApi.getUploadedContentType(documentTask.getResult().getId()));
+    }
+
+    public void testFailsIfTheFileDoesNotExist() throws Exception {
+        final Task<Document> documentTask = createDocumentTaskManager().createDocument(mFile, "missing.pdf", null);
+        documentTask.waitForCompletion();
+
+        assertTrue(documentTask.isFaulted());
+        assertTrue(documentTask.getError() instanceof IOException);
+    }
+}
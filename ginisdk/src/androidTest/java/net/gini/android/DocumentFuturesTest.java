@@ -0,0 +1,136 @@
+package net.gini.android;
+
+import android.test.AndroidTestCase;
+
+import net.gini.android.helpers.FakeGiniApi;
+import net.gini.android.models.Document;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import bolts.Task;
+
+/**
+ * Uses the future based facade of the {@link DocumentTaskManager} against the local fake Gini API.
+ */
+public class DocumentFuturesTest extends AndroidTestCase {
+
+    private FakeGiniApi mFakeGiniApi;
+
+    @Override
+    protected void setUp() throws Exception {
+        mFakeGiniApi = new FakeGiniApi().start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mFakeGiniApi.shutdown();
+    }
+
+    private DocumentFutures createDocumentFutures() {
+        return mFakeGiniApi.createSdkBuilder(getContext(), "futures-client")
+                .build()
+                .getDocumentTaskManager()
+                .getFutures();
+    }
+
+    public void testCreatesAndGetsDocument() throws Exception {
+        final DocumentFutures documentFutures = createDocumentFutures();
+
+        final Document document = documentFutures.createDocument("%PDF-1.4\n".getBytes(Utils.CHARSET_UTF8),
+                "invoice.pdf", null, null).get(10, TimeUnit.SECONDS);
+        final Document gotDocument = documentFutures.getDocument(document.getId()).get(10, TimeUnit.SECONDS);
+
+        assertEquals(document.getId(), gotDocument.getId());
+        assertEquals(MediaTypes.APPLICATION_PDF, mFakeGiniApi.getUploadedContentType(document.getId()));
+    }
+
+    public void testCallbackIsInformed() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Document> documentReference = new AtomicReference<Document>();
+
+        createDocumentFutures().createDocument("%PDF-1.4\n".getBytes(Utils.CHARSET_UTF8), "invoice.pdf", null, null)
+                .addCallback(new SdkFuture.Callback<Document>() {
+                    @Override
+                    public void onSuccess(final Document result) {
+                        documentReference.set(result);
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onFailure(final Exception error) {
+                        latch.countDown();
+                    }
+                });
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertNotNull(documentReference.get());
+    }
+
+    public void testCancelCancelsUpload() throws Exception {
+        mFakeGiniApi.setLatency(500, 0);
+
+        final SdkFuture<Document> future = createDocumentFutures().createDocument(
+                "%PDF-1.4\n".getBytes(Utils.CHARSET_UTF8), "invoice.pdf", null, null);
+        assertTrue(future.cancel(true));
+
+        assertTrue(future.getCancellationHandle().isCancelled());
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Exception not thrown");
+        } catch (CancellationException ignored) {
+        }
+    }
+
+    public void testCancelStopsPolling() throws Exception {
+        final long pollingInterval = DocumentTaskManager.POLLING_INTERVAL;
+        DocumentTaskManager.POLLING_INTERVAL = 300;
+        try {
+            mFakeGiniApi.setProcessingTime(60000);
+            final DocumentFutures documentFutures = createDocumentFutures();
+            final Document document = documentFutures.createDocument("%PDF-1.4\n".getBytes(Utils.CHARSET_UTF8),
+                    "invoice.pdf", null, null).get(10, TimeUnit.SECONDS);
+            assertEquals(Document.ProcessingState.PENDING, document.getState());
+
+            final int requestCountBeforePolling = mFakeGiniApi.getRequestCount();
+            final SdkFuture<Document> future = documentFutures.pollDocument(document);
+            // Wait until a few polling requests were sent.
+            Thread.sleep(3 * DocumentTaskManager.POLLING_INTERVAL);
+            assertTrue(mFakeGiniApi.getRequestCount() > requestCountBeforePolling + 1);
+
+            assertTrue(future.cancel(true));
+            // A request which was sent just before cancelling may still arrive.
+            Thread.sleep(DocumentTaskManager.POLLING_INTERVAL / 3);
+            final int requestCount = mFakeGiniApi.getRequestCount();
+            Thread.sleep(4 * DocumentTaskManager.POLLING_INTERVAL);
+
+            assertEquals(requestCount, mFakeGiniApi.getRequestCount());
+            assertTrue(future.isCancelled());
+        } finally {
+            DocumentTaskManager.POLLING_INTERVAL = pollingInterval;
+        }
+    }
+
+    public void testFromTaskPassesError() throws Exception {
+        final Exception error = new Exception("failed");
+        final SdkFuture<String> future = DocumentFutures.fromTask(Task.<String>forError(error),
+                new SdkFuture<String>(new CancellationHandle()));
+
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Exception not thrown");
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    public void testFromTaskPassesCancellation() throws Exception {
+        final SdkFuture<String> future = DocumentFutures.fromTask(Task.<String>cancelled(),
+                new SdkFuture<String>(new CancellationHandle()));
+
+        assertTrue(future.isCancelled());
+    }
+}
@@ -0,0 +1,93 @@
+package net.gini.android;
+
+import android.test.AndroidTestCase;
+
+import net.gini.android.helpers.FakeGiniApi;
+import net.gini.android.helpers.TestUtils;
+import net.gini.android.models.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import bolts.Task;
+
+/**
+ * Polls documents with long polling against the local fake Gini API.
+ */
+public class DocumentLongPollingTest extends AndroidTestCase {
+
+    private FakeGiniApi mFakeGiniApi;
+    private long mPollingInterval;
+    private byte[] mDocument;
+
+    @Override
+    protected void setUp() throws Exception {
+        mFakeGiniApi = new FakeGiniApi().setProcessingTime(1500).start();
+        mPollingInterval = DocumentTaskManager.POLLING_INTERVAL;
+        DocumentTaskManager.POLLING_INTERVAL = 100;
+        mDocument = loadDocument();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        DocumentTaskManager.POLLING_INTERVAL = mPollingInterval;
+        mFakeGiniApi.shutdown();
+    }
+
+    private byte[] loadDocument() throws IOException {
+        final InputStream inputStream = getContext().getResources().getAssets().open("yoda.jpg");
+        try {
+            return TestUtils.createByteArray(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private DocumentTaskManager createDocumentTaskManager(final int longPollingWaitSeconds) {
+        return mFakeGiniApi.createSdkBuilder(getContext(), "long-polling-client")
+                .setLongPollingWait(longPollingWaitSeconds)
+                .build()
+                .getDocumentTaskManager();
+    }
+
+    /**
+     * Creates a document and returns the number of requests needed to poll it until it is processed.
+     */
+    private int pollNewDocument(final DocumentTaskManager documentTaskManager) throws Exception {
+        final Task<Document> createTask = documentTaskManager.createDocument(mDocument, "yoda.jpg", null);
+        createTask.waitForCompletion();
+        assertEquals(Document.ProcessingState.PENDING, createTask.getResult().getState());
+
+        final int requestCount = mFakeGiniApi.getRequestCount();
+        final Task<Document> pollTask = documentTaskManager.pollDocument(createTask.getResult());
+        pollTask.waitForCompletion();
+
+        assertFalse(pollTask.isFaulted());
+        assertEquals(Document.ProcessingState.COMPLETED, pollTask.getResult().getState());
+        return mFakeGiniApi.getRequestCount() - requestCount;
+    }
+
+    public void testLongPollingNeedsOneRequest() throws Exception {
+        assertEquals(1, pollNewDocument(createDocumentTaskManager(10)));
+    }
+
+    public void testLongPollingRepeatsHeldRequestsAfterTheWaitTime() throws Exception {
+        mFakeGiniApi.setProcessingTime(2500);
+
+        final int requestCount = pollNewDocument(createDocumentTaskManager(1));
+
+        assertTrue(requestCount >= 2 && requestCount <= 4);
+    }
+
+    public void testLongPollingFallsBackToIntervalsIfTheServerDoesNotWait() throws Exception {
+        mFakeGiniApi.setLongPolling(false);
+
+        final int requestCount = pollNewDocument(createDocumentTaskManager(10));
+
+        assertTrue(requestCount > 2);
+    }
+
+    public void testIntervalPollingNeedsSeveralRequests() throws Exception {
+        assertTrue(pollNewDocument(createDocumentTaskManager(0)) > 2);
+    }
+}
@@ -0,0 +1,195 @@
+package net.gini.android;
+
+import android.test.AndroidTestCase;
+
+import net.gini.android.models.Document;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import bolts.Task;
+
+public class DocumentPagerTest extends AndroidTestCase {
+
+    private static final Executor IMMEDIATE_EXECUTOR = new Executor() {
+        @Override
+        public void execute(final Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private FakePageLoader mPageLoader;
+
+    @Override
+    protected void setUp() throws Exception {
+        mPageLoader = new FakePageLoader(25);
+    }
+
+    public void testConstructorChecksArguments() {
+        try {
+            new DocumentPager(mPageLoader, 0, 5, IMMEDIATE_EXECUTOR);
+            fail("Exception not thrown");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new DocumentPager(mPageLoader, 10, 1, IMMEDIATE_EXECUTOR);
+            fail("Exception not thrown");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    public void testPagesAreLoadedLazily() {
+        new DocumentPager(mPageLoader, 10, 5, IMMEDIATE_EXECUTOR);
+
+        assertTrue(mPageLoader.mRequestedOffsets.isEmpty());
+    }
+
+    public void testNextPageIsPrefetched() throws Exception {
+        final DocumentPager pager = new DocumentPager(mPageLoader, 10, 5, IMMEDIATE_EXECUTOR);
+
+        final Task<List<Document>> pageTask = pager.getPage(0);
+        pageTask.waitForCompletion();
+
+        assertEquals(10, pageTask.getResult().size());
+        assertEquals("document-0", pageTask.getResult().get(0).getId());
+        assertEquals(25, pager.getTotalCount());
+        assertEquals(asList(0, 10), mPageLoader.mRequestedOffsets);
+    }
+
+    public void testNoPrefetchAfterLastPage() throws Exception {
+        final DocumentPager pager = new DocumentPager(mPageLoader, 10, 5, IMMEDIATE_EXECUTOR);
+
+        pager.getPage(2).waitForCompletion();
+
+        assertEquals(asList(20), mPageLoader.mRequestedOffsets);
+        assertEquals(5, pager.getPage(2).getResult().size());
+    }
+
+    public void testCachedPagesAreNotLoadedAgain() throws Exception {
+        final DocumentPager pager = new DocumentPager(mPageLoader, 10, 5, IMMEDIATE_EXECUTOR);
+
+        pager.getPage(0).waitForCompletion();
+        pager.getPage(1).waitForCompletion();
+        pager.getPage(0).waitForCompletion();
+
+        assertEquals(asList(0, 10, 20), mPageLoader.mRequestedOffsets);
+    }
+
+    public void testCacheIsBounded() throws Exception {
+        mPageLoader = new FakePageLoader(100);
+        final DocumentPager pager = new DocumentPager(mPageLoader, 10, 2, IMMEDIATE_EXECUTOR);
+
+        pager.getPage(0).waitForCompletion();
+        pager.getPage(5).waitForCompletion();
+
+        assertEquals(2, pager.getCachedPageCount());
+        pager.getPage(5).waitForCompletion();
+        pager.getPage(0).waitForCompletion();
+        assertEquals(asList(0, 10, 50, 60, 0, 10), mPageLoader.mRequestedOffsets);
+    }
+
+    public void testGetDocument() throws Exception {
+        final DocumentPager pager = new DocumentPager(mPageLoader, 10, 5, IMMEDIATE_EXECUTOR);
+
+        final Task<Document> documentTask = pager.getDocument(13);
+        documentTask.waitForCompletion();
+        assertEquals("document-13", documentTask.getResult().getId());
+
+        final Task<Document> missingDocumentTask = pager.getDocument(27);
+        missingDocumentTask.waitForCompletion();
+        assertTrue(missingDocumentTask.getError() instanceof IndexOutOfBoundsException);
+    }
+
+    public void testIteratorReturnsAllDocumentsAndReleasesPassedPages() {
+        final DocumentPager pager = new DocumentPager(mPageLoader, 10, 5, IMMEDIATE_EXECUTOR);
+
+        final Iterator<Document> iterator = pager.iterator();
+        int count = 0;
+        while (iterator.hasNext()) {
+            assertEquals("document-" + count, iterator.next().getId());
+            count++;
+            if (count == 21) {
+                assertEquals(1, pager.getCachedPageCount());
+            }
+        }
+
+        assertEquals(25, count);
+        assertEquals(asList(0, 10, 20), mPageLoader.mRequestedOffsets);
+    }
+
+    public void testIteratorOfEmptyList() {
+        mPageLoader = new FakePageLoader(0);
+        final DocumentPager pager = new DocumentPager(mPageLoader, 10, 5, IMMEDIATE_EXECUTOR);
+
+        assertFalse(pager.iterator().hasNext());
+    }
+
+    public void testFailedPagesAreNotCached() throws Exception {
+        final DocumentPager pager = new DocumentPager(mPageLoader, 10, 5, IMMEDIATE_EXECUTOR);
+        mPageLoader.mFail = true;
+
+        final Task<List<Document>> failedTask = pager.getPage(0);
+        failedTask.waitForCompletion();
+        assertTrue(failedTask.isFaulted());
+        assertEquals(0, pager.getCachedPageCount());
+
+        mPageLoader.mFail = false;
+        final Task<List<Document>> pageTask = pager.getPage(0);
+        pageTask.waitForCompletion();
+        assertEquals(10, pageTask.getResult().size());
+    }
+
+    public void testIteratorThrowsIfPageFails() {
+        final DocumentPager pager = new DocumentPager(mPageLoader, 10, 5, IMMEDIATE_EXECUTOR);
+        mPageLoader.mFail = true;
+
+        try {
+            pager.iterator().hasNext();
+            fail("Exception not thrown");
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    private static List<Integer> asList(final Integer... values) {
+        final List<Integer> list = new ArrayList<Integer>();
+        for (final Integer value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    private static class FakePageLoader implements DocumentPager.PageLoader {
+
+        private final int mTotalCount;
+        private final List<Integer> mRequestedOffsets = new ArrayList<Integer>();
+        private volatile boolean mFail;
+
+        FakePageLoader(final int totalCount) {
+            mTotalCount = totalCount;
+        }
+
+        @Override
+        public synchronized Task<JSONObject> loadPage(final int offset, final int limit) {
+            mRequestedOffsets.add(offset);
+            if (mFail) {
+                return Task.forError(new Exception("Page failed"));
+            }
+            try {
+                final JSONArray documents = new JSONArray();
+                for (int i = offset; i < Math.min(offset + limit, mTotalCount); i++) {
+                    documents.put(new JSONObject().put("id", "document-" + i).put("progress", "COMPLETED")
+                            .put("name", "document-" + i + ".jpg").put("pageCount", 1).put("creationDate", i)
+                            .put("sourceClassification", "SCANNED"));
+                }
+                return Task.forResult(new JSONObject().put("totalCount", mTotalCount).put("documents", documents));
+            } catch (Exception e) {
+                return Task.forError(e);
+            }
+        }
+    }
+}
@@ -6,29 +6,50 @@ import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.test.InstrumentationTestCase;
 
+import com.android.volley.NetworkResponse;
+import com.android.volley.TimeoutError;
+import com.android.volley.VolleyError;
+
 import net.gini.android.authorization.Session;
 import net.gini.android.authorization.SessionManager;
+import net.gini.android.authorization.UserCredentials;
+import net.gini.android.helpers.InMemoryCredentialsStore;
 import net.gini.android.helpers.TestUtils;
+import net.gini.android.imaging.AdaptiveJpegEncoder;
+import net.gini.android.imaging.DocumentImagePreprocessor;
+import net.gini.android.models.BoxArray;
 import net.gini.android.models.Document;
 import net.gini.android.models.Extraction;
+import net.gini.android.models.MergedExtractions;
 import net.gini.android.models.SpecificExtraction;
+import net.gini.android.requests.ConditionalJsonResponse;
+import net.gini.android.requests.UploadProgressListener;
+import net.gini.android.requests.WaitingJsonResponse;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import bolts.Task;
 
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -126,6 +147,45 @@ public class DocumentTaskManagerTests extends InstrumentationTestCase {
         assertNotNull(mDocumentTaskManager.createDocument(bitmap, "foobar.jpg", "invoice", 85));
     }
 
+    public void testThatCreateCompositeDocumentUploadsPagesAndResolvesToCompositeDocument() throws Exception {
+        final byte[] firstPage = "page1".getBytes(Utils.CHARSET_UTF8);
+        final byte[] secondPage = "page2".getBytes(Utils.CHARSET_UTF8);
+        final Uri firstPageUri = Uri.parse("https://api.gini.net/documents/1");
+        final Uri secondPageUri = Uri.parse("https://api.gini.net/documents/2");
+        final Uri compositeUri = Uri.parse("https://api.gini.net/documents/1234");
+        when(mApiCommunicator.uploadDocument(eq(firstPage), eq(MediaTypes.GINI_PARTIAL_JPEG), any(String.class),
+                any(String.class), any(Session.class), any(UploadProgressListener.class),
+                any(CancellationHandle.class))).thenReturn(Task.forResult(firstPageUri));
+        when(mApiCommunicator.uploadDocument(eq(secondPage), eq(MediaTypes.GINI_PARTIAL_JPEG), any(String.class),
+                any(String.class), any(Session.class), any(UploadProgressListener.class),
+                any(CancellationHandle.class))).thenReturn(Task.forResult(secondPageUri));
+        when(mApiCommunicator.createCompositeDocument(eq(Arrays.asList(firstPageUri, secondPageUri)),
+                eq("foobar.pdf"), eq("Invoice"), any(Session.class))).thenReturn(Task.forResult(compositeUri));
+        when(mApiCommunicator.getDocument(eq(compositeUri), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234"));
+
+        final Task<Document> documentTask = mDocumentTaskManager.createCompositeDocument(
+                Arrays.asList(firstPage, secondPage), "foobar.pdf", DocumentTaskManager.DocumentType.INVOICE, 1);
+        documentTask.waitForCompletion();
+
+        assertEquals("1234", documentTask.getResult().getId());
+    }
+
+    public void testThatCreateCompositeDocumentFailsIfAPageUploadFails() throws Exception {
+        final VolleyError error = new VolleyError();
+        when(mApiCommunicator.uploadDocument(any(byte[].class), eq(MediaTypes.GINI_PARTIAL_JPEG), any(String.class),
+                any(String.class), any(Session.class), any(UploadProgressListener.class),
+                any(CancellationHandle.class))).thenReturn(Task.<Uri>forError(error));
+
+        final Task<Document> documentTask = mDocumentTaskManager.createCompositeDocument(
+                Arrays.asList(createByteArray(), createByteArray()), null, null);
+        documentTask.waitForCompletion();
+
+        assertEquals(error, documentTask.getError());
+        verify(mApiCommunicator, never()).createCompositeDocument(any(List.class), any(String.class),
+                any(String.class), any(Session.class));
+    }
+
     public void testThatCreateDocumentResolvesToDocument() throws IOException, JSONException, InterruptedException {
         final Uri createdDocumentUri = Uri.parse("https://api.gini.net/documents/1234");
         when(mApiCommunicator.uploadDocument(any(byte[].class), any(String.class), any(String.class), any(String.class),
@@ -141,6 +201,131 @@ public class DocumentTaskManagerTests extends InstrumentationTestCase {
         assertNotNull(documentTask.getResult());
     }
 
+    private UploadDeduplicationStore createUploadDeduplicationStore() {
+        final File file = new File(getInstrumentation().getTargetContext().getCacheDir(), "deduplication-test");
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+        return new UploadDeduplicationStore(file);
+    }
+
+    public void testThatCreateDocumentDoesNotUploadTheSameContentTwice() throws Exception {
+        final Uri createdDocumentUri = Uri.parse("https://api.gini.net/documents/1234");
+        when(mApiCommunicator.uploadDocument(any(byte[].class), any(String.class), any(String.class), any(String.class),
+                any(Session.class)))
+                .thenReturn(Task.forResult(createdDocumentUri));
+        when(mApiCommunicator.getDocument(eq(createdDocumentUri), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234"));
+        mDocumentTaskManager.setUploadDeduplicationStore(createUploadDeduplicationStore());
+        final byte[] document = createByteArray();
+
+        mDocumentTaskManager.createDocument(document, "foobar.jpg", null).waitForCompletion();
+        final Task<Document> documentTask = mDocumentTaskManager.createDocument(document, "foobar.jpg", null);
+        documentTask.waitForCompletion();
+
+        assertEquals("1234", documentTask.getResult().getId());
+        verify(mApiCommunicator, Mockito.times(1)).uploadDocument(any(byte[].class), any(String.class),
+                any(String.class), any(String.class), any(Session.class));
+    }
+
+    public void testThatCreateDocumentDoesNotUploadTheSameFileTwice() throws Exception {
+        final Uri createdDocumentUri = Uri.parse("https://api.gini.net/documents/1234");
+        when(mApiCommunicator.uploadDocument(any(File.class), any(String.class), any(String.class), any(String.class),
+                any(Session.class), any(UploadProgressListener.class), any(CancellationHandle.class)))
+                .thenReturn(Task.forResult(createdDocumentUri));
+        when(mApiCommunicator.getDocument(eq(createdDocumentUri), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234"));
+        mDocumentTaskManager.setUploadDeduplicationStore(createUploadDeduplicationStore());
+        final File document = new File(getInstrumentation().getTargetContext().getCacheDir(), "deduplication.jpg");
+        final FileOutputStream outputStream = new FileOutputStream(document);
+        try {
+            outputStream.write(createByteArray());
+        } finally {
+            outputStream.close();
+        }
+
+        mDocumentTaskManager.createDocument(document, "foobar.jpg", null).waitForCompletion();
+        final Task<Document> documentTask = mDocumentTaskManager.createDocument(document, "foobar.jpg", null);
+        documentTask.waitForCompletion();
+
+        assertEquals("1234", documentTask.getResult().getId());
+        verify(mApiCommunicator, Mockito.times(1)).uploadDocument(any(File.class), any(String.class),
+                any(String.class), any(String.class), any(Session.class), any(UploadProgressListener.class),
+                any(CancellationHandle.class));
+        //noinspection ResultOfMethodCallIgnored
+        document.delete();
+    }
+
+    public void testThatCreateDocumentUploadsAgainIfTheKnownDocumentWasDeleted() throws Exception {
+        final Uri deletedDocumentUri = Uri.parse("https://api.gini.net/documents/1234");
+        final Uri createdDocumentUri = Uri.parse("https://api.gini.net/documents/5678");
+        final UploadDeduplicationStore store = createUploadDeduplicationStore();
+        final byte[] document = createByteArray();
+        final String key = UploadDeduplicationStore.computeKey(UploadDeduplicationStore.computeHash(document), null,
+                "foobar.jpg", null);
+        store.put(key, deletedDocumentUri);
+        mDocumentTaskManager.setUploadDeduplicationStore(store);
+        when(mApiCommunicator.getDocument(eq(deletedDocumentUri), any(Session.class))).thenReturn(
+                Task.<JSONObject>forError(new VolleyError(new NetworkResponse(404, new byte[0],
+                        Collections.<String, String>emptyMap(), false))));
+        when(mApiCommunicator.uploadDocument(any(byte[].class), any(String.class), any(String.class), any(String.class),
+                any(Session.class)))
+                .thenReturn(Task.forResult(createdDocumentUri));
+        when(mApiCommunicator.getDocument(eq(createdDocumentUri), any(Session.class))).thenReturn(
+                createDocumentJSONTask("5678"));
+
+        final Task<Document> documentTask = mDocumentTaskManager.createDocument(document, "foobar.jpg", null);
+        documentTask.waitForCompletion();
+
+        assertEquals("5678", documentTask.getResult().getId());
+        assertEquals(createdDocumentUri, store.getDocumentUri(key));
+    }
+
+    public void testThatCreateDocumentUploadsAgainIfTheKnownDocumentCannotBeRetrieved() throws Exception {
+        final Uri knownDocumentUri = Uri.parse("https://api.gini.net/documents/1234");
+        final Uri createdDocumentUri = Uri.parse("https://api.gini.net/documents/5678");
+        final UploadDeduplicationStore store = createUploadDeduplicationStore();
+        final byte[] document = createByteArray();
+        final String key = UploadDeduplicationStore.computeKey(UploadDeduplicationStore.computeHash(document), null,
+                "foobar.jpg", null);
+        store.put(key, knownDocumentUri);
+        mDocumentTaskManager.setUploadDeduplicationStore(store);
+        when(mApiCommunicator.getDocument(eq(knownDocumentUri), any(Session.class))).thenReturn(
+                Task.<JSONObject>forError(new VolleyError(new NetworkResponse(503, new byte[0],
+                        Collections.<String, String>emptyMap(), false))));
+        when(mApiCommunicator.uploadDocument(any(byte[].class), any(String.class), any(String.class), any(String.class),
+                any(Session.class)))
+                .thenReturn(Task.forResult(createdDocumentUri));
+        when(mApiCommunicator.getDocument(eq(createdDocumentUri), any(Session.class))).thenReturn(
+                createDocumentJSONTask("5678"));
+
+        final Task<Document> documentTask = mDocumentTaskManager.createDocument(document, "foobar.jpg", null);
+        documentTask.waitForCompletion();
+
+        assertEquals("5678", documentTask.getResult().getId());
+        assertEquals(createdDocumentUri, store.getDocumentUri(key));
+    }
+
+    public void testThatCreateDocumentUploadsAgainWithOtherFilenameOrUser() throws Exception {
+        when(mApiCommunicator.uploadDocument(any(byte[].class), any(String.class), any(String.class), any(String.class),
+                any(Session.class)))
+                .thenReturn(Task.forResult(Uri.parse("https://api.gini.net/documents/1234")));
+        when(mApiCommunicator.getDocument(any(Uri.class), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234"));
+        final InMemoryCredentialsStore credentialsStore = new InMemoryCredentialsStore();
+        credentialsStore.storeUserCredentials(new UserCredentials("user1@example.com", "secret"));
+        mDocumentTaskManager.setUploadDeduplicationStore(createUploadDeduplicationStore(), credentialsStore);
+        final byte[] document = createByteArray();
+
+        mDocumentTaskManager.createDocument(document, "foobar.jpg", null).waitForCompletion();
+        mDocumentTaskManager.createDocument(document, "other.jpg", null).waitForCompletion();
+        credentialsStore.storeUserCredentials(new UserCredentials("user2@example.com", "secret"));
+        mDocumentTaskManager.createDocument(document, "foobar.jpg", null).waitForCompletion();
+        mDocumentTaskManager.createDocument(document, "foobar.jpg", null).waitForCompletion();
+
+        verify(mApiCommunicator, Mockito.times(3)).uploadDocument(any(byte[].class), any(String.class),
+                any(String.class), any(String.class), any(Session.class));
+    }
+
     public void testThatCreateDocumentsSubmitsTheFileNameAndDocumentType()
             throws IOException, JSONException, InterruptedException {
         final Uri createdDocumentUri = Uri.parse("https://api.gini.net/documents/1234");
@@ -172,6 +357,70 @@ public class DocumentTaskManagerTests extends InstrumentationTestCase {
         verify(documentTaskManager).createDocument(bitmap, "foobar.jpg", "invoice", 12);
     }
 
+    public void testDeprecatedDocumentBuilderPassesThroughArgumentsWithProgressListenerAndCancellationHandle()
+            throws IOException, InterruptedException {
+        final UploadProgressListener progressListener = Mockito.mock(UploadProgressListener.class);
+        final CancellationHandle cancellationHandle = new CancellationHandle();
+        when(mApiCommunicator.uploadDocument(any(byte[].class), any(String.class), any(String.class),
+                any(String.class), any(Session.class), any(UploadProgressListener.class),
+                any(CancellationHandle.class)))
+                .thenReturn(Task.forResult(Uri.parse("https://api.gini.net/documents/1234")));
+
+        Bitmap bitmap = createBitmap();
+        new DocumentTaskManager.DocumentUploadBuilder(bitmap)
+                .setDocumentType("invoice")
+                .setFilename("foobar.jpg")
+                .setCompressionRate(12)
+                .setProgressListener(progressListener)
+                .setCancellationHandle(cancellationHandle)
+                .upload(mDocumentTaskManager).waitForCompletion();
+
+        final ByteArrayOutputStream expectedJpeg = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, 12, expectedJpeg);
+        verify(mApiCommunicator).uploadDocument(aryEq(expectedJpeg.toByteArray()), eq(MediaTypes.IMAGE_JPEG),
+                eq("foobar.jpg"), eq("invoice"), eq(mSession), eq(progressListener), eq(cancellationHandle));
+    }
+
+    public void testDeprecatedDocumentTypeIsPassedThroughWithJpegEncoder() throws IOException, InterruptedException {
+        when(mApiCommunicator.uploadDocument(any(byte[].class), any(String.class), any(String.class),
+                any(String.class), any(Session.class)))
+                .thenReturn(Task.forResult(Uri.parse("https://api.gini.net/documents/1234")));
+        final AdaptiveJpegEncoder encoder = new AdaptiveJpegEncoder.Builder().setMaxBytes(100 * 1024).build();
+
+        Bitmap bitmap = createBitmap();
+        new DocumentTaskManager.DocumentUploadBuilder()
+                .setDocumentBitmap(bitmap)
+                .setDocumentType("invoice")
+                .setFilename("foobar.jpg")
+                .setJpegEncoder(encoder)
+                .upload(mDocumentTaskManager).waitForCompletion();
+
+        verify(mApiCommunicator).uploadDocument(aryEq(encoder.encode(bitmap).getJpeg()), eq(MediaTypes.IMAGE_JPEG),
+                eq("foobar.jpg"), eq("invoice"), eq(mSession));
+    }
+
+    public void testDeprecatedCompressionRateIsUsedWithPreprocessor() throws IOException, InterruptedException {
+        when(mApiCommunicator.uploadDocument(any(byte[].class), any(String.class), any(String.class),
+                any(String.class), any(Session.class)))
+                .thenReturn(Task.forResult(Uri.parse("https://api.gini.net/documents/1234")));
+        Bitmap bitmap = createBitmap();
+        final Bitmap processedBitmap = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+        final ByteArrayOutputStream expectedJpeg = new ByteArrayOutputStream();
+        processedBitmap.compress(Bitmap.CompressFormat.JPEG, 12, expectedJpeg);
+        final DocumentImagePreprocessor preprocessor = Mockito.mock(DocumentImagePreprocessor.class);
+        when(preprocessor.process(bitmap)).thenReturn(processedBitmap);
+
+        new DocumentTaskManager.DocumentUploadBuilder()
+                .setDocumentBitmap(bitmap)
+                .setDocumentType("invoice")
+                .setCompressionRate(12)
+                .setPreprocessor(preprocessor)
+                .upload(mDocumentTaskManager).waitForCompletion();
+
+        verify(mApiCommunicator).uploadDocument(aryEq(expectedJpeg.toByteArray()), eq(MediaTypes.IMAGE_JPEG),
+                any(String.class), eq("invoice"), eq(mSession));
+    }
+
     public void testDocumentBuilderPassesThroughArguments() throws IOException {
         final DocumentTaskManager documentTaskManager = Mockito.mock(DocumentTaskManager.class);
 
@@ -250,6 +499,198 @@ public class DocumentTaskManagerTests extends InstrumentationTestCase {
         assertEquals(2, amountToPay.getCandidate().size());
     }
 
+    public void testGetExtractionsStoresBoxesInOneBoxArray() throws Exception {
+        when(mApiCommunicator.getExtractions(eq("1234"), any(Session.class))).thenReturn(createExtractionsJSONTask());
+        Document document = new Document("1234", Document.ProcessingState.COMPLETED, "foobar", 1, new Date(),
+                                         Document.SourceClassification.NATIVE);
+
+        Task<Map<String, SpecificExtraction>> extractionsTask = mDocumentTaskManager.getExtractions(document);
+        extractionsTask.waitForCompletion();
+        final Map<String, SpecificExtraction> extractions = extractionsTask.getResult();
+
+        final SpecificExtraction amountToPay = extractions.get("amountToPay");
+        final SpecificExtraction recipient = extractions.get("recipient");
+        final BoxArray boxes = amountToPay.getBoxArray();
+        assertNotNull(boxes);
+        assertEquals(4, boxes.size());
+        assertSame(boxes, recipient.getBoxArray());
+        assertSame(boxes, amountToPay.getCandidate().get(1).getBoxArray());
+        assertEquals(60., recipient.getBox().getLeft());
+        assertEquals(34., recipient.getBox().getHeight());
+        assertEquals(516., amountToPay.getBox().getLeft());
+        assertEquals(241., amountToPay.getCandidate().get(1).getBox().getLeft());
+    }
+
+    public void testGetExtractionsOfSeveralDocuments() throws Exception {
+        when(mApiCommunicator.getExtractions(any(String.class), any(Session.class))).thenReturn(
+                createExtractionsJSONTask(), createExtractionsJSONTask(), createExtractionsJSONTask());
+        final List<Document> documents = new ArrayList<Document>();
+        for (int i = 0; i < 3; i++) {
+            documents.add(new Document(String.valueOf(i), Document.ProcessingState.COMPLETED, "foobar", 1, new Date(),
+                    Document.SourceClassification.NATIVE));
+        }
+        final Map<String, Map<String, SpecificExtraction>> extractionsById =
+                Collections.synchronizedMap(new HashMap<String, Map<String, SpecificExtraction>>());
+
+        final Task<Void> task = mDocumentTaskManager.getExtractions(documents, 2,
+                new DocumentTaskManager.ExtractionsListener() {
+                    @Override
+                    public void onExtractions(final Document document,
+                                              final Map<String, SpecificExtraction> extractions) {
+                        extractionsById.put(document.getId(), extractions);
+                    }
+
+                    @Override
+                    public void onExtractionsFailed(final Document document, final Exception error) {
+                    }
+                }, null);
+        task.waitForCompletion();
+
+        assertFalse(task.isFaulted());
+        assertEquals(3, extractionsById.size());
+        assertNotNull(extractionsById.get("2").get("amountToPay"));
+    }
+
+    public void testGetExtractionsOfSeveralDocumentsPassesTheCancellationHandleToTheRequests() throws Exception {
+        final CancellationHandle cancellationHandle = new CancellationHandle();
+        when(mApiCommunicator.getExtractions(any(String.class), any(Session.class), eq(cancellationHandle)))
+                .thenReturn(createExtractionsJSONTask(), createExtractionsJSONTask());
+        final List<Document> documents = new ArrayList<Document>();
+        for (int i = 0; i < 2; i++) {
+            documents.add(new Document(String.valueOf(i), Document.ProcessingState.COMPLETED, "foobar", 1, new Date(),
+                    Document.SourceClassification.NATIVE));
+        }
+
+        final Task<Void> task = mDocumentTaskManager.getExtractions(documents, 2,
+                new DocumentTaskManager.ExtractionsListener() {
+                    @Override
+                    public void onExtractions(final Document document,
+                                              final Map<String, SpecificExtraction> extractions) {
+                    }
+
+                    @Override
+                    public void onExtractionsFailed(final Document document, final Exception error) {
+                    }
+                }, cancellationHandle);
+        task.waitForCompletion();
+
+        assertFalse(task.isFaulted());
+        verify(mApiCommunicator).getExtractions(eq("0"), any(Session.class), eq(cancellationHandle));
+        verify(mApiCommunicator).getExtractions(eq("1"), any(Session.class), eq(cancellationHandle));
+        verify(mApiCommunicator, never()).getExtractions(any(String.class), any(Session.class));
+    }
+
+    private Task<JSONObject> createIncubatorExtractionsJSONTask() throws IOException, JSONException {
+        final JSONObject responseData = readJSONFile("extractions.json");
+        final JSONObject extractions = responseData.getJSONObject("extractions");
+        extractions.getJSONObject("amountToPay").put("value", "1.00:EUR");
+        extractions.put("paymentPurpose", new JSONObject().put("entity", "text").put("value", "Rechnung 1234"));
+        return Task.forResult(responseData);
+    }
+
+    public void testGetMergedExtractions() throws Exception {
+        when(mApiCommunicator.getExtractions(eq("1234"), any(Session.class))).thenReturn(createExtractionsJSONTask());
+        when(mApiCommunicator.getIncubatorExtractions(eq("1234"), any(Session.class))).thenReturn(
+                createIncubatorExtractionsJSONTask());
+        Document document = new Document("1234", Document.ProcessingState.COMPLETED, "foobar", 1, new Date(),
+                                         Document.SourceClassification.NATIVE);
+
+        final Task<MergedExtractions> extractionsTask = mDocumentTaskManager.getMergedExtractions(document);
+        extractionsTask.waitForCompletion();
+        if (extractionsTask.isFaulted()) {
+            throw extractionsTask.getError();
+        }
+
+        final MergedExtractions extractions = extractionsTask.getResult();
+        assertEquals(MergedExtractions.Source.STANDARD, extractions.getSource("amountToPay"));
+        assertEquals("1.00:EUR", extractions.getIncubatorExtractions().get("amountToPay").getValue());
+        assertFalse("1.00:EUR".equals(extractions.get("amountToPay").getValue()));
+        assertEquals(MergedExtractions.Source.INCUBATOR, extractions.getSource("paymentPurpose"));
+        assertEquals("Rechnung 1234", extractions.get("paymentPurpose").getValue());
+        assertEquals(2, extractions.get("amountToPay").getCandidate().size());
+    }
+
+    public void testGetMergedExtractionsFailsIfTheIncubatorExtractionsFail() throws Exception {
+        final VolleyError error = new VolleyError();
+        when(mApiCommunicator.getExtractions(eq("1234"), any(Session.class))).thenReturn(createExtractionsJSONTask());
+        when(mApiCommunicator.getIncubatorExtractions(eq("1234"), any(Session.class))).thenReturn(
+                Task.<JSONObject>forError(error));
+        Document document = new Document("1234", Document.ProcessingState.COMPLETED, "foobar", 1, new Date(),
+                                         Document.SourceClassification.NATIVE);
+
+        final Task<MergedExtractions> extractionsTask = mDocumentTaskManager.getMergedExtractions(document);
+        extractionsTask.waitForCompletion();
+
+        assertSame(error, extractionsTask.getError());
+    }
+
+    public void testGetDocumentWithConditionalRequestCacheReturnsCachedDocumentIfNotModified() throws Exception {
+        mDocumentTaskManager.setConditionalRequestCache(new ConditionalRequestCache());
+        when(mApiCommunicator.getDocumentIfModified(eq("1234"), any(Session.class), any(String.class),
+                any(String.class))).thenReturn(
+                Task.forResult(new ConditionalJsonResponse(createDocumentJSONTask("1234").getResult(), "\"v1\"",
+                        null)),
+                Task.forResult(ConditionalJsonResponse.notModified()));
+
+        final Task<Document> firstTask = mDocumentTaskManager.getDocument("1234");
+        firstTask.waitForCompletion();
+        final Task<Document> secondTask = mDocumentTaskManager.getDocument("1234");
+        secondTask.waitForCompletion();
+
+        assertEquals("1234", firstTask.getResult().getId());
+        assertSame(firstTask.getResult(), secondTask.getResult());
+        verify(mApiCommunicator).getDocumentIfModified(eq("1234"), any(Session.class), eq((String) null),
+                eq((String) null));
+        verify(mApiCommunicator).getDocumentIfModified(eq("1234"), any(Session.class), eq("\"v1\""),
+                eq((String) null));
+        verify(mApiCommunicator, never()).getDocument(any(String.class), any(Session.class));
+    }
+
+    public void testGetDocumentByIdAndByUriUseTheSameConditionalRequestCacheEntry() throws Exception {
+        mDocumentTaskManager.setConditionalRequestCache(new ConditionalRequestCache());
+        final Uri documentUri = Uri.parse("https://api.gini.net/documents/1234");
+        when(mApiCommunicator.getDocumentIfModified(eq("1234"), any(Session.class), any(String.class),
+                any(String.class))).thenReturn(
+                Task.forResult(new ConditionalJsonResponse(createDocumentJSONTask("1234").getResult(), "\"v1\"",
+                        null)));
+        when(mApiCommunicator.getDocumentIfModified(eq(documentUri), any(Session.class), any(String.class),
+                any(String.class))).thenReturn(Task.forResult(ConditionalJsonResponse.notModified()));
+
+        final Task<Document> firstTask = mDocumentTaskManager.getDocument("1234");
+        firstTask.waitForCompletion();
+        final Task<Document> secondTask = mDocumentTaskManager.getDocument(documentUri);
+        secondTask.waitForCompletion();
+
+        assertSame(firstTask.getResult(), secondTask.getResult());
+        verify(mApiCommunicator).getDocumentIfModified(eq(documentUri), any(Session.class), eq("\"v1\""),
+                eq((String) null));
+    }
+
+    public void testGetExtractionsWithConditionalRequestCacheReturnsCopiesIfNotModified() throws Exception {
+        mDocumentTaskManager.setConditionalRequestCache(new ConditionalRequestCache());
+        when(mApiCommunicator.getExtractionsIfModified(eq("1234"), any(Session.class), any(String.class),
+                any(String.class))).thenReturn(
+                Task.forResult(new ConditionalJsonResponse(createExtractionsJSONTask().getResult(), null,
+                        "Wed, 21 Oct 2015 07:28:00 GMT")),
+                Task.forResult(ConditionalJsonResponse.notModified()));
+        final Document document = new Document("1234", Document.ProcessingState.COMPLETED, "foobar", 1, new Date(),
+                Document.SourceClassification.NATIVE);
+
+        final Task<Map<String, SpecificExtraction>> firstTask = mDocumentTaskManager.getExtractions(document);
+        firstTask.waitForCompletion();
+        firstTask.getResult().get("amountToPay").setValue("1.00:EUR");
+        final Task<Map<String, SpecificExtraction>> secondTask = mDocumentTaskManager.getExtractions(document);
+        secondTask.waitForCompletion();
+
+        final SpecificExtraction amountToPay = secondTask.getResult().get("amountToPay");
+        assertNotSame(firstTask.getResult().get("amountToPay"), amountToPay);
+        assertFalse(amountToPay.isDirty());
+        assertFalse("1.00:EUR".equals(amountToPay.getValue()));
+        assertEquals(2, amountToPay.getCandidate().size());
+        verify(mApiCommunicator).getExtractionsIfModified(eq("1234"), any(Session.class), eq((String) null),
+                eq("Wed, 21 Oct 2015 07:28:00 GMT"));
+    }
+
     @SuppressWarnings("ConstantConditions")
     public void testGetDocumentThrowsWithNullArgument() {
         final String documentId = null;
@@ -325,6 +766,63 @@ public class DocumentTaskManagerTests extends InstrumentationTestCase {
         assertEquals(Document.ProcessingState.ERROR, polledDocument.getState());
     }
 
+    private Task<WaitingJsonResponse> createWaitingDocumentTask(final String documentId, final String processingState,
+                                                                final boolean waitApplied)
+            throws IOException, JSONException {
+        return Task.forResult(new WaitingJsonResponse(createDocumentJSONTask(documentId, processingState).getResult(),
+                waitApplied));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testPollDocumentWithLongPolling() throws Exception {
+        when(mApiCommunicator.waitForDocument(eq("1234"), any(Session.class), eq(20))).thenReturn(
+                createWaitingDocumentTask("1234", "PENDING", true),
+                createWaitingDocumentTask("1234", "COMPLETED", true));
+        Document document = new Document("1234", Document.ProcessingState.PENDING, "foobar.jpg", 1, new Date(),
+                                         Document.SourceClassification.NATIVE);
+        mDocumentTaskManager.setLongPollingWait(20);
+
+        Task<Document> documentTask = mDocumentTaskManager.pollDocument(document);
+        documentTask.waitForCompletion();
+
+        assertEquals(Document.ProcessingState.COMPLETED, documentTask.getResult().getState());
+        verify(mApiCommunicator, Mockito.times(2)).waitForDocument(eq("1234"), any(Session.class), eq(20));
+        verify(mApiCommunicator, never()).getDocument(any(String.class), any(Session.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testPollDocumentFallsBackToIntervalsIfTheWaitWasNotApplied() throws Exception {
+        when(mApiCommunicator.waitForDocument(eq("1234"), any(Session.class), eq(20))).thenReturn(
+                createWaitingDocumentTask("1234", "PENDING", false));
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234", "PENDING"), createDocumentJSONTask("1234", "COMPLETED"));
+        Document document = new Document("1234", Document.ProcessingState.PENDING, "foobar.jpg", 1, new Date(),
+                                         Document.SourceClassification.NATIVE);
+        mDocumentTaskManager.setLongPollingWait(20);
+
+        Task<Document> documentTask = mDocumentTaskManager.pollDocument(document);
+        documentTask.waitForCompletion();
+
+        assertEquals(Document.ProcessingState.COMPLETED, documentTask.getResult().getState());
+        verify(mApiCommunicator).waitForDocument(eq("1234"), any(Session.class), eq(20));
+        verify(mApiCommunicator, Mockito.times(2)).getDocument(eq("1234"), any(Session.class));
+    }
+
+    public void testPollDocumentFallsBackToIntervalsIfTheWaitTimesOut() throws Exception {
+        when(mApiCommunicator.waitForDocument(eq("1234"), any(Session.class), eq(20))).thenReturn(
+                Task.<WaitingJsonResponse>forError(new TimeoutError()));
+        when(mApiCommunicator.getDocument(eq("1234"), any(Session.class))).thenReturn(
+                createDocumentJSONTask("1234", "COMPLETED"));
+        Document document = new Document("1234", Document.ProcessingState.PENDING, "foobar.jpg", 1, new Date(),
+                                         Document.SourceClassification.NATIVE);
+        mDocumentTaskManager.setLongPollingWait(20);
+
+        Task<Document> documentTask = mDocumentTaskManager.pollDocument(document);
+        documentTask.waitForCompletion();
+
+        assertEquals(Document.ProcessingState.COMPLETED, documentTask.getResult().getState());
+    }
+
     public void testSendFeedbackThrowsWithNullArguments() throws JSONException {
         final Document document = new Document("1234", Document.ProcessingState.PENDING, "foobar.jpg", 1, new Date(),
                                                Document.SourceClassification.NATIVE);
@@ -387,6 +885,45 @@ public class DocumentTaskManagerTests extends InstrumentationTestCase {
         assertTrue(updateData.has("senderName"));
     }
 
+    public void testSendFeedbackForDirtyExtractionsSendsOnlyDirtyExtractions() throws JSONException,
+            InterruptedException {
+        final Document document = new Document("1234", Document.ProcessingState.PENDING, "foobar.jpg", 1, new Date(),
+                                               Document.SourceClassification.NATIVE);
+        final HashMap<String, SpecificExtraction> extractions = new HashMap<String, SpecificExtraction>();
+        extractions.put("amountToPay",
+                        new SpecificExtraction("amountToPay", "42:EUR", "amount", null, new ArrayList<Extraction>()));
+        extractions.put("senderName",
+                        new SpecificExtraction("senderName", "blah", "senderName", null, new ArrayList<Extraction>()));
+        when(mApiCommunicator.sendFeedback(eq("1234"), any(JSONObject.class), any(Session.class))).thenReturn(
+                Task.forResult(new JSONObject()));
+
+        extractions.get("amountToPay").setValue("23:EUR");
+        mDocumentTaskManager.sendFeedbackForDirtyExtractions(document, extractions).waitForCompletion();
+
+        ArgumentCaptor<JSONObject> dataCaptor = ArgumentCaptor.forClass(JSONObject.class);
+        verify(mApiCommunicator).sendFeedback(eq("1234"), dataCaptor.capture(), any(Session.class));
+        final JSONObject updateData = dataCaptor.getValue();
+        assertEquals("23:EUR", updateData.getJSONObject("amountToPay").getString("value"));
+        assertFalse(updateData.has("senderName"));
+        assertFalse(extractions.get("amountToPay").isDirty());
+    }
+
+    public void testSendFeedbackForDirtyExtractionsSkipsRequestWithoutChanges() throws JSONException,
+            InterruptedException {
+        final Document document = new Document("1234", Document.ProcessingState.PENDING, "foobar.jpg", 1, new Date(),
+                                               Document.SourceClassification.NATIVE);
+        final HashMap<String, SpecificExtraction> extractions = new HashMap<String, SpecificExtraction>();
+        extractions.put("amountToPay",
+                        new SpecificExtraction("amountToPay", "42:EUR", "amount", null, new ArrayList<Extraction>()));
+
+        final Task<Document> feedbackTask = mDocumentTaskManager.sendFeedbackForDirtyExtractions(document,
+                extractions);
+        feedbackTask.waitForCompletion();
+
+        assertEquals(document, feedbackTask.getResult());
+        verify(mApiCommunicator, never()).sendFeedback(any(String.class), any(JSONObject.class), any(Session.class));
+    }
+
     public void testSendFeedbackMarksExtractionsAsNotDirty() throws JSONException, InterruptedException {
         when(mApiCommunicator.sendFeedback(eq("1234"), any(JSONObject.class), any(Session.class))).thenReturn(
                 Task.forResult(new JSONObject()));
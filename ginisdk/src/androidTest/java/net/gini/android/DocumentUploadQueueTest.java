@@ -0,0 +1,261 @@
+package net.gini.android;
+
+import android.test.InstrumentationTestCase;
+
+import com.android.volley.NoConnectionError;
+
+import net.gini.android.models.Document;
+
+import org.mockito.Mockito;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import bolts.Task;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DocumentUploadQueueTest extends InstrumentationTestCase {
+
+    private DocumentTaskManager mDocumentTaskManager;
+    private File mQueueDirectory;
+
+    @Override
+    public void setUp() {
+        // https://code.google.com/p/dexmaker/issues/detail?id=2
+        System.setProperty("dexmaker.dexcache", getInstrumentation().getTargetContext().getCacheDir().getPath());
+
+        mDocumentTaskManager = createDocumentTaskManager();
+        mQueueDirectory = new File(getInstrumentation().getTargetContext().getCacheDir(), "upload-queue-test");
+        deleteQueueDirectory();
+    }
+
+    @Override
+    public void tearDown() {
+        deleteQueueDirectory();
+    }
+
+    private void deleteQueueDirectory() {
+        final File[] files = mQueueDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        mQueueDirectory.delete();
+    }
+
+    private static DocumentTaskManager createDocumentTaskManager() {
+        final DocumentTaskManager documentTaskManager = Mockito.mock(DocumentTaskManager.class);
+        when(documentTaskManager.getExecutors()).thenReturn(SdkExecutors.boltsBackground());
+        return documentTaskManager;
+    }
+
+    private Document createDocument() {
+        return new Document("1234", Document.ProcessingState.PENDING, "foobar.pdf", 1, new Date(),
+                            Document.SourceClassification.NATIVE);
+    }
+
+    public void testConstructorChecksMaxConcurrentUploads() {
+        try {
+            new DocumentUploadQueue(mDocumentTaskManager, mQueueDirectory, 0);
+            fail("Exception not thrown");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    public void testEnqueuedDocumentIsUploaded() throws Exception {
+        final Document document = createDocument();
+        when(mDocumentTaskManager.createDocument(any(byte[].class), eq("foobar.pdf"),
+                eq(DocumentTaskManager.DocumentType.INVOICE))).thenReturn(Task.forResult(document));
+        final DocumentUploadQueue uploadQueue = new DocumentUploadQueue(mDocumentTaskManager, mQueueDirectory);
+
+        final String uploadId = uploadQueue.enqueue("foobar".getBytes(Utils.CHARSET_UTF8), "foobar.pdf",
+                DocumentTaskManager.DocumentType.INVOICE);
+        final Task<Document> uploadTask = uploadQueue.getUploadTask(uploadId);
+        uploadTask.waitForCompletion();
+
+        assertEquals(document, uploadTask.getResult());
+        assertTrue(uploadQueue.getQueuedUploadIds().isEmpty());
+    }
+
+    public void testUploadsRunOnTheIoExecutorOfTheDocumentTaskManager() throws Exception {
+        final AtomicInteger ioTasks = new AtomicInteger();
+        final Executor ioExecutor = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                ioTasks.incrementAndGet();
+                Task.BACKGROUND_EXECUTOR.execute(command);
+            }
+        };
+        when(mDocumentTaskManager.getExecutors()).thenReturn(new SdkExecutors(Task.BACKGROUND_EXECUTOR, ioExecutor));
+        when(mDocumentTaskManager.createDocument(any(byte[].class), any(String.class),
+                any(DocumentTaskManager.DocumentType.class))).thenReturn(Task.forResult(createDocument()));
+        final DocumentUploadQueue uploadQueue = new DocumentUploadQueue(mDocumentTaskManager, mQueueDirectory);
+
+        final String uploadId = uploadQueue.enqueue("foobar".getBytes(Utils.CHARSET_UTF8), null, null);
+        uploadQueue.getUploadTask(uploadId).waitForCompletion();
+
+        // Staging, reading the staged file, starting the upload and finishing it.
+        assertTrue(ioTasks.get() >= 4);
+    }
+
+    public void testDocumentIsKeptAfterNetworkError() throws Exception {
+        when(mDocumentTaskManager.createDocument(any(byte[].class), any(String.class),
+                any(DocumentTaskManager.DocumentType.class)))
+                .thenReturn(Task.<Document>forError(new NoConnectionError()));
+        final DocumentUploadQueue uploadQueue = new DocumentUploadQueue(mDocumentTaskManager, mQueueDirectory);
+
+        final String uploadId = uploadQueue.enqueue("foobar".getBytes(Utils.CHARSET_UTF8), null, null);
+        waitUntilPaused(uploadQueue);
+
+        assertEquals(1, uploadQueue.getQueuedUploadIds().size());
+        assertEquals(uploadId, uploadQueue.getQueuedUploadIds().get(0));
+        assertFalse(uploadQueue.getUploadTask(uploadId).isCompleted());
+    }
+
+    public void testQueuedDocumentsAreRestored() throws Exception {
+        when(mDocumentTaskManager.createDocument(any(byte[].class), any(String.class),
+                any(DocumentTaskManager.DocumentType.class)))
+                .thenReturn(Task.<Document>forError(new NoConnectionError()));
+        final DocumentUploadQueue uploadQueue = new DocumentUploadQueue(mDocumentTaskManager, mQueueDirectory);
+        final String uploadId = uploadQueue.enqueue("foobar".getBytes(Utils.CHARSET_UTF8), "foo bar.pdf",
+                DocumentTaskManager.DocumentType.INVOICE);
+        waitUntilPaused(uploadQueue);
+
+        // A new queue instance simulates a restart of the app's process.
+        final Document document = createDocument();
+        final DocumentTaskManager documentTaskManager = createDocumentTaskManager();
+        when(documentTaskManager.createDocument(any(byte[].class), eq("foo bar.pdf"),
+                eq(DocumentTaskManager.DocumentType.INVOICE))).thenReturn(Task.forResult(document));
+        final DocumentUploadQueue restoredQueue = new DocumentUploadQueue(documentTaskManager, mQueueDirectory);
+        final Task<List<String>> restoreTask = restoredQueue.restore();
+        restoreTask.waitForCompletion();
+
+        assertEquals(1, restoreTask.getResult().size());
+        final Task<Document> uploadTask = restoredQueue.getUploadTask(uploadId);
+        uploadTask.waitForCompletion();
+        assertEquals(document, uploadTask.getResult());
+        verify(documentTaskManager, times(1)).createDocument(any(byte[].class), eq("foo bar.pdf"),
+                eq(DocumentTaskManager.DocumentType.INVOICE));
+    }
+
+    public void testEntryWithUnknownDocumentTypeIsRestoredWithoutType() throws Exception {
+        assertTrue(mQueueDirectory.mkdirs());
+        writeFile(new File(mQueueDirectory, "journal"),
+                "ENQUEUED upload-1 foobar.pdf RENAMED_TYPE\nENQUEUED upload-2 ~ INVOICE\n");
+        writeFile(new File(mQueueDirectory, "upload-1.document"), "foobar");
+        writeFile(new File(mQueueDirectory, "upload-2.document"), "foobar");
+        when(mDocumentTaskManager.createDocument(any(byte[].class), any(String.class),
+                any(DocumentTaskManager.DocumentType.class))).thenReturn(Task.forResult(createDocument()));
+        final DocumentUploadQueue uploadQueue = new DocumentUploadQueue(mDocumentTaskManager, mQueueDirectory);
+
+        final Task<List<String>> restoreTask = uploadQueue.restore();
+        restoreTask.waitForCompletion();
+
+        assertEquals(Arrays.asList("upload-1", "upload-2"), restoreTask.getResult());
+        uploadQueue.getUploadTask("upload-1").waitForCompletion();
+        uploadQueue.getUploadTask("upload-2").waitForCompletion();
+        verify(mDocumentTaskManager).createDocument(any(byte[].class), eq("foobar.pdf"),
+                eq((DocumentTaskManager.DocumentType) null));
+        verify(mDocumentTaskManager).createDocument(any(byte[].class), eq((String) null),
+                eq(DocumentTaskManager.DocumentType.INVOICE));
+    }
+
+    public void testJournalIsCompactedAfterCompletedUploads() throws Exception {
+        when(mDocumentTaskManager.createDocument(any(byte[].class), any(String.class),
+                any(DocumentTaskManager.DocumentType.class))).thenReturn(Task.forResult(createDocument()));
+        final DocumentUploadQueue uploadQueue = new DocumentUploadQueue(mDocumentTaskManager, mQueueDirectory);
+
+        for (int i = 0; i <= DocumentUploadQueue.JOURNAL_COMPACTION_THRESHOLD; i++) {
+            final String uploadId = uploadQueue.enqueue("foobar".getBytes(Utils.CHARSET_UTF8), null, null);
+            uploadQueue.getUploadTask(uploadId).waitForCompletion();
+        }
+
+        // Only the entries of the upload after the compaction are left.
+        assertEquals(2, readLines(new File(mQueueDirectory, "journal")).size());
+    }
+
+    public void testListenerIsNotCalledOnTheThreadWhichResumes() throws Exception {
+        when(mDocumentTaskManager.createDocument(any(byte[].class), any(String.class),
+                any(DocumentTaskManager.DocumentType.class)))
+                .thenReturn(Task.<Document>forError(new NoConnectionError()));
+        final DocumentUploadQueue uploadQueue = new DocumentUploadQueue(mDocumentTaskManager, mQueueDirectory);
+        final String uploadId = uploadQueue.enqueue("foobar".getBytes(Utils.CHARSET_UTF8), null, null);
+        waitUntilPaused(uploadQueue);
+        final List<Thread> listenerThreads = new CopyOnWriteArrayList<Thread>();
+        uploadQueue.addListener(new DocumentUploadQueue.Listener() {
+            @Override
+            public void onUploadStarted(final String uploadId) {
+                listenerThreads.add(Thread.currentThread());
+            }
+
+            @Override
+            public void onUploadCompleted(final String uploadId, final Document document) {
+                listenerThreads.add(Thread.currentThread());
+            }
+
+            @Override
+            public void onUploadFailed(final String uploadId, final Exception error, final boolean willRetry) {
+                listenerThreads.add(Thread.currentThread());
+            }
+        });
+        when(mDocumentTaskManager.createDocument(any(byte[].class), any(String.class),
+                any(DocumentTaskManager.DocumentType.class))).thenReturn(Task.forResult(createDocument()));
+
+        uploadQueue.resume();
+        uploadQueue.getUploadTask(uploadId).waitForCompletion();
+
+        // Started and completed, the failure before the resume may be reported, too.
+        assertTrue(listenerThreads.size() >= 2);
+        assertFalse(listenerThreads.contains(Thread.currentThread()));
+    }
+
+    private static void writeFile(final File file, final String content) throws IOException {
+        final FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(content.getBytes(Utils.CHARSET_UTF8));
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private static List<String> readLines(final File file) throws IOException {
+        final List<String> lines = new ArrayList<String>();
+        final BufferedReader reader =
+                new BufferedReader(new InputStreamReader(new FileInputStream(file), Utils.CHARSET_UTF8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    private void waitUntilPaused(final DocumentUploadQueue uploadQueue) throws InterruptedException {
+        for (int i = 0; i < 50 && !uploadQueue.isPaused(); i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(uploadQueue.isPaused());
+    }
+}
@@ -2,6 +2,10 @@ package net.gini.android;
 
 import android.test.AndroidTestCase;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
 
 public class MediaTypesTest extends AndroidTestCase {
     public void testGINI_JSON_V1() {
@@ -23,4 +27,45 @@ public class MediaTypesTest extends AndroidTestCase {
     public void testIMAGE_JPEG() {
         assertEquals("image/jpeg", MediaTypes.IMAGE_JPEG);
     }
+
+    public void testDetectJpeg() {
+        assertEquals(MediaTypes.IMAGE_JPEG, MediaTypes.detect(new byte[]{(byte) 0xff, (byte) 0xd8, (byte) 0xff, 0}));
+    }
+
+    public void testDetectPng() {
+        assertEquals(MediaTypes.IMAGE_PNG,
+                MediaTypes.detect(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 0}));
+    }
+
+    public void testDetectPdf() {
+        assertEquals(MediaTypes.APPLICATION_PDF, MediaTypes.detect("%PDF-1.7\n".getBytes(Utils.CHARSET_UTF8)));
+    }
+
+    public void testDetectTiff() {
+        assertEquals(MediaTypes.IMAGE_TIFF, MediaTypes.detect(new byte[]{'I', 'I', 42, 0, 8, 0, 0, 0}));
+        assertEquals(MediaTypes.IMAGE_TIFF, MediaTypes.detect(new byte[]{'M', 'M', 0, 42, 0, 0, 0, 8}));
+    }
+
+    public void testDetectUnknownType() {
+        assertNull(MediaTypes.detect("Hello World".getBytes(Utils.CHARSET_UTF8)));
+        assertNull(MediaTypes.detect(new byte[]{(byte) 0xff, (byte) 0xd8}));
+        assertNull(MediaTypes.detect(new byte[0]));
+    }
+
+    public void testDetectFileReadsTheSignature() throws IOException {
+        final File file = new File(getContext().getCacheDir(), "media-types-test");
+        final FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write("%PDF".getBytes(Utils.CHARSET_UTF8));
+        } finally {
+            outputStream.close();
+        }
+        try {
+            // Too short for the PDF signature.
+            assertNull(MediaTypes.detect(file));
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
 }
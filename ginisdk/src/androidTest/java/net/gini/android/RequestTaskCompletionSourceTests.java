@@ -39,4 +39,25 @@ public class RequestTaskCompletionSourceTests extends AndroidTestCase {
         assertTrue(task.isFaulted());
         assertNull(task.getResult());
     }
+
+    public void testCancelCancelsTask() {
+        RequestTaskCompletionSource<String> requestTaskCompletionSource = RequestTaskCompletionSource.newCompletionSource();
+        Task<String> task = requestTaskCompletionSource.getTask();
+
+        requestTaskCompletionSource.cancel();
+
+        assertTrue(task.isCancelled());
+    }
+
+    public void testResponseAfterCancelIsIgnored() {
+        RequestTaskCompletionSource<String> requestTaskCompletionSource = RequestTaskCompletionSource.newCompletionSource();
+        Task<String> task = requestTaskCompletionSource.getTask();
+
+        requestTaskCompletionSource.cancel();
+        requestTaskCompletionSource.onResponse("foobar");
+        requestTaskCompletionSource.onErrorResponse(new VolleyError());
+
+        assertTrue(task.isCancelled());
+        assertNull(task.getResult());
+    }
 }
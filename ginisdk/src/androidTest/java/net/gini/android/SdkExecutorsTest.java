@@ -0,0 +1,188 @@
+package net.gini.android;
+
+import android.test.AndroidTestCase;
+
+import net.gini.android.authorization.Session;
+import net.gini.android.authorization.SessionManager;
+import net.gini.android.models.Document;
+
+import org.json.JSONObject;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import bolts.Continuation;
+import bolts.Task;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SdkExecutorsTest extends AndroidTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        // https://code.google.com/p/dexmaker/issues/detail?id=2
+        System.setProperty("dexmaker.dexcache", getContext().getCacheDir().getPath());
+    }
+
+    public void testConstructorChecksExecutors() {
+        try {
+            new SdkExecutors(null, Task.BACKGROUND_EXECUTOR);
+            fail("Exception not thrown");
+        } catch (NullPointerException ignored) {
+        }
+        try {
+            new SdkExecutors(Task.BACKGROUND_EXECUTOR, null);
+            fail("Exception not thrown");
+        } catch (NullPointerException ignored) {
+        }
+    }
+
+    public void testCreatedPoolsHaveNamedThreads() throws Exception {
+        final SdkExecutors executors = SdkExecutors.create();
+
+        assertEquals("gini-cpu-1", getThreadName(executors.getCpuExecutor()));
+        assertEquals("gini-io-1", getThreadName(executors.getIoExecutor()));
+    }
+
+    public void testMetricsOfCreatedPools() throws Exception {
+        final SdkExecutors executors = SdkExecutors.create();
+        getThreadName(executors.getIoExecutor());
+
+        final SdkExecutors.Metrics ioMetrics = executors.getIoMetrics();
+        assertNotNull(ioMetrics);
+        assertEquals(SdkExecutors.DEFAULT_IO_POOL_SIZE, ioMetrics.getMaximumPoolSize());
+        assertEquals(1, ioMetrics.getLargestPoolSize());
+        assertEquals(0, ioMetrics.getQueuedTaskCount());
+
+        final SdkExecutors.Metrics cpuMetrics = executors.getCpuMetrics();
+        assertNotNull(cpuMetrics);
+        assertTrue(cpuMetrics.getMaximumPoolSize() >= 2);
+        assertTrue(cpuMetrics.getMaximumPoolSize() <= 4);
+        assertEquals(0, cpuMetrics.getLargestPoolSize());
+    }
+
+    public void testNoMetricsForOtherExecutors() {
+        final Executor executor = new Executor() {
+            @Override
+            public void execute(final Runnable runnable) {
+                runnable.run();
+            }
+        };
+        final SdkExecutors executors = new SdkExecutors(executor, executor);
+
+        assertNull(executors.getCpuMetrics());
+        assertNull(executors.getIoMetrics());
+    }
+
+    public void testDocumentTaskManagerParsesOnCpuExecutor() throws Exception {
+        final ApiCommunicator apiCommunicator = mock(ApiCommunicator.class);
+        final SessionManager sessionManager = mock(SessionManager.class);
+        final Session session = new Session(UUID.randomUUID().toString(), new Date(new Date().getTime() + 10000));
+        when(sessionManager.getSession()).thenReturn(Task.forResult(session));
+        when(apiCommunicator.getDocument("1234", session)).thenReturn(Task.forResult(new JSONObject(
+                "{\"id\": \"1234\", \"progress\": \"COMPLETED\", \"name\": \"foo.jpg\", \"pageCount\": 1, "
+                        + "\"creationDate\": 1, \"sourceClassification\": \"SCANNED\"}")));
+        final AtomicReference<String> cpuThreadName = new AtomicReference<String>();
+        final SdkExecutors executors = new SdkExecutors(new Executor() {
+            @Override
+            public void execute(final Runnable runnable) {
+                cpuThreadName.set("cpu");
+                runnable.run();
+            }
+        }, Task.BACKGROUND_EXECUTOR);
+        final DocumentTaskManager documentTaskManager =
+                new DocumentTaskManager(apiCommunicator, sessionManager, executors);
+
+        final Task<Document> documentTask = documentTaskManager.getDocument("1234");
+        documentTask.waitForCompletion();
+
+        assertEquals("1234", documentTask.getResult().getId());
+        assertEquals("cpu", cpuThreadName.get());
+        assertSame(executors, documentTaskManager.getExecutors());
+    }
+
+    public void testDelayResolvesAfterTime() throws Exception {
+        final long start = System.currentTimeMillis();
+
+        final Task<Void> delayTask = SdkExecutors.delay(200);
+        delayTask.waitForCompletion();
+
+        assertTrue(System.currentTimeMillis() - start >= 200);
+        assertFalse(delayTask.isFaulted());
+    }
+
+    public void testCancellingHandleCancelsDelay() throws Exception {
+        final CancellationHandle cancellationHandle = new CancellationHandle();
+        final long start = System.currentTimeMillis();
+
+        final Task<Void> delayTask = SdkExecutors.delay(5000, cancellationHandle);
+        cancellationHandle.cancel();
+        delayTask.waitForCompletion();
+
+        assertTrue(delayTask.isCancelled());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    public void testPollingDoesNotBlockIoExecutor() throws Exception {
+        final long pollingInterval = DocumentTaskManager.POLLING_INTERVAL;
+        DocumentTaskManager.POLLING_INTERVAL = 5000;
+        final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+        try {
+            final ApiCommunicator apiCommunicator = mock(ApiCommunicator.class);
+            final SessionManager sessionManager = mock(SessionManager.class);
+            final Session session = new Session(UUID.randomUUID().toString(), new Date(new Date().getTime() + 10000));
+            when(sessionManager.getSession()).thenReturn(Task.forResult(session));
+            when(apiCommunicator.getDocument("1234", session)).thenReturn(Task.forResult(createDocumentJson("1234",
+                    "PENDING")));
+            when(apiCommunicator.getDocument("5678", session)).thenReturn(Task.forResult(createDocumentJson("5678",
+                    "COMPLETED")));
+            final DocumentTaskManager documentTaskManager =
+                    new DocumentTaskManager(apiCommunicator, sessionManager, new SdkExecutors(ioExecutor, ioExecutor));
+            final Document pendingDocument = new Document("1234", Document.ProcessingState.PENDING, "foo.jpg", 1,
+                    new Date(), Document.SourceClassification.SCANNED);
+
+            documentTaskManager.pollDocument(pendingDocument);
+            final Task<Document> documentTask = documentTaskManager.getDocument("5678");
+            final CountDownLatch completed = new CountDownLatch(1);
+            documentTask.continueWith(new Continuation<Document, Void>() {
+                @Override
+                public Void then(Task<Document> task) throws Exception {
+                    completed.countDown();
+                    return null;
+                }
+            });
+
+            // The only I/O thread is not blocked by the waiting poll.
+            assertTrue(completed.await(2, TimeUnit.SECONDS));
+            assertEquals("5678", documentTask.getResult().getId());
+        } finally {
+            DocumentTaskManager.POLLING_INTERVAL = pollingInterval;
+            ioExecutor.shutdownNow();
+        }
+    }
+
+    private static JSONObject createDocumentJson(final String documentId, final String progress) throws Exception {
+        return new JSONObject("{\"id\": \"" + documentId + "\", \"progress\": \"" + progress + "\", "
+                + "\"name\": \"foo.jpg\", \"pageCount\": 1, \"creationDate\": 1, "
+                + "\"sourceClassification\": \"SCANNED\"}");
+    }
+
+    private static String getThreadName(final Executor executor) throws InterruptedException {
+        final Task<String> task = Task.call(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return Thread.currentThread().getName();
+            }
+        }, executor);
+        task.waitForCompletion();
+        return task.getResult();
+    }
+}
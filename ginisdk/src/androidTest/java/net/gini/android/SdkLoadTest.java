@@ -0,0 +1,94 @@
+package net.gini.android;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import net.gini.android.helpers.FakeGiniApi;
+import net.gini.android.helpers.LoadHarness;
+import net.gini.android.helpers.TestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Runs the SDK against the local fake Gini API with several concurrent users.
+ */
+public class SdkLoadTest extends AndroidTestCase {
+
+    private static final String TAG = "SdkLoadTest";
+
+    private FakeGiniApi mFakeGiniApi;
+    private long mPollingInterval;
+    private byte[] mDocument;
+
+    @Override
+    protected void setUp() throws Exception {
+        mFakeGiniApi = new FakeGiniApi().setLatency(20, 20).setProcessingTime(300).start();
+        mPollingInterval = DocumentTaskManager.POLLING_INTERVAL;
+        DocumentTaskManager.POLLING_INTERVAL = 100;
+        mDocument = loadDocument();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        DocumentTaskManager.POLLING_INTERVAL = mPollingInterval;
+        mFakeGiniApi.shutdown();
+    }
+
+    private byte[] loadDocument() throws IOException {
+        final InputStream inputStream = getContext().getResources().getAssets().open("yoda.jpg");
+        try {
+            return TestUtils.createByteArray(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private LoadHarness createHarness() {
+        return new LoadHarness(new LoadHarness.DocumentTaskManagerFactory() {
+            @Override
+            public DocumentTaskManager create(final int userIndex) {
+                return mFakeGiniApi.createSdkBuilder(getContext(), "load-test-client")
+                        .build()
+                        .getDocumentTaskManager();
+            }
+        }, mDocument);
+    }
+
+    public void testConcurrentUsers() throws Exception {
+        final LoadHarness.Report report = createHarness().run(8, 3, 60000);
+        Log.i(TAG, "Concurrent users:\n" + report);
+
+        assertFalse(report.hasTimedOut());
+        assertTrue(report.getErrors().toString(), report.getErrors().isEmpty());
+        assertEquals(24, report.getSuccessCount(LoadHarness.OPERATION_SCENARIO));
+        assertEquals(24, mFakeGiniApi.getDocumentCount());
+        assertEquals(24, mFakeGiniApi.getFeedbackCount());
+    }
+
+    public void testUsersRecoverFromExpiredTokens() throws Exception {
+        mFakeGiniApi.setTokenLifetime(1000);
+
+        final LoadHarness.Report report = createHarness().run(4, 4, 60000);
+        Log.i(TAG, "Expiring tokens:\n" + report);
+
+        assertFalse(report.hasTimedOut());
+        assertEquals(16, report.getSuccessCount(LoadHarness.OPERATION_SCENARIO)
+                + report.getFailureCount(LoadHarness.OPERATION_SCENARIO));
+        assertTrue(report.getSuccessCount(LoadHarness.OPERATION_SCENARIO) > 0);
+    }
+
+    public void testInjectedErrorsAreReported() throws Exception {
+        mFakeGiniApi.setErrorRate(0.1);
+
+        final LoadHarness.Report report = createHarness().run(4, 5, 60000);
+        Log.i(TAG, "Injected errors:\n" + report);
+
+        assertFalse(report.hasTimedOut());
+        assertEquals(20, report.getSuccessCount(LoadHarness.OPERATION_SCENARIO)
+                + report.getFailureCount(LoadHarness.OPERATION_SCENARIO));
+        if (mFakeGiniApi.getInjectedErrorCount() > 0) {
+            assertFalse(report.getErrors().isEmpty());
+        }
+    }
+}
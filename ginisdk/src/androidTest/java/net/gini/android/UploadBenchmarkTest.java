@@ -0,0 +1,220 @@
+package net.gini.android;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.test.InstrumentationTestCase;
+import android.test.InstrumentationTestRunner;
+import android.util.Log;
+
+import com.android.volley.RequestQueue;
+import com.android.volley.toolbox.NoCache;
+
+import net.gini.android.authorization.AnonymousSessionManager;
+import net.gini.android.authorization.Session;
+import net.gini.android.authorization.UserCenterAPICommunicator;
+import net.gini.android.authorization.UserCenterManager;
+import net.gini.android.helpers.FakeGiniApi;
+import net.gini.android.helpers.InMemoryCredentialsStore;
+import net.gini.android.helpers.UploadBenchmark;
+import net.gini.android.requests.DefaultRetryPolicyFactory;
+import net.gini.android.requests.RetryPolicyFactory;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import bolts.Continuation;
+import bolts.Task;
+
+import static net.gini.android.Utils.CHARSET_UTF8;
+
+/**
+ * <p>
+ * Benchmarks concurrent document uploads against the local fake Gini API.
+ * </p>
+ * <p>
+ * By default only a small smoke matrix runs. The full matrix runs with the instrumentation argument
+ * {@code -e benchmark true}. Its results are written to {@code files/benchmarks/upload-benchmark-<version>.json} of
+ * the test app. If the argument {@code benchmarkBaseline} contains the path of the results of a previous run, the
+ * test fails when a metric regressed by more than {@code benchmarkTolerance} (default 0.2).
+ * </p>
+ */
+public class UploadBenchmarkTest extends InstrumentationTestCase {
+
+    private static final String TAG = "UploadBenchmarkTest";
+
+    private static final int[] PAYLOAD_SIZES = {64 * 1024, 512 * 1024, 2 * 1024 * 1024};
+    private static final int[] CONCURRENCY_LEVELS = {1, 4, 16};
+    private static final int UPLOADS_PER_CELL = 32;
+    private static final double DEFAULT_TOLERANCE = 0.2;
+
+    private FakeGiniApi mFakeGiniApi;
+
+    @Override
+    protected void setUp() throws Exception {
+        mFakeGiniApi = new FakeGiniApi().setLatency(10, 5).start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mFakeGiniApi.shutdown();
+    }
+
+    private Context getContext() {
+        return getInstrumentation().getTargetContext();
+    }
+
+    private Bundle getArguments() {
+        final Bundle arguments = ((InstrumentationTestRunner) getInstrumentation()).getArguments();
+        return arguments != null ? arguments : new Bundle();
+    }
+
+    private UploadBenchmark createBenchmark() {
+        // The components are wired like the SdkBuilder does, but without retries and the disk cache.
+        final RequestQueue requestQueue = new RequestQueueBuilder(getContext()).setCache(new NoCache()).build();
+        final RetryPolicyFactory retryPolicyFactory = new DefaultRetryPolicyFactory(30000, 0, 1f);
+        final ApiCommunicator apiCommunicator =
+                new ApiCommunicator(mFakeGiniApi.getBaseUrl(), requestQueue, retryPolicyFactory);
+        final UserCenterManager userCenterManager = new UserCenterManager(
+                new UserCenterAPICommunicator(requestQueue, mFakeGiniApi.getBaseUrl(), "benchmark-client", "secret",
+                        retryPolicyFactory));
+        final AnonymousSessionManager sessionManager =
+                new AnonymousSessionManager("example.com", userCenterManager, new InMemoryCredentialsStore());
+
+        return new UploadBenchmark(new UploadBenchmark.Uploader() {
+            @Override
+            public Task<Uri> upload(final byte[] documentData) {
+                return sessionManager.getSession().onSuccessTask(new Continuation<Session, Task<Uri>>() {
+                    @Override
+                    public Task<Uri> then(Task<Session> task) throws Exception {
+                        return apiCommunicator.uploadDocument(documentData, MediaTypes.IMAGE_JPEG, "benchmark.jpg",
+                                "Invoice", task.getResult());
+                    }
+                }, Task.BACKGROUND_EXECUTOR);
+            }
+        });
+    }
+
+    public void testSmokeMatrix() throws Exception {
+        final List<UploadBenchmark.Measurement> measurements =
+                createBenchmark().run(new int[]{64 * 1024}, new int[]{1, 4}, 8, 60000);
+
+        for (final UploadBenchmark.Measurement measurement : measurements) {
+            Log.i(TAG, measurement.toString());
+            assertFalse(measurement.hasTimedOut());
+            assertEquals(0, measurement.getFailureCount());
+            assertEquals(8, measurement.getSuccessCount());
+            assertTrue(measurement.getUploadsPerSecond() > 0);
+            assertTrue(measurement.getPeakHeapBytes() >= measurement.getBaselineHeapBytes());
+        }
+        assertEquals(16, mFakeGiniApi.getDocumentCount());
+
+        final JSONObject results = UploadBenchmark.toJson(createMetadata(), measurements);
+        assertTrue(UploadBenchmark.findRegressions(results, results, 0).isEmpty());
+    }
+
+    public void testFindRegressions() throws Exception {
+        final JSONObject baseline = createResults(10, 100, 200, 1000);
+
+        assertTrue(UploadBenchmark.findRegressions(baseline, createResults(9, 110, 230, 1100), 0.2).isEmpty());
+
+        final List<String> regressions =
+                UploadBenchmark.findRegressions(baseline, createResults(7, 100, 300, 1000), 0.2);
+        assertEquals(2, regressions.size());
+        assertTrue(regressions.get(0).contains("uploadsPerSecond"));
+        assertTrue(regressions.get(1).contains("p99Ms"));
+    }
+
+    public void testFullMatrix() throws Exception {
+        final Bundle arguments = getArguments();
+        if (!Boolean.parseBoolean(arguments.getString("benchmark"))) {
+            Log.i(TAG, "Skipping the full benchmark, run with -e benchmark true to enable it");
+            return;
+        }
+
+        final List<UploadBenchmark.Measurement> measurements =
+                createBenchmark().run(PAYLOAD_SIZES, CONCURRENCY_LEVELS, UPLOADS_PER_CELL, 5 * 60000);
+        final JSONObject results = UploadBenchmark.toJson(createMetadata(), measurements);
+        Log.i(TAG, "Upload benchmark " + UploadBenchmark.describeMetadata(results));
+        for (final UploadBenchmark.Measurement measurement : measurements) {
+            Log.i(TAG, measurement.toString());
+        }
+        final File resultsFile = writeResults(results);
+        Log.i(TAG, "Wrote the results to " + resultsFile);
+
+        final String baselinePath = arguments.getString("benchmarkBaseline");
+        if (baselinePath != null) {
+            final String toleranceArgument = arguments.getString("benchmarkTolerance");
+            final double tolerance =
+                    toleranceArgument != null ? Double.parseDouble(toleranceArgument) : DEFAULT_TOLERANCE;
+            final List<String> regressions =
+                    UploadBenchmark.findRegressions(readResults(new File(baselinePath)), results, tolerance);
+            assertTrue("Regressions compared to " + baselinePath + ": " + regressions, regressions.isEmpty());
+        }
+    }
+
+    private Map<String, String> createMetadata() {
+        final Map<String, String> metadata = new LinkedHashMap<String, String>();
+        metadata.put("sdkVersion", BuildConfig.VERSION_NAME);
+        metadata.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+        metadata.put("apiLevel", String.valueOf(Build.VERSION.SDK_INT));
+        metadata.put("timestamp", String.valueOf(System.currentTimeMillis()));
+        return metadata;
+    }
+
+    private File writeResults(final JSONObject results) throws Exception {
+        final File directory = new File(getContext().getFilesDir(), "benchmarks");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        final File file = new File(directory, "upload-benchmark-" + BuildConfig.VERSION_NAME + ".json");
+        final OutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(results.toString(2).getBytes(CHARSET_UTF8));
+        } finally {
+            outputStream.close();
+        }
+        return file;
+    }
+
+    private JSONObject readResults(final File file) throws Exception {
+        final InputStream inputStream = new FileInputStream(file);
+        try {
+            final byte[] data = new byte[(int) file.length()];
+            int offset = 0;
+            int read;
+            while (offset < data.length && (read = inputStream.read(data, offset, data.length - offset)) != -1) {
+                offset += read;
+            }
+            return new JSONObject(new String(data, 0, offset, CHARSET_UTF8));
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static JSONObject createResults(final double uploadsPerSecond, final double p50Ms, final double p99Ms,
+                                            final long peakHeapBytes) throws Exception {
+        final JSONObject measurement = new JSONObject();
+        measurement.put("payloadBytes", 65536);
+        measurement.put("concurrency", 4);
+        measurement.put("uploadsPerSecond", uploadsPerSecond);
+        measurement.put("p50Ms", p50Ms);
+        measurement.put("p99Ms", p99Ms);
+        measurement.put("peakHeapBytes", peakHeapBytes);
+        final JSONObject results = new JSONObject();
+        results.put("schemaVersion", UploadBenchmark.SCHEMA_VERSION);
+        results.put("measurements", new JSONArray().put(measurement));
+        return results;
+    }
+}
@@ -0,0 +1,151 @@
+package net.gini.android;
+
+import android.net.Uri;
+import android.test.InstrumentationTestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static net.gini.android.Utils.CHARSET_UTF8;
+
+public class UploadDeduplicationStoreTest extends InstrumentationTestCase {
+
+    private static final Uri DOCUMENT_URI = Uri.parse("https://api.gini.net/documents/1234");
+
+    private File mFile;
+
+    @Override
+    public void setUp() {
+        mFile = new File(getInstrumentation().getTargetContext().getCacheDir(), "upload-deduplication-test");
+        //noinspection ResultOfMethodCallIgnored
+        mFile.delete();
+    }
+
+    @Override
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        mFile.delete();
+    }
+
+    public void testComputeHash() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                UploadDeduplicationStore.computeHash("abc".getBytes(CHARSET_UTF8)));
+    }
+
+    public void testComputeKeyDependsOnAllParameters() {
+        final String key = UploadDeduplicationStore.computeKey("hash", "user", "invoice.pdf", "Invoice");
+
+        assertEquals(key, UploadDeduplicationStore.computeKey("hash", "user", "invoice.pdf", "Invoice"));
+        assertFalse(key.equals(UploadDeduplicationStore.computeKey("other hash", "user", "invoice.pdf", "Invoice")));
+        assertFalse(key.equals(UploadDeduplicationStore.computeKey("hash", "other user", "invoice.pdf", "Invoice")));
+        assertFalse(key.equals(UploadDeduplicationStore.computeKey("hash", "user", "other.pdf", "Invoice")));
+        assertFalse(key.equals(UploadDeduplicationStore.computeKey("hash", "user", "invoice.pdf", null)));
+        assertFalse(UploadDeduplicationStore.computeKey("hash", null, null, null).equals(
+                UploadDeduplicationStore.computeKey("hash", "", null, null)));
+        assertFalse(UploadDeduplicationStore.computeKey("hash", "ab", "c", null).equals(
+                UploadDeduplicationStore.computeKey("hash", "a", "bc", null)));
+    }
+
+    public void testMaxEntriesIsChecked() {
+        try {
+            new UploadDeduplicationStore(mFile, 0);
+            fail("Exception not thrown");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    public void testReturnsRememberedDocumentUri() {
+        final UploadDeduplicationStore store = new UploadDeduplicationStore(mFile);
+
+        store.put("hash", DOCUMENT_URI);
+
+        assertEquals(DOCUMENT_URI, store.getDocumentUri("hash"));
+        assertNull(store.getDocumentUri("other hash"));
+    }
+
+    public void testEntriesArePersisted() {
+        new UploadDeduplicationStore(mFile).put("hash", DOCUMENT_URI);
+
+        assertEquals(DOCUMENT_URI, new UploadDeduplicationStore(mFile).getDocumentUri("hash"));
+    }
+
+    public void testEvictsLeastRecentlyUsedEntry() {
+        final UploadDeduplicationStore store = new UploadDeduplicationStore(mFile, 2);
+        store.put("hash1", Uri.parse("https://api.gini.net/documents/1"));
+        store.put("hash2", Uri.parse("https://api.gini.net/documents/2"));
+        store.getDocumentUri("hash1");
+
+        store.put("hash3", Uri.parse("https://api.gini.net/documents/3"));
+
+        assertNotNull(store.getDocumentUri("hash1"));
+        assertNull(store.getDocumentUri("hash2"));
+        assertNotNull(store.getDocumentUri("hash3"));
+    }
+
+    public void testUsageOrderIsPersisted() {
+        final UploadDeduplicationStore store = new UploadDeduplicationStore(mFile, 2);
+        store.put("hash1", Uri.parse("https://api.gini.net/documents/1"));
+        store.put("hash2", Uri.parse("https://api.gini.net/documents/2"));
+        store.getDocumentUri("hash1");
+        store.flush();
+
+        final UploadDeduplicationStore restoredStore = new UploadDeduplicationStore(mFile, 2);
+        restoredStore.put("hash3", Uri.parse("https://api.gini.net/documents/3"));
+
+        assertNotNull(restoredStore.getDocumentUri("hash1"));
+        assertNull(restoredStore.getDocumentUri("hash2"));
+    }
+
+    public void testLookupDoesNotWriteTheFile() {
+        final UploadDeduplicationStore store = new UploadDeduplicationStore(mFile);
+        store.put("hash", DOCUMENT_URI);
+        final long lastModified = mFile.lastModified();
+        //noinspection ResultOfMethodCallIgnored
+        mFile.setLastModified(lastModified - 10000);
+
+        assertEquals(DOCUMENT_URI, store.getDocumentUri("hash"));
+
+        assertEquals(lastModified - 10000, mFile.lastModified());
+    }
+
+    public void testUsageOrderIsPersistedWithNextChange() {
+        final UploadDeduplicationStore store = new UploadDeduplicationStore(mFile, 3);
+        store.put("hash1", Uri.parse("https://api.gini.net/documents/1"));
+        store.put("hash2", Uri.parse("https://api.gini.net/documents/2"));
+        store.put("hash3", Uri.parse("https://api.gini.net/documents/3"));
+        store.getDocumentUri("hash1");
+        store.remove("hash3");
+
+        final UploadDeduplicationStore restoredStore = new UploadDeduplicationStore(mFile, 2);
+        restoredStore.put("hash4", Uri.parse("https://api.gini.net/documents/4"));
+
+        assertNotNull(restoredStore.getDocumentUri("hash1"));
+        assertNull(restoredStore.getDocumentUri("hash2"));
+    }
+
+    public void testIgnoresCorruptLines() throws IOException {
+        final FileOutputStream outputStream = new FileOutputStream(mFile);
+        outputStream.write("hash https://api.gini.net/documents/1234\nhash2\n".getBytes(CHARSET_UTF8));
+        outputStream.close();
+
+        final UploadDeduplicationStore store = new UploadDeduplicationStore(mFile);
+
+        assertEquals(1, store.size());
+        assertEquals(DOCUMENT_URI, store.getDocumentUri("hash"));
+    }
+
+    public void testRemoveAndClear() {
+        final UploadDeduplicationStore store = new UploadDeduplicationStore(mFile);
+        store.put("hash1", Uri.parse("https://api.gini.net/documents/1"));
+        store.put("hash2", Uri.parse("https://api.gini.net/documents/2"));
+
+        store.remove("hash1");
+        assertNull(store.getDocumentUri("hash1"));
+        assertEquals(1, new UploadDeduplicationStore(mFile).size());
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertEquals(0, new UploadDeduplicationStore(mFile).size());
+    }
+}
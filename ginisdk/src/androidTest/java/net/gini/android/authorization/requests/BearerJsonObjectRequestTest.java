@@ -2,18 +2,24 @@ package net.gini.android.authorization.requests;
 
 import com.android.volley.AuthFailureError;
 import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.NetworkResponse;
 import com.android.volley.Request;
+import com.android.volley.Response;
 import com.android.volley.RetryPolicy;
 
 import junit.framework.TestCase;
 
 import net.gini.android.MediaTypes;
+import net.gini.android.Utils;
 import net.gini.android.authorization.Session;
+import net.gini.android.requests.ContentEncoding;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
 
 public class BearerJsonObjectRequestTest extends TestCase {
@@ -50,4 +56,63 @@ public class BearerJsonObjectRequestTest extends TestCase {
 
         assertEquals(MediaTypes.GINI_JSON_V1, request.getBodyContentType());
     }
+
+    public void testAcceptEncodingHeader() throws AuthFailureError {
+        Session session = new Session("1234-5678-9012", new Date());
+        BearerJsonObjectRequest request = new BearerJsonObjectRequest(Request.Method.GET, "https://example.com", null, session, null, null, retryPolicy);
+
+        assertEquals("gzip", request.getHeaders().get("Accept-Encoding"));
+    }
+
+    public void testBodyIsNotCompressedByDefault() throws AuthFailureError, JSONException {
+        Session session = new Session("1234-5678-9012", new Date());
+        BearerJsonObjectRequest request = new BearerJsonObjectRequest(Request.Method.PUT, "https://example.com", createLargePayload(), session, null, null, retryPolicy);
+
+        assertNull(request.getHeaders().get("Content-Encoding"));
+        assertEquals(createLargePayload().toString(), new String(request.getBody(), Utils.CHARSET_UTF8));
+    }
+
+    public void testCompressesLargeBody() throws AuthFailureError, JSONException, IOException {
+        Session session = new Session("1234-5678-9012", new Date());
+        BearerJsonObjectRequest request = new BearerJsonObjectRequest(Request.Method.PUT, "https://example.com", createLargePayload(), session, null, null, retryPolicy);
+        request.setCompressRequestBody(true);
+
+        assertEquals("gzip", request.getHeaders().get("Content-Encoding"));
+        final byte[] body = request.getBody();
+        assertTrue(body.length < createLargePayload().toString().length());
+        final NetworkResponse decoded = new NetworkResponse(200, body, request.getHeaders(), false);
+        assertEquals(createLargePayload().toString(), ContentEncoding.readBody(decoded, Utils.CHARSET_UTF8));
+    }
+
+    public void testDoesNotCompressSmallBody() throws AuthFailureError, JSONException {
+        Session session = new Session("1234-5678-9012", new Date());
+        JSONObject payload = new JSONObject();
+        payload.put("foo", "bar");
+        BearerJsonObjectRequest request = new BearerJsonObjectRequest(Request.Method.PUT, "https://example.com", payload, session, null, null, retryPolicy);
+        request.setCompressRequestBody(true);
+
+        assertNull(request.getHeaders().get("Content-Encoding"));
+        assertEquals(payload.toString(), new String(request.getBody(), Utils.CHARSET_UTF8));
+    }
+
+    public void testParsesGzippedResponse() throws JSONException {
+        Session session = new Session("1234-5678-9012", new Date());
+        BearerJsonObjectRequest request = new BearerJsonObjectRequest(Request.Method.GET, "https://example.com", null, session, null, null, retryPolicy);
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("content-encoding", "gzip");
+        byte[] data = ContentEncoding.gzip(createLargePayload().toString().getBytes(Utils.CHARSET_UTF8));
+
+        Response<JSONObject> response = request.parseNetworkResponse(new NetworkResponse(200, data, headers, false));
+
+        assertTrue(response.isSuccess());
+        assertEquals(createLargePayload().toString(), response.result.toString());
+    }
+
+    private JSONObject createLargePayload() throws JSONException {
+        JSONObject payload = new JSONObject();
+        for (int i = 0; i < 100; i++) {
+            payload.put("key" + i, "a value which is repeated to make the payload compressible");
+        }
+        return payload;
+    }
 }
@@ -14,7 +14,9 @@ import com.android.volley.toolbox.NoCache;
 import com.android.volley.toolbox.RequestFuture;
 
 import net.gini.android.MediaTypes;
+import net.gini.android.Utils;
 import net.gini.android.helpers.MockNetwork;
+import net.gini.android.requests.ContentEncoding;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -91,4 +93,22 @@ public class TokenRequestTest extends AndroidTestCase {
         assertEquals(responseData.getString("access_token"), "74c1e7fe-e464-451f-a6eb-8f0998c46ff6");
         assertEquals(responseData.getString("token_type"), "bearer");
     }
+
+    public void testGzippedResponse() throws ExecutionException, InterruptedException, JSONException {
+        HashMap<String, String> headers = new HashMap<String, String>();
+        headers.put("Content-Encoding", "gzip");
+        byte[] data = ContentEncoding.gzip("{\"access_token\":\"74c1e7fe-e464-451f-a6eb-8f0998c46ff6\",\"token_type\":\"bearer\",\"expires_in\":3599}".getBytes(Utils.CHARSET_UTF8));
+        mockNetwork.setResponseToReturn(new NetworkResponse(200, data, headers, false));
+
+        requestQueue.add(loginRequest);
+
+        JSONObject responseData = requestFuture.get();
+        assertEquals(responseData.getString("access_token"), "74c1e7fe-e464-451f-a6eb-8f0998c46ff6");
+    }
+
+    public void testAcceptEncodingHeader() throws AuthFailureError {
+        Map<String, String> headers = loginRequest.getHeaders();
+
+        assertEquals("gzip", headers.get("Accept-Encoding"));
+    }
 }
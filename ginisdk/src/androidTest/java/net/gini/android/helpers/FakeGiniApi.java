@@ -0,0 +1,860 @@
+package net.gini.android.helpers;
+
+import android.content.Context;
+
+import net.gini.android.SdkBuilder;
+import net.gini.android.Utils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * <p>
+ * An in-process stand-in for the Gini API and the Gini User Center API. It listens on a local port and serves both
+ * APIs, so it can be used as the base URL of the API and of the User Center API in the SdkBuilder.
+ * </p>
+ * <p>
+ * Supported endpoints:
+ * </p>
+ * <ul>
+ * <li>{@code POST /oauth/token}, {@code GET /oauth/check_token}, {@code POST /api/users}, {@code GET|PUT
+ * /api/users/<id>}</li>
+ * <li>{@code POST /documents/}, {@code GET /documents}, {@code GET|DELETE /documents/<id>}</li>
+ * <li>{@code GET|PUT /documents/<id>/extractions}, {@code GET /documents/<id>/layout}, {@code GET
+ * /documents/<id>/pages/<page>/<size>}, {@code POST /documents/<id>/errorreport}</li>
+ * <li>{@code GET /search}</li>
+ * </ul>
+ * <p>
+ * A {@code GET /documents/<id>} with a {@code Prefer: wait=<seconds>} header is held until the document is processed
+ * or the wait time expired and confirmed with a {@code Preference-Applied} header, unless long polling was disabled.
+ * </p>
+ * <p>
+ * The latency, the rate of failing requests, the time until uploaded documents are processed and the lifetime of
+ * access tokens can be configured. Only a minimal subset of HTTP/1.1 is implemented: persistent connections, request
+ * bodies with a Content-Length or chunked transfer encoding and responses with a Content-Length.
+ * </p>
+ */
+public class FakeGiniApi {
+
+    private static final String ERROR_INVALID_GRANT = "{\"error\":\"invalid_grant\"}";
+
+    private final ServerSocket mServerSocket;
+    private final ExecutorService mConnectionExecutor = Executors.newCachedThreadPool();
+    private final Random mRandom = new Random();
+
+    private final Map<String, String> mUserPasswords = new ConcurrentHashMap<String, String>();
+    private final Map<String, String> mUserIds = new ConcurrentHashMap<String, String>();
+    private final Map<String, Token> mTokens = new ConcurrentHashMap<String, Token>();
+    private final Map<String, FakeDocument> mDocuments =
+            Collections.synchronizedMap(new LinkedHashMap<String, FakeDocument>());
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private final AtomicInteger mInjectedErrorCount = new AtomicInteger();
+    private final AtomicInteger mFeedbackCount = new AtomicInteger();
+
+    private volatile long mLatencyMs;
+    private volatile long mLatencyJitterMs;
+    private volatile double mErrorRate;
+    private volatile long mProcessingTimeMs;
+    private volatile long mTokenLifetimeMs = 3600 * 1000;
+    private volatile int mLayoutWordsPerPage = 100;
+    private volatile byte[] mPageImage;
+    private volatile boolean mLongPolling = true;
+    private volatile boolean mRunning;
+
+    public FakeGiniApi() throws IOException {
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+    }
+
+    /**
+     * Starts accepting connections.
+     */
+    public FakeGiniApi start() {
+        mRunning = true;
+        final Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, "fake-gini-api");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        return this;
+    }
+
+    public void shutdown() {
+        mRunning = false;
+        try {
+            mServerSocket.close();
+        } catch (IOException ignored) {
+        }
+        mConnectionExecutor.shutdownNow();
+    }
+
+    /**
+     * The base URL which has to be used for both the Gini API and the User Center API.
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + "/";
+    }
+
+    /**
+     * Returns an SdkBuilder which uses this fake for both APIs, doesn't retry failed requests and keeps the anonymous
+     * user's credentials in memory.
+     */
+    public SdkBuilder createSdkBuilder(final Context context, final String clientId) {
+        return new SdkBuilder(context, clientId, "secret", "example.com")
+                .setApiBaseUrl(getBaseUrl())
+                .setUserCenterApiBaseUrl(getBaseUrl())
+                .setMaxNumberOfRetries(0)
+                .setCredentialsStore(new InMemoryCredentialsStore());
+    }
+
+    /**
+     * Every response is delayed by the latency plus a random jitter between 0 and the given jitter.
+     */
+    public FakeGiniApi setLatency(final long latencyMs, final long jitterMs) {
+        mLatencyMs = latencyMs;
+        mLatencyJitterMs = jitterMs;
+        return this;
+    }
+
+    /**
+     * The share of requests (between 0 and 1) which fail with a 503 Service Unavailable.
+     */
+    public FakeGiniApi setErrorRate(final double errorRate) {
+        mErrorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * The time after the upload until a document's progress changes from PENDING to COMPLETED.
+     */
+    public FakeGiniApi setProcessingTime(final long processingTimeMs) {
+        mProcessingTimeMs = processingTimeMs;
+        return this;
+    }
+
+    /**
+     * Whether document requests with a {@code Prefer: wait=<seconds>} header are held. If disabled, the header is
+     * ignored like by a server which doesn't support it. Enabled by default.
+     */
+    public FakeGiniApi setLongPolling(final boolean longPolling) {
+        mLongPolling = longPolling;
+        return this;
+    }
+
+    /**
+     * The lifetime of created access tokens. Requests with expired tokens fail with a 401 Unauthorized.
+     */
+    public FakeGiniApi setTokenLifetime(final long tokenLifetimeMs) {
+        mTokenLifetimeMs = tokenLifetimeMs;
+        return this;
+    }
+
+    /**
+     * The number of words of each page in the layout of a document.
+     */
+    public FakeGiniApi setLayoutWordsPerPage(final int layoutWordsPerPage) {
+        mLayoutWordsPerPage = layoutWordsPerPage;
+        return this;
+    }
+
+    /**
+     * The JPEG image which is returned for all page previews. Page previews are not found, if no image was set.
+     */
+    public FakeGiniApi setPageImage(final byte[] pageImage) {
+        mPageImage = pageImage;
+        return this;
+    }
+
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    public int getInjectedErrorCount() {
+        return mInjectedErrorCount.get();
+    }
+
+    /**
+     * The number of feedback requests for the extractions of all documents.
+     */
+    public int getFeedbackCount() {
+        return mFeedbackCount.get();
+    }
+
+    public int getDocumentCount() {
+        return mDocuments.size();
+    }
+
+    /**
+     * Returns the media type with which the document was uploaded or null, if there is no such document.
+     */
+    public String getUploadedContentType(final String documentId) {
+        final FakeDocument document = mDocuments.get(documentId);
+        return document != null ? document.mContentType : null;
+    }
+
+    /**
+     * Returns the uploaded content of the document or null, if there is no such document.
+     */
+    public byte[] getUploadedContent(final String documentId) {
+        final FakeDocument document = mDocuments.get(documentId);
+        return document != null ? document.mContent : null;
+    }
+
+    /**
+     * Lets all access tokens expire immediately.
+     */
+    public void expireAllTokens() {
+        for (final Token token : mTokens.values()) {
+            token.mExpirationTime = 0;
+        }
+    }
+
+    private void acceptConnections() {
+        while (mRunning) {
+            final Socket socket;
+            try {
+                socket = mServerSocket.accept();
+            } catch (IOException e) {
+                // Closed by shutdown().
+                return;
+            }
+            mConnectionExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    handleConnection(socket);
+                }
+            });
+        }
+    }
+
+    private void handleConnection(final Socket socket) {
+        try {
+            final InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+            final OutputStream outputStream = socket.getOutputStream();
+            while (mRunning) {
+                final HttpRequest request = HttpRequest.read(inputStream);
+                if (request == null) {
+                    break;
+                }
+                mRequestCount.incrementAndGet();
+                final HttpResponse response = handleRequest(request);
+                simulateLatency();
+                response.write(outputStream);
+                if ("close".equalsIgnoreCase(request.getHeader("Connection"))) {
+                    break;
+                }
+            }
+        } catch (SocketException ignored) {
+            // The client closed the connection.
+        } catch (IOException ignored) {
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void simulateLatency() {
+        long latency = mLatencyMs;
+        if (mLatencyJitterMs > 0) {
+            synchronized (mRandom) {
+                latency += (long) (mRandom.nextDouble() * mLatencyJitterMs);
+            }
+        }
+        if (latency > 0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private boolean shouldInjectError() {
+        if (mErrorRate <= 0) {
+            return false;
+        }
+        synchronized (mRandom) {
+            return mRandom.nextDouble() < mErrorRate;
+        }
+    }
+
+    private HttpResponse handleRequest(final HttpRequest request) {
+        if (shouldInjectError()) {
+            mInjectedErrorCount.incrementAndGet();
+            return HttpResponse.json(503, "{\"message\":\"injected error\"}");
+        }
+        try {
+            final String[] path = request.mPath.replaceAll("^/+|/+$", "").split("/+");
+            if (path.length >= 2 && path[0].equals("oauth")) {
+                return handleOAuth(request, path[1]);
+            }
+            if (!isAuthorized(request)) {
+                return HttpResponse.json(401, "{\"error\":\"invalid_token\"}");
+            }
+            if (path[0].equals("api") && path.length >= 2 && path[1].equals("users")) {
+                return handleUsers(request, path);
+            }
+            if (path[0].equals("search")) {
+                return handleDocumentList(request);
+            }
+            if (path[0].equals("documents")) {
+                return handleDocuments(request, path);
+            }
+            return HttpResponse.notFound();
+        } catch (JSONException e) {
+            return HttpResponse.json(400, "{\"message\":\"invalid json\"}");
+        } catch (IOException e) {
+            return HttpResponse.json(400, "{\"message\":\"invalid body\"}");
+        }
+    }
+
+    private boolean isAuthorized(final HttpRequest request) {
+        final String authorization = request.getHeader("Authorization");
+        if (authorization == null || !authorization.toLowerCase(Locale.US).startsWith("bearer ")) {
+            return false;
+        }
+        final Token token = mTokens.get(authorization.substring("bearer ".length()).trim());
+        return token != null && token.mExpirationTime > System.currentTimeMillis();
+    }
+
+    private HttpResponse handleOAuth(final HttpRequest request, final String endpoint)
+            throws JSONException, IOException {
+        if (endpoint.equals("check_token")) {
+            final Token token = mTokens.get(request.getQueryParameter("token"));
+            if (token == null) {
+                return HttpResponse.json(400, "{\"error\":\"invalid_token\"}");
+            }
+            return HttpResponse.json(200, new JSONObject().put("user_name", token.mUserId).toString());
+        }
+        if (!endpoint.equals("token") || !request.mMethod.equals("POST")) {
+            return HttpResponse.notFound();
+        }
+        final String grantType = request.getQueryParameter("grant_type");
+        String userId = null;
+        if ("password".equals(grantType)) {
+            final Map<String, String> form = parseQuery(request.getBodyAsString());
+            final String username = form.get("username");
+            final String password = username != null ? mUserPasswords.get(username) : null;
+            if (password == null || !password.equals(form.get("password"))) {
+                return HttpResponse.json(400, ERROR_INVALID_GRANT);
+            }
+            userId = mUserIds.get(username);
+        } else if (!"client_credentials".equals(grantType)) {
+            return HttpResponse.json(400, "{\"error\":\"unsupported_grant_type\"}");
+        }
+        final String accessToken = UUID.randomUUID().toString();
+        final long lifetime = mTokenLifetimeMs;
+        mTokens.put(accessToken, new Token(userId, System.currentTimeMillis() + lifetime));
+        final JSONObject response = new JSONObject();
+        response.put("access_token", accessToken);
+        response.put("token_type", "bearer");
+        response.put("expires_in", Math.max(1, lifetime / 1000));
+        return HttpResponse.json(200, response.toString());
+    }
+
+    private HttpResponse handleUsers(final HttpRequest request, final String[] path)
+            throws JSONException, IOException {
+        if (path.length == 2 && request.mMethod.equals("POST")) {
+            final JSONObject user = new JSONObject(request.getBodyAsString());
+            final String email = user.getString("email");
+            final String userId = UUID.randomUUID().toString();
+            mUserPasswords.put(email, user.getString("password"));
+            mUserIds.put(email, userId);
+            return HttpResponse.created(getBaseUrl() + "api/users/" + userId);
+        }
+        if (path.length == 3) {
+            final String email = findEmail(path[2]);
+            if (email == null) {
+                return HttpResponse.notFound();
+            }
+            if (request.mMethod.equals("GET")) {
+                return HttpResponse.json(200, new JSONObject().put("id", path[2]).put("email", email).toString());
+            }
+            if (request.mMethod.equals("PUT")) {
+                final JSONObject update = new JSONObject(request.getBodyAsString());
+                final String newEmail = update.getString("email");
+                mUserPasswords.put(newEmail, mUserPasswords.remove(email));
+                mUserIds.put(newEmail, mUserIds.remove(email));
+                return HttpResponse.noContent();
+            }
+        }
+        return HttpResponse.notFound();
+    }
+
+    private String findEmail(final String userId) {
+        for (final Map.Entry<String, String> entry : mUserIds.entrySet()) {
+            if (entry.getValue().equals(userId)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    private HttpResponse handleDocuments(final HttpRequest request, final String[] path)
+            throws JSONException, IOException {
+        if (path.length == 1) {
+            if (request.mMethod.equals("POST")) {
+                return createDocument(request);
+            }
+            return handleDocumentList(request);
+        }
+        final FakeDocument document = mDocuments.get(path[1]);
+        if (document == null) {
+            return HttpResponse.notFound();
+        }
+        if (path.length == 2) {
+            if (request.mMethod.equals("DELETE")) {
+                mDocuments.remove(document.mId);
+                return HttpResponse.noContent();
+            }
+            return getDocument(request, document);
+        }
+        final String resource = path[2];
+        if (resource.equals("extractions")) {
+            if (request.mMethod.equals("PUT")) {
+                // Validates the body.
+                new JSONObject(request.getBodyAsString()).getJSONObject("feedback");
+                mFeedbackCount.incrementAndGet();
+                return HttpResponse.noContent();
+            }
+            if (!document.isCompleted()) {
+                return HttpResponse.notFound();
+            }
+            return HttpResponse.json(200, createExtractions().toString());
+        }
+        if (resource.equals("layout")) {
+            return HttpResponse.json(200, createLayout(document).toString());
+        }
+        if (resource.equals("pages")) {
+            final byte[] pageImage = mPageImage;
+            if (pageImage == null) {
+                return HttpResponse.notFound();
+            }
+            return new HttpResponse(200, "image/jpeg", pageImage, null);
+        }
+        if (resource.equals("errorreport")) {
+            return HttpResponse.json(200, new JSONObject().put("errorId", UUID.randomUUID().toString())
+                    .put("message", "error was reported").toString());
+        }
+        return HttpResponse.notFound();
+    }
+
+    private HttpResponse getDocument(final HttpRequest request, final FakeDocument document) throws JSONException {
+        final int waitSeconds = mLongPolling ? parseWait(request.getHeader("Prefer")) : 0;
+        if (waitSeconds <= 0) {
+            return HttpResponse.json(200, document.toJson().toString());
+        }
+        final long waitUntil = System.currentTimeMillis() + waitSeconds * 1000L;
+        while (!document.isCompleted() && System.currentTimeMillis() < waitUntil) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return HttpResponse.json(200, document.toJson().toString())
+                .withHeader("Preference-Applied", "wait=" + waitSeconds);
+    }
+
+    private static int parseWait(final String prefer) {
+        if (prefer == null) {
+            return 0;
+        }
+        for (final String preference : prefer.split(",")) {
+            final String[] nameAndValue = preference.trim().split("=", 2);
+            if (nameAndValue.length == 2 && nameAndValue[0].trim().equalsIgnoreCase("wait")) {
+                return parseInt(nameAndValue[1].trim(), 0);
+            }
+        }
+        return 0;
+    }
+
+    private HttpResponse createDocument(final HttpRequest request) throws JSONException, IOException {
+        final String contentType = request.getHeader("Content-Type");
+        final FakeDocument document = new FakeDocument(UUID.randomUUID().toString(),
+                request.getQueryParameter("filename"), System.currentTimeMillis());
+        if (contentType != null && contentType.contains("composite+json")) {
+            document.mPageCount = new JSONObject(request.getBodyAsString()).getJSONArray("partialDocuments").length();
+        }
+        document.mContentType = contentType;
+        document.mContent = request.mBody;
+        mDocuments.put(document.mId, document);
+        return HttpResponse.created(getBaseUrl() + "documents/" + document.mId);
+    }
+
+    private HttpResponse handleDocumentList(final HttpRequest request) throws JSONException {
+        final int offset = parseInt(request.getQueryParameter("offset"), 0);
+        final int limit = parseInt(request.getQueryParameter("limit"), 20);
+        final String query = request.getQueryParameter("q");
+        final List<FakeDocument> documents;
+        synchronized (mDocuments) {
+            documents = new ArrayList<FakeDocument>(mDocuments.values());
+        }
+        final JSONArray documentsData = new JSONArray();
+        int totalCount = 0;
+        for (final FakeDocument document : documents) {
+            if (query != null && (document.mName == null || !document.mName.contains(query))) {
+                continue;
+            }
+            if (totalCount >= offset && totalCount < offset + limit) {
+                documentsData.put(document.toJson());
+            }
+            totalCount++;
+        }
+        return HttpResponse.json(200, new JSONObject().put("totalCount", totalCount)
+                .put("documents", documentsData).toString());
+    }
+
+    private JSONObject createExtractions() throws JSONException {
+        final JSONObject box = new JSONObject().put("page", 1).put("left", 516.0).put("top", 588.0)
+                .put("width", 42.0).put("height", 9.0);
+        final JSONObject amountToPay = new JSONObject().put("entity", "amount").put("value", "24.99:EUR")
+                .put("box", box).put("candidates", "amounts");
+        final JSONObject senderName = new JSONObject().put("entity", "senderName").put("value", "Gini GmbH")
+                .put("box", box);
+        final JSONObject iban = new JSONObject().put("entity", "iban").put("value", "DE89370400440532013000");
+        final JSONObject extractions = new JSONObject().put("amountToPay", amountToPay)
+                .put("senderName", senderName).put("iban", iban);
+        final JSONArray amounts = new JSONArray()
+                .put(new JSONObject().put("entity", "amount").put("value", "24.99:EUR").put("box", box))
+                .put(new JSONObject().put("entity", "amount").put("value", "21.00:EUR").put("box", box));
+        return new JSONObject().put("extractions", extractions)
+                .put("candidates", new JSONObject().put("amounts", amounts));
+    }
+
+    private JSONObject createLayout(final FakeDocument document) throws JSONException {
+        final JSONArray pages = new JSONArray();
+        final int wordsPerPage = mLayoutWordsPerPage;
+        for (int pageNumber = 1; pageNumber <= document.mPageCount; pageNumber++) {
+            final JSONArray words = new JSONArray();
+            for (int i = 0; i < wordsPerPage; i++) {
+                final double left = 54.0 + (i % 10) * 50.0;
+                final double top = 100.0 + (i / 10) * 12.0;
+                words.put(new JSONObject().put("l", left).put("t", top).put("w", 45.0).put("h", 9.9)
+                        .put("fontSize", 9.9).put("fontFamily", "Arial").put("bold", false).put("text", "word" + i));
+            }
+            final JSONObject line = new JSONObject().put("l", 54.0).put("t", 100.0).put("w", 500.0).put("h", 9.9)
+                    .put("wds", words);
+            final JSONObject paragraph = new JSONObject().put("l", 54.0).put("t", 100.0).put("w", 500.0)
+                    .put("h", 9.9).put("lines", new JSONArray().put(line));
+            final JSONObject textZone = new JSONObject().put("paragraphs", new JSONArray().put(paragraph));
+            pages.put(new JSONObject().put("number", pageNumber).put("sizeX", 595.3).put("sizeY", 841.9)
+                    .put("textZones", new JSONArray().put(textZone)).put("regions", new JSONArray()));
+        }
+        return new JSONObject().put("pages", pages);
+    }
+
+    private static int parseInt(final String value, final int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static Map<String, String> parseQuery(final String query) {
+        final Map<String, String> parameters = new HashMap<String, String>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (final String parameter : query.split("&")) {
+            final int separator = parameter.indexOf('=');
+            try {
+                if (separator < 0) {
+                    parameters.put(URLDecoder.decode(parameter, "UTF-8"), "");
+                } else {
+                    parameters.put(URLDecoder.decode(parameter.substring(0, separator), "UTF-8"),
+                            URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+                }
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return parameters;
+    }
+
+    private static final class Token {
+        private final String mUserId;
+        private volatile long mExpirationTime;
+
+        private Token(final String userId, final long expirationTime) {
+            mUserId = userId;
+            mExpirationTime = expirationTime;
+        }
+    }
+
+    private final class FakeDocument {
+        private final String mId;
+        private final String mName;
+        private final long mCreationTime;
+        private volatile int mPageCount = 1;
+        private volatile String mContentType;
+        private volatile byte[] mContent;
+
+        private FakeDocument(final String id, final String name, final long creationTime) {
+            mId = id;
+            mName = name != null ? name : "document";
+            mCreationTime = creationTime;
+        }
+
+        private boolean isCompleted() {
+            return System.currentTimeMillis() - mCreationTime >= mProcessingTimeMs;
+        }
+
+        private JSONObject toJson() throws JSONException {
+            final String documentUrl = getBaseUrl() + "documents/" + mId;
+            final JSONArray pages = new JSONArray();
+            for (int pageNumber = 1; pageNumber <= mPageCount; pageNumber++) {
+                pages.put(new JSONObject().put("pageNumber", pageNumber).put("images", new JSONObject()
+                        .put("750x900", documentUrl + "/pages/" + pageNumber + "/750x900")
+                        .put("1280x1810", documentUrl + "/pages/" + pageNumber + "/1280x1810")));
+            }
+            return new JSONObject()
+                    .put("id", mId)
+                    .put("creationDate", mCreationTime)
+                    .put("name", mName)
+                    .put("progress", isCompleted() ? "COMPLETED" : "PENDING")
+                    .put("origin", "UPLOAD")
+                    .put("sourceClassification", "SCANNED")
+                    .put("pageCount", mPageCount)
+                    .put("pages", pages)
+                    .put("_links", new JSONObject()
+                            .put("document", documentUrl)
+                            .put("extractions", documentUrl + "/extractions")
+                            .put("layout", documentUrl + "/layout")
+                            .put("processed", documentUrl + "/processed"));
+        }
+    }
+
+    private static final class HttpRequest {
+        private final String mMethod;
+        private final String mPath;
+        private final Map<String, String> mQuery;
+        private final Map<String, String> mHeaders;
+        private final byte[] mBody;
+
+        private HttpRequest(final String method, final String target, final Map<String, String> headers,
+                            final byte[] body) {
+            mMethod = method;
+            final int querySeparator = target.indexOf('?');
+            mPath = querySeparator < 0 ? target : target.substring(0, querySeparator);
+            mQuery = parseQuery(querySeparator < 0 ? null : target.substring(querySeparator + 1));
+            mHeaders = headers;
+            mBody = body;
+        }
+
+        /**
+         * Reads the next request from the stream.
+         *
+         * @return The request or null, if the stream ended before a new request.
+         */
+        static HttpRequest read(final InputStream inputStream) throws IOException {
+            String requestLine = readLine(inputStream);
+            while (requestLine != null && requestLine.isEmpty()) {
+                requestLine = readLine(inputStream);
+            }
+            if (requestLine == null) {
+                return null;
+            }
+            final String[] parts = requestLine.split(" ");
+            if (parts.length < 2) {
+                throw new IOException("Malformed request line: " + requestLine);
+            }
+            final Map<String, String> headers = new HashMap<String, String>();
+            String headerLine;
+            while ((headerLine = readLine(inputStream)) != null && !headerLine.isEmpty()) {
+                final int separator = headerLine.indexOf(':');
+                if (separator > 0) {
+                    headers.put(headerLine.substring(0, separator).trim().toLowerCase(Locale.US),
+                            headerLine.substring(separator + 1).trim());
+                }
+            }
+            final byte[] body;
+            if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+                body = readChunkedBody(inputStream);
+            } else {
+                body = readFully(inputStream, parseInt(headers.get("content-length"), 0));
+            }
+            return new HttpRequest(parts[0], parts[1], headers, body);
+        }
+
+        String getHeader(final String name) {
+            return mHeaders.get(name.toLowerCase(Locale.US));
+        }
+
+        String getQueryParameter(final String name) {
+            return mQuery.get(name);
+        }
+
+        String getBodyAsString() throws IOException {
+            InputStream bodyStream = new ByteArrayInputStream(mBody);
+            if ("gzip".equalsIgnoreCase(getHeader("Content-Encoding"))) {
+                bodyStream = new GZIPInputStream(bodyStream);
+            }
+            return new String(TestUtils.createByteArray(bodyStream), Utils.CHARSET_UTF8);
+        }
+
+        private static byte[] readChunkedBody(final InputStream inputStream) throws IOException {
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            while (true) {
+                final String sizeLine = readLine(inputStream);
+                if (sizeLine == null) {
+                    throw new IOException("Unexpected end of chunked body");
+                }
+                final int size = Integer.parseInt(sizeLine.split(";")[0].trim(), 16);
+                if (size == 0) {
+                    // Skip the trailers.
+                    String trailer;
+                    while ((trailer = readLine(inputStream)) != null && !trailer.isEmpty()) {
+                    }
+                    return body.toByteArray();
+                }
+                body.write(readFully(inputStream, size));
+                readLine(inputStream);
+            }
+        }
+
+        private static byte[] readFully(final InputStream inputStream, final int length) throws IOException {
+            final byte[] data = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                final int read = inputStream.read(data, offset, length - offset);
+                if (read == -1) {
+                    throw new IOException("Unexpected end of body");
+                }
+                offset += read;
+            }
+            return data;
+        }
+
+        private static String readLine(final InputStream inputStream) throws IOException {
+            final StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = inputStream.read()) != -1) {
+                if (c == '\n') {
+                    final int length = line.length();
+                    if (length > 0 && line.charAt(length - 1) == '\r') {
+                        line.setLength(length - 1);
+                    }
+                    return line.toString();
+                }
+                line.append((char) c);
+            }
+            return line.length() > 0 ? line.toString() : null;
+        }
+    }
+
+    private static final class HttpResponse {
+        private final int mStatusCode;
+        private final String mContentType;
+        private final byte[] mBody;
+        private final String mLocation;
+        private final Map<String, String> mHeaders = new LinkedHashMap<String, String>();
+
+        private HttpResponse(final int statusCode, final String contentType, final byte[] body,
+                             final String location) {
+            mStatusCode = statusCode;
+            mContentType = contentType;
+            mBody = body;
+            mLocation = location;
+        }
+
+        static HttpResponse json(final int statusCode, final String body) {
+            return new HttpResponse(statusCode, "application/vnd.gini.v1+json",
+                    body.getBytes(Utils.CHARSET_UTF8), null);
+        }
+
+        static HttpResponse created(final String location) {
+            return new HttpResponse(201, null, new byte[0], location);
+        }
+
+        static HttpResponse noContent() {
+            return new HttpResponse(204, null, new byte[0], null);
+        }
+
+        static HttpResponse notFound() {
+            return json(404, "{\"message\":\"not found\"}");
+        }
+
+        HttpResponse withHeader(final String name, final String value) {
+            mHeaders.put(name, value);
+            return this;
+        }
+
+        void write(final OutputStream outputStream) throws IOException {
+            final StringBuilder head = new StringBuilder();
+            head.append("HTTP/1.1 ").append(mStatusCode).append(' ').append(reasonPhrase()).append("\r\n");
+            if (mContentType != null) {
+                head.append("Content-Type: ").append(mContentType).append("\r\n");
+            }
+            if (mLocation != null) {
+                head.append("Location: ").append(mLocation).append("\r\n");
+            }
+            for (final Map.Entry<String, String> header : mHeaders.entrySet()) {
+                head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+            }
+            head.append("Content-Length: ").append(mBody.length).append("\r\n");
+            head.append("\r\n");
+            outputStream.write(head.toString().getBytes(Utils.CHARSET_UTF8));
+            outputStream.write(mBody);
+            outputStream.flush();
+        }
+
+        private String reasonPhrase() {
+            switch (mStatusCode) {
+                case 200:
+                    return "OK";
+                case 201:
+                    return "Created";
+                case 204:
+                    return "No Content";
+                case 400:
+                    return "Bad Request";
+                case 401:
+                    return "Unauthorized";
+                case 404:
+                    return "Not Found";
+                case 503:
+                    return "Service Unavailable";
+                default:
+                    return "Unknown";
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package net.gini.android.helpers;
+
+import net.gini.android.authorization.CredentialsStore;
+import net.gini.android.authorization.UserCredentials;
+
+/**
+ * A credentials store which keeps the credentials in memory, so tests don't share the anonymous user of the
+ * SharedPreferences.
+ */
+public class InMemoryCredentialsStore implements CredentialsStore {
+
+    private UserCredentials mUserCredentials;
+
+    @Override
+    public synchronized boolean storeUserCredentials(final UserCredentials userCredentials) {
+        mUserCredentials = userCredentials;
+        return true;
+    }
+
+    @Override
+    public synchronized UserCredentials getUserCredentials() {
+        return mUserCredentials;
+    }
+
+    @Override
+    public synchronized boolean deleteUserCredentials() {
+        mUserCredentials = null;
+        return true;
+    }
+}
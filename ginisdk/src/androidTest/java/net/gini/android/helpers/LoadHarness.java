@@ -0,0 +1,238 @@
+package net.gini.android.helpers;
+
+import net.gini.android.DocumentTaskManager;
+import net.gini.android.models.Document;
+import net.gini.android.models.SpecificExtraction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import bolts.Task;
+
+/**
+ * <p>
+ * Drives DocumentTaskManager instances with a number of concurrent users and measures the latency of each operation.
+ * </p>
+ * <p>
+ * Every user runs the typical flow of an app in a loop: upload a document, poll it until it is processed, get the
+ * extractions and send feedback for a corrected extraction. Each user has its own DocumentTaskManager, so it should
+ * be created with its own SDK instance (and credentials store) to simulate different devices.
+ * </p>
+ */
+public class LoadHarness {
+
+    public static final String OPERATION_CREATE_DOCUMENT = "createDocument";
+    public static final String OPERATION_POLL_DOCUMENT = "pollDocument";
+    public static final String OPERATION_GET_EXTRACTIONS = "getExtractions";
+    public static final String OPERATION_SEND_FEEDBACK = "sendFeedback";
+    public static final String OPERATION_SCENARIO = "scenario";
+
+    /**
+     * Creates the DocumentTaskManager of a user.
+     */
+    public interface DocumentTaskManagerFactory {
+        DocumentTaskManager create(int userIndex);
+    }
+
+    private final DocumentTaskManagerFactory mFactory;
+    private final byte[] mDocument;
+
+    public LoadHarness(final DocumentTaskManagerFactory factory, final byte[] document) {
+        mFactory = factory;
+        mDocument = document;
+    }
+
+    /**
+     * Runs the scenario with the given number of concurrent users and waits until all users are done.
+     *
+     * @param users              The number of concurrent users.
+     * @param iterationsPerUser  How often each user runs the scenario.
+     * @param timeoutMs          The time after which the run is aborted.
+     */
+    public Report run(final int users, final int iterationsPerUser, final long timeoutMs)
+            throws InterruptedException {
+        final Report report = new Report(users);
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final CountDownLatch doneSignal = new CountDownLatch(users);
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < users; i++) {
+            final DocumentTaskManager documentTaskManager = mFactory.create(i);
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startSignal.await();
+                        for (int iteration = 0; iteration < iterationsPerUser; iteration++) {
+                            runScenario(documentTaskManager, report);
+                        }
+                    } catch (InterruptedException ignored) {
+                    } finally {
+                        doneSignal.countDown();
+                    }
+                }
+            }, "load-user-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        final long startTime = System.nanoTime();
+        startSignal.countDown();
+        final boolean completed = doneSignal.await(timeoutMs, TimeUnit.MILLISECONDS);
+        report.mDurationNanos = System.nanoTime() - startTime;
+        if (!completed) {
+            for (final Thread thread : threads) {
+                thread.interrupt();
+            }
+            report.mTimedOut = true;
+        }
+        return report;
+    }
+
+    private void runScenario(final DocumentTaskManager documentTaskManager, final Report report)
+            throws InterruptedException {
+        final long scenarioStart = System.nanoTime();
+
+        final Task<Document> createTask = documentTaskManager.createDocument(mDocument, "load-test.jpg",
+                DocumentTaskManager.DocumentType.INVOICE);
+        if (!await(createTask, OPERATION_CREATE_DOCUMENT, report)) {
+            report.record(OPERATION_SCENARIO, System.nanoTime() - scenarioStart, false);
+            return;
+        }
+
+        final Task<Document> pollTask = documentTaskManager.pollDocument(createTask.getResult());
+        if (!await(pollTask, OPERATION_POLL_DOCUMENT, report)) {
+            report.record(OPERATION_SCENARIO, System.nanoTime() - scenarioStart, false);
+            return;
+        }
+
+        final Task<Map<String, SpecificExtraction>> extractionsTask =
+                documentTaskManager.getExtractions(pollTask.getResult());
+        if (!await(extractionsTask, OPERATION_GET_EXTRACTIONS, report)) {
+            report.record(OPERATION_SCENARIO, System.nanoTime() - scenarioStart, false);
+            return;
+        }
+
+        final Map<String, SpecificExtraction> extractions = extractionsTask.getResult();
+        final SpecificExtraction amountToPay = extractions.get("amountToPay");
+        if (amountToPay != null) {
+            amountToPay.setValue("42.00:EUR");
+        }
+        Task<Document> feedbackTask;
+        try {
+            feedbackTask = documentTaskManager.sendFeedbackForDirtyExtractions(pollTask.getResult(), extractions);
+        } catch (Exception e) {
+            feedbackTask = Task.forError(e);
+        }
+        final boolean succeeded = await(feedbackTask, OPERATION_SEND_FEEDBACK, report);
+        report.record(OPERATION_SCENARIO, System.nanoTime() - scenarioStart, succeeded);
+    }
+
+    private boolean await(final Task<?> task, final String operation, final Report report)
+            throws InterruptedException {
+        final long start = System.nanoTime();
+        task.waitForCompletion();
+        final boolean succeeded = !task.isFaulted() && !task.isCancelled();
+        report.record(operation, System.nanoTime() - start, succeeded);
+        if (!succeeded) {
+            report.recordError(operation, task.getError());
+        }
+        return succeeded;
+    }
+
+    /**
+     * The measured latencies and errors of a run.
+     */
+    public static class Report {
+
+        private final int mUsers;
+        private final Map<String, List<Long>> mLatencies = new LinkedHashMap<String, List<Long>>();
+        private final Map<String, Integer> mFailures = new LinkedHashMap<String, Integer>();
+        private final List<String> mErrors = new ArrayList<String>();
+        private volatile long mDurationNanos;
+        private volatile boolean mTimedOut;
+
+        Report(final int users) {
+            mUsers = users;
+            for (final String operation : Arrays.asList(OPERATION_CREATE_DOCUMENT, OPERATION_POLL_DOCUMENT,
+                    OPERATION_GET_EXTRACTIONS, OPERATION_SEND_FEEDBACK, OPERATION_SCENARIO)) {
+                mLatencies.put(operation, new ArrayList<Long>());
+                mFailures.put(operation, 0);
+            }
+        }
+
+        synchronized void record(final String operation, final long latencyNanos, final boolean succeeded) {
+            if (succeeded) {
+                mLatencies.get(operation).add(latencyNanos);
+            } else {
+                mFailures.put(operation, mFailures.get(operation) + 1);
+            }
+        }
+
+        synchronized void recordError(final String operation, final Exception error) {
+            mErrors.add(operation + ": " + error);
+        }
+
+        public boolean hasTimedOut() {
+            return mTimedOut;
+        }
+
+        public synchronized int getSuccessCount(final String operation) {
+            return mLatencies.get(operation).size();
+        }
+
+        public synchronized int getFailureCount(final String operation) {
+            return mFailures.get(operation);
+        }
+
+        public synchronized List<String> getErrors() {
+            return new ArrayList<String>(mErrors);
+        }
+
+        /**
+         * Returns the given percentile (between 0 and 100) of the successful operation's latencies in milliseconds
+         * using the nearest-rank method.
+         */
+        public synchronized double getLatencyPercentileMs(final String operation, final double percentile) {
+            final List<Long> latencies = new ArrayList<Long>(mLatencies.get(operation));
+            if (latencies.isEmpty()) {
+                return Double.NaN;
+            }
+            Collections.sort(latencies);
+            final int rank = (int) Math.ceil(percentile / 100.0 * latencies.size());
+            return latencies.get(Math.max(0, Math.min(latencies.size() - 1, rank - 1))) / 1e6;
+        }
+
+        /**
+         * The number of successfully completed scenarios per second.
+         */
+        public double getThroughput() {
+            return getSuccessCount(OPERATION_SCENARIO) / (mDurationNanos / 1e9);
+        }
+
+        public double getDurationMs() {
+            return mDurationNanos / 1e6;
+        }
+
+        @Override
+        public synchronized String toString() {
+            final StringBuilder builder = new StringBuilder();
+            builder.append(String.format(Locale.US, "%d users, %.0f ms, %.2f scenarios/s%s%n", mUsers,
+                    getDurationMs(), getThroughput(), mTimedOut ? " (timed out)" : ""));
+            builder.append(String.format(Locale.US, "%-16s %6s %6s %9s %9s %9s %9s%n", "operation", "ok", "failed",
+                    "p50 ms", "p90 ms", "p99 ms", "max ms"));
+            for (final String operation : mLatencies.keySet()) {
+                builder.append(String.format(Locale.US, "%-16s %6d %6d %9.1f %9.1f %9.1f %9.1f%n", operation,
+                        getSuccessCount(operation), getFailureCount(operation),
+                        getLatencyPercentileMs(operation, 50), getLatencyPercentileMs(operation, 90),
+                        getLatencyPercentileMs(operation, 99), getLatencyPercentileMs(operation, 100)));
+            }
+            return builder.toString();
+        }
+    }
+}
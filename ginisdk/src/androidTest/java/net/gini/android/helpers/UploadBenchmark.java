@@ -0,0 +1,371 @@
+package net.gini.android.helpers;
+
+import android.net.Uri;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import bolts.Task;
+
+/**
+ * <p>
+ * Measures the throughput, the time-to-Uri and the heap usage of concurrent document uploads.
+ * </p>
+ * <p>
+ * The benchmark runs a matrix of payload sizes and concurrency levels. For every cell the given number of uploads are
+ * distributed over as many worker threads as the concurrency level, each waiting for its upload to resolve to the
+ * document's Uri before starting the next one. The results can be written as JSON with {@link #toJson(Map, List)}
+ * and compared to the results of a previous SDK version with {@link #findRegressions(JSONObject, JSONObject, double)}.
+ * </p>
+ */
+public class UploadBenchmark {
+
+    public static final int SCHEMA_VERSION = 1;
+
+    private static final long HEAP_SAMPLING_INTERVAL_MS = 5;
+
+    /**
+     * Uploads a document and resolves to its Uri.
+     */
+    public interface Uploader {
+        Task<Uri> upload(byte[] documentData);
+    }
+
+    private final Uploader mUploader;
+
+    public UploadBenchmark(final Uploader uploader) {
+        mUploader = uploader;
+    }
+
+    /**
+     * Runs every combination of the given payload sizes and concurrency levels.
+     *
+     * @param payloadSizes      The payload sizes in bytes.
+     * @param concurrencyLevels The numbers of uploads which are running at the same time.
+     * @param uploadsPerCell    The number of uploads of every combination.
+     * @param timeoutMs         The time after which a combination is aborted.
+     */
+    public List<Measurement> run(final int[] payloadSizes, final int[] concurrencyLevels, final int uploadsPerCell,
+                                 final long timeoutMs) throws InterruptedException {
+        final List<Measurement> measurements = new ArrayList<Measurement>();
+        for (final int payloadSize : payloadSizes) {
+            for (final int concurrency : concurrencyLevels) {
+                measurements.add(measure(payloadSize, concurrency, uploadsPerCell, timeoutMs));
+            }
+        }
+        return measurements;
+    }
+
+    /**
+     * Runs the given number of uploads of a random payload with the given concurrency.
+     */
+    public Measurement measure(final int payloadSize, final int concurrency, final int uploads, final long timeoutMs)
+            throws InterruptedException {
+        final byte[] payload = createPayload(payloadSize);
+        final Measurement measurement = new Measurement(payloadSize, concurrency, uploads);
+        final AtomicInteger remainingUploads = new AtomicInteger(uploads);
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final CountDownLatch doneSignal = new CountDownLatch(concurrency);
+        final List<Thread> workers = new ArrayList<Thread>();
+        for (int i = 0; i < concurrency; i++) {
+            final Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startSignal.await();
+                        while (remainingUploads.getAndDecrement() > 0) {
+                            final long start = System.nanoTime();
+                            final Task<Uri> uploadTask = mUploader.upload(payload);
+                            uploadTask.waitForCompletion();
+                            measurement.record(System.nanoTime() - start,
+                                    !uploadTask.isFaulted() && !uploadTask.isCancelled());
+                        }
+                    } catch (InterruptedException ignored) {
+                    } finally {
+                        doneSignal.countDown();
+                    }
+                }
+            }, "upload-benchmark-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+
+        // Only the heap used by the uploads is of interest, so the garbage of previous cells is collected first.
+        final Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        measurement.mBaselineHeapBytes = runtime.totalMemory() - runtime.freeMemory();
+        final HeapSampler heapSampler = new HeapSampler();
+        heapSampler.start();
+
+        final long startTime = System.nanoTime();
+        startSignal.countDown();
+        final boolean completed = doneSignal.await(timeoutMs, TimeUnit.MILLISECONDS);
+        measurement.mDurationNanos = System.nanoTime() - startTime;
+
+        heapSampler.interrupt();
+        heapSampler.join();
+        measurement.mPeakHeapBytes = Math.max(measurement.mBaselineHeapBytes, heapSampler.mPeakHeapBytes);
+        if (!completed) {
+            for (final Thread worker : workers) {
+                worker.interrupt();
+            }
+            measurement.mTimedOut = true;
+        }
+        return measurement;
+    }
+
+    private static byte[] createPayload(final int size) {
+        // Random bytes can't be compressed by any layer between the SDK and the server.
+        final byte[] payload = new byte[size];
+        new Random(size).nextBytes(payload);
+        return payload;
+    }
+
+    /**
+     * Creates the JSON representation of the measurements.
+     *
+     * @param metadata Describes the environment of the run, e.g. the SDK version and the device.
+     */
+    public static JSONObject toJson(final Map<String, String> metadata, final List<Measurement> measurements)
+            throws JSONException {
+        final JSONObject json = new JSONObject();
+        json.put("schemaVersion", SCHEMA_VERSION);
+        final JSONObject metadataJson = new JSONObject();
+        for (final Map.Entry<String, String> entry : metadata.entrySet()) {
+            metadataJson.put(entry.getKey(), entry.getValue());
+        }
+        json.put("metadata", metadataJson);
+        final JSONArray measurementsJson = new JSONArray();
+        for (final Measurement measurement : measurements) {
+            measurementsJson.put(measurement.toJson());
+        }
+        json.put("measurements", measurementsJson);
+        return json;
+    }
+
+    /**
+     * Compares the measurements of two runs. Only the combinations of payload size and concurrency which were measured
+     * in both runs are compared.
+     *
+     * @param baseline  The results of the reference run, as created by {@link #toJson(Map, List)}.
+     * @param current   The results of the run which is checked.
+     * @param tolerance The relative deviation which is accepted, e.g. 0.2 for 20%.
+     *
+     * @return A description of every metric which got worse by more than the tolerance. Empty, if there were no
+     * regressions.
+     */
+    public static List<String> findRegressions(final JSONObject baseline, final JSONObject current,
+                                               final double tolerance) throws JSONException {
+        final Map<String, JSONObject> baselineMeasurements = indexMeasurements(baseline);
+        final Map<String, JSONObject> currentMeasurements = indexMeasurements(current);
+        final List<String> regressions = new ArrayList<String>();
+        for (final Map.Entry<String, JSONObject> entry : currentMeasurements.entrySet()) {
+            final JSONObject reference = baselineMeasurements.get(entry.getKey());
+            if (reference == null) {
+                continue;
+            }
+            final JSONObject measurement = entry.getValue();
+            final double uploadsPerSecond = measurement.getDouble("uploadsPerSecond");
+            final double referenceUploadsPerSecond = reference.getDouble("uploadsPerSecond");
+            if (uploadsPerSecond < referenceUploadsPerSecond * (1 - tolerance)) {
+                regressions.add(describe(entry.getKey(), "uploadsPerSecond", referenceUploadsPerSecond,
+                        uploadsPerSecond));
+            }
+            for (final String metric : new String[]{"p50Ms", "p99Ms", "peakHeapBytes"}) {
+                final double value = measurement.getDouble(metric);
+                final double referenceValue = reference.getDouble(metric);
+                if (value > referenceValue * (1 + tolerance)) {
+                    regressions.add(describe(entry.getKey(), metric, referenceValue, value));
+                }
+            }
+        }
+        return regressions;
+    }
+
+    private static Map<String, JSONObject> indexMeasurements(final JSONObject results) throws JSONException {
+        final int schemaVersion = results.getInt("schemaVersion");
+        if (schemaVersion != SCHEMA_VERSION) {
+            throw new JSONException("Unsupported schema version " + schemaVersion);
+        }
+        final Map<String, JSONObject> measurements = new HashMap<String, JSONObject>();
+        final JSONArray measurementsJson = results.getJSONArray("measurements");
+        for (int i = 0; i < measurementsJson.length(); i++) {
+            final JSONObject measurement = measurementsJson.getJSONObject(i);
+            measurements.put(measurement.getInt("payloadBytes") + " bytes x " + measurement.getInt("concurrency"),
+                    measurement);
+        }
+        return measurements;
+    }
+
+    private static String describe(final String cell, final String metric, final double reference,
+                                   final double value) {
+        return String.format(Locale.US, "%s: %s %.1f -> %.1f", cell, metric, reference, value);
+    }
+
+    /**
+     * Describes the metadata of a results JSON, for log output.
+     */
+    public static String describeMetadata(final JSONObject results) throws JSONException {
+        final JSONObject metadata = results.getJSONObject("metadata");
+        final StringBuilder builder = new StringBuilder();
+        final Iterator<?> keys = metadata.keys();
+        while (keys.hasNext()) {
+            final String key = (String) keys.next();
+            builder.append(key).append('=').append(metadata.getString(key));
+            if (keys.hasNext()) {
+                builder.append(", ");
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Samples the used heap until it is interrupted.
+     */
+    private static class HeapSampler extends Thread {
+
+        private volatile long mPeakHeapBytes;
+
+        HeapSampler() {
+            super("upload-benchmark-heap");
+        }
+
+        @Override
+        public void run() {
+            final Runtime runtime = Runtime.getRuntime();
+            while (!isInterrupted()) {
+                mPeakHeapBytes = Math.max(mPeakHeapBytes, runtime.totalMemory() - runtime.freeMemory());
+                try {
+                    Thread.sleep(HEAP_SAMPLING_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * The results of one combination of payload size and concurrency.
+     */
+    public static class Measurement {
+
+        private final int mPayloadBytes;
+        private final int mConcurrency;
+        private final int mUploads;
+        private final List<Long> mLatencies = new ArrayList<Long>();
+        private int mFailures;
+        private volatile long mDurationNanos;
+        private volatile long mBaselineHeapBytes;
+        private volatile long mPeakHeapBytes;
+        private volatile boolean mTimedOut;
+
+        Measurement(final int payloadBytes, final int concurrency, final int uploads) {
+            mPayloadBytes = payloadBytes;
+            mConcurrency = concurrency;
+            mUploads = uploads;
+        }
+
+        synchronized void record(final long latencyNanos, final boolean succeeded) {
+            if (succeeded) {
+                mLatencies.add(latencyNanos);
+            } else {
+                mFailures++;
+            }
+        }
+
+        public int getPayloadBytes() {
+            return mPayloadBytes;
+        }
+
+        public int getConcurrency() {
+            return mConcurrency;
+        }
+
+        public synchronized int getSuccessCount() {
+            return mLatencies.size();
+        }
+
+        public synchronized int getFailureCount() {
+            return mFailures;
+        }
+
+        public boolean hasTimedOut() {
+            return mTimedOut;
+        }
+
+        /**
+         * The number of successful uploads per second.
+         */
+        public double getUploadsPerSecond() {
+            return getSuccessCount() / (mDurationNanos / 1e9);
+        }
+
+        /**
+         * Returns the given percentile (between 0 and 100) of the time until the upload resolved to the Uri in
+         * milliseconds using the nearest-rank method.
+         */
+        public synchronized double getLatencyPercentileMs(final double percentile) {
+            if (mLatencies.isEmpty()) {
+                return Double.NaN;
+            }
+            final List<Long> latencies = new ArrayList<Long>(mLatencies);
+            Collections.sort(latencies);
+            final int rank = (int) Math.ceil(percentile / 100.0 * latencies.size());
+            return latencies.get(Math.max(0, Math.min(latencies.size() - 1, rank - 1))) / 1e6;
+        }
+
+        /**
+         * The highest sampled heap usage during the uploads, including the heap which was used before they started.
+         */
+        public long getPeakHeapBytes() {
+            return mPeakHeapBytes;
+        }
+
+        /**
+         * The heap usage directly before the uploads started.
+         */
+        public long getBaselineHeapBytes() {
+            return mBaselineHeapBytes;
+        }
+
+        JSONObject toJson() throws JSONException {
+            final JSONObject json = new JSONObject();
+            json.put("payloadBytes", mPayloadBytes);
+            json.put("concurrency", mConcurrency);
+            json.put("uploads", mUploads);
+            json.put("succeeded", getSuccessCount());
+            json.put("failed", getFailureCount());
+            json.put("timedOut", mTimedOut);
+            json.put("durationMs", mDurationNanos / 1e6);
+            json.put("uploadsPerSecond", getUploadsPerSecond());
+            // JSON has no representation for NaN.
+            json.put("p50Ms", getSuccessCount() > 0 ? getLatencyPercentileMs(50) : 0);
+            json.put("p99Ms", getSuccessCount() > 0 ? getLatencyPercentileMs(99) : 0);
+            json.put("baselineHeapBytes", mBaselineHeapBytes);
+            json.put("peakHeapBytes", mPeakHeapBytes);
+            return json;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%8d bytes x %2d: %3d ok %3d failed, %6.2f uploads/s, p50 %7.1f ms, p99 %7.1f ms, peak heap %6d KB%s",
+                    mPayloadBytes, mConcurrency, getSuccessCount(), getFailureCount(), getUploadsPerSecond(),
+                    getLatencyPercentileMs(50), getLatencyPercentileMs(99), mPeakHeapBytes / 1024,
+                    mTimedOut ? " (timed out)" : "");
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package net.gini.android.imaging;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.test.InstrumentationTestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AdaptiveJpegEncoderTest extends InstrumentationTestCase {
+
+    /**
+     * Writes 100 bytes per quality step, so the size of a "JPEG" is 100 times its quality.
+     */
+    private static class LinearCompressor implements AdaptiveJpegEncoder.Compressor {
+
+        private final List<Integer> mQualities = new ArrayList<Integer>();
+
+        @Override
+        public int compress(final int quality, final ByteArrayOutputStream outputStream) {
+            mQualities.add(quality);
+            outputStream.reset();
+            outputStream.write(new byte[quality * 100], 0, quality * 100);
+            return outputStream.size();
+        }
+    }
+
+    private Bitmap createBitmap() throws IOException {
+        final InputStream inputStream = getInstrumentation().getContext().getResources().getAssets().open("yoda.jpg");
+        try {
+            return BitmapFactory.decodeStream(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    public void testBuildRequiresBudget() {
+        try {
+            new AdaptiveJpegEncoder.Builder().build();
+            fail("Exception not thrown");
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    public void testQualityRangeIsChecked() {
+        try {
+            new AdaptiveJpegEncoder.Builder().setQualityRange(60, 50);
+            fail("Exception not thrown");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    public void testSmallerBudgetIsUsed() {
+        final AdaptiveJpegEncoder encoder = new AdaptiveJpegEncoder.Builder().setMaxBytes(100000)
+                .setMaxBytesPerPixel(0.5).build();
+
+        assertEquals(50000, encoder.getBudget(1000, 100));
+        assertEquals(100000, encoder.getBudget(1000, 1000));
+    }
+
+    public void testSearchReturnsMaxQualityIfItFits() {
+        final LinearCompressor compressor = new LinearCompressor();
+
+        final AdaptiveJpegEncoder.QualitySearch search =
+                AdaptiveJpegEncoder.searchQuality(compressor, 10000, 30, 90, new ByteArrayOutputStream());
+
+        assertTrue(search.mFits);
+        assertEquals(90, search.mQuality);
+        assertEquals(9000, search.mJpeg.length);
+        assertEquals(1, search.mEncodingCount);
+    }
+
+    public void testSearchFindsHighestFittingQuality() {
+        final LinearCompressor compressor = new LinearCompressor();
+
+        final AdaptiveJpegEncoder.QualitySearch search =
+                AdaptiveJpegEncoder.searchQuality(compressor, 5550, 30, 90, new ByteArrayOutputStream());
+
+        assertTrue(search.mFits);
+        assertEquals(55, search.mQuality);
+        assertEquals(5500, search.mJpeg.length);
+        assertEquals(compressor.mQualities.size(), search.mEncodingCount);
+        assertTrue(search.mEncodingCount <= 8);
+    }
+
+    public void testSearchReturnsMinQualityIfNothingFits() {
+        final LinearCompressor compressor = new LinearCompressor();
+
+        final AdaptiveJpegEncoder.QualitySearch search =
+                AdaptiveJpegEncoder.searchQuality(compressor, 1000, 30, 90, new ByteArrayOutputStream());
+
+        assertFalse(search.mFits);
+        assertEquals(30, search.mQuality);
+        assertEquals(3000, search.mJpeg.length);
+        assertEquals(compressor.mQualities.size(), search.mEncodingCount);
+        assertEquals(2, search.mEncodingCount);
+    }
+
+    public void testSearchCountsOneEncodingIfQualityRangeHasOneQuality() {
+        final LinearCompressor compressor = new LinearCompressor();
+
+        final AdaptiveJpegEncoder.QualitySearch search =
+                AdaptiveJpegEncoder.searchQuality(compressor, 1000, 50, 50, new ByteArrayOutputStream());
+
+        assertFalse(search.mFits);
+        assertEquals(50, search.mQuality);
+        assertEquals(1, compressor.mQualities.size());
+        assertEquals(1, search.mEncodingCount);
+    }
+
+    public void testEncodeFitsIntoBudget() throws IOException {
+        final Bitmap bitmap = createBitmap();
+        final AdaptiveJpegEncoder.Result[] reported = new AdaptiveJpegEncoder.Result[1];
+        final AdaptiveJpegEncoder encoder = new AdaptiveJpegEncoder.Builder().setMaxBytes(20000)
+                .setMinLongEdge(100)
+                .setListener(new AdaptiveJpegEncoder.Listener() {
+                    @Override
+                    public void onEncoded(final AdaptiveJpegEncoder.Result result) {
+                        reported[0] = result;
+                    }
+                }).build();
+
+        final AdaptiveJpegEncoder.Result result = encoder.encode(bitmap);
+
+        assertTrue(result.toString(), result.isWithinBudget());
+        assertTrue(result.getJpeg().length <= 20000);
+        assertSame(result, reported[0]);
+        final Bitmap decoded = BitmapFactory.decodeByteArray(result.getJpeg(), 0, result.getJpeg().length);
+        assertEquals(result.getWidth(), decoded.getWidth());
+        assertEquals(result.getHeight(), decoded.getHeight());
+        assertFalse(bitmap.isRecycled());
+    }
+
+    public void testEncodeWithoutDownscalingKeepsTheSize() throws IOException {
+        final Bitmap bitmap = createBitmap();
+        final AdaptiveJpegEncoder encoder = new AdaptiveJpegEncoder.Builder().setMaxBytes(1)
+                .setDownscalingEnabled(false).build();
+
+        final AdaptiveJpegEncoder.Result result = encoder.encode(bitmap);
+
+        assertFalse(result.isWithinBudget());
+        assertEquals(AdaptiveJpegEncoder.DEFAULT_MIN_QUALITY, result.getQuality());
+        assertEquals(bitmap.getWidth(), result.getWidth());
+        assertEquals(bitmap.getHeight(), result.getHeight());
+    }
+}
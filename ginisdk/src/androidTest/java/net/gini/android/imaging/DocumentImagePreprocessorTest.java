@@ -0,0 +1,178 @@
+package net.gini.android.imaging;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.test.InstrumentationTestCase;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public class DocumentImagePreprocessorTest extends InstrumentationTestCase {
+
+    private static final int DARK = 40;
+    private static final int BRIGHT = 220;
+
+    private Bitmap createBitmap() throws IOException {
+        final InputStream inputStream = getInstrumentation().getContext().getResources().getAssets().open("yoda.jpg");
+        try {
+            return BitmapFactory.decodeStream(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Creates the luminances of a dark image with a bright page in the given bounds.
+     */
+    private static int[] createPage(final int width, final int height, final int left, final int top,
+                                    final int right, final int bottom) {
+        final int[] luminances = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final boolean onPage = x >= left && x < right && y >= top && y < bottom;
+                luminances[y * width + x] = onPage ? BRIGHT : DARK;
+            }
+        }
+        return luminances;
+    }
+
+    public void testTargetDpiIsChecked() {
+        try {
+            new DocumentImagePreprocessor.Builder().setTargetDpi(0);
+            fail("Exception not thrown");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    public void testLuminance() {
+        assertEquals(0, DocumentImagePreprocessor.luminance(0xff000000));
+        assertEquals(255, DocumentImagePreprocessor.luminance(0xffffffff));
+        assertTrue(DocumentImagePreprocessor.luminance(0xff00ff00) > DocumentImagePreprocessor.luminance(0xffff0000));
+        assertTrue(DocumentImagePreprocessor.luminance(0xffff0000) > DocumentImagePreprocessor.luminance(0xff0000ff));
+    }
+
+    public void testAdjustPixelToGrayscaleKeepsAlpha() {
+        final int gray = DocumentImagePreprocessor.adjustPixel(0x80336699, null, true);
+
+        assertEquals(0x80, gray >>> 24);
+        assertEquals((gray >> 16) & 0xff, gray & 0xff);
+        assertEquals((gray >> 8) & 0xff, gray & 0xff);
+    }
+
+    public void testContrastLutStretchesTheRange() {
+        final int[] histogram = new int[256];
+        histogram[50] = 500;
+        histogram[150] = 500;
+
+        final int[] lut = DocumentImagePreprocessor.contrastLut(histogram, 0.01f);
+
+        assertEquals(0, lut[50]);
+        assertEquals(255, lut[150]);
+        assertEquals(128, lut[100]);
+        assertEquals(0, lut[0]);
+        assertEquals(255, lut[255]);
+    }
+
+    public void testContrastLutClipsOutliers() {
+        final int[] histogram = new int[256];
+        histogram[0] = 1;
+        histogram[100] = 1000;
+        histogram[200] = 1000;
+        histogram[255] = 1;
+
+        final int[] lut = DocumentImagePreprocessor.contrastLut(histogram, 0.01f);
+
+        assertEquals(0, lut[100]);
+        assertEquals(255, lut[200]);
+    }
+
+    public void testContrastLutOfUniformImageIsIdentity() {
+        final int[] histogram = new int[256];
+        histogram[128] = 1000;
+
+        final int[] lut = DocumentImagePreprocessor.contrastLut(histogram, 0.01f);
+
+        for (int i = 0; i < 256; i++) {
+            assertEquals(i, lut[i]);
+        }
+    }
+
+    public void testFindPageBounds() {
+        final int[] luminances = createPage(100, 80, 10, 5, 90, 70);
+
+        final int[] bounds = DocumentImagePreprocessor.findPageBounds(luminances, 100, 80);
+
+        assertEquals(10, bounds[0]);
+        assertEquals(5, bounds[1]);
+        assertEquals(90, bounds[2]);
+        assertEquals(70, bounds[3]);
+    }
+
+    public void testFindPageBoundsIgnoresDarkTextOnThePage() {
+        final int[] luminances = createPage(100, 80, 10, 5, 90, 70);
+        for (int x = 20; x < 80; x++) {
+            luminances[30 * 100 + x] = DARK;
+        }
+
+        final int[] bounds = DocumentImagePreprocessor.findPageBounds(luminances, 100, 80);
+
+        assertEquals(5, bounds[1]);
+        assertEquals(70, bounds[3]);
+    }
+
+    public void testFindPageBoundsRejectsSmallPages() {
+        final int[] luminances = createPage(100, 80, 40, 30, 60, 50);
+
+        assertNull(DocumentImagePreprocessor.findPageBounds(luminances, 100, 80));
+    }
+
+    public void testProcessCropsToThePage() {
+        final Bitmap bitmap = Bitmap.createBitmap(400, 600, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.DKGRAY);
+        for (int y = 60; y < 540; y++) {
+            for (int x = 40; x < 360; x++) {
+                bitmap.setPixel(x, y, Color.WHITE);
+            }
+        }
+        final DocumentImagePreprocessor preprocessor = new DocumentImagePreprocessor.Builder()
+                .setDownscalingEnabled(false)
+                .setGrayscaleEnabled(false)
+                .setContrastNormalizationEnabled(false)
+                .build();
+
+        final Bitmap processed = preprocessor.process(bitmap);
+
+        assertTrue(Math.abs(processed.getWidth() - 320) <= 4);
+        assertTrue(Math.abs(processed.getHeight() - 480) <= 4);
+        assertFalse(bitmap.isRecycled());
+    }
+
+    public void testProcessDownscalesToTheTargetDpi() throws IOException {
+        final Bitmap bitmap = createBitmap();
+        final DocumentImagePreprocessor preprocessor = new DocumentImagePreprocessor.Builder()
+                .setCroppingEnabled(false)
+                .setTargetDpi(10)
+                .build();
+
+        final Bitmap processed = preprocessor.process(bitmap);
+
+        assertEquals(Math.round(DocumentImagePreprocessor.A4_LONG_EDGE_INCHES * 10),
+                Math.max(processed.getWidth(), processed.getHeight()));
+        final int pixel = processed.getPixel(processed.getWidth() / 2, processed.getHeight() / 2);
+        assertEquals(Color.red(pixel), Color.green(pixel));
+        assertEquals(Color.green(pixel), Color.blue(pixel));
+    }
+
+    public void testProcessWithoutStagesReturnsTheBitmap() throws IOException {
+        final Bitmap bitmap = createBitmap();
+        final DocumentImagePreprocessor preprocessor = new DocumentImagePreprocessor.Builder()
+                .setCroppingEnabled(false)
+                .setDownscalingEnabled(false)
+                .setGrayscaleEnabled(false)
+                .setContrastNormalizationEnabled(false)
+                .build();
+
+        assertSame(bitmap, preprocessor.process(bitmap));
+    }
+}
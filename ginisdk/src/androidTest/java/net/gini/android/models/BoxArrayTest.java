@@ -0,0 +1,103 @@
+package net.gini.android.models;
+
+import android.test.AndroidTestCase;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.util.Arrays;
+
+import static net.gini.android.helpers.ParcelHelper.doRoundTrip;
+
+public class BoxArrayTest extends AndroidTestCase {
+
+    private BoxArray createBoxArray() {
+        return new BoxArray.Builder(1)
+                .add(1, 2, 3, 4, 5)
+                .add(new Box(2, 10, 20, 30, 40))
+                .add(3, 0.5, 0.25, 100, 200)
+                .build();
+    }
+
+    public void testBuilderGrows() {
+        final BoxArray boxes = createBoxArray();
+
+        assertEquals(3, boxes.size());
+        assertEquals(2, boxes.getPageNumber(1));
+        assertEquals(10., boxes.getLeft(1));
+        assertEquals(20., boxes.getTop(1));
+        assertEquals(30., boxes.getWidth(1));
+        assertEquals(40., boxes.getHeight(1));
+        assertEquals(0.25, boxes.getTop(2));
+    }
+
+    public void testGetCreatesBox() {
+        final Box box = createBoxArray().get(2);
+
+        assertEquals(3, box.getPageNumber());
+        assertEquals(0.5, box.getLeft());
+        assertEquals(0.25, box.getTop());
+        assertEquals(100., box.getWidth());
+        assertEquals(200., box.getHeight());
+    }
+
+    public void testCursorIsReusable() {
+        final BoxArray boxes = createBoxArray();
+        final BoxArray.Cursor cursor = boxes.newCursor();
+
+        assertEquals(1, cursor.getPageNumber());
+        assertSame(cursor, cursor.moveTo(1));
+        assertEquals(1, cursor.getIndex());
+        assertEquals(30., cursor.getWidth());
+        assertTrue(cursor.contains(2, 40, 60));
+        assertFalse(cursor.contains(1, 40, 60));
+        assertEquals(200., cursor.moveTo(2).toBox().getHeight());
+
+        try {
+            cursor.moveTo(3);
+            fail("IndexOutOfBoundsException expected");
+        } catch (IndexOutOfBoundsException ignored) {
+        }
+    }
+
+    public void testFromApiResponse() throws JSONException {
+        final JSONArray responseData = new JSONArray("[{\"page\":1,\"left\":10.5,\"top\":20,\"width\":30,\"height\":5},"
+                + "{\"page\":2,\"left\":1,\"top\":2,\"width\":3,\"height\":4}]");
+
+        final BoxArray boxes = BoxArray.fromApiResponse(responseData);
+
+        assertEquals(2, boxes.size());
+        assertEquals(10.5, boxes.getLeft(0));
+        assertEquals(2, boxes.getPageNumber(1));
+        assertEquals(4., boxes.getHeight(1));
+    }
+
+    public void testFromBoxes() {
+        final BoxArray boxes = BoxArray.fromBoxes(Arrays.asList(new Box(1, 2, 3, 4, 5), new Box(6, 7, 8, 9, 10)));
+
+        assertEquals(2, boxes.size());
+        assertEquals(6, boxes.getPageNumber(1));
+        assertEquals(10., boxes.getHeight(1));
+    }
+
+    public void testIsParcelable() {
+        final BoxArray boxes = doRoundTrip(createBoxArray(), BoxArray.CREATOR);
+
+        assertEquals(3, boxes.size());
+        assertEquals(2, boxes.getPageNumber(1));
+        assertEquals(0.5, boxes.getLeft(2));
+        assertEquals(0.25, boxes.getTop(2));
+        assertEquals(100., boxes.getWidth(2));
+        assertEquals(200., boxes.getHeight(2));
+    }
+
+    public void testBoxIndexAcceptsBoxArray() {
+        final BoxArray boxes = createBoxArray();
+        final BoxIndex.Builder<Integer> builder = new BoxIndex.Builder<Integer>();
+        for (int i = 0; i < boxes.size(); i++) {
+            builder.add(boxes, i, i);
+        }
+
+        assertEquals(Integer.valueOf(1), builder.build().findFirstAt(2, 40, 60));
+    }
+}
@@ -0,0 +1,118 @@
+package net.gini.android.models;
+
+import android.test.AndroidTestCase;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class BoxIndexTest extends AndroidTestCase {
+
+    public void testFindAtReturnsSmallestBoxFirst() {
+        final BoxIndex<String> index = new BoxIndex.Builder<String>()
+                .add(new Box(1, 0, 0, 100, 100), "large")
+                .add(new Box(1, 10, 10, 20, 20), "small")
+                .add(new Box(1, 5, 5, 50, 50), "medium")
+                .add(new Box(2, 10, 10, 20, 20), "other page")
+                .build();
+
+        assertEquals(Arrays.asList("small", "medium", "large"), index.findAt(1, 15, 15));
+        assertEquals(Arrays.asList("medium", "large"), index.findAt(1, 40, 40));
+        assertEquals("large", index.findFirstAt(1, 100, 100));
+        assertNull(index.findFirstAt(1, 101, 50));
+        assertEquals(Collections.singletonList("other page"), index.findAt(2, 15, 15));
+        assertTrue(index.findAt(3, 15, 15).isEmpty());
+    }
+
+    public void testFindIntersectingReturnsEachBoxOnce() {
+        final BoxIndex<String> index = new BoxIndex.Builder<String>()
+                .add(new Box(1, 0, 0, 1000, 1000), "page")
+                .add(new Box(1, 10, 10, 10, 10), "a")
+                .add(new Box(1, 900, 900, 10, 10), "b")
+                .add(new Box(1, 500, 10, 10, 10), "c")
+                .build();
+
+        assertEquals(Arrays.asList("page", "a", "c"), index.findIntersecting(new Box(1, 0, 0, 600, 50)));
+        assertEquals(Arrays.asList("page", "a", "b", "c"), index.findIntersecting(new Box(1, -10, -10, 2000, 2000)));
+        assertTrue(index.findIntersecting(new Box(1, 2000, 2000, 10, 10)).isEmpty());
+        assertTrue(index.findIntersecting(new Box(2, 0, 0, 10, 10)).isEmpty());
+    }
+
+    public void testQueriesMatchLinearScan() {
+        final Random random = new Random(42);
+        final BoxIndex.Builder<Integer> builder = new BoxIndex.Builder<Integer>();
+        final List<Box> boxes = new ArrayList<Box>();
+        for (int i = 0; i < 2000; i++) {
+            final Box box = new Box(1 + random.nextInt(2), random.nextDouble() * 600, random.nextDouble() * 800,
+                    random.nextDouble() * 80, random.nextDouble() * 20);
+            boxes.add(box);
+            builder.add(box, i);
+        }
+        final BoxIndex<Integer> index = builder.build();
+        assertEquals(2000, index.size());
+
+        for (int i = 0; i < 200; i++) {
+            final Box query = new Box(1 + random.nextInt(2), random.nextDouble() * 700 - 50,
+                    random.nextDouble() * 900 - 50, random.nextDouble() * 100, random.nextDouble() * 100);
+
+            final List<Integer> expectedIntersecting = new ArrayList<Integer>();
+            final List<Integer> expectedAt = new ArrayList<Integer>();
+            for (int j = 0; j < boxes.size(); j++) {
+                final Box box = boxes.get(j);
+                if (box.getPageNumber() != query.getPageNumber()) {
+                    continue;
+                }
+                final float left = (float) box.getLeft();
+                final float top = (float) box.getTop();
+                final float right = (float) (box.getLeft() + box.getWidth());
+                final float bottom = (float) (box.getTop() + box.getHeight());
+                if (left <= (float) (query.getLeft() + query.getWidth()) && right >= (float) query.getLeft()
+                        && top <= (float) (query.getTop() + query.getHeight()) && bottom >= (float) query.getTop()) {
+                    expectedIntersecting.add(j);
+                }
+                if (query.getLeft() >= left && query.getLeft() <= right && query.getTop() >= top
+                        && query.getTop() <= bottom) {
+                    expectedAt.add(j);
+                }
+            }
+
+            assertEquals(expectedIntersecting, index.findIntersecting(query));
+            final List<Integer> actualAt = index.findAt(query.getPageNumber(), query.getLeft(), query.getTop());
+            Collections.sort(actualAt);
+            assertEquals(expectedAt, actualAt);
+        }
+    }
+
+    public void testForExtractionsIndexesCandidates() {
+        final Extraction candidate = new Extraction("12:EUR", "amount", new Box(1, 50, 50, 10, 10));
+        final Extraction candidateWithoutBox = new Extraction("13:EUR", "amount", null);
+        final SpecificExtraction amountToPay = new SpecificExtraction("amountToPay", "11:EUR", "amount",
+                new Box(1, 10, 10, 10, 10), Arrays.asList(candidate, candidateWithoutBox));
+        final Map<String, SpecificExtraction> extractions = new HashMap<String, SpecificExtraction>();
+        extractions.put("amountToPay", amountToPay);
+
+        final BoxIndex<Extraction> index = BoxIndex.forExtractions(extractions);
+
+        assertEquals(2, index.size());
+        assertSame(amountToPay, index.findFirstAt(1, 15, 15));
+        assertSame(candidate, index.findFirstAt(1, 55, 55));
+    }
+
+    public void testForLayoutWords() throws IOException {
+        final Layout layout = Layout.fromApiResponse(new StringReader("{\"pages\":[{\"number\":1,\"textZones\":["
+                + "{\"paragraphs\":[{\"lines\":[{\"wds\":["
+                + "{\"l\":10,\"t\":10,\"w\":40,\"h\":10,\"text\":\"Gini\"},"
+                + "{\"l\":60,\"t\":10,\"w\":50,\"h\":10,\"text\":\"GmbH\"}]}]}]}]}]}"));
+
+        final BoxIndex<Integer> index = BoxIndex.forLayoutWords(layout);
+
+        assertEquals(Integer.valueOf(1), index.findFirstAt(1, 70, 15));
+        assertEquals(Arrays.asList(0, 1), index.findIntersecting(new Box(1, 0, 0, 100, 15)));
+    }
+}
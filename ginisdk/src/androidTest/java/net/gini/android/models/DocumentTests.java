@@ -72,4 +72,15 @@ public class DocumentTests extends AndroidTestCase {
         assertEquals(Document.SourceClassification.NATIVE,
                      restoredDocument.getSourceClassification());
     }
+
+    public void testShouldBeParcelableWithoutCreationDate() {
+        final Document originalDocument =
+                new Document("1234-5678-9012-3456", Document.ProcessingState.PENDING,
+                             "foobar.jpg", 1, null,
+                             Document.SourceClassification.NATIVE);
+
+        final Document restoredDocument = doRoundTrip(originalDocument, Document.CREATOR);
+
+        assertNull(restoredDocument.getCreationDate());
+    }
 }
@@ -62,4 +62,120 @@ public class ExtractionTest extends AndroidTestCase {
         assertEquals(4., restoredBox.getWidth());
         assertEquals(5., restoredBox.getHeight());
     }
+
+    public void testIsParcelableWithoutBox() {
+        final Extraction originalExtraction = new Extraction("42:EUR", "amount", null);
+
+        final Extraction restoredExtraction = doRoundTrip(originalExtraction, Extraction.CREATOR);
+
+        assertEquals("42:EUR", restoredExtraction.getValue());
+        assertNull(restoredExtraction.getBox());
+    }
+
+    public void testReadsBoxFromBoxArray() {
+        final BoxArray boxes = new BoxArray.Builder().add(1, 2, 3, 4, 5).add(2, 6, 7, 8, 9).build();
+        final Extraction extraction = new Extraction("42:EUR", "amount", boxes, 1);
+
+        assertSame(boxes, extraction.getBoxArray());
+        assertEquals(1, extraction.getBoxIndex());
+        assertEquals(2, extraction.getBox().getPageNumber());
+        assertEquals(6., extraction.getBox().getLeft());
+    }
+
+    public void testReturnsTheSameBoxOfBoxArray() {
+        final BoxArray boxes = new BoxArray.Builder().add(1, 2, 3, 4, 5).build();
+        final Extraction extraction = new Extraction("42:EUR", "amount", boxes, 0);
+
+        final Box box = extraction.getBox();
+        extraction.setValue("23:EUR");
+
+        assertSame(box, extraction.getBox());
+        assertSame(boxes, extraction.getBoxArray());
+        assertEquals(0, extraction.getBoxIndex());
+        assertEquals(1, extraction.getVersion());
+    }
+
+    public void testSetBoxReplacesBoxOfBoxArray() {
+        final BoxArray boxes = new BoxArray.Builder().add(1, 2, 3, 4, 5).build();
+        final Extraction extraction = new Extraction("42:EUR", "amount", boxes, 0);
+        final Box newBox = createEmptyBox();
+
+        extraction.setBox(newBox);
+
+        assertNull(extraction.getBoxArray());
+        assertEquals(-1, extraction.getBoxIndex());
+        assertSame(newBox, extraction.getBox());
+    }
+
+    public void testIsParcelableWithBoxOfBoxArray() {
+        final BoxArray boxes = new BoxArray.Builder().add(1, 2, 3, 4, 5).add(2, 6, 7, 8, 9).build();
+        final Extraction originalExtraction = new Extraction("42:EUR", "amount", boxes, 1);
+
+        final Extraction restoredExtraction = doRoundTrip(originalExtraction, Extraction.CREATOR);
+
+        final Box restoredBox = restoredExtraction.getBox();
+        assertEquals(2, restoredBox.getPageNumber());
+        assertEquals(6., restoredBox.getLeft());
+        assertEquals(7., restoredBox.getTop());
+        assertEquals(8., restoredBox.getWidth());
+        assertEquals(9., restoredBox.getHeight());
+    }
+
+    public void testRejectsBoxIndexOutsideOfBoxArray() {
+        final BoxArray boxes = new BoxArray.Builder().add(1, 2, 3, 4, 5).build();
+        try {
+            new Extraction("42:EUR", "amount", boxes, 1);
+            fail("Exception not thrown");
+        } catch (IndexOutOfBoundsException ignored) {
+        }
+    }
+
+    public void testChangesIncreaseVersion() {
+        Extraction extraction = new Extraction("bar", "amount", null);
+        final long initialVersion = extraction.getVersion();
+
+        extraction.setValue("raboof");
+        extraction.setBox(createEmptyBox());
+
+        assertEquals(initialVersion + 2, extraction.getVersion());
+    }
+
+    public void testSetIsDirtyDoesNotChangeVersion() {
+        Extraction extraction = new Extraction("bar", "amount", null);
+        extraction.setValue("raboof");
+        final long version = extraction.getVersion();
+
+        extraction.setIsDirty(false);
+
+        assertFalse(extraction.isDirty());
+        assertEquals(version, extraction.getVersion());
+    }
+
+    public void testClearIsDirtyWithCurrentVersion() {
+        Extraction extraction = new Extraction("bar", "amount", null);
+        extraction.setValue("raboof");
+
+        assertTrue(extraction.clearIsDirty(extraction.getVersion()));
+        assertFalse(extraction.isDirty());
+    }
+
+    public void testClearIsDirtyKeepsNewerChanges() {
+        Extraction extraction = new Extraction("bar", "amount", null);
+        extraction.setValue("raboof");
+        final long sentVersion = extraction.getVersion();
+        extraction.setValue("foobar");
+
+        assertFalse(extraction.clearIsDirty(sentVersion));
+        assertTrue(extraction.isDirty());
+    }
+
+    public void testParcelKeepsDirtyStateAndVersion() {
+        final Extraction originalExtraction = new Extraction("42:EUR", "amount", null);
+        originalExtraction.setValue("23:EUR");
+
+        final Extraction restoredExtraction = doRoundTrip(originalExtraction, Extraction.CREATOR);
+
+        assertTrue(restoredExtraction.isDirty());
+        assertEquals(originalExtraction.getVersion(), restoredExtraction.getVersion());
+    }
 }
@@ -0,0 +1,149 @@
+package net.gini.android.models;
+
+import android.test.AndroidTestCase;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+
+public class LayoutTest extends AndroidTestCase {
+
+    // Two pages: the first has two paragraphs with one line each, the second a paragraph with two lines.
+    private static final String LAYOUT_JSON = "{\"pages\":["
+            + "{\"number\":1,\"sizeX\":600,\"sizeY\":800,\"unknown\":{\"a\":[1,2]},\"textZones\":[{\"paragraphs\":["
+            + "{\"l\":10,\"t\":10,\"w\":100,\"h\":10,\"lines\":[{\"l\":10,\"t\":10,\"w\":100,\"h\":10,\"wds\":["
+            + "{\"l\":10,\"t\":10,\"w\":40,\"h\":10,\"fontSize\":9.5,\"fontFamily\":\"Arial\",\"bold\":true,\"text\":\"Gini\"},"
+            + "{\"l\":60,\"t\":10,\"w\":50,\"h\":10,\"fontSize\":9.5,\"fontFamily\":\"Arial\",\"bold\":false,\"text\":\"GmbH\"}]}]},"
+            + "{\"l\":10,\"t\":100,\"w\":80,\"h\":10,\"lines\":[{\"l\":10,\"t\":100,\"w\":80,\"h\":10,\"wds\":["
+            + "{\"l\":10,\"t\":100,\"w\":80,\"h\":10,\"fontSize\":12,\"fontFamily\":\"Times\",\"text\":\"München\"}]}]}]}],"
+            + "\"regions\":[]},"
+            + "{\"sizeX\":600,\"sizeY\":800,\"number\":2,\"regions\":[{\"l\":0,\"t\":0,\"w\":600,\"h\":100,\"type\":\"Header\"}],"
+            + "\"textZones\":[{\"paragraphs\":[{\"l\":20,\"t\":20,\"w\":200,\"h\":30,\"lines\":["
+            + "{\"l\":20,\"t\":20,\"w\":60,\"h\":10,\"wds\":[{\"l\":20,\"t\":20,\"w\":60,\"h\":10,\"text\":\"Betrag\"}]},"
+            + "{\"l\":20,\"t\":40,\"w\":200,\"h\":10,\"wds\":["
+            + "{\"l\":20,\"t\":40,\"w\":50,\"h\":10,\"text\":\"12,34\"},"
+            + "{\"l\":80,\"t\":40,\"w\":30,\"h\":10,\"text\":\"EUR\"}]}]}]}]}"
+            + "]}";
+
+    private Layout createLayout() throws IOException {
+        return Layout.fromApiResponse(new StringReader(LAYOUT_JSON));
+    }
+
+    public void testPages() throws IOException {
+        final Layout layout = createLayout();
+
+        assertEquals(2, layout.getPageCount());
+        assertEquals(1, layout.getPageNumber(0));
+        assertEquals(2, layout.getPageNumber(1));
+        assertEquals(1, layout.findPage(2));
+        assertEquals(-1, layout.findPage(3));
+        assertEquals(600f, layout.getPageWidth(1));
+        assertEquals(800f, layout.getPageHeight(1));
+        assertEquals(2, layout.getPageParagraphCount(0));
+        assertEquals(1, layout.getPageParagraphCount(1));
+        assertEquals(2, layout.getPageFirstLine(1));
+        assertEquals(2, layout.getPageLineCount(1));
+        assertEquals(3, layout.getPageFirstWord(1));
+        assertEquals(3, layout.getPageWordCount(1));
+    }
+
+    public void testRegions() throws IOException {
+        final Layout layout = createLayout();
+
+        assertTrue(layout.getPageRegions(0).isEmpty());
+        final Layout.Region region = layout.getPageRegions(1).get(0);
+        assertEquals("Header", region.getType());
+        assertEquals(2, region.getBox().getPageNumber());
+        assertEquals(600.0, region.getBox().getWidth());
+    }
+
+    public void testParagraphsAndLines() throws IOException {
+        final Layout layout = createLayout();
+
+        assertEquals(3, layout.getParagraphCount());
+        assertEquals(2, layout.getParagraphLineCount(2));
+        assertEquals(2, layout.getParagraphBox(2).getPageNumber());
+        assertEquals(4, layout.getLineCount());
+        assertEquals(2, layout.getLineWordCount(3));
+        assertEquals("12,34 EUR", layout.getLineText(3));
+        assertEquals(2, layout.getLineBox(3).getPageNumber());
+        assertEquals(40.0, layout.getLineBox(3).getTop());
+    }
+
+    public void testWords() throws IOException {
+        final Layout layout = createLayout();
+
+        assertEquals(6, layout.getWordCount());
+        assertEquals("Gini", layout.getWordText(0));
+        assertEquals("München", layout.getWordChars(2).toString());
+        assertEquals(4, layout.getWordLength(1));
+        assertEquals(1, layout.getWordPage(3));
+        assertEquals(60f, layout.getWordLeft(1));
+        assertEquals(100f, layout.getWordTop(2));
+        assertEquals(80f, layout.getWordWidth(2));
+        assertEquals(10f, layout.getWordHeight(2));
+        assertEquals(9.5f, layout.getWordFontSize(0));
+        assertTrue(layout.isWordBold(0));
+        assertFalse(layout.isWordBold(1));
+        assertEquals("Arial", layout.getWordFontFamily(1));
+        assertEquals("Times", layout.getWordFontFamily(2));
+        assertNull(layout.getWordFontFamily(3));
+        assertEquals(3, layout.findLineOfWord(4));
+        assertEquals(3, layout.findLineOfWord(5));
+        assertEquals(0, layout.findLineOfWord(1));
+
+        final Box box = layout.getWordBox(5);
+        assertEquals(2, box.getPageNumber());
+        assertEquals(80.0, box.getLeft());
+    }
+
+    public void testFindWordsInside() throws IOException {
+        final Layout layout = createLayout();
+
+        final int[] words = layout.findWordsInside(new Box(1, 0, 0, 200, 50));
+        assertEquals(2, words.length);
+        assertEquals(0, words[0]);
+        assertEquals(1, words[1]);
+
+        assertEquals(1, layout.findWordsInside(new Box(1, 0, 0, 100, 50)).length);
+        assertEquals(0, layout.findWordsInside(new Box(3, 0, 0, 600, 800)).length);
+    }
+
+    public void testFindWordsIntersecting() throws IOException {
+        final Layout layout = createLayout();
+
+        final int[] words = layout.findWordsIntersecting(new Box(2, 70, 35, 20, 20));
+        assertEquals(1, words.length);
+        assertEquals(5, words[0]);
+    }
+
+    public void testGetTextInside() throws IOException {
+        final Layout layout = createLayout();
+
+        assertEquals("Betrag\n12,34 EUR", layout.getTextInside(new Box(2, 0, 0, 600, 800)));
+        assertEquals("", layout.getTextInside(new Box(2, 500, 500, 10, 10)));
+    }
+
+    public void testFromApiResponseWithAsset() throws IOException {
+        final InputStreamReader reader =
+                new InputStreamReader(getContext().getResources().getAssets().open("layout.json"), "UTF-8");
+
+        final Layout layout = Layout.fromApiResponse(reader);
+
+        assertEquals(1, layout.getPageCount());
+        assertEquals(595.3f, layout.getPageWidth(0));
+        assertEquals("Ihre", layout.getWordText(0));
+        assertEquals("Vorgangsnummer", layout.getWordText(1));
+        assertEquals("Arial-BoldMT", layout.getWordFontFamily(0));
+        assertEquals("RemittanceSlip", layout.getPageRegions(0).get(0).getType());
+    }
+
+    public void testEmptyLayout() throws IOException {
+        final Layout layout = Layout.fromApiResponse(new StringReader("{\"pages\":[]}"));
+
+        assertEquals(0, layout.getPageCount());
+        assertEquals(0, layout.getWordCount());
+        assertEquals(0, layout.getLineCount());
+        assertEquals(0, layout.findWordsInside(new Box(1, 0, 0, 10, 10)).length);
+    }
+}
@@ -0,0 +1,50 @@
+package net.gini.android.models;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+public class MergedExtractionsTest extends AndroidTestCase {
+
+    private static SpecificExtraction createExtraction(final String name, final String value) {
+        return new SpecificExtraction(name, value, "text", null, new ArrayList<Extraction>());
+    }
+
+    public void testStandardExtractionsTakePrecedence() {
+        final Map<String, SpecificExtraction> standard = new HashMap<String, SpecificExtraction>();
+        standard.put("iban", createExtraction("iban", "DE89370400440532013000"));
+        final Map<String, SpecificExtraction> incubator = new HashMap<String, SpecificExtraction>();
+        incubator.put("iban", createExtraction("iban", "DE00000000000000000000"));
+        incubator.put("dueDate", createExtraction("dueDate", "2016-09-30"));
+
+        final MergedExtractions extractions = new MergedExtractions(standard, incubator);
+
+        assertEquals(2, extractions.getExtractions().size());
+        assertEquals("DE89370400440532013000", extractions.get("iban").getValue());
+        assertEquals(MergedExtractions.Source.STANDARD, extractions.getSource("iban"));
+        assertEquals("2016-09-30", extractions.get("dueDate").getValue());
+        assertEquals(MergedExtractions.Source.INCUBATOR, extractions.getSource("dueDate"));
+        assertEquals("DE00000000000000000000", extractions.getIncubatorExtractions().get("iban").getValue());
+    }
+
+    public void testUnknownExtraction() {
+        final MergedExtractions extractions = new MergedExtractions(new HashMap<String, SpecificExtraction>(),
+                new HashMap<String, SpecificExtraction>());
+
+        assertNull(extractions.get("iban"));
+        assertNull(extractions.getSource("iban"));
+    }
+
+    public void testExtractionsAreUnmodifiable() {
+        final MergedExtractions extractions = new MergedExtractions(new HashMap<String, SpecificExtraction>(),
+                new HashMap<String, SpecificExtraction>());
+
+        try {
+            extractions.getExtractions().put("iban", createExtraction("iban", "DE89370400440532013000"));
+            fail("Exception not thrown");
+        } catch (UnsupportedOperationException ignored) {
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package net.gini.android.models;
+
+import android.os.BadParcelableException;
+import android.os.Parcel;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.gini.android.helpers.ParcelHelper.doRoundTrip;
+
+public class ParcelableExtractionsTest extends AndroidTestCase {
+
+    private Map<String, SpecificExtraction> createExtractions() {
+        final List<Extraction> candidates = new ArrayList<Extraction>();
+        candidates.add(new Extraction("12.00:EUR", "amount", new Box(1, 10, 20, 30, 40)));
+        candidates.add(new Extraction("13.00:EUR", "amount", null));
+        final SpecificExtraction amountToPay =
+                new SpecificExtraction("amountToPay", "12.00:EUR", "amount", new Box(1, 1, 2, 3, 4), candidates);
+        amountToPay.setValue("14.00:EUR");
+        final SpecificExtraction iban = new SpecificExtraction("iban", "DE89370400440532013000", "iban", null,
+                new ArrayList<Extraction>());
+
+        final Map<String, SpecificExtraction> extractions = new LinkedHashMap<String, SpecificExtraction>();
+        extractions.put("amountToPay", amountToPay);
+        extractions.put("iban", iban);
+        return extractions;
+    }
+
+    public void testRoundTrip() {
+        final Map<String, SpecificExtraction> originalExtractions = createExtractions();
+
+        final Map<String, SpecificExtraction> extractions =
+                doRoundTrip(new ParcelableExtractions(originalExtractions), ParcelableExtractions.CREATOR)
+                        .getExtractions();
+
+        assertEquals(Arrays.asList("amountToPay", "iban"), new ArrayList<String>(extractions.keySet()));
+        final SpecificExtraction amountToPay = extractions.get("amountToPay");
+        assertEquals("amountToPay", amountToPay.getName());
+        assertEquals("amount", amountToPay.getEntity());
+        assertEquals("14.00:EUR", amountToPay.getValue());
+        assertTrue(amountToPay.isDirty());
+        assertEquals(originalExtractions.get("amountToPay").getVersion(), amountToPay.getVersion());
+        assertEquals(4., amountToPay.getBox().getHeight());
+
+        assertEquals(2, amountToPay.getCandidate().size());
+        final Extraction candidate = amountToPay.getCandidate().get(0);
+        assertEquals("12.00:EUR", candidate.getValue());
+        assertEquals("amount", candidate.getEntity());
+        assertFalse(candidate.isDirty());
+        assertEquals(1, candidate.getBox().getPageNumber());
+        assertEquals(30., candidate.getBox().getWidth());
+        assertNull(amountToPay.getCandidate().get(1).getBox());
+
+        final SpecificExtraction iban = extractions.get("iban");
+        assertEquals("DE89370400440532013000", iban.getValue());
+        assertNull(iban.getBox());
+        assertTrue(iban.getCandidate().isEmpty());
+    }
+
+    public void testRepeatedStringsAreWrittenOnce() {
+        final Map<String, SpecificExtraction> extractions = new LinkedHashMap<String, SpecificExtraction>();
+        final List<Extraction> candidates = new ArrayList<Extraction>();
+        for (int i = 0; i < 100; i++) {
+            candidates.add(new Extraction("same value", "an entity with a long name", null));
+        }
+        extractions.put("name", new SpecificExtraction("name", "same value", "an entity with a long name", null,
+                candidates));
+
+        final Parcel parcel = Parcel.obtain();
+        new ParcelableExtractions(extractions).writeToParcel(parcel, 0);
+        final Parcel typedListParcel = Parcel.obtain();
+        extractions.get("name").writeToParcel(typedListParcel, 0);
+
+        assertTrue(parcel.dataSize() < typedListParcel.dataSize() / 2);
+        parcel.recycle();
+        typedListParcel.recycle();
+    }
+
+    public void testSharedCandidateListsAreWrittenOnce() {
+        final List<Extraction> amounts = new ArrayList<Extraction>();
+        amounts.add(new Extraction("12.00:EUR", "amount", new Box(1, 10, 20, 30, 40)));
+        amounts.add(new Extraction("13.00:EUR", "amount", null));
+        final Map<String, SpecificExtraction> originalExtractions = new LinkedHashMap<String, SpecificExtraction>();
+        originalExtractions.put("amountToPay",
+                new SpecificExtraction("amountToPay", "12.00:EUR", "amount", null, amounts));
+        originalExtractions.put("amountPaid",
+                new SpecificExtraction("amountPaid", "13.00:EUR", "amount", null, amounts));
+        originalExtractions.put("iban",
+                new SpecificExtraction("iban", "DE89370400440532013000", "iban", null, new ArrayList<Extraction>()));
+
+        final Map<String, SpecificExtraction> extractions =
+                doRoundTrip(new ParcelableExtractions(originalExtractions), ParcelableExtractions.CREATOR)
+                        .getExtractions();
+
+        final List<Extraction> restoredAmounts = extractions.get("amountToPay").getCandidate();
+        assertSame(restoredAmounts, extractions.get("amountPaid").getCandidate());
+        assertNotSame(restoredAmounts, extractions.get("iban").getCandidate());
+        assertEquals(2, restoredAmounts.size());
+        assertEquals("13.00:EUR", restoredAmounts.get(1).getValue());
+        assertEquals(30., restoredAmounts.get(0).getBox().getWidth());
+    }
+
+    public void testUnknownSchemaVersionIsRejected() {
+        final Parcel parcel = Parcel.obtain();
+        parcel.writeInt(ParcelableExtractions.SCHEMA_VERSION + 1);
+        parcel.setDataPosition(0);
+
+        try {
+            ParcelableExtractions.CREATOR.createFromParcel(parcel);
+            fail("BadParcelableException expected");
+        } catch (BadParcelableException ignored) {
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
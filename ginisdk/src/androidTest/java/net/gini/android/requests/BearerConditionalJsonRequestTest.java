@@ -0,0 +1,55 @@
+package net.gini.android.requests;
+
+import android.test.AndroidTestCase;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.Response;
+
+import net.gini.android.authorization.Session;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+public class BearerConditionalJsonRequestTest extends AndroidTestCase {
+
+    private BearerConditionalJsonRequest createRequest() {
+        final Session session = new Session("1234-5678", new Date(new Date().getTime() + 10000));
+        return new BearerConditionalJsonRequest("https://api.gini.net/documents/1234", session, "\"v1\"", null,
+                null, null, new DefaultRetryPolicyFactory().newRetryPolicy());
+    }
+
+    public void testNotModifiedResponseHasNoJson() {
+        final NetworkResponse networkResponse =
+                new NetworkResponse(304, null, new HashMap<String, String>(), true);
+
+        final Response<ConditionalJsonResponse> response = createRequest().parseNetworkResponse(networkResponse);
+
+        assertTrue(response.isSuccess());
+        assertTrue(response.result.isNotModified());
+        assertNull(response.result.getJson());
+    }
+
+    public void testModifiedResponseHasJsonAndValidators() throws Exception {
+        final Map<String, String> headers = new HashMap<String, String>();
+        headers.put("etag", "\"v2\"");
+        headers.put("Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT");
+        final NetworkResponse networkResponse =
+                new NetworkResponse(200, "{\"id\":\"1234\"}".getBytes("UTF-8"), headers, false);
+
+        final Response<ConditionalJsonResponse> response = createRequest().parseNetworkResponse(networkResponse);
+
+        assertTrue(response.isSuccess());
+        assertFalse(response.result.isNotModified());
+        assertEquals("1234", response.result.getJson().getString("id"));
+        assertEquals("\"v2\"", response.result.getETag());
+        assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", response.result.getLastModified());
+    }
+
+    public void testInvalidJsonIsParseError() throws Exception {
+        final NetworkResponse networkResponse =
+                new NetworkResponse(200, "{".getBytes("UTF-8"), new HashMap<String, String>(), false);
+
+        assertFalse(createRequest().parseNetworkResponse(networkResponse).isSuccess());
+    }
+}
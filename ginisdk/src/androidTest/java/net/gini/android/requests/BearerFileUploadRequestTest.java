@@ -0,0 +1,136 @@
+package net.gini.android.requests;
+
+import android.net.Uri;
+import android.test.AndroidTestCase;
+
+import com.android.volley.Request;
+import com.android.volley.Response;
+
+import net.gini.android.MediaTypes;
+import net.gini.android.authorization.Session;
+import net.gini.android.helpers.FakeGiniApi;
+
+import org.apache.http.HttpResponse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import bolts.Task;
+
+public class BearerFileUploadRequestTest extends AndroidTestCase {
+
+    private File mFile;
+
+    /**
+     * Records the length of every body which was returned to the stack.
+     */
+    private static class RecordingFileUploadRequest extends BearerFileUploadRequest {
+
+        private final List<Integer> mBodyLengths = new ArrayList<Integer>();
+
+        RecordingFileUploadRequest(final String url, final File uploadFile, final Session session) {
+            super(Request.Method.POST, url, uploadFile, MediaTypes.APPLICATION_PDF, session,
+                    new Response.Listener<Uri>() {
+                        @Override
+                        public void onResponse(final Uri response) {
+                        }
+                    }, null, new DefaultRetryPolicyFactory().newRetryPolicy(), null);
+        }
+
+        @Override
+        public byte[] getBody() {
+            final byte[] body = super.getBody();
+            mBodyLengths.add(body.length);
+            return body;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        mFile = new File(getContext().getCacheDir(), "bearer-file-upload-test");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        //noinspection ResultOfMethodCallIgnored
+        mFile.delete();
+    }
+
+    private byte[] writeFile(final int length) throws IOException {
+        final byte[] content = new byte[length];
+        new Random(42).nextBytes(content);
+        final FileOutputStream outputStream = new FileOutputStream(mFile);
+        try {
+            outputStream.write(content);
+        } finally {
+            outputStream.close();
+        }
+        return content;
+    }
+
+    private static Session createSession() {
+        return new Session("1234-5678", new Date(new Date().getTime() + 10000));
+    }
+
+    public void testUploadHurlStackStreamsTheFile() throws Exception {
+        final FakeGiniApi fakeGiniApi = new FakeGiniApi().start();
+        try {
+            final byte[] content = writeFile(1024 * 1024);
+            final Task<Session> sessionTask = fakeGiniApi.createSdkBuilder(getContext(), "streaming-client")
+                    .getSessionManager().getSession();
+            sessionTask.waitForCompletion();
+            final Session session = sessionTask.getResult();
+            final RecordingFileUploadRequest request =
+                    new RecordingFileUploadRequest(fakeGiniApi.getBaseUrl() + "documents/", mFile, session);
+
+            final HttpResponse response = new UploadHurlStack().performRequest(request,
+                    Collections.<String, String>emptyMap());
+
+            assertEquals(201, response.getStatusLine().getStatusCode());
+            // The file was not read into the body, the connection wrote it.
+            assertEquals(Collections.singletonList(0), request.mBodyLengths);
+            final String location = response.getFirstHeader("Location").getValue();
+            final String documentId = location.substring(location.lastIndexOf('/') + 1);
+            assertTrue(Arrays.equals(content, fakeGiniApi.getUploadedContent(documentId)));
+        } finally {
+            fakeGiniApi.shutdown();
+        }
+    }
+
+    public void testOtherStacksReceiveTheFileAsBody() throws Exception {
+        final byte[] content = writeFile(1024);
+
+        final RecordingFileUploadRequest request =
+                new RecordingFileUploadRequest("https://api.gini.net/documents/", mFile, createSession());
+
+        assertTrue(Arrays.equals(content, request.getBody()));
+    }
+
+    public void testFailsClearlyIfTheFileIsTooLargeForTheBody() throws Exception {
+        // A sparse file, nothing is written to the disk.
+        final RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.setLength(BearerFileUploadRequest.MAX_BUFFERED_BODY_LENGTH + 1L);
+        } finally {
+            file.close();
+        }
+        final RecordingFileUploadRequest request =
+                new RecordingFileUploadRequest("https://api.gini.net/documents/", mFile, createSession());
+
+        try {
+            request.getBody();
+            fail("Exception not thrown");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("UploadHurlStack"));
+        }
+        assertTrue(request.mBodyLengths.isEmpty());
+    }
+}
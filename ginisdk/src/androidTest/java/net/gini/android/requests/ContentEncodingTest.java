@@ -0,0 +1,38 @@
+package net.gini.android.requests;
+
+import com.android.volley.NetworkResponse;
+
+import junit.framework.TestCase;
+
+import net.gini.android.Utils;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+public class ContentEncodingTest extends TestCase {
+
+    private static final Map<String, String> GZIP_HEADERS =
+            Collections.singletonMap(ContentEncoding.CONTENT_ENCODING_HEADER, ContentEncoding.GZIP);
+
+    public void testReadsGzippedBody() throws IOException {
+        final byte[] data = ContentEncoding.gzip("{\"foo\": \"bar\"}".getBytes(Utils.CHARSET_UTF8));
+
+        final NetworkResponse response = new NetworkResponse(200, data, GZIP_HEADERS, false);
+
+        assertEquals("{\"foo\": \"bar\"}", ContentEncoding.readBody(response, Utils.CHARSET_UTF8));
+    }
+
+    public void testReadsGzippedResponseWithoutData() throws IOException {
+        final NetworkResponse response = new NetworkResponse(304, null, GZIP_HEADERS, true);
+
+        assertEquals("", ContentEncoding.readBody(response, Utils.CHARSET_UTF8));
+    }
+
+    public void testReadsUncompressedResponseWithoutData() throws IOException {
+        final NetworkResponse response =
+                new NetworkResponse(304, null, Collections.<String, String>emptyMap(), true);
+
+        assertEquals("", ContentEncoding.readBody(response, Utils.CHARSET_UTF8));
+    }
+}
@@ -0,0 +1,226 @@
+package net.gini.android.requests;
+
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class UploadConnectionTest extends AndroidTestCase {
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    private File mFile;
+
+    /**
+     * A connection which records the written body. Its stream sleeps after every write to simulate a slow network
+     * and cancels the request after the given number of writes.
+     */
+    private static class FakeConnection extends HttpURLConnection {
+
+        private final ByteArrayOutputStream mBody = new ByteArrayOutputStream();
+        private final long mWriteDelayMs;
+        private final int mWritesBeforeCancel;
+        private FakeUploadRequest mRequest;
+        private int mWrites;
+
+        FakeConnection(final long writeDelayMs, final int writesBeforeCancel) throws IOException {
+            super(new URL("https://api.gini.net/documents/"));
+            mWriteDelayMs = writeDelayMs;
+            mWritesBeforeCancel = writesBeforeCancel;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return new OutputStream() {
+                @Override
+                public void write(final int oneByte) {
+                    write(new byte[]{(byte) oneByte}, 0, 1);
+                }
+
+                @Override
+                public void write(final byte[] buffer, final int offset, final int length) {
+                    mBody.write(buffer, offset, length);
+                    SystemClock.sleep(mWriteDelayMs);
+                    mWrites++;
+                    if (mWrites == mWritesBeforeCancel) {
+                        mRequest.mCanceled.set(true);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public boolean usingProxy() {
+            return false;
+        }
+    }
+
+    private static class FakeUploadRequest implements UploadRequest {
+
+        final AtomicBoolean mCanceled = new AtomicBoolean();
+        private final long mUploadLength;
+        private final UploadProgressListener mProgressListener;
+
+        FakeUploadRequest(final long uploadLength, @Nullable final UploadProgressListener progressListener) {
+            mUploadLength = uploadLength;
+            mProgressListener = progressListener;
+        }
+
+        @Override
+        public long getUploadLength() {
+            return mUploadLength;
+        }
+
+        @Nullable
+        @Override
+        public UploadProgressListener getUploadProgressListener() {
+            return mProgressListener;
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return mCanceled.get();
+        }
+    }
+
+    private static class FakeFileUploadRequest extends FakeUploadRequest implements FileUploadRequest {
+
+        private final File mFile;
+
+        FakeFileUploadRequest(final File file) {
+            super(file.length(), null);
+            mFile = file;
+        }
+
+        @Override
+        public File getUploadFile() {
+            return mFile;
+        }
+    }
+
+    /**
+     * Records the reported progress and the time of each report.
+     */
+    private static class RecordingProgressListener implements UploadProgressListener {
+
+        final List<Long> mBytesWritten = Collections.synchronizedList(new ArrayList<Long>());
+        final List<Long> mReportTimes = Collections.synchronizedList(new ArrayList<Long>());
+
+        @Override
+        public void onProgress(final long bytesWritten, final long totalBytes) {
+            mBytesWritten.add(bytesWritten);
+            mReportTimes.add(SystemClock.elapsedRealtime());
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        mFile = new File(getContext().getCacheDir(), "upload-connection-test");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        //noinspection ResultOfMethodCallIgnored
+        mFile.delete();
+    }
+
+    private static UploadConnection createConnection(final FakeConnection connection,
+                                                     final FakeUploadRequest request) {
+        connection.mRequest = request;
+        return new UploadConnection(connection, request);
+    }
+
+    public void testThrottlesTheProgressReports() throws IOException {
+        final byte[] body = new byte[40 * CHUNK_SIZE];
+        final RecordingProgressListener progressListener = new RecordingProgressListener();
+        final FakeConnection fakeConnection = new FakeConnection(10, -1);
+        final UploadConnection connection =
+                createConnection(fakeConnection, new FakeUploadRequest(body.length, progressListener));
+
+        final OutputStream outputStream = connection.getOutputStream();
+        outputStream.write(body);
+        outputStream.close();
+
+        assertEquals(body.length, fakeConnection.mBody.size());
+        final List<Long> reportTimes = progressListener.mReportTimes;
+        // The 40 chunks take at least 400 ms, so there are a few reports but less than one per chunk.
+        assertTrue("Reports: " + reportTimes.size(), reportTimes.size() >= 3);
+        assertTrue("Reports: " + reportTimes.size(), reportTimes.size() < 40);
+        // Only the final report may follow its predecessor within the interval.
+        for (int i = 1; i < reportTimes.size() - 1; i++) {
+            assertTrue(reportTimes.get(i) - reportTimes.get(i - 1) >= UploadConnection.PROGRESS_INTERVAL_MS);
+        }
+        assertEquals(Long.valueOf(body.length), progressListener.mBytesWritten.get(reportTimes.size() - 1));
+    }
+
+    public void testAbortsTheUploadWhenCancelledWhileStreaming() throws IOException {
+        final byte[] body = new byte[10 * CHUNK_SIZE];
+        final FakeConnection fakeConnection = new FakeConnection(0, 3);
+        final UploadConnection connection =
+                createConnection(fakeConnection, new FakeUploadRequest(body.length, null));
+
+        final OutputStream outputStream = connection.getOutputStream();
+        try {
+            outputStream.write(body);
+            fail("InterruptedIOException not thrown");
+        } catch (InterruptedIOException ignored) {
+        }
+
+        assertEquals(3 * CHUNK_SIZE, fakeConnection.mBody.size());
+    }
+
+    public void testAbortsTheFileUploadWhenCancelledWhileStreaming() throws IOException {
+        final FileOutputStream fileOutputStream = new FileOutputStream(mFile);
+        try {
+            fileOutputStream.write(new byte[10 * CHUNK_SIZE]);
+        } finally {
+            fileOutputStream.close();
+        }
+        final FakeConnection fakeConnection = new FakeConnection(0, 3);
+        final UploadConnection connection = createConnection(fakeConnection, new FakeFileUploadRequest(mFile));
+
+        try {
+            connection.getOutputStream();
+            fail("InterruptedIOException not thrown");
+        } catch (InterruptedIOException ignored) {
+        }
+
+        assertEquals(3 * CHUNK_SIZE, fakeConnection.mBody.size());
+    }
+
+    public void testDoesNotStartACancelledUpload() throws IOException {
+        final FakeConnection fakeConnection = new FakeConnection(0, -1);
+        final FakeUploadRequest request = new FakeUploadRequest(CHUNK_SIZE, null);
+        final UploadConnection connection = createConnection(fakeConnection, request);
+        request.mCanceled.set(true);
+
+        try {
+            connection.getOutputStream();
+            fail("InterruptedIOException not thrown");
+        } catch (InterruptedIOException ignored) {
+        }
+
+        assertEquals(0, fakeConnection.mBody.size());
+    }
+}
@@ -0,0 +1,86 @@
+package net.gini.android.search;
+
+import android.test.AndroidTestCase;
+
+import net.gini.android.DocumentPager;
+import net.gini.android.DocumentTaskManager;
+import net.gini.android.SdkExecutors;
+import net.gini.android.models.Document;
+
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import bolts.Task;
+
+import static org.mockito.Mockito.when;
+
+public class DocumentSearchTest extends AndroidTestCase {
+
+    private static final String DATABASE_NAME = "gini-document-search-test.db";
+
+    private LocalSearchIndex mSearchIndex;
+    private DocumentTaskManager mDocumentTaskManager;
+    private DocumentPager mDocumentPager;
+
+    @Override
+    protected void setUp() throws Exception {
+        // https://code.google.com/p/dexmaker/issues/detail?id=2
+        System.setProperty("dexmaker.dexcache", getContext().getCacheDir().getPath());
+
+        getContext().deleteDatabase(DATABASE_NAME);
+        mSearchIndex = new LocalSearchIndex(getContext(), DATABASE_NAME);
+        mDocumentTaskManager = Mockito.mock(DocumentTaskManager.class);
+        when(mDocumentTaskManager.getExecutors()).thenReturn(SdkExecutors.boltsBackground());
+        mDocumentPager = Mockito.mock(DocumentPager.class);
+        when(mDocumentTaskManager.getDocumentPager(DocumentSearch.RECONCILIATION_PAGE_SIZE, 2))
+                .thenReturn(mDocumentPager);
+        when(mDocumentPager.getTotalCount()).thenReturn(DocumentPager.UNKNOWN_TOTAL_COUNT);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mSearchIndex.close();
+        getContext().deleteDatabase(DATABASE_NAME);
+    }
+
+    private Document createDocument(final String id) {
+        return new Document(id, Document.ProcessingState.COMPLETED, id + ".jpg", 1, new Date(),
+                Document.SourceClassification.SCANNED);
+    }
+
+    public void testReconcileIndexesRemoteDocumentsAndRemovesDeletedDocuments() throws Exception {
+        mSearchIndex.index(createDocument("deleted"));
+        mSearchIndex.index(createDocument("remote"));
+        when(mDocumentPager.getPage(0)).thenReturn(
+                Task.forResult(Arrays.asList(createDocument("remote"), createDocument("other-device"))));
+
+        final Task<Void> reconciliationTask = new DocumentSearch(mDocumentTaskManager, mSearchIndex).reconcile();
+        reconciliationTask.waitForCompletion();
+
+        assertFalse(String.valueOf(reconciliationTask.getError()), reconciliationTask.isFaulted());
+        assertEquals(new HashSet<String>(Arrays.asList("remote", "other-device")), mSearchIndex.getDocumentIds());
+    }
+
+    public void testReconcileKeepsDocumentsWhichWereIndexedWhileReconciling() throws Exception {
+        mSearchIndex.index(createDocument("remote"));
+        when(mDocumentPager.getPage(0)).thenAnswer(new Answer<Task<List<Document>>>() {
+            @Override
+            public Task<List<Document>> answer(final InvocationOnMock invocation) {
+                // Uploaded after the document list was loaded.
+                mSearchIndex.index(createDocument("uploaded"));
+                return Task.forResult(Collections.singletonList(createDocument("remote")));
+            }
+        });
+
+        new DocumentSearch(mDocumentTaskManager, mSearchIndex).reconcile().waitForCompletion();
+
+        assertEquals(new HashSet<String>(Arrays.asList("remote", "uploaded")), mSearchIndex.getDocumentIds());
+    }
+}
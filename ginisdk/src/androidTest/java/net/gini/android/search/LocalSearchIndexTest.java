@@ -0,0 +1,133 @@
+package net.gini.android.search;
+
+import android.test.AndroidTestCase;
+
+import net.gini.android.models.Document;
+import net.gini.android.models.Extraction;
+import net.gini.android.models.SpecificExtraction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+public class LocalSearchIndexTest extends AndroidTestCase {
+
+    private static final String DATABASE_NAME = "gini-search-test.db";
+
+    private LocalSearchIndex mSearchIndex;
+
+    @Override
+    protected void setUp() throws Exception {
+        getContext().deleteDatabase(DATABASE_NAME);
+        mSearchIndex = new LocalSearchIndex(getContext(), DATABASE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mSearchIndex.close();
+        getContext().deleteDatabase(DATABASE_NAME);
+    }
+
+    private Document createDocument(final String id, final String filename, final long creationDate) {
+        return new Document(id, Document.ProcessingState.COMPLETED, filename, 1, new Date(creationDate),
+                Document.SourceClassification.SCANNED);
+    }
+
+    private Map<String, SpecificExtraction> createExtractions(final String name, final String value) {
+        final Map<String, SpecificExtraction> extractions = new HashMap<String, SpecificExtraction>();
+        extractions.put(name, new SpecificExtraction(name, value, "text", null, new ArrayList<Extraction>()));
+        return extractions;
+    }
+
+    private static List<String> ids(final List<Document> documents) {
+        final List<String> ids = new ArrayList<String>();
+        for (final Document document : documents) {
+            ids.add(document.getId());
+        }
+        return ids;
+    }
+
+    public void testToMatchExpression() {
+        assertEquals("tele* inv*", LocalSearchIndex.toMatchExpression("Tele inv"));
+        assertEquals("foo* or* bar*", LocalSearchIndex.toMatchExpression("  \"foo\" OR -bar* "));
+        assertEquals("müller*", LocalSearchIndex.toMatchExpression("Müller"));
+        assertNull(LocalSearchIndex.toMatchExpression(" *\" "));
+    }
+
+    public void testSearchMatchesFilenamePrefixes() {
+        mSearchIndex.index(createDocument("1", "Telekom invoice.jpg", 1000));
+        mSearchIndex.index(createDocument("2", "Insurance.pdf", 2000));
+
+        assertEquals(Collections.singletonList("1"), ids(mSearchIndex.search("tele inv", 10)));
+        assertEquals(Arrays.asList("2", "1"), ids(mSearchIndex.search("in", 10)));
+        assertTrue(mSearchIndex.search("telefon", 10).isEmpty());
+        assertTrue(mSearchIndex.search("  ", 10).isEmpty());
+    }
+
+    public void testSearchReturnsIndexedDocument() {
+        final Document document = createDocument("1", "Telekom.jpg", 1234);
+        mSearchIndex.index(document);
+
+        final Document foundDocument = mSearchIndex.search("telekom", 10).get(0);
+
+        assertEquals(document.getId(), foundDocument.getId());
+        assertEquals(document.getState(), foundDocument.getState());
+        assertEquals(document.getFilename(), foundDocument.getFilename());
+        assertEquals(document.getPageCount(), foundDocument.getPageCount());
+        assertEquals(document.getCreationDate(), foundDocument.getCreationDate());
+        assertEquals(document.getSourceClassification(), foundDocument.getSourceClassification());
+    }
+
+    public void testSearchMatchesExtractions() {
+        final Document document = createDocument("1", "scan.jpg", 1000);
+        mSearchIndex.index(document, createExtractions("senderName", "Deutsche Telekom AG"));
+
+        assertEquals(Collections.singletonList("1"), ids(mSearchIndex.search("telekom", 10)));
+    }
+
+    public void testUpdatingDocumentKeepsExtractions() {
+        mSearchIndex.index(createDocument("1", "scan.jpg", 1000), createExtractions("senderName", "Telekom"));
+
+        mSearchIndex.index(createDocument("1", "renamed.jpg", 1000));
+
+        assertEquals(Collections.singletonList("1"), ids(mSearchIndex.search("telekom", 10)));
+        assertEquals(Collections.singletonList("1"), ids(mSearchIndex.search("renamed", 10)));
+        assertTrue(mSearchIndex.search("scan", 10).isEmpty());
+    }
+
+    public void testSearchIsLimited() {
+        final List<Document> documents = new ArrayList<Document>();
+        for (int i = 0; i < 20; i++) {
+            documents.add(createDocument(String.valueOf(i), "invoice " + i + ".jpg", i));
+        }
+        mSearchIndex.indexAll(documents);
+
+        final List<Document> results = mSearchIndex.search("invoice", 5);
+
+        assertEquals(Arrays.asList("19", "18", "17", "16", "15"), ids(results));
+    }
+
+    public void testRemove() {
+        mSearchIndex.index(createDocument("1", "invoice.jpg", 1000));
+        mSearchIndex.index(createDocument("2", "invoice.pdf", 2000));
+
+        mSearchIndex.remove(Collections.singletonList("2"));
+
+        assertEquals(Collections.singletonList("1"), ids(mSearchIndex.search("invoice", 10)));
+        assertEquals(new HashSet<String>(Collections.singletonList("1")), mSearchIndex.getDocumentIds());
+    }
+
+    public void testClear() {
+        mSearchIndex.index(createDocument("1", "invoice.jpg", 1000));
+
+        mSearchIndex.clear();
+
+        assertTrue(mSearchIndex.search("invoice", 10).isEmpty());
+        assertTrue(mSearchIndex.getDocumentIds().isEmpty());
+    }
+}
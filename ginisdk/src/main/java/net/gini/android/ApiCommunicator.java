@@ -4,22 +4,35 @@ import android.graphics.Bitmap;
 import android.net.Uri;
 
 import com.android.volley.AuthFailureError;
+import com.android.volley.Request;
 import com.android.volley.RequestQueue;
 import com.android.volley.toolbox.ImageRequest;
 import com.android.volley.toolbox.StringRequest;
 
 import net.gini.android.authorization.Session;
 import net.gini.android.authorization.requests.BearerJsonObjectRequest;
+import net.gini.android.models.Layout;
+import net.gini.android.requests.BearerConditionalJsonRequest;
+import net.gini.android.requests.BearerFileUploadRequest;
+import net.gini.android.requests.BearerLayoutRequest;
 import net.gini.android.requests.BearerUploadRequest;
+import net.gini.android.requests.BearerWaitingJsonRequest;
+import net.gini.android.requests.ConditionalJsonResponse;
 import net.gini.android.requests.RetryPolicyFactory;
+import net.gini.android.requests.UploadProgressListener;
+import net.gini.android.requests.WaitingJsonResponse;
 
 import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import bolts.Continuation;
 import bolts.Task;
 
 import static android.graphics.Bitmap.Config.ARGB_8888;
@@ -28,7 +41,6 @@ import static com.android.volley.Request.Method.GET;
 import static com.android.volley.Request.Method.POST;
 import static com.android.volley.Request.Method.PUT;
 import static net.gini.android.Utils.checkNotNull;
-import static net.gini.android.Utils.mapToUrlEncodedString;
 
 
 /**
@@ -36,69 +48,256 @@ import static net.gini.android.Utils.mapToUrlEncodedString;
  * more convenient objects (e.g. a JSON response to a JSONObject) but does not interpret the results in any way.
  * Therefore it is not recommended to use the ApiCommunicator directly, but to use the DocumentTaskManager instead which
  * provides much more convenient methods to work with the Gini API and uses defined models.
+ * <p>
+ * The URLs of the endpoints are built by the {@link GiniApiUrls} of the core module, which the {@link GiniApiClient}
+ * for plain Java platforms shares. On Android the ApiCommunicator is the only client of the Gini API.
+ * </p>
  */
 public class ApiCommunicator {
 
-    private final Uri mBaseUri;
+    private final GiniApiUrls mUrls;
     final RequestQueue mRequestQueue; // Visible for testing
     // Visible for testing
     final RetryPolicyFactory mRetryPolicyFactory;
+    private final boolean mCompressRequestBodies;
 
     public ApiCommunicator(final String baseUriString, final RequestQueue mRequestQueue,
                            final RetryPolicyFactory retryPolicyFactory) {
+        this(baseUriString, mRequestQueue, retryPolicyFactory, false);
+    }
+
+    /**
+     * @param compressRequestBodies If true, large JSON request bodies (e.g. the feedback for extractions) are sent gzip
+     *                              compressed. The Gini API has to accept compressed request bodies.
+     */
+    public ApiCommunicator(final String baseUriString, final RequestQueue mRequestQueue,
+                           final RetryPolicyFactory retryPolicyFactory, final boolean compressRequestBodies) {
         this.mRetryPolicyFactory = retryPolicyFactory;
-        mBaseUri = Uri.parse(checkNotNull(baseUriString));
+        mUrls = new GiniApiUrls(checkNotNull(baseUriString));
         this.mRequestQueue = checkNotNull(mRequestQueue);
+        mCompressRequestBodies = compressRequestBodies;
     }
 
     public Task<Uri> uploadDocument(final byte[] documentData, final String contentType,
                                     @Nullable final String documentName, @Nullable final String docTypeHint,
                                     final Session session) {
+        return uploadDocument(documentData, contentType, documentName, docTypeHint, session, null, null);
+    }
 
-        final HashMap<String, String> requestQueryData = new HashMap<String, String>();
-        if (documentName != null) {
-            requestQueryData.put("filename", documentName);
-        }
-        if (docTypeHint != null) {
-            requestQueryData.put("doctype", docTypeHint);
-        }
-        final String url = mBaseUri.buildUpon().path("documents/").encodedQuery(mapToUrlEncodedString(requestQueryData))
-                .toString();
+    /**
+     * Uploads a document and reports the upload's progress. The upload can be cancelled with the given handle.
+     *
+     * @param progressListener   Optional a listener which is informed about the number of uploaded bytes.
+     * @param cancellationHandle Optional a handle to cancel the upload. Cancelling aborts a running upload and
+     *                           resolves the returned task as cancelled.
+     */
+    public Task<Uri> uploadDocument(final byte[] documentData, final String contentType,
+                                    @Nullable final String documentName, @Nullable final String docTypeHint,
+                                    final Session session, @Nullable final UploadProgressListener progressListener,
+                                    @Nullable final CancellationHandle cancellationHandle) {
         final RequestTaskCompletionSource<Uri> completionSource = RequestTaskCompletionSource.newCompletionSource();
         final BearerUploadRequest request =
-                new BearerUploadRequest(POST, url, checkNotNull(documentData), checkNotNull(contentType), session,
-                        completionSource, completionSource, mRetryPolicyFactory.newRetryPolicy());
-        mRequestQueue.add(request);
+                new BearerUploadRequest(POST, mUrls.documents(documentName, docTypeHint), checkNotNull(documentData),
+                        checkNotNull(contentType), session, completionSource, completionSource,
+                        mRetryPolicyFactory.newRetryPolicy(), progressListener);
+        addRequest(request, completionSource, cancellationHandle);
+
+        return completionSource.getTask();
+    }
+
+    /**
+     * Uploads a document file. The file is streamed to the connection, so it is never read into memory as a whole. It
+     * must not be changed until the returned task is completed.
+     *
+     * @param progressListener   Optional a listener which is informed about the number of uploaded bytes.
+     * @param cancellationHandle Optional a handle to cancel the upload. Cancelling aborts a running upload and
+     *                           resolves the returned task as cancelled.
+     */
+    public Task<Uri> uploadDocument(final File documentFile, final String contentType,
+                                    @Nullable final String documentName, @Nullable final String docTypeHint,
+                                    final Session session, @Nullable final UploadProgressListener progressListener,
+                                    @Nullable final CancellationHandle cancellationHandle) {
+        final RequestTaskCompletionSource<Uri> completionSource = RequestTaskCompletionSource.newCompletionSource();
+        final BearerFileUploadRequest request =
+                new BearerFileUploadRequest(POST, mUrls.documents(documentName, docTypeHint),
+                        checkNotNull(documentFile), checkNotNull(contentType), session, completionSource,
+                        completionSource, mRetryPolicyFactory.newRetryPolicy(), progressListener);
+        addRequest(request, completionSource, cancellationHandle);
 
         return completionSource.getTask();
     }
 
+    /**
+     * Creates a composite document from already uploaded partial documents. The partial documents have to be uploaded
+     * with a partial media type (e.g. {@link MediaTypes#GINI_PARTIAL_JPEG}). The pages of the composite document are
+     * in the order of the given partial documents.
+     *
+     * @param partialDocumentUris The URIs of the partial documents.
+     *
+     * @return A task which resolves to the URI of the composite document.
+     */
+    public Task<Uri> createCompositeDocument(final List<Uri> partialDocumentUris, @Nullable final String documentName,
+                                             @Nullable final String docTypeHint, final Session session)
+            throws JSONException {
+        final JSONArray partialDocuments = new JSONArray();
+        for (final Uri partialDocumentUri : checkNotNull(partialDocumentUris)) {
+            final JSONObject partialDocument = new JSONObject();
+            partialDocument.put("document", checkNotNull(partialDocumentUri).toString());
+            partialDocument.put("rotationDelta", 0);
+            partialDocuments.put(partialDocument);
+        }
+        final JSONObject compositeDocument = new JSONObject();
+        compositeDocument.put("partialDocuments", partialDocuments);
+        return uploadDocument(compositeDocument.toString().getBytes(Utils.CHARSET_UTF8),
+                MediaTypes.GINI_COMPOSITE_JSON, documentName, docTypeHint, session);
+    }
+
     public Task<JSONObject> getDocument(final String documentId, final Session session) {
-        final String url = mBaseUri.buildUpon().path("documents/" + checkNotNull(documentId)).toString();
-        return getDocument(Uri.parse(url), session);
+        return getDocument(documentId, session, null);
+    }
+
+    /**
+     * @param cancellationHandle Optional a handle to cancel the request.
+     */
+    public Task<JSONObject> getDocument(final String documentId, final Session session,
+                                        @Nullable final CancellationHandle cancellationHandle) {
+        return getDocument(Uri.parse(mUrls.document(documentId)), session, cancellationHandle);
     }
 
     public Task<JSONObject> getDocument(final Uri documentUri, final Session session) {
-        final String url = uriRelativeToBaseUri(documentUri).toString();
-        return doRequestWithJsonResponse(url, GET, session);
+        return getDocument(documentUri, session, null);
+    }
+
+    /**
+     * @param cancellationHandle Optional a handle to cancel the request.
+     */
+    public Task<JSONObject> getDocument(final Uri documentUri, final Session session,
+                                        @Nullable final CancellationHandle cancellationHandle) {
+        final String url = mUrls.relativeToBase(documentUri.getPath(), documentUri.getQuery());
+        return doRequestWithJsonResponse(url, GET, session, cancellationHandle);
+    }
+
+    /**
+     * Gets the document, unless it didn't change since the response with the given validators.
+     *
+     * @param eTag         Optional the ETag of the previous response.
+     * @param lastModified Optional the Last-Modified date of the previous response.
+     */
+    public Task<ConditionalJsonResponse> getDocumentIfModified(final String documentId, final Session session,
+                                                               @Nullable final String eTag,
+                                                               @Nullable final String lastModified) {
+        return getDocumentIfModified(documentId, session, eTag, lastModified, null);
+    }
+
+    /**
+     * @param cancellationHandle Optional a handle to cancel the request.
+     */
+    public Task<ConditionalJsonResponse> getDocumentIfModified(final String documentId, final Session session,
+                                                               @Nullable final String eTag,
+                                                               @Nullable final String lastModified,
+                                                               @Nullable final CancellationHandle cancellationHandle) {
+        return getDocumentIfModified(Uri.parse(mUrls.document(documentId)), session, eTag, lastModified,
+                cancellationHandle);
+    }
+
+    public Task<ConditionalJsonResponse> getDocumentIfModified(final Uri documentUri, final Session session,
+                                                               @Nullable final String eTag,
+                                                               @Nullable final String lastModified) {
+        return getDocumentIfModified(documentUri, session, eTag, lastModified, null);
+    }
+
+    /**
+     * @param cancellationHandle Optional a handle to cancel the request.
+     */
+    public Task<ConditionalJsonResponse> getDocumentIfModified(final Uri documentUri, final Session session,
+                                                               @Nullable final String eTag,
+                                                               @Nullable final String lastModified,
+                                                               @Nullable final CancellationHandle cancellationHandle) {
+        final String url = mUrls.relativeToBase(documentUri.getPath(), documentUri.getQuery());
+        return doConditionalRequest(url, session, eTag, lastModified, cancellationHandle);
+    }
+
+    /**
+     * Gets the document, but asks the Gini API to hold the request until the document changes or the wait time
+     * expires. Check {@link WaitingJsonResponse#isWaitApplied()} to find out whether the Gini API waited.
+     *
+     * @param waitSeconds The maximal time in seconds for which the Gini API should hold the request.
+     */
+    public Task<WaitingJsonResponse> waitForDocument(final String documentId, final Session session,
+                                                     final int waitSeconds) {
+        return waitForDocument(documentId, session, waitSeconds, null);
+    }
+
+    /**
+     * @param cancellationHandle Optional a handle to cancel the held request.
+     */
+    public Task<WaitingJsonResponse> waitForDocument(final String documentId, final Session session,
+                                                     final int waitSeconds,
+                                                     @Nullable final CancellationHandle cancellationHandle) {
+        final String url = mUrls.document(documentId);
+        final RequestTaskCompletionSource<WaitingJsonResponse> completionSource =
+                RequestTaskCompletionSource.newCompletionSource();
+        final BearerWaitingJsonRequest request =
+                new BearerWaitingJsonRequest(url, checkNotNull(session), waitSeconds, completionSource,
+                                             completionSource, mRetryPolicyFactory.newRetryPolicy());
+        addRequest(request, completionSource, cancellationHandle);
+        return completionSource.getTask();
+    }
+
+    /**
+     * Gets the extractions, unless they didn't change since the response with the given validators.
+     *
+     * @param eTag         Optional the ETag of the previous response.
+     * @param lastModified Optional the Last-Modified date of the previous response.
+     */
+    public Task<ConditionalJsonResponse> getExtractionsIfModified(final String documentId, final Session session,
+                                                                  @Nullable final String eTag,
+                                                                  @Nullable final String lastModified) {
+        return getExtractionsIfModified(documentId, session, eTag, lastModified, null);
+    }
+
+    /**
+     * @param cancellationHandle Optional a handle to cancel the request.
+     */
+    public Task<ConditionalJsonResponse> getExtractionsIfModified(final String documentId, final Session session,
+                                                                  @Nullable final String eTag,
+                                                                  @Nullable final String lastModified,
+                                                                  @Nullable final CancellationHandle
+                                                                          cancellationHandle) {
+        final String url = mUrls.extractions(documentId);
+        return doConditionalRequest(url, session, eTag, lastModified, cancellationHandle);
     }
 
     public Task<JSONObject> getExtractions(final String documentId, final Session session) {
-        final String url = mBaseUri.buildUpon().path(String.format("documents/%s/extractions",
-                                                                   checkNotNull(documentId))).toString();
+        return getExtractions(documentId, session, null);
+    }
+
+    /**
+     * @param cancellationHandle Optional a handle to cancel the request.
+     */
+    public Task<JSONObject> getExtractions(final String documentId, final Session session,
+                                           @Nullable final CancellationHandle cancellationHandle) {
+        final String url = mUrls.extractions(documentId);
         final RequestTaskCompletionSource<JSONObject> completionSource =
                 RequestTaskCompletionSource.newCompletionSource();
         final BearerJsonObjectRequest request =
                 new BearerJsonObjectRequest(GET, url, null, checkNotNull(session), completionSource, completionSource,
                                             mRetryPolicyFactory.newRetryPolicy());
-        mRequestQueue.add(request);
+        addRequest(request, completionSource, cancellationHandle);
 
         return completionSource.getTask();
     }
 
     public Task<JSONObject> getIncubatorExtractions(final String documentId, final Session session) {
-        final String url = mBaseUri.buildUpon().path(String.format("documents/%s/extractions",
-                checkNotNull(documentId))).toString();
+        return getIncubatorExtractions(documentId, session, null);
+    }
+
+    /**
+     * @param cancellationHandle Optional a handle to cancel the request.
+     */
+    public Task<JSONObject> getIncubatorExtractions(final String documentId, final Session session,
+                                                    @Nullable final CancellationHandle cancellationHandle) {
+        final String url = mUrls.extractions(documentId);
         final RequestTaskCompletionSource<JSONObject> completionSource = RequestTaskCompletionSource
                 .newCompletionSource();
         final BearerJsonObjectRequest request = new BearerJsonObjectRequest(GET, url, null, checkNotNull(session),
@@ -111,14 +310,14 @@ public class ApiCommunicator {
                 return headers;
             }
         };
-        mRequestQueue.add(request);
+        addRequest(request, completionSource, cancellationHandle);
 
         return completionSource.getTask();
     }
 
     public Task<String> deleteDocument(final String documentId, final Session session) {
         final String accessToken = checkNotNull(session).getAccessToken();
-        final String url = mBaseUri.buildUpon().path("documents/" + checkNotNull(documentId)).toString();
+        final String url = mUrls.document(documentId);
         final RequestTaskCompletionSource<String> completionSource = RequestTaskCompletionSource.newCompletionSource();
         final StringRequest request = new StringRequest(DELETE, url, completionSource, completionSource) {
             @Override
@@ -136,18 +335,30 @@ public class ApiCommunicator {
 
     public Task<JSONObject> errorReportForDocument(final String documentId, @Nullable final String summary,
                                                    @Nullable final String description, final Session session) {
-        final HashMap<String, String> requestParams = new HashMap<String, String>();
-        requestParams.put("summary", summary);
-        requestParams.put("description", description);
-        final String url = mBaseUri.buildUpon().path("documents/" + checkNotNull(documentId) + "/errorreport")
-                .encodedQuery(mapToUrlEncodedString(requestParams)).toString();
-        return doRequestWithJsonResponse(url, POST, session);
+        return errorReportForDocument(documentId, summary, description, session, null);
+    }
+
+    /**
+     * @param cancellationHandle Optional a handle to cancel the request.
+     */
+    public Task<JSONObject> errorReportForDocument(final String documentId, @Nullable final String summary,
+                                                   @Nullable final String description, final Session session,
+                                                   @Nullable final CancellationHandle cancellationHandle) {
+        final String url = mUrls.errorReport(documentId, summary, description);
+        return doRequestWithJsonResponse(url, POST, session, cancellationHandle);
     }
 
     public Task<JSONObject> sendFeedback(final String documentId, final JSONObject extractions, final Session session)
             throws JSONException {
-        final String url = mBaseUri.buildUpon().path(String.format("documents/%s/extractions",
-                checkNotNull(documentId))).toString();
+        return sendFeedback(documentId, extractions, session, null);
+    }
+
+    /**
+     * @param cancellationHandle Optional a handle to cancel the request.
+     */
+    public Task<JSONObject> sendFeedback(final String documentId, final JSONObject extractions, final Session session,
+                                         @Nullable final CancellationHandle cancellationHandle) throws JSONException {
+        final String url = mUrls.extractions(documentId);
         final RequestTaskCompletionSource<JSONObject> completionSource =
                 RequestTaskCompletionSource.newCompletionSource();
         final JSONObject requestData = new JSONObject();
@@ -155,16 +366,15 @@ public class ApiCommunicator {
         final BearerJsonObjectRequest request =
                 new BearerJsonObjectRequest(PUT, url, requestData, checkNotNull(session),
                         completionSource, completionSource, mRetryPolicyFactory.newRetryPolicy(), MediaTypes.GINI_JSON_V1);
-        mRequestQueue.add(request);
+        request.setCompressRequestBody(mCompressRequestBodies);
+        addRequest(request, completionSource, cancellationHandle);
 
         return completionSource.getTask();
     }
 
     public Task<Bitmap> getPreview(final String documentId, final int pageNumber,
                                    PreviewSize previewSize, final Session session) {
-        final String url = mBaseUri.buildUpon().path(String.format("documents/%s/pages/%s/%s",
-                checkNotNull(documentId), pageNumber,
-                previewSize.getDimensions())).toString();
+        final String url = mUrls.preview(documentId, pageNumber, previewSize.getDimensions());
         final String accessToken = checkNotNull(session).getAccessToken();
         RequestTaskCompletionSource<Bitmap> completionSource = RequestTaskCompletionSource.newCompletionSource();
         final ImageRequest imageRequest = new ImageRequest(url, completionSource, 0, 0, ARGB_8888, completionSource) {
@@ -183,27 +393,40 @@ public class ApiCommunicator {
     }
 
     public Task<JSONObject> getLayoutForDocument(final String documentId, final Session session) {
-        final String url =
-                mBaseUri.buildUpon().path(String.format("/documents/%s/layout", checkNotNull(documentId))).toString();
+        final String url = mUrls.layout(documentId);
         return doRequestWithJsonResponse(url, GET, session);
     }
 
+    /**
+     * Requests the layout of a document and parses it into a {@link Layout} while the response is read.
+     */
+    public Task<Layout> getLayoutModelForDocument(final String documentId, final Session session) {
+        return getLayoutModelForDocument(documentId, session, null);
+    }
+
+    /**
+     * @param cancellationHandle Optional a handle to cancel the request.
+     */
+    public Task<Layout> getLayoutModelForDocument(final String documentId, final Session session,
+                                                  @Nullable final CancellationHandle cancellationHandle) {
+        final String url = mUrls.layout(documentId);
+        final RequestTaskCompletionSource<Layout> completionSource = RequestTaskCompletionSource.newCompletionSource();
+        final BearerLayoutRequest layoutRequest =
+                new BearerLayoutRequest(url, checkNotNull(session), completionSource, completionSource,
+                                        mRetryPolicyFactory.newRetryPolicy());
+        addRequest(layoutRequest, completionSource, cancellationHandle);
+        return completionSource.getTask();
+    }
+
     public Task<JSONObject> getDocumentList(final int offset, final int limit, final Session session) {
-        final String url = mBaseUri.buildUpon().path("/documents")
-                .appendQueryParameter("offset", Integer.toString(offset))
-                .appendQueryParameter("limit", Integer.toString(limit)).toString();
+        final String url = mUrls.documentList(offset, limit);
         return doRequestWithJsonResponse(url, GET, session);
     }
 
     public Task<JSONObject> searchDocuments(final String searchTerm, @Nullable final String docType, final int offset,
                                             final int limit, final Session session) {
-        final Uri.Builder url = mBaseUri.buildUpon().path("/search").appendQueryParameter("q", searchTerm)
-                .appendQueryParameter("offset", Integer.toString(offset))
-                .appendQueryParameter("limit", Integer.toString(limit));
-        if (docType != null) {
-            url.appendQueryParameter("docType", docType);
-        }
-        return doRequestWithJsonResponse(url.toString(), GET, checkNotNull(session));
+        final String url = mUrls.search(searchTerm, docType, offset, limit);
+        return doRequestWithJsonResponse(url, GET, checkNotNull(session));
     }
 
     /**
@@ -216,18 +439,61 @@ public class ApiCommunicator {
      * @return          A Task which will resolve to a JSONObject representing the response of the Gini API.
      */
     private Task<JSONObject> doRequestWithJsonResponse(final String url, int method, final Session session) {
+        return doRequestWithJsonResponse(url, method, session, null);
+    }
+
+    private Task<JSONObject> doRequestWithJsonResponse(final String url, int method, final Session session,
+                                                       @Nullable final CancellationHandle cancellationHandle) {
         final RequestTaskCompletionSource<JSONObject> completionSource =
                 RequestTaskCompletionSource.newCompletionSource();
         final BearerJsonObjectRequest documentsRequest =
                 new BearerJsonObjectRequest(method, url, null, checkNotNull(session), completionSource, completionSource,
                                             mRetryPolicyFactory.newRetryPolicy());
-        mRequestQueue.add(documentsRequest);
+        addRequest(documentsRequest, completionSource, cancellationHandle);
         return completionSource.getTask();
     }
 
-    private Uri uriRelativeToBaseUri(Uri uri) {
+    private Task<ConditionalJsonResponse> doConditionalRequest(final String url, final Session session,
+                                                               @Nullable final String eTag,
+                                                               @Nullable final String lastModified,
+                                                               @Nullable final CancellationHandle cancellationHandle) {
+        final RequestTaskCompletionSource<ConditionalJsonResponse> completionSource =
+                RequestTaskCompletionSource.newCompletionSource();
+        final BearerConditionalJsonRequest request =
+                new BearerConditionalJsonRequest(url, checkNotNull(session), eTag, lastModified, completionSource,
+                                                 completionSource, mRetryPolicyFactory.newRetryPolicy());
+        addRequest(request, completionSource, cancellationHandle);
+        return completionSource.getTask();
+    }
 
-        return mBaseUri.buildUpon().path(uri.getPath()).query(uri.getQuery()).build();
+    /**
+     * Helper method to add a request to the request queue which can be cancelled with the given handle. Cancelling
+     * cancels the request and resolves the completion source's task as cancelled.
+     */
+    private <T> void addRequest(final Request<T> request, final RequestTaskCompletionSource<T> completionSource,
+                                @Nullable final CancellationHandle cancellationHandle) {
+        if (cancellationHandle == null) {
+            mRequestQueue.add(request);
+            return;
+        }
+        final CancellationHandle.OnCancelListener cancelListener = new CancellationHandle.OnCancelListener() {
+            @Override
+            public void onCancel() {
+                request.cancel();
+                completionSource.cancel();
+            }
+        };
+        completionSource.getTask().continueWith(new Continuation<T, Void>() {
+            @Override
+            public Void then(Task<T> task) throws Exception {
+                cancellationHandle.removeOnCancelListener(cancelListener);
+                return null;
+            }
+        });
+        cancellationHandle.addOnCancelListener(cancelListener);
+        if (!cancellationHandle.isCancelled()) {
+            mRequestQueue.add(request);
+        }
     }
 
     public enum PreviewSize {
@@ -0,0 +1,142 @@
+package net.gini.android;
+
+import net.gini.android.DocumentTaskManager.ExtractionsListener;
+import net.gini.android.models.Document;
+import net.gini.android.models.SpecificExtraction;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import bolts.Continuation;
+import bolts.Task;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * Fetches the extractions of many documents with a bounded number of requests running at the same time.
+ * <p>
+ * The documents are taken from the iterator only when a request can be started, and a request counts as running until
+ * the listener returned from the callback for its result. A slow listener therefore slows down the fetching and at most
+ * as many parsed results as requests are allowed to run are held in memory.
+ * <p>
+ * The listener is called on the callback executor as soon as a result is available. Results of different documents
+ * arrive concurrently on different threads, so the listener must be thread-safe.
+ */
+class BatchExtractionsFetcher {
+
+    /**
+     * Starts the asynchronous retrieval of a document's extractions.
+     */
+    interface ExtractionsLoader {
+        Task<Map<String, SpecificExtraction>> load(Document document);
+    }
+
+    private final Iterator<? extends Document> mDocuments;
+    private final ExtractionsLoader mLoader;
+    private final ExtractionsListener mListener;
+    private final Executor mCallbackExecutor;
+    private final CancellationHandle mCancellationHandle;
+    private final Task<Void>.TaskCompletionSource mCompletionSource = Task.create();
+    private int mRunningRequests;
+    private boolean mExhausted;
+    private boolean mCancelled;
+    private boolean mCompleted;
+
+    /**
+     * @param callbackExecutor   The executor on which the listener is called.
+     * @param cancellationHandle Optional a handle to stop starting new requests.
+     */
+    BatchExtractionsFetcher(final Iterable<? extends Document> documents, final ExtractionsLoader loader,
+                            final ExtractionsListener listener, final Executor callbackExecutor,
+                            @Nullable final CancellationHandle cancellationHandle) {
+        mDocuments = checkNotNull(documents).iterator();
+        mLoader = checkNotNull(loader);
+        mListener = checkNotNull(listener);
+        mCallbackExecutor = checkNotNull(callbackExecutor);
+        mCancellationHandle = cancellationHandle;
+    }
+
+    /**
+     * Starts the first requests. Must be called only once.
+     *
+     * @return A task which resolves when the extractions of all documents were passed to the listener, or as cancelled
+     * when the fetching was cancelled and the running requests completed.
+     */
+    Task<Void> start(final int maxConcurrentRequests) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("At least one concurrent request is required");
+        }
+        for (int i = 0; i < maxConcurrentRequests; i++) {
+            if (!startNextRequest()) {
+                break;
+            }
+        }
+        return mCompletionSource.getTask();
+    }
+
+    private boolean startNextRequest() {
+        final Document document;
+        synchronized (this) {
+            if (!mExhausted) {
+                if (!mDocuments.hasNext()) {
+                    mExhausted = true;
+                } else if (mCancellationHandle != null && mCancellationHandle.isCancelled()) {
+                    mExhausted = true;
+                    mCancelled = true;
+                }
+            }
+            if (mExhausted) {
+                document = null;
+            } else {
+                document = mDocuments.next();
+                mRunningRequests++;
+            }
+        }
+        if (document == null) {
+            completeIfDone();
+            return false;
+        }
+        Task<Map<String, SpecificExtraction>> extractionsTask;
+        try {
+            extractionsTask = mLoader.load(document);
+        } catch (Exception e) {
+            extractionsTask = Task.forError(e);
+        }
+        extractionsTask.continueWith(new Continuation<Map<String, SpecificExtraction>, Void>() {
+            @Override
+            public Void then(Task<Map<String, SpecificExtraction>> task) throws Exception {
+                try {
+                    if (task.isFaulted()) {
+                        mListener.onExtractionsFailed(document, task.getError());
+                    } else if (!task.isCancelled()) {
+                        mListener.onExtractions(document, task.getResult());
+                    }
+                } finally {
+                    synchronized (BatchExtractionsFetcher.this) {
+                        mRunningRequests--;
+                    }
+                    startNextRequest();
+                }
+                return null;
+            }
+        }, mCallbackExecutor);
+        return true;
+    }
+
+    private void completeIfDone() {
+        synchronized (this) {
+            if (mCompleted || !mExhausted || mRunningRequests > 0) {
+                return;
+            }
+            mCompleted = true;
+        }
+        if (mCancelled) {
+            mCompletionSource.setCancelled();
+        } else {
+            mCompletionSource.setResult(null);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package net.gini.android;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+
+import bolts.Continuation;
+import bolts.Task;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * Runs asynchronous operations while limiting the number of operations which are running at the same time. Operations
+ * exceeding the limit are started in the order of their submission as soon as a running operation completes.
+ */
+class ConcurrencyLimiter {
+
+    private final int mMaxConcurrentOperations;
+    private final Queue<Runnable> mPendingOperations = new LinkedList<Runnable>();
+    private int mRunningOperations;
+
+    ConcurrencyLimiter(final int maxConcurrentOperations) {
+        if (maxConcurrentOperations < 1) {
+            throw new IllegalArgumentException("At least one concurrent operation is required");
+        }
+        mMaxConcurrentOperations = maxConcurrentOperations;
+    }
+
+    int getMaxConcurrentOperations() {
+        return mMaxConcurrentOperations;
+    }
+
+    /**
+     * Submits the given operation. It is called on the thread which submits it or which completed the previous
+     * operation, so it should only start the asynchronous work and return the task.
+     *
+     * @return A task which resolves to the result of the operation's task.
+     */
+    <T> Task<T> submit(final Callable<Task<T>> operation) {
+        checkNotNull(operation);
+        final Task<T>.TaskCompletionSource completionSource = Task.create();
+        final Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                Task<T> operationTask;
+                try {
+                    operationTask = operation.call();
+                } catch (Exception e) {
+                    operationTask = Task.forError(e);
+                }
+                operationTask.continueWith(new Continuation<T, Void>() {
+                    @Override
+                    public Void then(Task<T> task) throws Exception {
+                        onOperationCompleted();
+                        if (task.isCancelled()) {
+                            completionSource.setCancelled();
+                        } else if (task.isFaulted()) {
+                            completionSource.setError(task.getError());
+                        } else {
+                            completionSource.setResult(task.getResult());
+                        }
+                        return null;
+                    }
+                });
+            }
+        };
+        final boolean runNow;
+        synchronized (this) {
+            runNow = mRunningOperations < mMaxConcurrentOperations;
+            if (runNow) {
+                mRunningOperations++;
+            } else {
+                mPendingOperations.add(runnable);
+            }
+        }
+        if (runNow) {
+            runnable.run();
+        }
+        return completionSource.getTask();
+    }
+
+    private void onOperationCompleted() {
+        final Runnable next;
+        synchronized (this) {
+            next = mPendingOperations.poll();
+            if (next == null) {
+                mRunningOperations--;
+            }
+        }
+        if (next != null) {
+            next.run();
+        }
+    }
+}
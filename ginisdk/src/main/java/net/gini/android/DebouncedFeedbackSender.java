@@ -0,0 +1,153 @@
+package net.gini.android;
+
+import net.gini.android.models.Document;
+import net.gini.android.models.SpecificExtraction;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import bolts.Continuation;
+import bolts.Task;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * Coalesces rapid successive feedback for the extractions of a document into a single request.
+ * </p>
+ * <p>
+ * Every call of {@link #submit(Map)} restarts the delay. When the delay elapsed without further submissions, the
+ * feedback for all dirty extractions of the submitted maps is sent with
+ * {@link DocumentTaskManager#sendFeedbackForDirtyExtractions(Document, Map)}. The feedback requests of one sender are
+ * sent one after the other, so a later change never overtakes an earlier one.
+ * </p>
+ * <p>
+ * Call {@link #flush()} when the user leaves the review screen to send the pending feedback immediately.
+ * </p>
+ * <p>
+ * The delay is timed by the shared timer of the {@link SdkExecutors} and the feedback is sent from the
+ * DocumentTaskManager's I/O executor.
+ * </p>
+ */
+public class DebouncedFeedbackSender {
+
+    /**
+     * The default delay in milliseconds after the last submission until the feedback is sent.
+     */
+    public static final long DEFAULT_DELAY_MS = 500;
+
+    private final DocumentTaskManager mDocumentTaskManager;
+    private final Executor mIoExecutor;
+    private final Document mDocument;
+    private final long mDelayMs;
+
+    private final Map<String, SpecificExtraction> mPendingExtractions = new HashMap<String, SpecificExtraction>();
+    private Task<Document>.TaskCompletionSource mPendingCompletionSource;
+    /**
+     * Cancels the delay of the scheduled flush.
+     */
+    private CancellationHandle mScheduledFlush;
+    private Task<Document> mLastFeedbackTask;
+
+    public DebouncedFeedbackSender(final DocumentTaskManager documentTaskManager, final Document document) {
+        this(documentTaskManager, document, DEFAULT_DELAY_MS);
+    }
+
+    /**
+     * @param delayMs The delay in milliseconds after the last submission until the feedback is sent.
+     */
+    public DebouncedFeedbackSender(final DocumentTaskManager documentTaskManager, final Document document,
+                                   final long delayMs) {
+        if (delayMs < 0) {
+            throw new IllegalArgumentException("delayMs can't be less than 0");
+        }
+        mDocumentTaskManager = checkNotNull(documentTaskManager);
+        mIoExecutor = documentTaskManager.getExecutors().getIoExecutor();
+        mDocument = checkNotNull(document);
+        mDelayMs = delayMs;
+        mLastFeedbackTask = Task.forResult(document);
+    }
+
+    /**
+     * Submits the extractions for the feedback. Only the extractions which are dirty when the feedback is sent are
+     * included in the request.
+     *
+     * @param extractions A Map where the key is the name of the specific extraction and the value is the
+     *                    SpecificExtraction object.
+     *
+     * @return A Task which will resolve to the document when the coalesced feedback was sent. All submissions which
+     * were coalesced resolve with the same result.
+     */
+    public synchronized Task<Document> submit(final Map<String, SpecificExtraction> extractions) {
+        mPendingExtractions.putAll(checkNotNull(extractions));
+        if (mPendingCompletionSource == null) {
+            mPendingCompletionSource = Task.create();
+        }
+        if (mScheduledFlush != null) {
+            mScheduledFlush.cancel();
+        }
+        final CancellationHandle scheduledFlush = new CancellationHandle();
+        mScheduledFlush = scheduledFlush;
+        SdkExecutors.delay(mDelayMs, scheduledFlush).onSuccess(new Continuation<Void, Void>() {
+            @Override
+            public Void then(Task<Void> task) throws Exception {
+                flushIfScheduled(scheduledFlush);
+                return null;
+            }
+        }, mIoExecutor);
+        return mPendingCompletionSource.getTask();
+    }
+
+    /**
+     * Flushes, unless a later submission restarted the delay or the pending feedback was flushed in the meantime.
+     */
+    private synchronized void flushIfScheduled(final CancellationHandle scheduledFlush) {
+        if (mScheduledFlush == scheduledFlush) {
+            flush();
+        }
+    }
+
+    /**
+     * Sends the pending feedback immediately.
+     *
+     * @return A Task which will resolve to the document when the pending feedback was sent. If there is no pending
+     * feedback, the task of the last feedback request is returned.
+     */
+    public synchronized Task<Document> flush() {
+        if (mPendingCompletionSource == null) {
+            return mLastFeedbackTask;
+        }
+        if (mScheduledFlush != null) {
+            mScheduledFlush.cancel();
+            mScheduledFlush = null;
+        }
+        final Map<String, SpecificExtraction> extractions =
+                new HashMap<String, SpecificExtraction>(mPendingExtractions);
+        mPendingExtractions.clear();
+        final Task<Document>.TaskCompletionSource completionSource = mPendingCompletionSource;
+        mPendingCompletionSource = null;
+
+        // The outcome of the previous request doesn't matter, its dirty extractions are still dirty if it failed.
+        mLastFeedbackTask = mLastFeedbackTask.continueWithTask(new Continuation<Document, Task<Document>>() {
+            @Override
+            public Task<Document> then(Task<Document> task) throws Exception {
+                return mDocumentTaskManager.sendFeedbackForDirtyExtractions(mDocument, extractions);
+            }
+        }, mIoExecutor);
+        mLastFeedbackTask.continueWith(new Continuation<Document, Void>() {
+            @Override
+            public Void then(Task<Document> task) throws Exception {
+                if (task.isCancelled()) {
+                    completionSource.setCancelled();
+                } else if (task.isFaulted()) {
+                    completionSource.setError(task.getError());
+                } else {
+                    completionSource.setResult(task.getResult());
+                }
+                return null;
+            }
+        });
+        return completionSource.getTask();
+    }
+}
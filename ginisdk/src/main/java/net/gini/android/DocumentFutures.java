@@ -0,0 +1,173 @@
+package net.gini.android;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+import net.gini.android.DocumentTaskManager.DocumentType;
+import net.gini.android.models.Document;
+import net.gini.android.models.Layout;
+import net.gini.android.models.MergedExtractions;
+import net.gini.android.models.SpecificExtraction;
+import net.gini.android.requests.UploadProgressListener;
+
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONException;
+
+import java.io.File;
+import java.util.Map;
+
+import bolts.Continuation;
+import bolts.Task;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * A facade of the {@link DocumentTaskManager} whose methods return {@link SdkFuture}s instead of Bolts tasks. Get it
+ * with {@link DocumentTaskManager#getFutures()}.
+ * </p>
+ * <p>
+ * The futures are completed directly on the thread which finished the operation's last step, there is no additional
+ * handoff to another executor. Use {@link SdkFuture#addCallback(SdkFuture.Callback, java.util.concurrent.Executor)}
+ * to continue on a thread of your choice and {@link SdkExecutors} to choose the threads on which the SDK itself runs.
+ * </p>
+ * <p>
+ * Every future has its own {@link CancellationHandle} which is passed to the operation. Cancelling the future cancels
+ * the underlying Volley requests: a running upload is aborted and polling a document stops without sending further
+ * requests.
+ * </p>
+ */
+public class DocumentFutures {
+
+    private final DocumentTaskManager mDocumentTaskManager;
+
+    DocumentFutures(final DocumentTaskManager documentTaskManager) {
+        mDocumentTaskManager = checkNotNull(documentTaskManager);
+    }
+
+    /**
+     * Returns a future which is completed with the result of the given task.
+     */
+    static <T> SdkFuture<T> fromTask(final Task<T> task, final SdkFuture<T> future) {
+        // Without an executor Bolts runs the continuation on the thread which completed the task.
+        task.continueWith(new Continuation<T, Void>() {
+            @Override
+            public Void then(Task<T> task) throws Exception {
+                if (task.isCancelled()) {
+                    future.cancel(false);
+                } else if (task.isFaulted()) {
+                    future.fail(task.getError());
+                } else {
+                    future.complete(task.getResult());
+                }
+                return null;
+            }
+        });
+        return future;
+    }
+
+    /**
+     * @see DocumentTaskManager#createDocument(byte[], String, DocumentType, UploadProgressListener,
+     * CancellationHandle)
+     */
+    public SdkFuture<Document> createDocument(final byte[] document, @Nullable final String filename,
+                                              @Nullable final DocumentType documentType,
+                                              @Nullable final UploadProgressListener progressListener) {
+        final SdkFuture<Document> future = new SdkFuture<Document>(new CancellationHandle());
+        return fromTask(mDocumentTaskManager.createDocument(document, filename, documentType, progressListener,
+                future.getCancellationHandle()), future);
+    }
+
+    /**
+     * @see DocumentTaskManager#createDocument(File, String, DocumentType, UploadProgressListener, CancellationHandle)
+     */
+    public SdkFuture<Document> createDocument(final File document, @Nullable final String filename,
+                                              @Nullable final DocumentType documentType,
+                                              @Nullable final UploadProgressListener progressListener) {
+        final SdkFuture<Document> future = new SdkFuture<Document>(new CancellationHandle());
+        return fromTask(mDocumentTaskManager.createDocument(document, filename, documentType, progressListener,
+                future.getCancellationHandle()), future);
+    }
+
+    /**
+     * @see DocumentTaskManager#createDocument(Bitmap, String, DocumentType, UploadProgressListener,
+     * CancellationHandle)
+     */
+    public SdkFuture<Document> createDocument(final Bitmap document, @Nullable final String filename,
+                                              @Nullable final DocumentType documentType,
+                                              @Nullable final UploadProgressListener progressListener) {
+        final SdkFuture<Document> future = new SdkFuture<Document>(new CancellationHandle());
+        return fromTask(mDocumentTaskManager.createDocument(document, filename, documentType, progressListener,
+                future.getCancellationHandle()), future);
+    }
+
+    /**
+     * @see DocumentTaskManager#getDocument(String, CancellationHandle)
+     */
+    public SdkFuture<Document> getDocument(final String documentId) {
+        final SdkFuture<Document> future = new SdkFuture<Document>(new CancellationHandle());
+        return fromTask(mDocumentTaskManager.getDocument(documentId, future.getCancellationHandle()), future);
+    }
+
+    /**
+     * @see DocumentTaskManager#getDocument(Uri, CancellationHandle)
+     */
+    public SdkFuture<Document> getDocument(final Uri documentUri) {
+        final SdkFuture<Document> future = new SdkFuture<Document>(new CancellationHandle());
+        return fromTask(mDocumentTaskManager.getDocument(documentUri, future.getCancellationHandle()), future);
+    }
+
+    /**
+     * @see DocumentTaskManager#pollDocument(Document, CancellationHandle)
+     */
+    public SdkFuture<Document> pollDocument(final Document document) {
+        final SdkFuture<Document> future = new SdkFuture<Document>(new CancellationHandle());
+        return fromTask(mDocumentTaskManager.pollDocument(document, future.getCancellationHandle()), future);
+    }
+
+    /**
+     * @see DocumentTaskManager#getExtractions(Document, CancellationHandle)
+     */
+    public SdkFuture<Map<String, SpecificExtraction>> getExtractions(final Document document) {
+        final SdkFuture<Map<String, SpecificExtraction>> future =
+                new SdkFuture<Map<String, SpecificExtraction>>(new CancellationHandle());
+        return fromTask(mDocumentTaskManager.getExtractions(document, future.getCancellationHandle()), future);
+    }
+
+    /**
+     * @see DocumentTaskManager#getMergedExtractions(Document, CancellationHandle)
+     */
+    public SdkFuture<MergedExtractions> getMergedExtractions(final Document document) {
+        final SdkFuture<MergedExtractions> future = new SdkFuture<MergedExtractions>(new CancellationHandle());
+        return fromTask(mDocumentTaskManager.getMergedExtractions(document, future.getCancellationHandle()), future);
+    }
+
+    /**
+     * @see DocumentTaskManager#sendFeedbackForExtractions(Document, Map, CancellationHandle)
+     */
+    public SdkFuture<Document> sendFeedbackForExtractions(final Document document,
+                                                          final Map<String, SpecificExtraction> extractions)
+            throws JSONException {
+        final SdkFuture<Document> future = new SdkFuture<Document>(new CancellationHandle());
+        return fromTask(mDocumentTaskManager.sendFeedbackForExtractions(document, extractions,
+                future.getCancellationHandle()), future);
+    }
+
+    /**
+     * @see DocumentTaskManager#reportDocument(Document, String, String, CancellationHandle)
+     */
+    public SdkFuture<String> reportDocument(final Document document, @Nullable final String summary,
+                                            @Nullable final String description) {
+        final SdkFuture<String> future = new SdkFuture<String>(new CancellationHandle());
+        return fromTask(mDocumentTaskManager.reportDocument(document, summary, description,
+                future.getCancellationHandle()), future);
+    }
+
+    /**
+     * @see DocumentTaskManager#getLayoutModel(Document, CancellationHandle)
+     */
+    public SdkFuture<Layout> getLayoutModel(final Document document) {
+        final SdkFuture<Layout> future = new SdkFuture<Layout>(new CancellationHandle());
+        return fromTask(mDocumentTaskManager.getLayoutModel(document, future.getCancellationHandle()), future);
+    }
+}
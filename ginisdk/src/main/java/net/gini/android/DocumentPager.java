@@ -0,0 +1,317 @@
+package net.gini.android;
+
+import net.gini.android.models.Document;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+
+import bolts.Continuation;
+import bolts.Task;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * Pages through a document list or the results of a document search. Pages are loaded lazily when they are requested
+ * and the page after a loaded page is prefetched, so it is usually available when the current page was consumed.
+ * </p>
+ * <p>
+ * Loaded pages are cached in memory. When more than the configured number of pages are cached, the least recently
+ * used page is released. The {@link #iterator()} additionally releases all pages before its current page.
+ * </p>
+ * <p>
+ * Create instances with {@link DocumentTaskManager#getDocumentPager(int)} or {@link
+ * DocumentTaskManager#searchDocuments(String, DocumentTaskManager.DocumentType, int)}.
+ * </p>
+ */
+public class DocumentPager implements Iterable<Document> {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    /**
+     * The default number of pages which are cached in memory.
+     */
+    public static final int DEFAULT_MAX_CACHED_PAGES = 5;
+
+    /**
+     * Returned by {@link #getTotalCount()} while no page was loaded.
+     */
+    public static final int UNKNOWN_TOTAL_COUNT = -1;
+
+    /**
+     * Loads a page of documents from the Gini API.
+     */
+    interface PageLoader {
+        /**
+         * @return A task which resolves to the API response which contains the documents in the array
+         * "documents" and the number of all documents in "totalCount".
+         */
+        Task<JSONObject> loadPage(int offset, int limit);
+    }
+
+    private final PageLoader mPageLoader;
+    private final int mPageSize;
+    private final int mMaxCachedPages;
+    private final Executor mParsingExecutor;
+
+    private final LinkedHashMap<Integer, Task<List<Document>>> mPages;
+    private int mTotalCount = UNKNOWN_TOTAL_COUNT;
+
+    /**
+     * @param parsingExecutor The executor on which the responses are parsed.
+     */
+    DocumentPager(final PageLoader pageLoader, final int pageSize, final int maxCachedPages,
+                  final Executor parsingExecutor) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize can't be less than 1");
+        }
+        if (maxCachedPages < 2) {
+            throw new IllegalArgumentException("maxCachedPages can't be less than 2, the current and the next page");
+        }
+        mPageLoader = checkNotNull(pageLoader);
+        mPageSize = pageSize;
+        mMaxCachedPages = maxCachedPages;
+        mParsingExecutor = checkNotNull(parsingExecutor);
+        mPages = new LinkedHashMap<Integer, Task<List<Document>>>(maxCachedPages + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Integer, Task<List<Document>>> eldest) {
+                return size() > mMaxCachedPages;
+            }
+        };
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    public int getMaxCachedPages() {
+        return mMaxCachedPages;
+    }
+
+    /**
+     * Returns the number of all documents as reported with the last loaded page or {@link #UNKNOWN_TOTAL_COUNT}, if no
+     * page was loaded yet.
+     */
+    public synchronized int getTotalCount() {
+        return mTotalCount;
+    }
+
+    /**
+     * Returns the number of pages which are currently cached, including pages which are still loading.
+     */
+    public synchronized int getCachedPageCount() {
+        return mPages.size();
+    }
+
+    /**
+     * Returns the page with the given index. If it is not cached, it is loaded. When the page was loaded, the next page
+     * is prefetched, if there is one.
+     *
+     * @param pageIndex The zero based index of the page.
+     *
+     * @return A task which resolves to the documents of the page. The last page may contain less than {@link
+     * #getPageSize()} documents and pages after the last page are empty.
+     */
+    public Task<List<Document>> getPage(final int pageIndex) {
+        if (pageIndex < 0) {
+            throw new IllegalArgumentException("pageIndex can't be less than 0");
+        }
+        return getPage(pageIndex, true);
+    }
+
+    /**
+     * Returns the document at the given position.
+     *
+     * @return A task which resolves to the document or which fails with an {@link IndexOutOfBoundsException}, if
+     * there is no document at the position.
+     */
+    public Task<Document> getDocument(final int position) {
+        if (position < 0) {
+            throw new IndexOutOfBoundsException("position can't be less than 0");
+        }
+        return getPage(position / mPageSize).onSuccess(new Continuation<List<Document>, Document>() {
+            @Override
+            public Document then(Task<List<Document>> task) throws Exception {
+                final List<Document> page = task.getResult();
+                final int index = position % mPageSize;
+                if (index >= page.size()) {
+                    throw new IndexOutOfBoundsException("There is no document at position " + position);
+                }
+                return page.get(index);
+            }
+        });
+    }
+
+    /**
+     * Releases the cached pages before the given page.
+     */
+    public synchronized void releasePagesBefore(final int pageIndex) {
+        final Iterator<Integer> cachedPageIndexes = mPages.keySet().iterator();
+        while (cachedPageIndexes.hasNext()) {
+            if (cachedPageIndexes.next() < pageIndex) {
+                cachedPageIndexes.remove();
+            }
+        }
+    }
+
+    /**
+     * Releases all cached pages, e.g. to load the current state of the list.
+     */
+    public synchronized void releaseAll() {
+        mPages.clear();
+        mTotalCount = UNKNOWN_TOTAL_COUNT;
+    }
+
+    /**
+     * Returns an iterator over all documents, starting with the first one. <b>The iterator blocks while a page is
+     * loaded, so it must not be used on the main thread.</b> Pages which were iterated past are released.
+     * <p>
+     * If a page can't be loaded or the thread is interrupted while waiting for a page, {@link Iterator#hasNext()} throws
+     * an {@link IllegalStateException} with the cause.
+     */
+    @Override
+    public Iterator<Document> iterator() {
+        return new DocumentIterator();
+    }
+
+    private Task<List<Document>> getPage(final int pageIndex, final boolean prefetchNextPage) {
+        Task<List<Document>> pageTask;
+        boolean loading = false;
+        synchronized (this) {
+            pageTask = mPages.get(pageIndex);
+            if (pageTask == null) {
+                pageTask = loadPage(pageIndex);
+                mPages.put(pageIndex, pageTask);
+                loading = true;
+            }
+        }
+        if (loading) {
+            releaseFailedPage(pageIndex, pageTask);
+        }
+        if (prefetchNextPage) {
+            pageTask.onSuccess(new Continuation<List<Document>, Void>() {
+                @Override
+                public Void then(Task<List<Document>> task) throws Exception {
+                    if (hasPageAfter(pageIndex, task.getResult())) {
+                        // The prefetched page must not evict the requested one.
+                        synchronized (DocumentPager.this) {
+                            mPages.get(pageIndex);
+                        }
+                        getPage(pageIndex + 1, false);
+                    }
+                    return null;
+                }
+            });
+        }
+        return pageTask;
+    }
+
+    private synchronized boolean hasPageAfter(final int pageIndex, final List<Document> page) {
+        if (page.size() < mPageSize) {
+            return false;
+        }
+        return mTotalCount == UNKNOWN_TOTAL_COUNT || (pageIndex + 1) * mPageSize < mTotalCount;
+    }
+
+    private void releaseFailedPage(final int pageIndex, final Task<List<Document>> pageTask) {
+        pageTask.continueWith(new Continuation<List<Document>, Void>() {
+            @Override
+            public Void then(Task<List<Document>> task) throws Exception {
+                if (task.isFaulted() || task.isCancelled()) {
+                    // Don't cache failures, so the page is loaded again when it is requested the next time.
+                    synchronized (DocumentPager.this) {
+                        if (mPages.get(pageIndex) == pageTask) {
+                            mPages.remove(pageIndex);
+                        }
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    private Task<List<Document>> loadPage(final int pageIndex) {
+        return mPageLoader.loadPage(pageIndex * mPageSize, mPageSize)
+                .onSuccess(new Continuation<JSONObject, List<Document>>() {
+                    @Override
+                    public List<Document> then(Task<JSONObject> task) throws Exception {
+                        final JSONObject responseData = task.getResult();
+                        final JSONArray documentsData = responseData.getJSONArray("documents");
+                        final List<Document> documents = new ArrayList<Document>(documentsData.length());
+                        for (int i = 0; i < documentsData.length(); i++) {
+                            documents.add(Document.fromApiResponse(documentsData.getJSONObject(i)));
+                        }
+                        if (responseData.has("totalCount")) {
+                            synchronized (DocumentPager.this) {
+                                mTotalCount = responseData.getInt("totalCount");
+                            }
+                        }
+                        return Collections.unmodifiableList(documents);
+                    }
+                }, mParsingExecutor);
+    }
+
+    private class DocumentIterator implements Iterator<Document> {
+
+        private int mPosition;
+        private int mCurrentPageIndex = -1;
+        private List<Document> mCurrentPage;
+
+        @Override
+        public boolean hasNext() {
+            final int pageIndex = mPosition / mPageSize;
+            if (pageIndex != mCurrentPageIndex) {
+                final int totalCount = getTotalCount();
+                if (mCurrentPage != null && (mCurrentPage.size() < mPageSize
+                        || (totalCount != UNKNOWN_TOTAL_COUNT && mPosition >= totalCount))) {
+                    return false;
+                }
+                mCurrentPage = awaitPage(pageIndex);
+                mCurrentPageIndex = pageIndex;
+                releasePagesBefore(pageIndex);
+            }
+            return mPosition % mPageSize < mCurrentPage.size();
+        }
+
+        @Override
+        public Document next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Document document = mCurrentPage.get(mPosition % mPageSize);
+            mPosition++;
+            return document;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private List<Document> awaitPage(final int pageIndex) {
+            final Task<List<Document>> pageTask = getPage(pageIndex);
+            try {
+                pageTask.waitForCompletion();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while loading page " + pageIndex, e);
+            }
+            if (pageTask.isFaulted()) {
+                throw new IllegalStateException("Could not load page " + pageIndex, pageTask.getError());
+            }
+            if (pageTask.isCancelled()) {
+                throw new IllegalStateException("Loading page " + pageIndex + " was cancelled");
+            }
+            return pageTask.getResult();
+        }
+    }
+}
@@ -3,12 +3,26 @@ package net.gini.android;
 import android.graphics.Bitmap;
 import android.net.Uri;
 
+import com.android.volley.TimeoutError;
+import com.android.volley.VolleyError;
+
+import net.gini.android.authorization.CredentialsStore;
 import net.gini.android.authorization.Session;
 import net.gini.android.authorization.SessionManager;
+import net.gini.android.authorization.UserCredentials;
+import net.gini.android.imaging.AdaptiveJpegEncoder;
+import net.gini.android.imaging.DocumentImagePreprocessor;
 import net.gini.android.models.Box;
+import net.gini.android.models.BoxArray;
 import net.gini.android.models.Document;
 import net.gini.android.models.Extraction;
+import net.gini.android.models.Layout;
+import net.gini.android.models.MergedExtractions;
 import net.gini.android.models.SpecificExtraction;
+import net.gini.android.requests.ConditionalJsonResponse;
+import net.gini.android.requests.UploadProgressListener;
+import net.gini.android.requests.WaitingJsonResponse;
+import net.gini.android.search.LocalSearchIndex;
 
 import org.jetbrains.annotations.Nullable;
 import org.json.JSONArray;
@@ -16,11 +30,17 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import bolts.Continuation;
 import bolts.Task;
@@ -57,6 +77,27 @@ public class DocumentTaskManager {
         }
     }
 
+    /**
+     * Listener for the extractions fetched by {@link #getExtractions(Iterable, int, ExtractionsListener,
+     * CancellationHandle)}.
+     * <p>
+     * The methods are called on the I/O executor's threads. With more than one concurrent request they are called
+     * concurrently for different documents, so implementations must be thread-safe.
+     */
+    public interface ExtractionsListener {
+
+        /**
+         * Called when the extractions of a document were fetched. The next request is started only after this method
+         * returned, so slow processing here slows down the fetching instead of piling up results.
+         */
+        void onExtractions(Document document, Map<String, SpecificExtraction> extractions);
+
+        /**
+         * Called when the extractions of a document could not be fetched. The other documents are fetched anyway.
+         */
+        void onExtractionsFailed(Document document, Exception error);
+    }
+
     /**
      * The time in milliseconds between HTTP requests when a document is polled.
      */
@@ -67,6 +108,17 @@ public class DocumentTaskManager {
      */
     public final static int DEFAULT_COMPRESSION = 50;
 
+    /**
+     * The default number of page uploads which run at the same time when a composite document is created.
+     */
+    public final static int DEFAULT_MAX_CONCURRENT_PAGE_UPLOADS = 3;
+
+    /**
+     * The default number of extraction requests which run at the same time when the extractions of several documents
+     * are fetched.
+     */
+    public final static int DEFAULT_MAX_CONCURRENT_EXTRACTION_REQUESTS = 4;
+
     /**
      * The ApiCommunicator instance which is used to communicate with the Gini API.
      */
@@ -75,10 +127,132 @@ public class DocumentTaskManager {
      * The SessionManager instance which is used to create the documents.
      */
     private final SessionManager mSessionManager;
+    /**
+     * The executors on which the continuations of the tasks are run.
+     */
+    private final SdkExecutors mExecutors;
+    /**
+     * The optional index to which retrieved documents and extractions are added.
+     */
+    private volatile LocalSearchIndex mLocalSearchIndex;
+    /**
+     * The optional cache of the validators and models for conditional requests.
+     */
+    private volatile ConditionalRequestCache mConditionalRequestCache;
+    /**
+     * The time in seconds for which the Gini API is asked to hold a polling request or 0 to poll in intervals.
+     */
+    private volatile int mLongPollingWaitSeconds;
+    /**
+     * The optional store of the hashes of uploaded documents.
+     */
+    private volatile UploadDeduplicationStore mUploadDeduplicationStore;
+    /**
+     * The optional store of the current user's credentials. The user's name is part of the de-duplication keys.
+     */
+    private volatile CredentialsStore mUploadDeduplicationCredentialsStore;
+    /**
+     * The facade which returns futures instead of tasks.
+     */
+    private final DocumentFutures mFutures = new DocumentFutures(this);
 
+    /**
+     * Creates a DocumentTaskManager which runs the continuations of its tasks on Bolts' {@link
+     * Task#BACKGROUND_EXECUTOR}.
+     */
     public DocumentTaskManager(final ApiCommunicator apiCommunicator, final SessionManager sessionManager) {
+        this(apiCommunicator, sessionManager, SdkExecutors.boltsBackground());
+    }
+
+    /**
+     * @param executors The executors on which the continuations of the tasks are run.
+     */
+    public DocumentTaskManager(final ApiCommunicator apiCommunicator, final SessionManager sessionManager,
+                               final SdkExecutors executors) {
         mApiCommunicator = checkNotNull(apiCommunicator);
         mSessionManager = checkNotNull(sessionManager);
+        mExecutors = checkNotNull(executors);
+    }
+
+    /**
+     * Returns the executors on which the continuations of the tasks are run, e.g. to observe their metrics.
+     */
+    public SdkExecutors getExecutors() {
+        return mExecutors;
+    }
+
+    /**
+     * Returns a facade of this manager whose methods return {@link SdkFuture}s instead of tasks, e.g. to compose the
+     * SDK's operations with other async libraries.
+     */
+    public DocumentFutures getFutures() {
+        return mFutures;
+    }
+
+    /**
+     * Sets an index to which the processed documents and the extractions retrieved with this manager are added in the
+     * background. Use a {@link net.gini.android.search.DocumentSearch} to search it.
+     *
+     * @param localSearchIndex The index or null to stop indexing.
+     */
+    public void setLocalSearchIndex(@Nullable final LocalSearchIndex localSearchIndex) {
+        mLocalSearchIndex = localSearchIndex;
+    }
+
+    /**
+     * Sets a cache with which documents and extractions are requested conditionally. If they didn't change since the
+     * cached response, the cached models are returned without parsing. This saves most of the traffic and work of
+     * polling documents and refreshing extractions.
+     * <p>
+     * The extractions are copied from the cache, so changing the returned extractions doesn't change the cache.
+     *
+     * @param conditionalRequestCache The cache or null to request unconditionally.
+     */
+    public void setConditionalRequestCache(@Nullable final ConditionalRequestCache conditionalRequestCache) {
+        mConditionalRequestCache = conditionalRequestCache;
+    }
+
+    /**
+     * Sets a store with which uploads of the same content are de-duplicated: if a document with the same content was
+     * already uploaded, the created document is returned instead of uploading the content again. This saves the
+     * traffic and the processing of documents which are shared or captured twice.
+     *
+     * @param uploadDeduplicationStore The store or null to upload every document.
+     *
+     * @see #setUploadDeduplicationStore(UploadDeduplicationStore, CredentialsStore)
+     */
+    public void setUploadDeduplicationStore(@Nullable final UploadDeduplicationStore uploadDeduplicationStore) {
+        setUploadDeduplicationStore(uploadDeduplicationStore, null);
+    }
+
+    /**
+     * Sets a store with which uploads of the same content are de-duplicated. The name of the user whose credentials
+     * are in the credentials store is part of the keys, so documents of one user are not returned to another user.
+     * Without a credentials store, use a separate de-duplication store for every user.
+     *
+     * @param uploadDeduplicationStore The store or null to upload every document.
+     * @param credentialsStore         The store of the current user's credentials or null, if it isn't known.
+     */
+    public void setUploadDeduplicationStore(@Nullable final UploadDeduplicationStore uploadDeduplicationStore,
+                                            @Nullable final CredentialsStore credentialsStore) {
+        mUploadDeduplicationCredentialsStore = credentialsStore;
+        mUploadDeduplicationStore = uploadDeduplicationStore;
+    }
+
+    /**
+     * Lets {@link #pollDocument(Document)} use long polling: every request asks the Gini API to answer only when the
+     * document's state changed or the wait time expired, which detects the completion without delay and with far fewer
+     * requests than polling in intervals. If the Gini API doesn't confirm that it waited, or a held request times
+     * out, polling falls back to requests every {@link #POLLING_INTERVAL} milliseconds.
+     *
+     * @param waitSeconds The maximal time in seconds for which a request is held or 0 to poll in intervals, which is
+     *                    the default.
+     */
+    public void setLongPollingWait(final int waitSeconds) {
+        if (waitSeconds < 0) {
+            throw new IllegalArgumentException("waitSeconds can't be less than 0");
+        }
+        mLongPollingWaitSeconds = waitSeconds;
     }
 
     /**
@@ -92,8 +266,16 @@ public class DocumentTaskManager {
                 }
             };
 
+    private static final ResponseParser<Document> DOCUMENT_PARSER = new ResponseParser<Document>() {
+        @Override
+        public Document parse(final JSONObject responseData) throws Exception {
+            return Document.fromApiResponse(responseData);
+        }
+    };
+
     /**
-     * Uploads raw data and creates a new Gini document.
+     * Uploads raw data and creates a new Gini document. The media type is detected from the data. Data which is not
+     * a JPEG, PNG, TIFF or PDF document is uploaded as a JPEG.
      *
      * @param document     A byte array representing an image, a pdf or UTF-8 encoded text
      * @param filename     Optional the filename of the given document.
@@ -104,138 +286,932 @@ public class DocumentTaskManager {
      */
     public Task<Document> createDocument(final byte[] document, @Nullable final String filename,
                                          @Nullable final DocumentType documentType) {
+        return createDocument(document, filename, documentType, null, null);
+    }
+
+    /**
+     * Uploads raw data and creates a new Gini document. The upload's progress is reported to the given listener and the
+     * upload can be cancelled with the given handle. The media type is detected like in {@link #createDocument(byte[],
+     * String, DocumentType)}.
+     *
+     * @param document           A byte array representing an image, a pdf or UTF-8 encoded text
+     * @param filename           Optional the filename of the given document.
+     * @param documentType       Optional a document type hint. See the documentation for the document type hints for
+     *                           possible values.
+     * @param progressListener   Optional a listener which is informed about the number of uploaded bytes.
+     * @param cancellationHandle Optional a handle to cancel the upload. If it is cancelled, the returned task
+     *                           resolves as cancelled.
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     */
+    public Task<Document> createDocument(final byte[] document, @Nullable final String filename,
+                                         @Nullable final DocumentType documentType,
+                                         @Nullable final UploadProgressListener progressListener,
+                                         @Nullable final CancellationHandle cancellationHandle) {
+        String apiDoctypeHint = null;
+        if (documentType != null) {
+            apiDoctypeHint = documentType.getApiDoctypeHint();
+        }
+        return createDocumentInternal(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return document;
+            }
+        }, filename, apiDoctypeHint, progressListener, cancellationHandle);
+    }
+
+    /**
+     * Uploads a document file and creates a new Gini document. The media type is detected from the file's content:
+     * JPEG, PNG, TIFF and PDF files are supported. The file is streamed to the Gini API, so even large PDFs are never
+     * read into memory as a whole.
+     *
+     * @see #createDocument(File, String, DocumentType, UploadProgressListener, CancellationHandle)
+     */
+    public Task<Document> createDocument(final File document, @Nullable final String filename,
+                                         @Nullable final DocumentType documentType) {
+        return createDocument(document, filename, documentType, null, null);
+    }
+
+    /**
+     * Uploads a document file and creates a new Gini document. The upload's progress is reported to the given listener
+     * and the upload can be cancelled with the given handle. The file must not be changed until the returned task is
+     * completed.
+     *
+     * @param document           A JPEG, PNG, TIFF or PDF file.
+     * @param filename           Optional the filename of the given document.
+     * @param documentType       Optional a document type hint.
+     * @param progressListener   Optional a listener which is informed about the number of uploaded bytes.
+     * @param cancellationHandle Optional a handle to cancel the upload. If it is cancelled, the returned task
+     *                           resolves as cancelled.
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     */
+    public Task<Document> createDocument(final File document, @Nullable final String filename,
+                                         @Nullable final DocumentType documentType,
+                                         @Nullable final UploadProgressListener progressListener,
+                                         @Nullable final CancellationHandle cancellationHandle) {
+        checkNotNull(document);
+        final String apiDoctypeHint = documentType != null ? documentType.getApiDoctypeHint() : null;
+        return createDocumentFromSource(new Callable<UploadSource>() {
+            @Override
+            public UploadSource call() throws Exception {
+                return new FileUploadSource(document);
+            }
+        }, filename, apiDoctypeHint, progressListener, cancellationHandle);
+    }
+
+    /**
+     * Uploads the given photo of a document and creates a new Gini document.
+     *
+     * @deprecated Use {@link #createDocument(Bitmap, String, DocumentType)} instead.
+     *
+     * @param document        A Bitmap representing the image
+     * @param filename        Optional the filename of the given document.
+     * @param documentType    Optional a document type hint. See the documentation for the document type hints for
+     *                        possible values.
+     * @param compressionRate Optional the compression rate of the created JPEG representation of the document.
+     *                        Between 0 and 90.
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     */
+    @Deprecated
+    public Task<Document> createDocument(final Bitmap document, @Nullable final String filename,
+                                         @Nullable final String documentType, final int compressionRate) {
+        return createDocumentInternal(document, filename, documentType, compressionRate, null, null);
+    }
+
+    /**
+     * Uploads the given photo of a document and creates a new Gini document.
+     *
+     * @param document        A Bitmap representing the image
+     * @param filename        Optional the filename of the given document.
+     * @param documentType    Optional a document type hint.
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     */
+    public Task<Document> createDocument(final Bitmap document, @Nullable final String filename,
+                                          @Nullable final DocumentType documentType) {
+        return createDocument(document, filename, documentType, null, null);
+    }
+
+    /**
+     * Uploads the given photo of a document and creates a new Gini document. The upload's progress is reported to the
+     * given listener and the upload can be cancelled with the given handle.
+     *
+     * @param document           A Bitmap representing the image
+     * @param filename           Optional the filename of the given document.
+     * @param documentType       Optional a document type hint.
+     * @param progressListener   Optional a listener which is informed about the number of uploaded bytes.
+     * @param cancellationHandle Optional a handle to cancel the upload. If it is cancelled, the returned task
+     *                           resolves as cancelled.
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     */
+    public Task<Document> createDocument(final Bitmap document, @Nullable final String filename,
+                                         @Nullable final DocumentType documentType,
+                                         @Nullable final UploadProgressListener progressListener,
+                                         @Nullable final CancellationHandle cancellationHandle) {
+        String apiDoctypeHint = null;
+        if (documentType != null) {
+            apiDoctypeHint = documentType.getApiDoctypeHint();
+        }
+        return createDocumentInternal(document, filename, apiDoctypeHint, DEFAULT_COMPRESSION, progressListener,
+                cancellationHandle);
+    }
+
+    /**
+     * Uploads the given photo of a document and creates a new Gini document. The photo is encoded with the given
+     * encoder, which chooses the JPEG quality and size to fit into its byte budget.
+     *
+     * @param document           A Bitmap representing the image
+     * @param filename           Optional the filename of the given document.
+     * @param documentType       Optional a document type hint.
+     * @param encoder            The encoder for the JPEG representation of the document.
+     * @param progressListener   Optional a listener which is informed about the number of uploaded bytes.
+     * @param cancellationHandle Optional a handle to cancel the upload. If it is cancelled, the returned task
+     *                           resolves as cancelled.
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     */
+    public Task<Document> createDocument(final Bitmap document, @Nullable final String filename,
+                                         @Nullable final DocumentType documentType,
+                                         final AdaptiveJpegEncoder encoder,
+                                         @Nullable final UploadProgressListener progressListener,
+                                         @Nullable final CancellationHandle cancellationHandle) {
+        checkNotNull(encoder);
+        return createDocument(document, filename, documentType, null, encoder, progressListener, cancellationHandle);
+    }
+
+    /**
+     * Uploads the given photo of a document and creates a new Gini document. The photo is prepared with the given
+     * preprocessor before it is encoded with the given encoder or, if no encoder is given, with the default compression
+     * rate. Both run on a background thread.
+     *
+     * @param document           A Bitmap representing the image
+     * @param filename           Optional the filename of the given document.
+     * @param documentType       Optional a document type hint.
+     * @param preprocessor       Optional a preprocessor which crops, downscales and converts the photo.
+     * @param encoder            Optional the encoder for the JPEG representation of the document.
+     * @param progressListener   Optional a listener which is informed about the number of uploaded bytes.
+     * @param cancellationHandle Optional a handle to cancel the upload. If it is cancelled, the returned task
+     *                           resolves as cancelled.
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created document.
+     */
+    public Task<Document> createDocument(final Bitmap document, @Nullable final String filename,
+                                         @Nullable final DocumentType documentType,
+                                         @Nullable final DocumentImagePreprocessor preprocessor,
+                                         @Nullable final AdaptiveJpegEncoder encoder,
+                                         @Nullable final UploadProgressListener progressListener,
+                                         @Nullable final CancellationHandle cancellationHandle) {
+        checkNotNull(document);
+        final String apiDoctypeHint = documentType != null ? documentType.getApiDoctypeHint() : null;
+        return createDocumentInternal(document, filename, apiDoctypeHint, preprocessor, encoder, DEFAULT_COMPRESSION,
+                progressListener, cancellationHandle);
+    }
+
+    /**
+     * Helper method which prepares the photo with the preprocessor (if given) and encodes it with the encoder or, if
+     * no encoder is given, with the compression rate.
+     */
+    private Task<Document> createDocumentInternal(final Bitmap document, @Nullable final String filename,
+                                                  @Nullable final String apiDoctypeHint,
+                                                  @Nullable final DocumentImagePreprocessor preprocessor,
+                                                  @Nullable final AdaptiveJpegEncoder encoder,
+                                                  final int compressionRate,
+                                                  @Nullable final UploadProgressListener progressListener,
+                                                  @Nullable final CancellationHandle cancellationHandle) {
+        return createDocumentInternal(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                final Bitmap processed = preprocessor != null ? preprocessor.process(document) : document;
+                try {
+                    if (encoder != null) {
+                        return encoder.encode(processed).getJpeg();
+                    }
+                    final ByteArrayOutputStream documentOutputStream = new ByteArrayOutputStream();
+                    processed.compress(JPEG, compressionRate, documentOutputStream);
+                    return documentOutputStream.toByteArray();
+                } finally {
+                    if (processed != document) {
+                        processed.recycle();
+                    }
+                }
+            }
+        }, filename, apiDoctypeHint, progressListener, cancellationHandle);
+    }
+
+    private Task<Document> createDocumentInternal(final Bitmap document, @Nullable final String filename,
+                                                  @Nullable final String apiDoctypeHint, final int compressionRate,
+                                                  @Nullable final UploadProgressListener progressListener,
+                                                  @Nullable final CancellationHandle cancellationHandle) {
+        return createDocumentInternal(document, filename, apiDoctypeHint, null, null, compressionRate,
+                progressListener, cancellationHandle);
+    }
+
+    /**
+     * Helper method which uploads the document data and resolves to the created document.
+     *
+     * @param documentData A callable which returns the data of the document. It is called on a background thread.
+     */
+    private Task<Document> createDocumentInternal(final Callable<byte[]> documentData,
+                                                  @Nullable final String filename,
+                                                  @Nullable final String apiDoctypeHint,
+                                                  @Nullable final UploadProgressListener progressListener,
+                                                  @Nullable final CancellationHandle cancellationHandle) {
+        return createDocumentFromSource(new Callable<UploadSource>() {
+            @Override
+            public UploadSource call() throws Exception {
+                return new ByteArrayUploadSource(documentData.call());
+            }
+        }, filename, apiDoctypeHint, progressListener, cancellationHandle);
+    }
+
+    /**
+     * Helper method which uploads a document and resolves to the created document. If a de-duplication store is set
+     * and the same content was already uploaded, it resolves to the previously created document instead.
+     *
+     * @param uploadSource A callable which returns the content of the document. It is called on a background thread.
+     */
+    private Task<Document> createDocumentFromSource(final Callable<UploadSource> uploadSource,
+                                                    @Nullable final String filename,
+                                                    @Nullable final String apiDoctypeHint,
+                                                    @Nullable final UploadProgressListener progressListener,
+                                                    @Nullable final CancellationHandle cancellationHandle) {
+        return mSessionManager.getSession().onSuccessTask(new Continuation<Session, Task<Document>>() {
+            @Override
+            public Task<Document> then(Task<Session> sessionTask) throws Exception {
+                if (cancellationHandle != null && cancellationHandle.isCancelled()) {
+                    return Task.cancelled();
+                }
+                final Session session = sessionTask.getResult();
+                final UploadSource source = uploadSource.call();
+                final UploadDeduplicationStore store = mUploadDeduplicationStore;
+                if (store == null) {
+                    return uploadDocument(source, null, null, filename, apiDoctypeHint, session,
+                            progressListener, cancellationHandle);
+                }
+                // Files are hashed on the I/O executor, in-memory content is hashed right away.
+                return source.computeContentHash().onSuccessTask(new Continuation<String, Task<Document>>() {
+                    @Override
+                    public Task<Document> then(Task<String> hashTask) throws Exception {
+                        final String key = UploadDeduplicationStore.computeKey(hashTask.getResult(),
+                                getUploadDeduplicationUserName(), filename, apiDoctypeHint);
+                        return findOrUploadDocument(source, store, key, filename, apiDoctypeHint, session,
+                                progressListener, cancellationHandle);
+                    }
+                }, mExecutors.getIoExecutor());
+            }
+        }, mExecutors.getCpuExecutor());
+    }
+
+    /**
+     * Resolves to the document which was created by a previous upload of the content with the given key or uploads
+     * the content, if the store doesn't know it or the known document can't be retrieved.
+     */
+    private Task<Document> findOrUploadDocument(final UploadSource source, final UploadDeduplicationStore store,
+                                                final String key, @Nullable final String filename,
+                                                @Nullable final String apiDoctypeHint, final Session session,
+                                                @Nullable final UploadProgressListener progressListener,
+                                                @Nullable final CancellationHandle cancellationHandle) {
+        final Uri knownDocumentUri = store.getDocumentUri(key);
+        if (knownDocumentUri == null) {
+            return uploadDocument(source, store, key, filename, apiDoctypeHint, session, progressListener,
+                    cancellationHandle);
+        }
+        return getDocument(knownDocumentUri).continueWithTask(new Continuation<Document, Task<Document>>() {
+            @Override
+            public Task<Document> then(Task<Document> task) throws Exception {
+                if (!task.isFaulted()) {
+                    return task;
+                }
+                if (isNotFound(task.getError())) {
+                    // The document was deleted since the first upload.
+                    store.remove(key);
+                }
+                // The known document couldn't be validated, so the content is uploaded as if it was unknown.
+                return uploadDocument(source, store, key, filename, apiDoctypeHint, session, progressListener,
+                        cancellationHandle);
+            }
+        }, mExecutors.getIoExecutor());
+    }
+
+    @Nullable
+    private String getUploadDeduplicationUserName() {
+        final CredentialsStore credentialsStore = mUploadDeduplicationCredentialsStore;
+        if (credentialsStore == null) {
+            return null;
+        }
+        final UserCredentials userCredentials = credentialsStore.getUserCredentials();
+        return userCredentials != null ? userCredentials.getUsername() : null;
+    }
+
+    /**
+     * Uploads the content, remembers the created document in the store (if given) and resolves to the document.
+     */
+    private Task<Document> uploadDocument(final UploadSource source, @Nullable final UploadDeduplicationStore store,
+                                          @Nullable final String key, @Nullable final String filename,
+                                          @Nullable final String apiDoctypeHint, final Session session,
+                                          @Nullable final UploadProgressListener progressListener,
+                                          @Nullable final CancellationHandle cancellationHandle) {
+        return source.upload(filename, apiDoctypeHint, session, progressListener, cancellationHandle)
+                .onSuccessTask(new Continuation<Uri, Task<Document>>() {
+                    @Override
+                    public Task<Document> then(Task<Uri> uploadTask) throws Exception {
+                        if (store != null) {
+                            store.put(key, uploadTask.getResult());
+                        }
+                        if (cancellationHandle != null && cancellationHandle.isCancelled()) {
+                            return Task.cancelled();
+                        }
+                        return getDocument(uploadTask.getResult());
+                    }
+                }, mExecutors.getIoExecutor());
+    }
+
+    /**
+     * The content of a document which is uploaded to create a Gini document.
+     */
+    private interface UploadSource {
+
+        /**
+         * Resolves to the hash of the content for the {@link UploadDeduplicationStore}.
+         */
+        Task<String> computeContentHash();
+
+        Task<Uri> upload(@Nullable String filename, @Nullable String apiDoctypeHint, Session session,
+                         @Nullable UploadProgressListener progressListener,
+                         @Nullable CancellationHandle cancellationHandle);
+    }
+
+    private class ByteArrayUploadSource implements UploadSource {
+
+        private final byte[] mData;
+
+        ByteArrayUploadSource(final byte[] data) {
+            mData = data;
+        }
+
+        @Override
+        public Task<String> computeContentHash() {
+            return Task.forResult(UploadDeduplicationStore.computeHash(mData));
+        }
+
+        @Override
+        public Task<Uri> upload(@Nullable final String filename, @Nullable final String apiDoctypeHint,
+                                final Session session, @Nullable final UploadProgressListener progressListener,
+                                @Nullable final CancellationHandle cancellationHandle) {
+            // Content of an unknown type is uploaded with the media type which was used for all uploads before.
+            final String detectedContentType = MediaTypes.detect(mData);
+            final String contentType = detectedContentType != null ? detectedContentType : MediaTypes.IMAGE_JPEG;
+            if (progressListener == null && cancellationHandle == null) {
+                return mApiCommunicator.uploadDocument(mData, contentType, filename, apiDoctypeHint, session);
+            }
+            return mApiCommunicator.uploadDocument(mData, contentType, filename, apiDoctypeHint, session,
+                    progressListener, cancellationHandle);
+        }
+    }
+
+    private class FileUploadSource implements UploadSource {
+
+        private final File mFile;
+        private final String mContentType;
+
+        FileUploadSource(final File file) throws IOException {
+            mFile = file;
+            final String detectedContentType = MediaTypes.detect(file);
+            mContentType = detectedContentType != null ? detectedContentType : MediaTypes.IMAGE_JPEG;
+        }
+
+        @Override
+        public Task<String> computeContentHash() {
+            return Task.call(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return UploadDeduplicationStore.computeHash(mFile);
+                }
+            }, mExecutors.getIoExecutor());
+        }
+
+        @Override
+        public Task<Uri> upload(@Nullable final String filename, @Nullable final String apiDoctypeHint,
+                                final Session session, @Nullable final UploadProgressListener progressListener,
+                                @Nullable final CancellationHandle cancellationHandle) {
+            return mApiCommunicator.uploadDocument(mFile, mContentType, filename, apiDoctypeHint, session,
+                    progressListener, cancellationHandle);
+        }
+    }
+
+    private static boolean isNotFound(final Exception error) {
+        return error instanceof VolleyError && ((VolleyError) error).networkResponse != null
+                && ((VolleyError) error).networkResponse.statusCode == HttpURLConnection.HTTP_NOT_FOUND;
+    }
+
+    /**
+     * Uploads the pages of a multi-page document and creates a single Gini document from them. The pages are
+     * uploaded in parallel with at most {@link #DEFAULT_MAX_CONCURRENT_PAGE_UPLOADS} uploads running at the same time.
+     *
+     * @see #createCompositeDocument(List, String, DocumentType, int)
+     */
+    public Task<Document> createCompositeDocument(final List<byte[]> pages, @Nullable final String filename,
+                                                  @Nullable final DocumentType documentType) {
+        return createCompositeDocument(pages, filename, documentType, DEFAULT_MAX_CONCURRENT_PAGE_UPLOADS);
+    }
+
+    /**
+     * Uploads the pages of a multi-page document and creates a single Gini document from them. Each page is uploaded
+     * as a partial document and a composite document referencing the pages is created once all pages were uploaded.
+     * The returned document is the composite document, so polling it with {@link #pollDocument(Document)} waits for
+     * the processing of all its pages.
+     * <p>
+     * If a page upload fails, the remaining page uploads are cancelled and the returned task fails with the page's
+     * error.
+     *
+     * @param pages                    The JPEG images of the pages in the order of the document's pages.
+     * @param filename                 Optional the filename of the document.
+     * @param documentType             Optional a document type hint.
+     * @param maxConcurrentPageUploads The maximal number of page uploads running at the same time.
+     *
+     * @return A Task which will resolve to the Document instance of the freshly created composite document.
+     */
+    public Task<Document> createCompositeDocument(final List<byte[]> pages, @Nullable final String filename,
+                                                  @Nullable final DocumentType documentType,
+                                                  final int maxConcurrentPageUploads) {
+        if (checkNotNull(pages).isEmpty()) {
+            throw new IllegalArgumentException("A composite document requires at least one page");
+        }
+        final ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(maxConcurrentPageUploads);
+        final CancellationHandle cancellationHandle = new CancellationHandle();
+        final String apiDoctypeHint = documentType != null ? documentType.getApiDoctypeHint() : null;
         return mSessionManager.getSession().onSuccessTask(new Continuation<Session, Task<Uri>>() {
             @Override
             public Task<Uri> then(Task<Session> sessionTask) throws Exception {
-                String apiDoctypeHint = null;
-                if (documentType != null) {
-                    apiDoctypeHint = documentType.getApiDoctypeHint();
+                final Session session = sessionTask.getResult();
+                final List<Task<Uri>> pageTasks = new ArrayList<Task<Uri>>();
+                for (final byte[] page : pages) {
+                    pageTasks.add(concurrencyLimiter.submit(new Callable<Task<Uri>>() {
+                        @Override
+                        public Task<Uri> call() throws Exception {
+                            if (cancellationHandle.isCancelled()) {
+                                return Task.cancelled();
+                            }
+                            return mApiCommunicator.uploadDocument(checkNotNull(page), MediaTypes.GINI_PARTIAL_JPEG,
+                                    null, null, session, null, cancellationHandle);
+                        }
+                    }).continueWithTask(new Continuation<Uri, Task<Uri>>() {
+                        @Override
+                        public Task<Uri> then(Task<Uri> pageTask) throws Exception {
+                            if (pageTask.isFaulted()) {
+                                cancellationHandle.cancel();
+                            }
+                            return pageTask;
+                        }
+                    }));
                 }
+                return Task.whenAll(pageTasks).continueWithTask(new Continuation<Void, Task<Uri>>() {
+                    @Override
+                    public Task<Uri> then(Task<Void> task) throws Exception {
+                        final List<Uri> partialDocumentUris = new ArrayList<Uri>();
+                        for (final Task<Uri> pageTask : pageTasks) {
+                            // Report the error which caused the cancellation of the other pages.
+                            if (pageTask.isFaulted()) {
+                                return Task.forError(pageTask.getError());
+                            }
+                        }
+                        for (final Task<Uri> pageTask : pageTasks) {
+                            if (pageTask.isCancelled()) {
+                                return Task.cancelled();
+                            }
+                            partialDocumentUris.add(pageTask.getResult());
+                        }
+                        return mApiCommunicator.createCompositeDocument(partialDocumentUris, filename,
+                                apiDoctypeHint, session);
+                    }
+                }, mExecutors.getIoExecutor());
+            }
+        }, mExecutors.getIoExecutor()).onSuccessTask(new Continuation<Uri, Task<Document>>() {
+            @Override
+            public Task<Document> then(Task<Uri> compositeTask) throws Exception {
+                return getDocument(compositeTask.getResult());
+            }
+        }, mExecutors.getIoExecutor());
+    }
+
+    /**
+     * Get the extractions for the given document.
+     *
+     * @param document The Document instance for whose document the extractions are returned.
+     *
+     * @return A Task which will resolve to a mapping, where the key is a String with the name of the
+     * specific. See the
+     * <a href="http://developer.gini.net/gini-api/html/document_extractions.html">Gini API documentation</a>
+     * for a list of the names of the specific extractions.
+     */
+    public Task<Map<String, SpecificExtraction>> getExtractions(final Document document) {
+        return getExtractions(document, null);
+    }
+
+    /**
+     * Get the extractions for the given document. The request can be cancelled with the given handle.
+     *
+     * @param document           The Document instance for whose document the extractions are returned.
+     * @param cancellationHandle Optional a handle to cancel the request. Cancelling resolves the returned task as
+     *                           cancelled.
+     *
+     * @see #getExtractions(Document)
+     */
+    public Task<Map<String, SpecificExtraction>> getExtractions(final Document document,
+                                                                @Nullable final CancellationHandle cancellationHandle) {
+        final String documentId = document.getId();
+        final ConditionalRequestCache cache = mConditionalRequestCache;
+        final Task<Map<String, SpecificExtraction>> extractionsTask;
+        if (cache != null) {
+            extractionsTask = getIfModified(cache, "extractions/" + documentId, new ConditionalRequest() {
+                @Override
+                public Task<ConditionalJsonResponse> send(final Session session, @Nullable final String eTag,
+                                                          @Nullable final String lastModified) {
+                    return cancellationHandle == null
+                            ? mApiCommunicator.getExtractionsIfModified(documentId, session, eTag, lastModified)
+                            : mApiCommunicator.getExtractionsIfModified(documentId, session, eTag, lastModified,
+                            cancellationHandle);
+                }
+            }, mExtractionsParser).onSuccess(new Continuation<Map<String, SpecificExtraction>,
+                    Map<String, SpecificExtraction>>() {
+                @Override
+                public Map<String, SpecificExtraction> then(Task<Map<String, SpecificExtraction>> task) {
+                    // The cached extractions are never handed out, because the caller may change them.
+                    return copyExtractions(task.getResult());
+                }
+            }, mExecutors.getCpuExecutor());
+        } else {
+            extractionsTask = mSessionManager.getSession()
+                    .onSuccessTask(new Continuation<Session, Task<JSONObject>>() {
+                        @Override
+                        public Task<JSONObject> then(Task<Session> sessionTask) {
+                            final Session session = sessionTask.getResult();
+                            return cancellationHandle == null
+                                    ? mApiCommunicator.getExtractions(documentId, session)
+                                    : mApiCommunicator.getExtractions(documentId, session, cancellationHandle);
+                        }
+                    }, mExecutors.getIoExecutor())
+                    .onSuccess(parseExtractions(), mExecutors.getCpuExecutor());
+        }
+        return extractionsTask.onSuccess(new Continuation<Map<String, SpecificExtraction>,
+                Map<String, SpecificExtraction>>() {
+            @Override
+            public Map<String, SpecificExtraction> then(Task<Map<String, SpecificExtraction>> task) {
+                final Map<String, SpecificExtraction> extractions = task.getResult();
+                final LocalSearchIndex searchIndex = mLocalSearchIndex;
+                if (searchIndex != null) {
+                    indexInBackground(searchIndex, document, extractions);
+                }
+                return extractions;
+            }
+        });
+    }
+
+    /**
+     * Fetches the extractions of many documents, e.g. to reconcile them with local data. At most {@link
+     * #DEFAULT_MAX_CONCURRENT_EXTRACTION_REQUESTS} requests run at the same time.
+     *
+     * @see #getExtractions(Iterable, int, ExtractionsListener, CancellationHandle)
+     */
+    public Task<Void> getExtractions(final Iterable<? extends Document> documents,
+                                     final ExtractionsListener listener) {
+        return getExtractions(documents, DEFAULT_MAX_CONCURRENT_EXTRACTION_REQUESTS, listener, null);
+    }
+
+    /**
+     * Fetches the extractions of many documents, e.g. to reconcile them with local data. The extractions of each
+     * document are passed to the listener as soon as they were fetched.
+     * <p>
+     * The documents are taken from the iterable only when a request can be started and a request counts as running
+     * until the listener processed its result. So at most {@code maxConcurrentRequests} requests run and at most as many
+     * parsed results are held in memory at the same time, regardless of the number of documents.
+     *
+     * @param documents             The documents whose extractions are fetched.
+     * @param maxConcurrentRequests The maximal number of requests which run at the same time.
+     * @param listener              The listener which receives the extractions of every document or the error if they
+     *                              could not be fetched. It is called concurrently from several threads and must be
+     *                              thread-safe.
+     * @param cancellationHandle    Optional a handle to stop fetching. Running requests are cancelled and no new
+     *                              requests are started. The listener isn't called for cancelled requests.
+     *
+     * @return A Task which resolves when the listener was called for all documents, or as cancelled when the fetching
+     * was cancelled. Failures of single documents are only reported to the listener.
+     */
+    public Task<Void> getExtractions(final Iterable<? extends Document> documents, final int maxConcurrentRequests,
+                                     final ExtractionsListener listener,
+                                     @Nullable final CancellationHandle cancellationHandle) {
+        return new BatchExtractionsFetcher(documents, new BatchExtractionsFetcher.ExtractionsLoader() {
+            @Override
+            public Task<Map<String, SpecificExtraction>> load(final Document document) {
+                return getExtractions(document, cancellationHandle);
+            }
+        }, listener, mExecutors.getIoExecutor(), cancellationHandle).start(maxConcurrentRequests);
+    }
+
+    /**
+     * Get the standard and the incubator extractions for the given document. Both are requested at the same time and
+     * parsed on the CPU executor, so this takes about as long as {@link #getExtractions(Document)}.
+     *
+     * @param document The Document instance for whose document the extractions are returned.
+     *
+     * @return A Task which will resolve to the merged extractions. If a standard and an incubator extraction have the
+     * same name, the standard extraction is used.
+     */
+    public Task<MergedExtractions> getMergedExtractions(final Document document) {
+        return getMergedExtractions(document, null);
+    }
+
+    /**
+     * Get the standard and the incubator extractions for the given document. Both requests can be cancelled with the
+     * given handle.
+     *
+     * @param document           The Document instance for whose document the extractions are returned.
+     * @param cancellationHandle Optional a handle to cancel the requests. Cancelling resolves the returned task as
+     *                           cancelled.
+     *
+     * @see #getMergedExtractions(Document)
+     */
+    public Task<MergedExtractions> getMergedExtractions(final Document document,
+                                                        @Nullable final CancellationHandle cancellationHandle) {
+        final String documentId = document.getId();
+        return mSessionManager.getSession().onSuccessTask(new Continuation<Session, Task<MergedExtractions>>() {
+            @Override
+            public Task<MergedExtractions> then(Task<Session> sessionTask) {
                 final Session session = sessionTask.getResult();
-                return mApiCommunicator
-                        .uploadDocument(document, MediaTypes.IMAGE_JPEG, filename, apiDoctypeHint, session);
+                final Task<JSONObject> standardResponseTask = cancellationHandle == null
+                        ? mApiCommunicator.getExtractions(documentId, session)
+                        : mApiCommunicator.getExtractions(documentId, session, cancellationHandle);
+                final Task<JSONObject> incubatorResponseTask = cancellationHandle == null
+                        ? mApiCommunicator.getIncubatorExtractions(documentId, session)
+                        : mApiCommunicator.getIncubatorExtractions(documentId, session, cancellationHandle);
+                final Task<Map<String, SpecificExtraction>> standardTask =
+                        standardResponseTask.onSuccess(parseExtractions(), mExecutors.getCpuExecutor());
+                final Task<Map<String, SpecificExtraction>> incubatorTask =
+                        incubatorResponseTask.onSuccess(parseExtractions(), mExecutors.getCpuExecutor());
+                return Task.whenAll(Arrays.asList(standardTask, incubatorTask)).continueWithTask(
+                        new Continuation<Void, Task<MergedExtractions>>() {
+                            @Override
+                            public Task<MergedExtractions> then(Task<Void> task) {
+                                // Report the first error instead of whenAll's aggregated error.
+                                for (final Task<Map<String, SpecificExtraction>> extractionsTask
+                                        : Arrays.asList(standardTask, incubatorTask)) {
+                                    if (extractionsTask.isFaulted()) {
+                                        return Task.forError(extractionsTask.getError());
+                                    }
+                                    if (extractionsTask.isCancelled()) {
+                                        return Task.cancelled();
+                                    }
+                                }
+                                return Task.forResult(new MergedExtractions(standardTask.getResult(),
+                                        incubatorTask.getResult()));
+                            }
+                        }, mExecutors.getCpuExecutor());
+            }
+        }, mExecutors.getIoExecutor());
+    }
+
+    private Continuation<JSONObject, Map<String, SpecificExtraction>> parseExtractions() {
+        return new Continuation<JSONObject, Map<String, SpecificExtraction>>() {
+            @Override
+            public Map<String, SpecificExtraction> then(Task<JSONObject> task) throws Exception {
+                return mExtractionsParser.parse(task.getResult());
+            }
+        };
+    }
+
+    /**
+     * Creates the specific extractions with their candidates from the JSON response of the Gini API. The boxes of all
+     * extractions and candidates are stored in one {@link BoxArray} per response.
+     */
+    private final ResponseParser<Map<String, SpecificExtraction>> mExtractionsParser =
+            new ResponseParser<Map<String, SpecificExtraction>>() {
+                @Override
+                public Map<String, SpecificExtraction> parse(final JSONObject responseData) throws Exception {
+                    final JSONObject candidatesData = responseData.getJSONObject("candidates");
+                    final JSONObject extractionsData = responseData.getJSONObject("extractions");
+                    final BoxedExtractionsReader reader =
+                            new BoxedExtractionsReader(boxesFromApiResponse(candidatesData, extractionsData));
+
+                    final HashMap<String, List<Extraction>> candidates = new HashMap<String, List<Extraction>>();
+                    @SuppressWarnings("unchecked")
+                    // Quote Android Source: "/* Return a raw type for API compatibility */"
+                    final Iterator<String> entityNameIterator = candidatesData.keys();
+                    while (entityNameIterator.hasNext()) {
+                        final String entityName = entityNameIterator.next();
+                        final JSONArray candidatesListData = candidatesData.getJSONArray(entityName);
+                        final ArrayList<Extraction> candidatesList =
+                                new ArrayList<Extraction>(candidatesListData.length());
+                        for (int i = 0, length = candidatesListData.length(); i < length; i += 1) {
+                            candidatesList.add(reader.readExtraction(candidatesListData.getJSONObject(i)));
+                        }
+                        candidates.put(entityName, candidatesList);
+                    }
+
+                    final HashMap<String, SpecificExtraction> extractionsByName =
+                            new HashMap<String, SpecificExtraction>();
+                    @SuppressWarnings("unchecked")
+                    final Iterator<String> extractionsNameIterator = extractionsData.keys();
+                    while (extractionsNameIterator.hasNext()) {
+                        final String extractionName = extractionsNameIterator.next();
+                        final JSONObject extractionData = extractionsData.getJSONObject(extractionName);
+                        List<Extraction> candidatesForExtraction = new ArrayList<Extraction>();
+                        if (extractionData.has("candidates")) {
+                            final String candidatesName = extractionData.getString("candidates");
+                            if (candidates.containsKey(candidatesName)) {
+                                candidatesForExtraction = candidates.get(candidatesName);
+                            }
+                        }
+                        extractionsByName.put(extractionName,
+                                reader.readSpecificExtraction(extractionName, extractionData, candidatesForExtraction));
+                    }
+                    return extractionsByName;
+                }
+            };
+
+    /**
+     * Collects the boxes of the candidates and the extractions in the order in which {@link #mExtractionsParser} reads
+     * the extractions.
+     */
+    private static BoxArray boxesFromApiResponse(final JSONObject candidatesData, final JSONObject extractionsData)
+            throws JSONException {
+        final BoxArray.Builder builder = new BoxArray.Builder();
+        @SuppressWarnings("unchecked")
+        final Iterator<String> entityNameIterator = candidatesData.keys();
+        while (entityNameIterator.hasNext()) {
+            final JSONArray candidatesListData = candidatesData.getJSONArray(entityNameIterator.next());
+            for (int i = 0, length = candidatesListData.length(); i < length; i += 1) {
+                addBoxFromApiResponse(builder, candidatesListData.getJSONObject(i));
+            }
+        }
+        @SuppressWarnings("unchecked")
+        final Iterator<String> extractionsNameIterator = extractionsData.keys();
+        while (extractionsNameIterator.hasNext()) {
+            addBoxFromApiResponse(builder, extractionsData.getJSONObject(extractionsNameIterator.next()));
+        }
+        return builder.build();
+    }
+
+    private static void addBoxFromApiResponse(final BoxArray.Builder builder, final JSONObject extractionData)
+            throws JSONException {
+        // The box is optional for some extractions.
+        if (extractionData.has("box")) {
+            builder.addFromApiResponse(extractionData.getJSONObject("box"));
+        }
+    }
+
+    /**
+     * Creates extractions whose boxes are read from the shared box array. The extractions have to be read in the same
+     * order in which their boxes were added to the array.
+     */
+    private static class BoxedExtractionsReader {
+
+        private final BoxArray mBoxes;
+        private int mNextBoxIndex;
+
+        BoxedExtractionsReader(final BoxArray boxes) {
+            mBoxes = boxes;
+        }
+
+        Extraction readExtraction(final JSONObject extractionData) throws JSONException {
+            final String entity = extractionData.getString("entity");
+            final String value = extractionData.getString("value");
+            if (extractionData.has("box")) {
+                return new Extraction(value, entity, mBoxes, mNextBoxIndex++);
             }
-        }, Task.BACKGROUND_EXECUTOR).onSuccessTask(new Continuation<Uri, Task<Document>>() {
-            @Override
-            public Task<Document> then(Task<Uri> uploadTask) throws Exception {
-                return getDocument(uploadTask.getResult());
+            return new Extraction(value, entity, null);
+        }
+
+        SpecificExtraction readSpecificExtraction(final String name, final JSONObject extractionData,
+                                                  final List<Extraction> candidates) throws JSONException {
+            final String entity = extractionData.getString("entity");
+            final String value = extractionData.getString("value");
+            if (extractionData.has("box")) {
+                return new SpecificExtraction(name, value, entity, mBoxes, mNextBoxIndex++, candidates);
             }
-        }, Task.BACKGROUND_EXECUTOR);
+            return new SpecificExtraction(name, value, entity, null, candidates);
+        }
     }
 
     /**
-     * Uploads the given photo of a document and creates a new Gini document.
-     *
-     * @deprecated Use {@link #createDocument(Bitmap, String, DocumentType)} instead.
-     *
-     * @param document        A Bitmap representing the image
-     * @param filename        Optional the filename of the given document.
-     * @param documentType    Optional a document type hint. See the documentation for the document type hints for
-     *                        possible values.
-     * @param compressionRate Optional the compression rate of the created JPEG representation of the document.
-     *                        Between 0 and 90.
-     *
-     * @return A Task which will resolve to the Document instance of the freshly created document.
+     * Copies unchanged extractions. Candidate lists which are shared by several specific extractions stay shared, as
+     * do the box arrays, since they are immutable.
      */
-    @Deprecated
-    public Task<Document> createDocument(final Bitmap document, @Nullable final String filename,
-                                         @Nullable final String documentType, final int compressionRate) {
-        return createDocumentInternal(document, filename, documentType, compressionRate);
+    private static Map<String, SpecificExtraction> copyExtractions(final Map<String, SpecificExtraction> extractions) {
+        final Map<List<Extraction>, List<Extraction>> copiedCandidates =
+                new IdentityHashMap<List<Extraction>, List<Extraction>>();
+        final HashMap<String, SpecificExtraction> copy = new HashMap<String, SpecificExtraction>();
+        for (final Map.Entry<String, SpecificExtraction> entry : extractions.entrySet()) {
+            final SpecificExtraction extraction = entry.getValue();
+            List<Extraction> candidates = copiedCandidates.get(extraction.getCandidate());
+            if (candidates == null) {
+                candidates = new ArrayList<Extraction>(extraction.getCandidate().size());
+                for (final Extraction candidate : extraction.getCandidate()) {
+                    final BoxArray boxes = candidate.getBoxArray();
+                    candidates.add(boxes != null
+                            ? new Extraction(candidate.getValue(), candidate.getEntity(), boxes,
+                            candidate.getBoxIndex())
+                            : new Extraction(candidate.getValue(), candidate.getEntity(), candidate.getBox()));
+                }
+                copiedCandidates.put(extraction.getCandidate(), candidates);
+            }
+            final BoxArray boxes = extraction.getBoxArray();
+            copy.put(entry.getKey(), boxes != null
+                    ? new SpecificExtraction(extraction.getName(), extraction.getValue(), extraction.getEntity(),
+                    boxes, extraction.getBoxIndex(), candidates)
+                    : new SpecificExtraction(extraction.getName(), extraction.getValue(), extraction.getEntity(),
+                    extraction.getBox(), candidates));
+        }
+        return copy;
     }
 
     /**
-     * Uploads the given photo of a document and creates a new Gini document.
-     *
-     * @param document        A Bitmap representing the image
-     * @param filename        Optional the filename of the given document.
-     * @param documentType    Optional a document type hint.
-     *
-     * @return A Task which will resolve to the Document instance of the freshly created document.
+     * Sends a conditional request with the validators of the cached response for the key.
      */
-    public Task<Document> createDocument(final Bitmap document, @Nullable final String filename,
-                                          @Nullable final DocumentType documentType) {
-        String apiDoctypeHint = null;
-        if (documentType != null) {
-            apiDoctypeHint = documentType.getApiDoctypeHint();
-        }
-        return createDocumentInternal(document, filename, apiDoctypeHint, DEFAULT_COMPRESSION);
+    private interface ConditionalRequest {
+        Task<ConditionalJsonResponse> send(Session session, @Nullable String eTag, @Nullable String lastModified);
     }
 
-    private Task<Document> createDocumentInternal(final Bitmap document, @Nullable final String filename,
-                                         @Nullable final String apiDoctypeHint, final int compressionRate) {
-        return mSessionManager.getSession().onSuccessTask(new Continuation<Session, Task<Uri>>() {
-            @Override
-            public Task<Uri> then(Task<Session> sessionTask) throws Exception {
-                final Session session = sessionTask.getResult();
-                final ByteArrayOutputStream documentOutputStream = new ByteArrayOutputStream();
-                document.compress(JPEG, compressionRate, documentOutputStream);
-                final byte[] uploadData = documentOutputStream.toByteArray();
-                return mApiCommunicator
-                        .uploadDocument(uploadData, MediaTypes.IMAGE_JPEG, filename, apiDoctypeHint, session);
-            }
-        }, Task.BACKGROUND_EXECUTOR).onSuccessTask(new Continuation<Uri, Task<Document>>() {
-            @Override
-            public Task<Document> then(Task<Uri> uploadTask) throws Exception {
-                return getDocument(uploadTask.getResult());
-            }
-        }, Task.BACKGROUND_EXECUTOR);
+    private interface ResponseParser<T> {
+        T parse(JSONObject responseData) throws Exception;
     }
 
     /**
-     * Get the extractions for the given document.
-     *
-     * @param document The Document instance for whose document the extractions are returned.
-     *
-     * @return A Task which will resolve to a mapping, where the key is a String with the name of the
-     * specific. See the
-     * <a href="http://developer.gini.net/gini-api/html/document_extractions.html">Gini API documentation</a>
-     * for a list of the names of the specific extractions.
+     * Requests a model conditionally. If the Gini API answers that the model didn't change, the cached model is
+     * returned. Otherwise the response is parsed and cached together with its validators.
      */
-    public Task<Map<String, SpecificExtraction>> getExtractions(final Document document) {
-        final String documentId = document.getId();
-        return mSessionManager.getSession()
-                .onSuccessTask(new Continuation<Session, Task<JSONObject>>() {
-                    @Override
-                    public Task<JSONObject> then(Task<Session> sessionTask) {
-                        final Session session = sessionTask.getResult();
-                        return mApiCommunicator.getExtractions(documentId, session);
-                    }
-                }, Task.BACKGROUND_EXECUTOR)
-                .onSuccess(new Continuation<JSONObject, Map<String, SpecificExtraction>>() {
+    private <T> Task<T> getIfModified(final ConditionalRequestCache cache, final String key,
+                                      final ConditionalRequest request, final ResponseParser<T> parser) {
+        return mSessionManager.getSession().onSuccessTask(new Continuation<Session, Task<T>>() {
+            @Override
+            public Task<T> then(Task<Session> sessionTask) throws Exception {
+                final ConditionalRequestCache.Entry entry = cache.get(key);
+                final Task<ConditionalJsonResponse> responseTask = entry != null
+                        ? request.send(sessionTask.getResult(), entry.mETag, entry.mLastModified)
+                        : request.send(sessionTask.getResult(), null, null);
+                return responseTask.onSuccess(new Continuation<ConditionalJsonResponse, T>() {
                     @Override
-                    public Map<String, SpecificExtraction> then(Task<JSONObject> task) throws Exception {
-                        final JSONObject responseData = task.getResult();
-                        final JSONObject candidatesData = responseData.getJSONObject("candidates");
-                        HashMap<String, List<Extraction>> candidates =
-                                extractionCandidatesFromApiResponse(candidatesData);
-
-                        final HashMap<String, SpecificExtraction> extractionsByName =
-                                new HashMap<String, SpecificExtraction>();
-                        final JSONObject extractionsData = responseData.getJSONObject("extractions");
-                        @SuppressWarnings("unchecked")
-                        // Quote Android Source: "/* Return a raw type for API compatibility */"
-                        final Iterator<String> extractionsNameIterator = extractionsData.keys();
-                        while (extractionsNameIterator.hasNext()) {
-                            final String extractionName = extractionsNameIterator.next();
-                            final JSONObject extractionData = extractionsData.getJSONObject(extractionName);
-                            final Extraction extraction = extractionFromApiResponse(extractionData);
-                            List<Extraction> candidatesForExtraction = new ArrayList<Extraction>();
-                            if (extractionData.has("candidates")) {
-                                final String candidatesName = extractionData.getString("candidates");
-                                if (candidates.containsKey(candidatesName)) {
-                                    candidatesForExtraction = candidates.get(candidatesName);
-                                }
+                    @SuppressWarnings("unchecked")
+                    public T then(Task<ConditionalJsonResponse> task) throws Exception {
+                        final ConditionalJsonResponse response = task.getResult();
+                        if (response.isNotModified()) {
+                            if (entry == null) {
+                                throw new IllegalStateException("Not Modified response to an unconditional request");
                             }
-                            final SpecificExtraction specificExtraction =
-                                    new SpecificExtraction(extractionName, extraction.getValue(),
-                                            extraction.getEntity(), extraction.getBox(),
-                                            candidatesForExtraction);
-                            extractionsByName.put(extractionName, specificExtraction);
+                            return (T) entry.mModel;
                         }
-
-                        return extractionsByName;
+                        final T model = parser.parse(response.getJson());
+                        cache.put(key, response.getETag(), response.getLastModified(), model);
+                        return model;
                     }
-                }, Task.BACKGROUND_EXECUTOR);
+                }, mExecutors.getCpuExecutor());
+            }
+        }, mExecutors.getIoExecutor());
+    }
+
+    /**
+     * Returns the key of a document in the conditional request cache. The {@link ApiCommunicator} requests documents
+     * from the Gini API's base URL regardless of the host of a document URI, so the key is built from the decoded path
+     * and query only. A document requested by its ID and by its URI therefore uses the same cache entry.
+     */
+    private static String documentCacheKey(@Nullable final String path, @Nullable final String query) {
+        final String key = path == null ? "" : path.startsWith("/") ? path.substring(1) : path;
+        return query == null ? key : key + "?" + query;
+    }
+
+    /**
+     * Returns a continuation which adds the processed document to the local search index, if there is one.
+     */
+    private Continuation<Document, Document> indexDocument() {
+        return new Continuation<Document, Document>() {
+            @Override
+            public Document then(Task<Document> task) throws Exception {
+                final Document document = task.getResult();
+                final LocalSearchIndex searchIndex = mLocalSearchIndex;
+                // Pending documents are polled, indexing them would only cause needless writes.
+                if (searchIndex != null && document.getState() != Document.ProcessingState.PENDING) {
+                    indexInBackground(searchIndex, document, null);
+                }
+                return document;
+            }
+        };
+    }
+
+    /**
+     * Adds the document to the index without delaying the task which retrieved it. Failures are ignored, since the
+     * index is reconciled with the Gini API anyway.
+     */
+    private void indexInBackground(final LocalSearchIndex searchIndex, final Document document,
+                                   @Nullable final Map<String, SpecificExtraction> extractions) {
+        Task.call(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                searchIndex.index(document, extractions);
+                return null;
+            }
+        }, mExecutors.getIoExecutor());
     }
 
     /**
@@ -246,16 +1222,46 @@ public class DocumentTaskManager {
      * @return A document instance representing all the document's metadata.
      */
     public Task<Document> getDocument(final String documentId) {
+        return getDocument(documentId, null);
+    }
+
+    /**
+     * Get the document with the given unique identifier. The request can be cancelled with the given handle.
+     *
+     * @param documentId         The unique identifier of the document.
+     * @param cancellationHandle Optional a handle to cancel the request. Cancelling resolves the returned task as
+     *                           cancelled.
+     *
+     * @see #getDocument(String)
+     */
+    public Task<Document> getDocument(final String documentId, @Nullable final CancellationHandle cancellationHandle) {
         checkNotNull(documentId);
+        final ConditionalRequestCache cache = mConditionalRequestCache;
+        if (cache != null) {
+            final String key = documentCacheKey("/documents/" + documentId, null);
+            return getIfModified(cache, key, new ConditionalRequest() {
+                @Override
+                public Task<ConditionalJsonResponse> send(final Session session, @Nullable final String eTag,
+                                                          @Nullable final String lastModified) {
+                    return cancellationHandle == null
+                            ? mApiCommunicator.getDocumentIfModified(documentId, session, eTag, lastModified)
+                            : mApiCommunicator.getDocumentIfModified(documentId, session, eTag, lastModified,
+                            cancellationHandle);
+                }
+            }, DOCUMENT_PARSER).onSuccess(indexDocument(), mExecutors.getCpuExecutor());
+        }
         return mSessionManager.getSession()
                 .onSuccessTask(new Continuation<Session, Task<JSONObject>>() {
                     @Override
                     public Task<JSONObject> then(Task<Session> sessionTask) throws Exception {
                         final Session session = sessionTask.getResult();
-                        return mApiCommunicator.getDocument(documentId, session);
+                        return cancellationHandle == null
+                                ? mApiCommunicator.getDocument(documentId, session)
+                                : mApiCommunicator.getDocument(documentId, session, cancellationHandle);
                     }
-                }, Task.BACKGROUND_EXECUTOR)
-                .onSuccess(DOCUMENT_FROM_RESPONSE, Task.BACKGROUND_EXECUTOR);
+                }, mExecutors.getIoExecutor())
+                .onSuccess(DOCUMENT_FROM_RESPONSE, mExecutors.getCpuExecutor())
+                .onSuccess(indexDocument(), mExecutors.getCpuExecutor());
     }
 
     /**
@@ -270,22 +1276,131 @@ public class DocumentTaskManager {
      * @return A document instance representing all the document's metadata.
      */
     public Task<Document> getDocument(final Uri documentUri) {
+        return getDocument(documentUri, null);
+    }
+
+    /**
+     * Get the document with the given URI. The request can be cancelled with the given handle.
+     *
+     * @param documentUri        The URI of the document.
+     * @param cancellationHandle Optional a handle to cancel the request. Cancelling resolves the returned task as
+     *                           cancelled.
+     *
+     * @see #getDocument(Uri)
+     */
+    public Task<Document> getDocument(final Uri documentUri, @Nullable final CancellationHandle cancellationHandle) {
         checkNotNull(documentUri);
+        final ConditionalRequestCache cache = mConditionalRequestCache;
+        if (cache != null) {
+            final String key = documentCacheKey(documentUri.getPath(), documentUri.getQuery());
+            return getIfModified(cache, key, new ConditionalRequest() {
+                @Override
+                public Task<ConditionalJsonResponse> send(final Session session, @Nullable final String eTag,
+                                                          @Nullable final String lastModified) {
+                    return cancellationHandle == null
+                            ? mApiCommunicator.getDocumentIfModified(documentUri, session, eTag, lastModified)
+                            : mApiCommunicator.getDocumentIfModified(documentUri, session, eTag, lastModified,
+                            cancellationHandle);
+                }
+            }, DOCUMENT_PARSER).onSuccess(indexDocument(), mExecutors.getCpuExecutor());
+        }
         return mSessionManager.getSession()
                 .onSuccessTask(new Continuation<Session, Task<JSONObject>>() {
                     @Override
                     public Task<JSONObject> then(Task<Session> sessionTask) throws Exception {
                         final Session session = sessionTask.getResult();
-                        return mApiCommunicator.getDocument(documentUri, session);
+                        return cancellationHandle == null
+                                ? mApiCommunicator.getDocument(documentUri, session)
+                                : mApiCommunicator.getDocument(documentUri, session, cancellationHandle);
+                    }
+                }, mExecutors.getIoExecutor())
+                .onSuccess(DOCUMENT_FROM_RESPONSE, mExecutors.getCpuExecutor())
+                .onSuccess(indexDocument(), mExecutors.getCpuExecutor());
+    }
+
+    /**
+     * Pages through all documents of the user. The pages are loaded lazily and the next page is prefetched. At most
+     * {@link DocumentPager#DEFAULT_MAX_CACHED_PAGES} pages are kept in memory.
+     *
+     * @param pageSize The number of documents per page.
+     *
+     * @return A pager for the documents.
+     */
+    public DocumentPager getDocumentPager(final int pageSize) {
+        return getDocumentPager(pageSize, DocumentPager.DEFAULT_MAX_CACHED_PAGES);
+    }
+
+    /**
+     * Pages through all documents of the user. The pages are loaded lazily and the next page is prefetched.
+     *
+     * @param pageSize       The number of documents per page.
+     * @param maxCachedPages The maximal number of pages which are kept in memory.
+     *
+     * @return A pager for the documents.
+     */
+    public DocumentPager getDocumentPager(final int pageSize, final int maxCachedPages) {
+        return new DocumentPager(new DocumentPager.PageLoader() {
+            @Override
+            public Task<JSONObject> loadPage(final int offset, final int limit) {
+                return mSessionManager.getSession().onSuccessTask(new Continuation<Session, Task<JSONObject>>() {
+                    @Override
+                    public Task<JSONObject> then(Task<Session> task) throws Exception {
+                        return mApiCommunicator.getDocumentList(offset, limit, task.getResult());
+                    }
+                }, mExecutors.getIoExecutor());
+            }
+        }, pageSize, maxCachedPages, mExecutors.getCpuExecutor());
+    }
+
+    /**
+     * Pages through the documents which match the search term. The pages are loaded lazily and the next page is
+     * prefetched. At most {@link DocumentPager#DEFAULT_MAX_CACHED_PAGES} pages are kept in memory.
+     *
+     * @param searchTerm   The search term.
+     * @param documentType Optional restricts the results to documents of this type.
+     * @param pageSize     The number of documents per page.
+     *
+     * @return A pager for the matching documents.
+     */
+    public DocumentPager searchDocuments(final String searchTerm, @Nullable final DocumentType documentType,
+                                         final int pageSize) {
+        return searchDocuments(searchTerm, documentType, pageSize, DocumentPager.DEFAULT_MAX_CACHED_PAGES);
+    }
+
+    /**
+     * Pages through the documents which match the search term. The pages are loaded lazily and the next page is
+     * prefetched.
+     *
+     * @param searchTerm     The search term.
+     * @param documentType   Optional restricts the results to documents of this type.
+     * @param pageSize       The number of documents per page.
+     * @param maxCachedPages The maximal number of pages which are kept in memory.
+     *
+     * @return A pager for the matching documents.
+     */
+    public DocumentPager searchDocuments(final String searchTerm, @Nullable final DocumentType documentType,
+                                         final int pageSize, final int maxCachedPages) {
+        checkNotNull(searchTerm);
+        final String docType = documentType != null ? documentType.getApiDoctypeHint() : null;
+        return new DocumentPager(new DocumentPager.PageLoader() {
+            @Override
+            public Task<JSONObject> loadPage(final int offset, final int limit) {
+                return mSessionManager.getSession().onSuccessTask(new Continuation<Session, Task<JSONObject>>() {
+                    @Override
+                    public Task<JSONObject> then(Task<Session> task) throws Exception {
+                        return mApiCommunicator.searchDocuments(searchTerm, docType, offset, limit,
+                                task.getResult());
                     }
-                }, Task.BACKGROUND_EXECUTOR)
-                .onSuccess(DOCUMENT_FROM_RESPONSE, Task.BACKGROUND_EXECUTOR);
+                }, mExecutors.getIoExecutor());
+            }
+        }, pageSize, maxCachedPages, mExecutors.getCpuExecutor());
     }
 
     /**
      * Continually checks the document status (via the Gini API) until the document is fully processed. To avoid
      * flooding the network, there is a pause of at least the number of seconds that is set in the POLLING_INTERVAL
-     * constant of this class.
+     * constant of this class. If long polling was enabled with {@link #setLongPollingWait(int)}, the Gini API is
+     * asked to hold the requests instead.
      *
      * <b>This method returns a Task which will resolve to a new document instance. It does not update the given
      * document instance.</b>
@@ -293,25 +1408,109 @@ public class DocumentTaskManager {
      * @param document The document which will be polled.
      */
     public Task<Document> pollDocument(final Document document) {
+        return pollDocument(document, null);
+    }
+
+    /**
+     * Continually checks the document status until the document is fully processed. Polling stops as soon as the
+     * given handle is cancelled: the running request and the pause between the requests are cancelled and no further
+     * requests are sent.
+     *
+     * @param document           The document which will be polled.
+     * @param cancellationHandle Optional a handle to stop polling. Cancelling resolves the returned task as cancelled.
+     *
+     * @see #pollDocument(Document)
+     */
+    public Task<Document> pollDocument(final Document document,
+                                       @Nullable final CancellationHandle cancellationHandle) {
+        final int waitSeconds = mLongPollingWaitSeconds;
+        if (waitSeconds > 0) {
+            return longPollDocument(document, waitSeconds, cancellationHandle);
+        }
+        return pollDocumentInIntervals(document, cancellationHandle);
+    }
+
+    private Task<Document> pollDocumentInIntervals(final Document document,
+                                                   @Nullable final CancellationHandle cancellationHandle) {
         if (document.getState() != Document.ProcessingState.PENDING) {
             return Task.forResult(document);
         }
+        if (cancellationHandle != null && cancellationHandle.isCancelled()) {
+            return Task.cancelled();
+        }
         final String documentId = document.getId();
-        return getDocument(documentId).continueWithTask(new Continuation<Document, Task<Document>>() {
-            @Override
-            public Task<Document> then(Task<Document> task) throws Exception {
-                if (task.isFaulted() || task.isCancelled()
-                        || task.getResult().getState() != Document.ProcessingState.PENDING) {
-                    return task;
-                } else {
-                    // The continuation is executed in a background thread by Bolts, so it does not block the UI
-                    // when we sleep here. Infinite recursions are also prevented by Bolts (the task will then resolve
-                    // to a failure).
-                    Thread.sleep(POLLING_INTERVAL);
-                    return pollDocument(document);
-                }
-            }
-        }, Task.BACKGROUND_EXECUTOR);
+        return getDocument(documentId, cancellationHandle).continueWithTask(
+                new Continuation<Document, Task<Document>>() {
+                    @Override
+                    public Task<Document> then(Task<Document> task) throws Exception {
+                        if (task.isFaulted() || task.isCancelled()
+                                || task.getResult().getState() != Document.ProcessingState.PENDING) {
+                            return task;
+                        } else {
+                            return pollDocumentAfterInterval(document, cancellationHandle);
+                        }
+                    }
+                }, mExecutors.getIoExecutor());
+    }
+
+    /**
+     * Requests the document with held requests until it is processed. Falls back to polling in intervals as soon as
+     * the Gini API answers without having waited or a held request times out.
+     */
+    private Task<Document> longPollDocument(final Document document, final int waitSeconds,
+                                            @Nullable final CancellationHandle cancellationHandle) {
+        if (document.getState() != Document.ProcessingState.PENDING) {
+            return Task.forResult(document);
+        }
+        if (cancellationHandle != null && cancellationHandle.isCancelled()) {
+            return Task.cancelled();
+        }
+        final String documentId = document.getId();
+        return mSessionManager.getSession()
+                .onSuccessTask(new Continuation<Session, Task<WaitingJsonResponse>>() {
+                    @Override
+                    public Task<WaitingJsonResponse> then(Task<Session> sessionTask) throws Exception {
+                        return cancellationHandle == null
+                                ? mApiCommunicator.waitForDocument(documentId, sessionTask.getResult(), waitSeconds)
+                                : mApiCommunicator.waitForDocument(documentId, sessionTask.getResult(), waitSeconds,
+                                cancellationHandle);
+                    }
+                }, mExecutors.getIoExecutor())
+                .continueWithTask(new Continuation<WaitingJsonResponse, Task<Document>>() {
+                    @Override
+                    public Task<Document> then(Task<WaitingJsonResponse> task) throws Exception {
+                        if (task.isFaulted() && task.getError() instanceof TimeoutError) {
+                            // A proxy may drop held requests.
+                            return pollDocumentInIntervals(document, cancellationHandle);
+                        }
+                        if (task.isFaulted() || task.isCancelled()) {
+                            return task.cast();
+                        }
+                        final WaitingJsonResponse response = task.getResult();
+                        final Document polledDocument = Document.fromApiResponse(response.getJson());
+                        if (polledDocument.getState() != Document.ProcessingState.PENDING) {
+                            return Task.forResult(polledDocument).onSuccess(indexDocument(),
+                                    mExecutors.getCpuExecutor());
+                        }
+                        if (response.isWaitApplied()) {
+                            // The wait time expired, the next request is held again.
+                            return longPollDocument(polledDocument, waitSeconds, cancellationHandle);
+                        }
+                        return pollDocumentAfterInterval(polledDocument, cancellationHandle);
+                    }
+                }, mExecutors.getCpuExecutor());
+    }
+
+    private Task<Document> pollDocumentAfterInterval(final Document document,
+                                                     @Nullable final CancellationHandle cancellationHandle) {
+        // No thread is blocked while waiting, so pending polls don't starve the other requests on the I/O executor.
+        return SdkExecutors.delay(POLLING_INTERVAL, cancellationHandle).onSuccessTask(
+                new Continuation<Void, Task<Document>>() {
+                    @Override
+                    public Task<Document> then(Task<Void> task) throws Exception {
+                        return pollDocumentInIntervals(document, cancellationHandle);
+                    }
+                }, mExecutors.getIoExecutor());
     }
 
     /**
@@ -332,10 +1531,72 @@ public class DocumentTaskManager {
     public Task<Document> sendFeedbackForExtractions(final Document document,
                                                      final Map<String, SpecificExtraction> extractions)
             throws JSONException {
+        return sendFeedback(document, extractions, null);
+    }
+
+    /**
+     * Sends approved and conceivably corrected extractions for the given document. The request can be cancelled with
+     * the given handle. The extractions stay dirty if the request is cancelled.
+     *
+     * @param document           The document for which the extractions should be updated.
+     * @param extractions        The extractions as returned by the getExtractions method of this manager.
+     * @param cancellationHandle Optional a handle to cancel the request. Cancelling resolves the returned task as
+     *                           cancelled.
+     *
+     * @throws JSONException When a value of an extraction is not JSON serializable.
+     *
+     * @see #sendFeedbackForExtractions(Document, Map)
+     */
+    public Task<Document> sendFeedbackForExtractions(final Document document,
+                                                     final Map<String, SpecificExtraction> extractions,
+                                                     @Nullable final CancellationHandle cancellationHandle)
+            throws JSONException {
+        return sendFeedback(document, extractions, cancellationHandle);
+    }
+
+    /**
+     * Sends feedback only for the extractions which were changed since they were retrieved or since the last
+     * feedback was sent, i.e. for the extractions which are marked as dirty. If no extraction was changed, no request
+     * is done.
+     * <p>
+     * To coalesce feedback for rapid successive changes (e.g. whenever an input field loses the focus), use a
+     * {@link DebouncedFeedbackSender}.
+     *
+     * @param document    The document for which the extractions should be updated.
+     * @param extractions A Map where the key is the name of the specific extraction and the value is the
+     *                    SpecificExtraction object. This is the same structure as returned by the getExtractions
+     *                    method of this manager.
+     *
+     * @return A Task which will resolve to the same document instance when storing the updated
+     * extractions was successful or when there were no changed extractions.
+     *
+     * @throws JSONException When a value of an extraction is not JSON serializable.
+     */
+    public Task<Document> sendFeedbackForDirtyExtractions(final Document document,
+                                                          final Map<String, SpecificExtraction> extractions)
+            throws JSONException {
+        final Map<String, SpecificExtraction> dirtyExtractions = new HashMap<String, SpecificExtraction>();
+        for (Map.Entry<String, SpecificExtraction> entry : extractions.entrySet()) {
+            if (entry.getValue().isDirty()) {
+                dirtyExtractions.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (dirtyExtractions.isEmpty()) {
+            return Task.forResult(document);
+        }
+        return sendFeedback(document, dirtyExtractions, null);
+    }
+
+    private Task<Document> sendFeedback(final Document document, final Map<String, SpecificExtraction> extractions,
+                                        @Nullable final CancellationHandle cancellationHandle)
+            throws JSONException {
         final String documentId = document.getId();
         final JSONObject feedbackForExtractions = new JSONObject();
+        // The versions of the sent extractions, so changes done while the request is running stay dirty.
+        final Map<Extraction, Long> sentVersions = new HashMap<Extraction, Long>();
         for (Map.Entry<String, SpecificExtraction> entry : extractions.entrySet()) {
             final Extraction extraction = entry.getValue();
+            sentVersions.put(extraction, extraction.getVersion());
             final JSONObject extractionData = new JSONObject();
             extractionData.put("value", extraction.getValue());
             extractionData.put("entity", extraction.getEntity());
@@ -346,17 +1607,20 @@ public class DocumentTaskManager {
             @Override
             public Task<JSONObject> then(Task<Session> task) throws Exception {
                 final Session session = task.getResult();
-                return mApiCommunicator.sendFeedback(documentId, feedbackForExtractions, session);
+                return cancellationHandle == null
+                        ? mApiCommunicator.sendFeedback(documentId, feedbackForExtractions, session)
+                        : mApiCommunicator.sendFeedback(documentId, feedbackForExtractions, session,
+                        cancellationHandle);
             }
-        }, Task.BACKGROUND_EXECUTOR).onSuccess(new Continuation<JSONObject, Document>() {
+        }, mExecutors.getIoExecutor()).onSuccess(new Continuation<JSONObject, Document>() {
             @Override
             public Document then(Task<JSONObject> task) throws Exception {
-                for (Map.Entry<String, SpecificExtraction> entry : extractions.entrySet()) {
-                    entry.getValue().setIsDirty(false);
+                for (Map.Entry<Extraction, Long> entry : sentVersions.entrySet()) {
+                    entry.getKey().clearIsDirty(entry.getValue());
                 }
                 return document;
             }
-        }, Task.BACKGROUND_EXECUTOR);
+        }, mExecutors.getCpuExecutor());
     }
 
     /**
@@ -375,20 +1639,40 @@ public class DocumentTaskManager {
      */
     public Task<String> reportDocument(final Document document, final @Nullable String summary,
                                        final @Nullable String description) {
+        return reportDocument(document, summary, description, null);
+    }
+
+    /**
+     * Sends an error report for the given document to Gini. The request can be cancelled with the given handle.
+     *
+     * @param document           The erroneous document.
+     * @param summary            Optional a short summary of the occurred error.
+     * @param description        Optional a more detailed description of the occurred error.
+     * @param cancellationHandle Optional a handle to cancel the request. Cancelling resolves the returned task as
+     *                           cancelled.
+     *
+     * @see #reportDocument(Document, String, String)
+     */
+    public Task<String> reportDocument(final Document document, final @Nullable String summary,
+                                       final @Nullable String description,
+                                       @Nullable final CancellationHandle cancellationHandle) {
         final String documentId = document.getId();
         return mSessionManager.getSession().onSuccessTask(new Continuation<Session, Task<JSONObject>>() {
             @Override
             public Task<JSONObject> then(Task<Session> task) throws Exception {
                 final Session session = task.getResult();
-                return mApiCommunicator.errorReportForDocument(documentId, summary, description, session);
+                return cancellationHandle == null
+                        ? mApiCommunicator.errorReportForDocument(documentId, summary, description, session)
+                        : mApiCommunicator.errorReportForDocument(documentId, summary, description, session,
+                        cancellationHandle);
             }
-        }, Task.BACKGROUND_EXECUTOR).onSuccess(new Continuation<JSONObject, String>() {
+        }, mExecutors.getIoExecutor()).onSuccess(new Continuation<JSONObject, String>() {
             @Override
             public String then(Task<JSONObject> task) throws Exception {
                 final JSONObject responseData = task.getResult();
                 return responseData.getString("errorId");
             }
-        }, Task.BACKGROUND_EXECUTOR);
+        }, mExecutors.getCpuExecutor());
     }
 
     /**
@@ -407,7 +1691,42 @@ public class DocumentTaskManager {
                 final Session session = task.getResult();
                 return mApiCommunicator.getLayoutForDocument(documentId, session);
             }
-        }, Task.BACKGROUND_EXECUTOR);
+        }, mExecutors.getIoExecutor());
+    }
+
+    /**
+     * Gets the layout of a document as a {@link Layout}. Compared to {@link #getLayout(Document)} the response is
+     * parsed while it is read and the layout needs much less memory, which matters for documents with many pages.
+     *
+     * @param document The document for which the layout is requested.
+     *
+     * @return A task which will resolve to the document's layout.
+     */
+    public Task<Layout> getLayoutModel(final Document document) {
+        return getLayoutModel(document, null);
+    }
+
+    /**
+     * Gets the layout of a document as a {@link Layout}. The request can be cancelled with the given handle.
+     *
+     * @param document           The document for which the layout is requested.
+     * @param cancellationHandle Optional a handle to cancel the request. Cancelling resolves the returned task as
+     *                           cancelled.
+     *
+     * @see #getLayoutModel(Document)
+     */
+    public Task<Layout> getLayoutModel(final Document document,
+                                       @Nullable final CancellationHandle cancellationHandle) {
+        final String documentId = document.getId();
+        return mSessionManager.getSession().onSuccessTask(new Continuation<Session, Task<Layout>>() {
+            @Override
+            public Task<Layout> then(Task<Session> task) throws Exception {
+                final Session session = task.getResult();
+                return cancellationHandle == null
+                        ? mApiCommunicator.getLayoutModelForDocument(documentId, session)
+                        : mApiCommunicator.getLayoutModelForDocument(documentId, session, cancellationHandle);
+            }
+        }, mExecutors.getIoExecutor());
     }
 
     /**
@@ -419,7 +1738,12 @@ public class DocumentTaskManager {
      * @return The created mapping as described above.
      *
      * @throws JSONException If the JSON data does not have the expected structure or if there is invalid data.
+     *
+     * @deprecated The extractions are parsed with their boxes stored in one shared {@link BoxArray} per response and
+     * this method isn't called by the SDK anymore. Overriding it doesn't change the extractions returned by
+     * {@link #getExtractions(Document)}.
      */
+    @Deprecated
     protected HashMap<String, List<Extraction>> extractionCandidatesFromApiResponse(final JSONObject responseData)
             throws JSONException {
         final HashMap<String, List<Extraction>> candidatesByEntity = new HashMap<String, List<Extraction>>();
@@ -447,7 +1771,11 @@ public class DocumentTaskManager {
      * @return The created Extraction instance.
      *
      * @throws JSONException If the JSON data does not have the expected structure or if there is invalid data.
+     *
+     * @deprecated Only called by {@link #extractionCandidatesFromApiResponse(JSONObject)}. Overriding it doesn't change
+     * the extractions returned by {@link #getExtractions(Document)}.
      */
+    @Deprecated
     protected Extraction extractionFromApiResponse(final JSONObject responseData) throws JSONException {
         final String entity = responseData.getString("entity");
         final String value = responseData.getString("value");
@@ -471,6 +1799,10 @@ public class DocumentTaskManager {
         private String mDocumentType;
         private DocumentType mDocumentTypeHint;
         private int mCompressionRate;
+        private UploadProgressListener mProgressListener;
+        private CancellationHandle mCancellationHandle;
+        private AdaptiveJpegEncoder mJpegEncoder;
+        private DocumentImagePreprocessor mPreprocessor;
 
         public DocumentUploadBuilder() {
             mCompressionRate = DocumentTaskManager.DEFAULT_COMPRESSION;
@@ -534,7 +1866,7 @@ public class DocumentTaskManager {
 
         /**
          * The bitmap (if set) will be converted into a JPEG representation. Set the compression rate for the JPEG
-         * representation.
+         * representation. It is not used if a JPEG encoder was set with {@link #setJpegEncoder(AdaptiveJpegEncoder)}.
          *
          * @deprecated The default compression rate is set to get the best extractions for the smallest image byte size.
          */
@@ -544,6 +1876,41 @@ public class DocumentTaskManager {
             return this;
         }
 
+        /**
+         * The bitmap (if set) will be converted into a JPEG representation with the given encoder instead of the
+         * compression rate. The encoder chooses the JPEG quality itself, so a compression rate which was set with
+         * {@link #setCompressionRate(int)} is not used.
+         */
+        public DocumentUploadBuilder setJpegEncoder(final AdaptiveJpegEncoder jpegEncoder) {
+            mJpegEncoder = jpegEncoder;
+            return this;
+        }
+
+        /**
+         * The bitmap (if set) will be prepared with the given preprocessor before it is converted into a JPEG
+         * representation.
+         */
+        public DocumentUploadBuilder setPreprocessor(final DocumentImagePreprocessor preprocessor) {
+            mPreprocessor = preprocessor;
+            return this;
+        }
+
+        /**
+         * Set a listener which is informed about the number of uploaded bytes.
+         */
+        public DocumentUploadBuilder setProgressListener(final UploadProgressListener progressListener) {
+            mProgressListener = progressListener;
+            return this;
+        }
+
+        /**
+         * Set a handle which can be used to cancel the upload.
+         */
+        public DocumentUploadBuilder setCancellationHandle(final CancellationHandle cancellationHandle) {
+            mCancellationHandle = cancellationHandle;
+            return this;
+        }
+
         /**
          * Use the given DocumentTaskManager instance to upload the document with all the features which were set with
          * this builder.
@@ -553,6 +1920,25 @@ public class DocumentTaskManager {
          * @return A task which will resolve to a Document instance.
          */
         public Task<Document> upload(final DocumentTaskManager documentTaskManager) {
+            if (mDocumentBitmap != null && (mJpegEncoder != null || mPreprocessor != null)) {
+                // The deprecated type and compression rate are used like in the deprecated createDocument method.
+                final String apiDoctypeHint =
+                        mDocumentTypeHint != null ? mDocumentTypeHint.getApiDoctypeHint() : mDocumentType;
+                return documentTaskManager.createDocumentInternal(mDocumentBitmap, mFilename, apiDoctypeHint,
+                        mPreprocessor, mJpegEncoder, mCompressionRate, mProgressListener, mCancellationHandle);
+            }
+            if (mProgressListener != null || mCancellationHandle != null) {
+                if (mDocumentBitmap != null) {
+                    if (mDocumentTypeHint != null) {
+                        return documentTaskManager.createDocument(mDocumentBitmap, mFilename, mDocumentTypeHint,
+                                mProgressListener, mCancellationHandle);
+                    }
+                    return documentTaskManager.createDocumentInternal(mDocumentBitmap, mFilename, mDocumentType,
+                            mCompressionRate, mProgressListener, mCancellationHandle);
+                }
+                return documentTaskManager.createDocument(mDocumentBytes, mFilename, mDocumentTypeHint,
+                        mProgressListener, mCancellationHandle);
+            }
             if (mDocumentBitmap != null) {
                 if (mDocumentTypeHint != null) {
                     return documentTaskManager.createDocument(mDocumentBitmap, mFilename, mDocumentTypeHint);
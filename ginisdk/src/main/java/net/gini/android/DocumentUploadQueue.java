@@ -0,0 +1,624 @@
+package net.gini.android;
+
+import com.android.volley.NetworkError;
+import com.android.volley.TimeoutError;
+
+import net.gini.android.DocumentTaskManager.DocumentType;
+import net.gini.android.models.Document;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+import bolts.Continuation;
+import bolts.Task;
+
+import static net.gini.android.Utils.CHARSET_UTF8;
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * A persistent queue for document uploads which survives the death of the app's process.
+ * </p>
+ * <p>
+ * Every enqueued document is first staged to a file in the queue's directory and recorded in a small append-only
+ * journal. Only then the upload is started via the {@link DocumentTaskManager}. At most {@link
+ * #getMaxConcurrentUploads()} documents are uploaded at the same time. The files are staged and read on the I/O
+ * executor of the DocumentTaskManager's {@link SdkExecutors}.
+ * </p>
+ * <p>
+ * If an upload fails because of a network error (no connection or a timeout), the document is kept in the queue and
+ * the queue is paused. Call {@link #resume()} when the device is connected again, e.g. from a connectivity broadcast
+ * receiver. After a restart of the app call {@link #restore()} to continue the uploads of documents which were not
+ * uploaded before the process died.
+ * </p>
+ */
+public class DocumentUploadQueue {
+
+    /**
+     * Listener which is informed about the progress of the queued uploads. The methods are called on a background
+     * thread.
+     */
+    public interface Listener {
+
+        /**
+         * Called when the upload of a queued document was started.
+         *
+         * @param uploadId The identifier of the queued document as returned by {@link #enqueue}.
+         */
+        void onUploadStarted(String uploadId);
+
+        /**
+         * Called when a queued document was uploaded and removed from the queue.
+         *
+         * @param uploadId The identifier of the queued document.
+         * @param document The freshly created document.
+         */
+        void onUploadCompleted(String uploadId, Document document);
+
+        /**
+         * Called when the upload of a queued document failed.
+         *
+         * @param uploadId  The identifier of the queued document.
+         * @param error     The error which occurred.
+         * @param willRetry Whether the document is kept in the queue and will be uploaded again after {@link
+         *                  #resume()} was called.
+         */
+        void onUploadFailed(String uploadId, Exception error, boolean willRetry);
+    }
+
+    /**
+     * The default number of documents which are uploaded at the same time.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_UPLOADS = 2;
+
+    private static final int MAX_FINISHED_UPLOADS = 100;
+    /**
+     * The journal is compacted after this number of documents were removed from the queue.
+     */
+    static final int JOURNAL_COMPACTION_THRESHOLD = 50;
+    private static final String JOURNAL_FILENAME = "journal";
+    private static final String STAGED_DOCUMENT_SUFFIX = ".document";
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+    private static final String JOURNAL_ENQUEUED = "ENQUEUED";
+    private static final String JOURNAL_REMOVED = "REMOVED";
+    // Not a possible result of URL encoding.
+    private static final String JOURNAL_NO_VALUE = "~";
+
+    private final DocumentTaskManager mDocumentTaskManager;
+    private final Executor mIoExecutor;
+    private final File mDirectory;
+    private final int mMaxConcurrentUploads;
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<Listener>();
+
+    /**
+     * The queued documents in the order of their upload.
+     */
+    private final LinkedHashMap<String, QueuedDocument> mQueuedDocuments =
+            new LinkedHashMap<String, QueuedDocument>();
+    /**
+     * The completion sources of the tasks which were handed out for the queued documents.
+     */
+    private final Map<String, Task<Document>.TaskCompletionSource> mCompletionSources =
+            new HashMap<String, Task<Document>.TaskCompletionSource>();
+    /**
+     * The tasks of the most recently finished uploads.
+     */
+    private final Map<String, Task<Document>> mFinishedUploads =
+            new LinkedHashMap<String, Task<Document>>() {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Task<Document>> eldest) {
+                    return size() > MAX_FINISHED_UPLOADS;
+                }
+            };
+    private int mRunningUploads;
+    private int mRemovalsSinceCompaction;
+    private boolean mPaused;
+    private Task<List<String>> mRestoreTask;
+
+    /**
+     * @param documentTaskManager The DocumentTaskManager which is used to upload the documents.
+     * @param directory           The directory where the queue stages the documents and stores its journal. Use a
+     *                            directory which is exclusively used by this queue, e.g. a subdirectory of {@link
+     *                            android.content.Context#getFilesDir()}.
+     */
+    public DocumentUploadQueue(final DocumentTaskManager documentTaskManager, final File directory) {
+        this(documentTaskManager, directory, DEFAULT_MAX_CONCURRENT_UPLOADS);
+    }
+
+    /**
+     * @param documentTaskManager  The DocumentTaskManager which is used to upload the documents.
+     * @param directory            The directory where the queue stages the documents and stores its journal.
+     * @param maxConcurrentUploads The maximal number of documents which are uploaded at the same time.
+     */
+    public DocumentUploadQueue(final DocumentTaskManager documentTaskManager, final File directory,
+                               final int maxConcurrentUploads) {
+        if (maxConcurrentUploads < 1) {
+            throw new IllegalArgumentException("maxConcurrentUploads can't be less than 1");
+        }
+        mDocumentTaskManager = checkNotNull(documentTaskManager);
+        mIoExecutor = documentTaskManager.getExecutors().getIoExecutor();
+        mDirectory = checkNotNull(directory);
+        mMaxConcurrentUploads = maxConcurrentUploads;
+    }
+
+    public int getMaxConcurrentUploads() {
+        return mMaxConcurrentUploads;
+    }
+
+    public void addListener(final Listener listener) {
+        mListeners.add(checkNotNull(listener));
+    }
+
+    public void removeListener(final Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Reads the journal and continues the uploads of the documents which are still queued, e.g. because the app's
+     * process died before they were uploaded. Calling this method more than once has no further effect.
+     *
+     * @return A task which will resolve to the identifiers of the documents which are still queued. Use {@link
+     * #getUploadTask(String)} to get the task of a specific document.
+     */
+    public synchronized Task<List<String>> restore() {
+        if (mRestoreTask == null) {
+            mRestoreTask = Task.call(new Callable<List<String>>() {
+                @Override
+                public List<String> call() throws Exception {
+                    final LinkedHashMap<String, QueuedDocument> journalEntries = readJournal();
+                    final List<String> uploadIds;
+                    synchronized (DocumentUploadQueue.this) {
+                        // Documents which were enqueued in the meantime are uploaded after the restored ones.
+                        final LinkedHashMap<String, QueuedDocument> enqueuedDocuments =
+                                new LinkedHashMap<String, QueuedDocument>(mQueuedDocuments);
+                        mQueuedDocuments.clear();
+                        mQueuedDocuments.putAll(journalEntries);
+                        mQueuedDocuments.putAll(enqueuedDocuments);
+                        uploadIds = new ArrayList<String>(mQueuedDocuments.keySet());
+                        for (String uploadId : uploadIds) {
+                            if (!mCompletionSources.containsKey(uploadId)) {
+                                final Task<Document>.TaskCompletionSource completionSource = Task.create();
+                                mCompletionSources.put(uploadId, completionSource);
+                            }
+                        }
+                        compactJournal(mQueuedDocuments.values());
+                    }
+                    scheduleUploads();
+                    return uploadIds;
+                }
+            }, mIoExecutor);
+        }
+        return mRestoreTask;
+    }
+
+    /**
+     * Stages the given document and queues it for the upload. Staging happens on a background thread, use {@link
+     * #getUploadTask(String)} to find out when the document was uploaded or if staging failed.
+     *
+     * @param document     A byte array representing an image, a pdf or UTF-8 encoded text.
+     * @param filename     Optional the filename of the given document.
+     * @param documentType Optional a document type hint.
+     *
+     * @return The identifier of the queued document.
+     */
+    public String enqueue(final byte[] document, @Nullable final String filename,
+                          @Nullable final DocumentType documentType) {
+        checkNotNull(document);
+        final QueuedDocument queuedDocument =
+                new QueuedDocument(UUID.randomUUID().toString(), filename, documentType);
+        final Task<Document>.TaskCompletionSource completionSource = Task.create();
+        synchronized (this) {
+            mCompletionSources.put(queuedDocument.mUploadId, completionSource);
+        }
+        Task.call(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                stageDocument(queuedDocument, document);
+                synchronized (DocumentUploadQueue.this) {
+                    appendToJournal(JOURNAL_ENQUEUED, queuedDocument.mUploadId, encode(queuedDocument.mFilename),
+                            queuedDocument.mDocumentType != null ? queuedDocument.mDocumentType.name()
+                                    : JOURNAL_NO_VALUE);
+                    mQueuedDocuments.put(queuedDocument.mUploadId, queuedDocument);
+                }
+                scheduleUploads();
+                return null;
+            }
+        }, mIoExecutor).continueWith(new Continuation<Void, Void>() {
+            @Override
+            public Void then(Task<Void> task) throws Exception {
+                if (task.isFaulted()) {
+                    synchronized (DocumentUploadQueue.this) {
+                        mCompletionSources.remove(queuedDocument.mUploadId);
+                        //noinspection ResultOfMethodCallIgnored
+                        getStagedDocumentFile(queuedDocument).delete();
+                    }
+                    for (Listener listener : mListeners) {
+                        listener.onUploadFailed(queuedDocument.mUploadId, task.getError(), false);
+                    }
+                    completionSource.trySetError(task.getError());
+                }
+                return null;
+            }
+        });
+        return queuedDocument.mUploadId;
+    }
+
+    /**
+     * Returns the task for the upload of a queued document. Tasks of finished uploads are kept for a while, too.
+     *
+     * @param uploadId The identifier of the queued document.
+     *
+     * @return A task which will resolve to the created document. If the given document is unknown to this queue
+     * instance, the task will fail with an {@link IllegalArgumentException}.
+     */
+    public synchronized Task<Document> getUploadTask(final String uploadId) {
+        final Task<Document>.TaskCompletionSource completionSource = mCompletionSources.get(checkNotNull(uploadId));
+        if (completionSource != null) {
+            return completionSource.getTask();
+        }
+        final Task<Document> finishedUpload = mFinishedUploads.get(uploadId);
+        if (finishedUpload != null) {
+            return finishedUpload;
+        }
+        return Task.forError(new IllegalArgumentException("No queued document with id " + uploadId));
+    }
+
+    /**
+     * Returns the identifiers of all queued documents, including the ones which are currently uploaded.
+     */
+    public synchronized List<String> getQueuedUploadIds() {
+        return new ArrayList<String>(mQueuedDocuments.keySet());
+    }
+
+    /**
+     * Whether the queue was paused because of a network error.
+     */
+    public synchronized boolean isPaused() {
+        return mPaused;
+    }
+
+    /**
+     * Continues the uploads after the queue was paused because of a network error.
+     */
+    public void resume() {
+        synchronized (this) {
+            mPaused = false;
+        }
+        scheduleUploads();
+    }
+
+    /**
+     * Removes a document from the queue and deletes its staged file. A running upload is not aborted, but its result
+     * is discarded.
+     *
+     * @param uploadId The identifier of the queued document.
+     *
+     * @return Whether the document was queued.
+     */
+    public boolean remove(final String uploadId) {
+        final Task<Document>.TaskCompletionSource completionSource;
+        synchronized (this) {
+            final QueuedDocument queuedDocument = mQueuedDocuments.remove(checkNotNull(uploadId));
+            if (queuedDocument == null) {
+                return false;
+            }
+            journalRemoval(queuedDocument);
+            completionSource = mCompletionSources.remove(uploadId);
+            if (completionSource != null) {
+                mFinishedUploads.put(uploadId, completionSource.getTask());
+            }
+        }
+        if (completionSource != null) {
+            completionSource.trySetCancelled();
+        }
+        return true;
+    }
+
+    private void scheduleUploads() {
+        final List<QueuedDocument> documentsToUpload = new ArrayList<QueuedDocument>();
+        synchronized (this) {
+            if (mPaused) {
+                return;
+            }
+            for (QueuedDocument queuedDocument : mQueuedDocuments.values()) {
+                if (mRunningUploads >= mMaxConcurrentUploads) {
+                    break;
+                }
+                if (!queuedDocument.mIsUploading) {
+                    queuedDocument.mIsUploading = true;
+                    mRunningUploads += 1;
+                    documentsToUpload.add(queuedDocument);
+                }
+            }
+        }
+        for (QueuedDocument queuedDocument : documentsToUpload) {
+            upload(queuedDocument);
+        }
+    }
+
+    private void upload(final QueuedDocument queuedDocument) {
+        Task.call(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                // Informed here, since resume() and enqueue() may schedule the upload on the caller's thread.
+                for (Listener listener : mListeners) {
+                    listener.onUploadStarted(queuedDocument.mUploadId);
+                }
+                return readFile(getStagedDocumentFile(queuedDocument));
+            }
+        }, mIoExecutor).onSuccessTask(new Continuation<byte[], Task<Document>>() {
+            @Override
+            public Task<Document> then(Task<byte[]> task) throws Exception {
+                return mDocumentTaskManager.createDocument(task.getResult(), queuedDocument.mFilename,
+                        queuedDocument.mDocumentType);
+            }
+        }, mIoExecutor).continueWith(new Continuation<Document, Void>() {
+            @Override
+            public Void then(Task<Document> task) throws Exception {
+                onUploadFinished(queuedDocument, task);
+                return null;
+            }
+        }, mIoExecutor);
+    }
+
+    private void onUploadFinished(final QueuedDocument queuedDocument, final Task<Document> task) {
+        final Task<Document>.TaskCompletionSource completionSource;
+        final boolean wasRemoved;
+        final boolean willRetry;
+        synchronized (this) {
+            queuedDocument.mIsUploading = false;
+            mRunningUploads -= 1;
+            wasRemoved = !mQueuedDocuments.containsKey(queuedDocument.mUploadId);
+            willRetry = !wasRemoved
+                    && ((task.isFaulted() && isNetworkError(task.getError())) || task.isCancelled());
+            if (willRetry) {
+                mPaused = true;
+                completionSource = null;
+            } else {
+                if (!wasRemoved) {
+                    mQueuedDocuments.remove(queuedDocument.mUploadId);
+                    journalRemoval(queuedDocument);
+                }
+                completionSource = mCompletionSources.remove(queuedDocument.mUploadId);
+                if (completionSource != null && !wasRemoved) {
+                    mFinishedUploads.put(queuedDocument.mUploadId, completionSource.getTask());
+                }
+            }
+        }
+        if (!wasRemoved) {
+            if (task.isFaulted() || task.isCancelled()) {
+                final Exception error = task.isFaulted() ? task.getError() : new IOException("Upload was cancelled");
+                for (Listener listener : mListeners) {
+                    listener.onUploadFailed(queuedDocument.mUploadId, error, willRetry);
+                }
+                if (completionSource != null) {
+                    completionSource.trySetError(error);
+                }
+            } else {
+                for (Listener listener : mListeners) {
+                    listener.onUploadCompleted(queuedDocument.mUploadId, task.getResult());
+                }
+                if (completionSource != null) {
+                    completionSource.trySetResult(task.getResult());
+                }
+            }
+        }
+        scheduleUploads();
+    }
+
+    private static boolean isNetworkError(final Exception error) {
+        // NoConnectionError is a subclass of NetworkError.
+        return error instanceof NetworkError || error instanceof TimeoutError;
+    }
+
+    private void stageDocument(final QueuedDocument queuedDocument, final byte[] document) throws IOException {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Could not create the upload queue directory " + mDirectory);
+        }
+        final File stagedFile = getStagedDocumentFile(queuedDocument);
+        final File temporaryFile = new File(mDirectory, stagedFile.getName() + TEMPORARY_FILE_SUFFIX);
+        final FileOutputStream outputStream = new FileOutputStream(temporaryFile);
+        try {
+            outputStream.write(document);
+            outputStream.getFD().sync();
+        } finally {
+            outputStream.close();
+        }
+        if (!temporaryFile.renameTo(stagedFile)) {
+            throw new IOException("Could not stage the document " + queuedDocument.mUploadId);
+        }
+    }
+
+    private File getStagedDocumentFile(final QueuedDocument queuedDocument) {
+        return new File(mDirectory, queuedDocument.mUploadId + STAGED_DOCUMENT_SUFFIX);
+    }
+
+    private File getJournalFile() {
+        return new File(mDirectory, JOURNAL_FILENAME);
+    }
+
+    /**
+     * Must be called while holding the lock of this instance.
+     */
+    private void journalRemoval(final QueuedDocument queuedDocument) {
+        try {
+            appendToJournal(JOURNAL_REMOVED, queuedDocument.mUploadId);
+        } catch (IOException ignore) {
+            // Without the journal entry the document would be uploaded again after a restart, therefore the staged
+            // file is deleted in any case.
+        }
+        //noinspection ResultOfMethodCallIgnored
+        getStagedDocumentFile(queuedDocument).delete();
+        mRemovalsSinceCompaction += 1;
+        if (mRemovalsSinceCompaction >= JOURNAL_COMPACTION_THRESHOLD) {
+            try {
+                // The journal is replayed, since it may contain documents which were not restored yet.
+                compactJournal(readJournal().values());
+            } catch (IOException ignore) {
+                // The journal stays valid, it is compacted again after the next removal.
+            }
+        }
+    }
+
+    /**
+     * Must be called while holding the lock of this instance.
+     */
+    private void appendToJournal(final String... fields) throws IOException {
+        final StringBuilder line = new StringBuilder();
+        for (String field : fields) {
+            if (line.length() > 0) {
+                line.append(' ');
+            }
+            line.append(field);
+        }
+        line.append('\n');
+        final FileOutputStream outputStream = new FileOutputStream(getJournalFile(), true);
+        try {
+            outputStream.write(line.toString().getBytes(CHARSET_UTF8));
+            outputStream.getFD().sync();
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Replays the journal and returns the documents which are still queued and whose staged files exist.
+     */
+    private LinkedHashMap<String, QueuedDocument> readJournal() throws IOException {
+        final LinkedHashMap<String, QueuedDocument> queuedDocuments = new LinkedHashMap<String, QueuedDocument>();
+        final File journalFile = getJournalFile();
+        if (!journalFile.exists()) {
+            return queuedDocuments;
+        }
+        final BufferedReader reader =
+                new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), CHARSET_UTF8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.split(" ");
+                if (JOURNAL_ENQUEUED.equals(fields[0]) && fields.length == 4) {
+                    final String filename = decode(fields[2]);
+                    final DocumentType documentType = JOURNAL_NO_VALUE.equals(fields[3]) ? null
+                            : parseDocumentType(fields[3]);
+                    queuedDocuments.put(fields[1], new QueuedDocument(fields[1], filename, documentType));
+                } else if (JOURNAL_REMOVED.equals(fields[0]) && fields.length == 2) {
+                    queuedDocuments.remove(fields[1]);
+                }
+                // Other lines are the result of an interrupted write and are ignored.
+            }
+        } finally {
+            reader.close();
+        }
+        for (QueuedDocument queuedDocument : new ArrayList<QueuedDocument>(queuedDocuments.values())) {
+            if (!getStagedDocumentFile(queuedDocument).exists()) {
+                queuedDocuments.remove(queuedDocument.mUploadId);
+            }
+        }
+        return queuedDocuments;
+    }
+
+    /**
+     * Returns null for the name of a document type which doesn't exist (anymore), so the document is still uploaded,
+     * but without a document type hint.
+     */
+    @Nullable
+    private static DocumentType parseDocumentType(final String name) {
+        try {
+            return DocumentType.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Rewrites the journal so that it only contains the given queued documents. Must be called while holding the lock
+     * of this instance.
+     */
+    private void compactJournal(final Collection<QueuedDocument> queuedDocuments) throws IOException {
+        final File journalFile = getJournalFile();
+        final File temporaryFile = new File(mDirectory, JOURNAL_FILENAME + TEMPORARY_FILE_SUFFIX);
+        if (!mDirectory.isDirectory()) {
+            return;
+        }
+        final StringBuilder content = new StringBuilder();
+        for (QueuedDocument queuedDocument : queuedDocuments) {
+            content.append(JOURNAL_ENQUEUED).append(' ')
+                    .append(queuedDocument.mUploadId).append(' ')
+                    .append(encode(queuedDocument.mFilename)).append(' ')
+                    .append(queuedDocument.mDocumentType != null ? queuedDocument.mDocumentType.name()
+                            : JOURNAL_NO_VALUE)
+                    .append('\n');
+        }
+        final FileOutputStream outputStream = new FileOutputStream(temporaryFile);
+        try {
+            outputStream.write(content.toString().getBytes(CHARSET_UTF8));
+            outputStream.getFD().sync();
+        } finally {
+            outputStream.close();
+        }
+        if (!temporaryFile.renameTo(journalFile)) {
+            throw new IOException("Could not compact the upload queue journal");
+        }
+        mRemovalsSinceCompaction = 0;
+    }
+
+    private static byte[] readFile(final File file) throws IOException {
+        final byte[] data = new byte[(int) file.length()];
+        final FileInputStream inputStream = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < data.length) {
+                final int read = inputStream.read(data, offset, data.length - offset);
+                if (read == -1) {
+                    throw new IOException("Unexpected end of the staged document " + file);
+                }
+                offset += read;
+            }
+        } finally {
+            inputStream.close();
+        }
+        return data;
+    }
+
+    private static String encode(@Nullable final String value) throws UnsupportedEncodingException {
+        return value != null ? URLEncoder.encode(value, "utf-8") : JOURNAL_NO_VALUE;
+    }
+
+    @Nullable
+    private static String decode(final String value) throws UnsupportedEncodingException {
+        return JOURNAL_NO_VALUE.equals(value) ? null : URLDecoder.decode(value, "utf-8");
+    }
+
+    private static class QueuedDocument {
+        private final String mUploadId;
+        private final String mFilename;
+        private final DocumentType mDocumentType;
+        private boolean mIsUploading;
+
+        private QueuedDocument(final String uploadId, @Nullable final String filename,
+                               @Nullable final DocumentType documentType) {
+            mUploadId = uploadId;
+            mFilename = filename;
+            mDocumentType = documentType;
+        }
+    }
+}
@@ -1,15 +0,0 @@
-package net.gini.android;
-
-
-public class MediaTypes {
-
-    public static final String IMAGE_JPEG = "image/jpeg";
-    public static final String GINI_JSON_V1 = "application/vnd.gini.v1+json";
-    public static final String GINI_JSON_INCUBATOR = "application/vnd.gini.incubator+json";
-    public static final String APPLICATION_JSON = "application/json";
-    public static final String APPLICATION_FORM_URLENCODED = "application/x-www-form-urlencoded";
-
-    private MediaTypes() {
-
-    }
-}
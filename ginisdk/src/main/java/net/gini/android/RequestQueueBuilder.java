@@ -15,6 +15,8 @@ import com.android.volley.toolbox.HttpClientStack;
 import com.android.volley.toolbox.HttpStack;
 import com.android.volley.toolbox.HurlStack;
 
+import net.gini.android.requests.UploadHurlStack;
+
 import java.io.File;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
@@ -99,9 +101,9 @@ class RequestQueueBuilder {
     private HurlStack getHurlStack() {
         SSLSocketFactory sslSocketFactory = getSSLSocketFactory();
         if (sslSocketFactory != null) {
-            return new HurlStack(null, sslSocketFactory);
+            return new UploadHurlStack(null, sslSocketFactory);
         }
-        return new HurlStack();
+        return new UploadHurlStack();
     }
 
     private SSLSocketFactory getSSLSocketFactory() {
@@ -30,13 +30,21 @@ public class RequestTaskCompletionSource<T> implements Response.Listener<T>, Res
         return mCompletionSource.getTask();
     }
 
+    /**
+     * Resolves the task as cancelled, unless it was already completed.
+     */
+    public void cancel() {
+        mCompletionSource.trySetCancelled();
+    }
+
+    // The try-variants are used, because the task may have been cancelled while the response was delivered.
     @Override
     public void onResponse(T response) {
-        mCompletionSource.setResult(response);
+        mCompletionSource.trySetResult(response);
     }
 
     @Override
     public synchronized void onErrorResponse(VolleyError error) {
-        mCompletionSource.setError(error);
+        mCompletionSource.trySetError(error);
     }
 }
@@ -43,6 +43,11 @@ public class SdkBuilder {
     private float mBackOffMultiplier = DefaultRetryPolicy.DEFAULT_BACKOFF_MULT;
     private RetryPolicyFactory mRetryPolicyFactory;
     private Cache mCache;
+    private boolean mRequestBodyCompression;
+    private SdkExecutors mExecutors;
+    private ConditionalRequestCache mConditionalRequestCache;
+    private UploadDeduplicationStore mUploadDeduplicationStore;
+    private int mLongPollingWaitSeconds;
 
     /**
      * Constructor to initialize a new builder instance where anonymous Gini users are used. <b>This requires access to
@@ -168,6 +173,76 @@ public class SdkBuilder {
         return this;
     }
 
+    /**
+     * Enables the gzip compression of large JSON request bodies, like the feedback for extractions. Disabled by
+     * default. Responses are always requested gzip compressed.
+     *
+     * @param requestBodyCompression Whether request bodies should be compressed.
+     * @return                       The builder instance to enable chaining.
+     */
+    public SdkBuilder setRequestBodyCompression(final boolean requestBodyCompression) {
+        mRequestBodyCompression = requestBodyCompression;
+        return this;
+    }
+
+    /**
+     * Set the executors on which the SDK runs the continuations of its tasks. If no executors are set, dedicated pools
+     * are created with {@link SdkExecutors#create()}.
+     *
+     * @param executors             The executors for CPU and I/O bound work.
+     * @return                      The builder instance to enable chaining.
+     */
+    public SdkBuilder setExecutors(final SdkExecutors executors) {
+        mExecutors = checkNotNull(executors);
+        return this;
+    }
+
+    /**
+     * Set the cache with which documents and extractions are requested conditionally (with If-None-Match and
+     * If-Modified-Since). Unchanged documents and extractions are then returned from the cache without parsing. By
+     * default requests are not conditional.
+     *
+     * @param conditionalRequestCache A cache instance, e.g. {@code new ConditionalRequestCache()}.
+     * @return                        The builder instance to enable chaining.
+     */
+    public SdkBuilder setConditionalRequestCache(final ConditionalRequestCache conditionalRequestCache) {
+        mConditionalRequestCache = checkNotNull(conditionalRequestCache);
+        return this;
+    }
+
+    /**
+     * Set the store with which uploads of the same content are de-duplicated. Documents whose content was already
+     * uploaded are then returned without uploading them again. By default every document is uploaded.
+     * <p>
+     * With the default anonymous sessions, uploads of different users are told apart. With a custom {@link
+     * SessionManager}, use a separate store for every user.
+     *
+     * @param uploadDeduplicationStore A store instance, e.g. {@code new UploadDeduplicationStore(new
+     *                                 File(context.getFilesDir(), "gini-uploads"))}.
+     * @return                         The builder instance to enable chaining.
+     */
+    public SdkBuilder setUploadDeduplicationStore(final UploadDeduplicationStore uploadDeduplicationStore) {
+        mUploadDeduplicationStore = checkNotNull(uploadDeduplicationStore);
+        return this;
+    }
+
+    /**
+     * Set the time for which the Gini API is asked to hold the requests of
+     * {@link DocumentTaskManager#pollDocument(net.gini.android.models.Document)} until the document is processed. If
+     * the Gini API doesn't wait, polling falls back to requests in intervals. By default documents are polled in
+     * intervals.
+     *
+     * @param waitSeconds           The maximal time in seconds for which a request is held or 0 to poll in intervals.
+     * @return                      The builder instance to enable chaining.
+     */
+    public SdkBuilder setLongPollingWait(final int waitSeconds) {
+        if (waitSeconds < 0) {
+            throw new IllegalArgumentException("waitSeconds can't be less than 0");
+        }
+        mLongPollingWaitSeconds = waitSeconds;
+        return this;
+    }
+
     /**
      * Builds the Gini instance with the configuration settings of the builder instance.
      *
@@ -201,7 +276,8 @@ public class SdkBuilder {
      */
     private synchronized ApiCommunicator getApiCommunicator() {
         if (mApiCommunicator == null) {
-            mApiCommunicator = new ApiCommunicator(mApiBaseUrl, getRequestQueue(), getRetryPolicyFactory());
+            mApiCommunicator = new ApiCommunicator(mApiBaseUrl, getRequestQueue(), getRetryPolicyFactory(),
+                    mRequestBodyCompression);
         }
         return mApiCommunicator;
     }
@@ -237,6 +313,18 @@ public class SdkBuilder {
         return mUserCenterApiCommunicator;
     }
 
+    /**
+     * Helper method to create the executors which are shared by the managers of the SDK.
+     *
+     * @return  The SdkExecutors instance.
+     */
+    private synchronized SdkExecutors getExecutors() {
+        if (mExecutors == null) {
+            mExecutors = SdkExecutors.create();
+        }
+        return mExecutors;
+    }
+
     /**
      * Helper method to create a {@link RetryPolicyFactory} instance which is used to create a
      * {@link com.android.volley.RetryPolicy} for each request.
@@ -257,7 +345,7 @@ public class SdkBuilder {
      */
     private synchronized UserCenterManager getUserCenterManager() {
         if (mUserCenterManager == null) {
-            mUserCenterManager = new UserCenterManager(getUserCenterAPICommunicator());
+            mUserCenterManager = new UserCenterManager(getUserCenterAPICommunicator(), getExecutors());
         }
         return mUserCenterManager;
     }
@@ -269,7 +357,13 @@ public class SdkBuilder {
      */
     private synchronized DocumentTaskManager getDocumentTaskManager() {
         if (mDocumentTaskManager == null) {
-            mDocumentTaskManager = new DocumentTaskManager(getApiCommunicator(), getSessionManager());
+            mDocumentTaskManager = new DocumentTaskManager(getApiCommunicator(), getSessionManager(), getExecutors());
+            mDocumentTaskManager.setConditionalRequestCache(mConditionalRequestCache);
+            // The credentials store only holds the current user, if the SDK manages the sessions.
+            final boolean anonymousSessions = getSessionManager() instanceof AnonymousSessionManager;
+            mDocumentTaskManager.setUploadDeduplicationStore(mUploadDeduplicationStore,
+                    anonymousSessions ? getCredentialsStore() : null);
+            mDocumentTaskManager.setLongPollingWait(mLongPollingWaitSeconds);
         }
         return mDocumentTaskManager;
     }
@@ -282,7 +376,8 @@ public class SdkBuilder {
      */
     public synchronized SessionManager getSessionManager() {
         if (mSessionManager == null) {
-            mSessionManager = new AnonymousSessionManager(mEmailDomain, getUserCenterManager(), getCredentialsStore());
+            mSessionManager = new AnonymousSessionManager(mEmailDomain, getUserCenterManager(), getCredentialsStore(),
+                    getExecutors());
         }
         return mSessionManager;
     }
@@ -0,0 +1,254 @@
+package net.gini.android;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import bolts.Continuation;
+import bolts.Task;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * The executors on which the SDK runs the continuations of its tasks.
+ * </p>
+ * <p>
+ * The CPU executor is used for work which keeps a thread busy, like parsing JSON responses and encoding JPEGs. The
+ * I/O executor is used for continuations which start requests or access the credentials store and the search index.
+ * Pauses, e.g. between polling requests, are timed by a shared timer thread and don't block a thread of the I/O
+ * executor. Keeping both apart from Bolts' shared {@link Task#BACKGROUND_EXECUTOR} isolates the SDK's latency from
+ * unrelated work of the app.
+ * </p>
+ * <p>
+ * Use {@link #create()} for the default pools or pass your own executors to {@link #SdkExecutors(Executor, Executor)}.
+ * </p>
+ */
+public class SdkExecutors {
+
+    /**
+     * The number of threads of the default I/O pool. The threads mostly wait, so there are more than CPU cores.
+     */
+    public static final int DEFAULT_IO_POOL_SIZE = 8;
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final SdkExecutors BOLTS_BACKGROUND =
+            new SdkExecutors(Task.BACKGROUND_EXECUTOR, Task.BACKGROUND_EXECUTOR);
+
+    /**
+     * Only completes the tasks of {@link #delay(long)}, the continuations run on the caller's executors.
+     */
+    private static final ScheduledExecutorService TIMER =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("gini-timer"));
+
+    private final Executor mCpuExecutor;
+    private final Executor mIoExecutor;
+
+    /**
+     * @param cpuExecutor The executor for CPU bound work.
+     * @param ioExecutor  The executor for I/O bound work.
+     */
+    public SdkExecutors(final Executor cpuExecutor, final Executor ioExecutor) {
+        mCpuExecutor = checkNotNull(cpuExecutor);
+        mIoExecutor = checkNotNull(ioExecutor);
+    }
+
+    /**
+     * Creates dedicated pools with named threads ("gini-cpu-N" and "gini-io-N"). The CPU pool has as many threads as
+     * there are CPU cores, but at least two and at most four. Idle threads of both pools are terminated after 30
+     * seconds.
+     */
+    public static SdkExecutors create() {
+        final int cpuPoolSize = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+        return new SdkExecutors(createPool("gini-cpu", cpuPoolSize), createPool("gini-io", DEFAULT_IO_POOL_SIZE));
+    }
+
+    /**
+     * Returns executors which both use Bolts' {@link Task#BACKGROUND_EXECUTOR}, as the SDK did before dedicated
+     * executors were introduced.
+     */
+    public static SdkExecutors boltsBackground() {
+        return BOLTS_BACKGROUND;
+    }
+
+    /**
+     * Returns a task which resolves after the given time without blocking a thread while waiting. Run the
+     * continuations on one of the executors, since the task is resolved on the shared timer thread.
+     */
+    public static Task<Void> delay(final long delayMs) {
+        return delay(delayMs, null);
+    }
+
+    /**
+     * Like {@link #delay(long)}, but the returned task is resolved as cancelled as soon as the handle is cancelled.
+     */
+    public static Task<Void> delay(final long delayMs, @Nullable final CancellationHandle cancellationHandle) {
+        final Task<Void>.TaskCompletionSource completionSource = Task.create();
+        final ScheduledFuture<?> timeout = TIMER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                completionSource.trySetResult(null);
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+        if (cancellationHandle != null) {
+            final CancellationHandle.OnCancelListener cancelListener = new CancellationHandle.OnCancelListener() {
+                @Override
+                public void onCancel() {
+                    timeout.cancel(false);
+                    completionSource.trySetCancelled();
+                }
+            };
+            completionSource.getTask().continueWith(new Continuation<Void, Void>() {
+                @Override
+                public Void then(Task<Void> task) throws Exception {
+                    cancellationHandle.removeOnCancelListener(cancelListener);
+                    return null;
+                }
+            });
+            cancellationHandle.addOnCancelListener(cancelListener);
+        }
+        return completionSource.getTask();
+    }
+
+    private static ThreadPoolExecutor createPool(final String name, final int size) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory(name));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public Executor getCpuExecutor() {
+        return mCpuExecutor;
+    }
+
+    public Executor getIoExecutor() {
+        return mIoExecutor;
+    }
+
+    /**
+     * Returns a snapshot of the CPU executor's metrics or null, if it is not a {@link ThreadPoolExecutor}.
+     */
+    @Nullable
+    public Metrics getCpuMetrics() {
+        return Metrics.of(mCpuExecutor);
+    }
+
+    /**
+     * Returns a snapshot of the I/O executor's metrics or null, if it is not a {@link ThreadPoolExecutor}.
+     */
+    @Nullable
+    public Metrics getIoMetrics() {
+        return Metrics.of(mIoExecutor);
+    }
+
+    /**
+     * The thread counts and task counts of a thread pool at a point in time. A growing number of queued tasks while all
+     * threads are active indicates contention.
+     */
+    public static class Metrics {
+
+        private final int mPoolSize;
+        private final int mMaximumPoolSize;
+        private final int mLargestPoolSize;
+        private final int mActiveThreadCount;
+        private final int mQueuedTaskCount;
+        private final long mCompletedTaskCount;
+
+        Metrics(final int poolSize, final int maximumPoolSize, final int largestPoolSize, final int activeThreadCount,
+                final int queuedTaskCount, final long completedTaskCount) {
+            mPoolSize = poolSize;
+            mMaximumPoolSize = maximumPoolSize;
+            mLargestPoolSize = largestPoolSize;
+            mActiveThreadCount = activeThreadCount;
+            mQueuedTaskCount = queuedTaskCount;
+            mCompletedTaskCount = completedTaskCount;
+        }
+
+        @Nullable
+        static Metrics of(final Executor executor) {
+            if (!(executor instanceof ThreadPoolExecutor)) {
+                return null;
+            }
+            final ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            return new Metrics(pool.getPoolSize(), pool.getMaximumPoolSize(), pool.getLargestPoolSize(),
+                    pool.getActiveCount(), pool.getQueue().size(), pool.getCompletedTaskCount());
+        }
+
+        /**
+         * The number of threads which are currently alive.
+         */
+        public int getPoolSize() {
+            return mPoolSize;
+        }
+
+        public int getMaximumPoolSize() {
+            return mMaximumPoolSize;
+        }
+
+        /**
+         * The largest number of threads which were alive at the same time.
+         */
+        public int getLargestPoolSize() {
+            return mLargestPoolSize;
+        }
+
+        /**
+         * The approximate number of threads which are running a task.
+         */
+        public int getActiveThreadCount() {
+            return mActiveThreadCount;
+        }
+
+        /**
+         * The number of tasks which wait for a free thread.
+         */
+        public int getQueuedTaskCount() {
+            return mQueuedTaskCount;
+        }
+
+        /**
+         * The approximate number of tasks which were completed so far.
+         */
+        public long getCompletedTaskCount() {
+            return mCompletedTaskCount;
+        }
+
+        @Override
+        public String toString() {
+            return "Metrics{" +
+                    "poolSize=" + mPoolSize +
+                    ", maximumPoolSize=" + mMaximumPoolSize +
+                    ", largestPoolSize=" + mLargestPoolSize +
+                    ", activeThreadCount=" + mActiveThreadCount +
+                    ", queuedTaskCount=" + mQueuedTaskCount +
+                    ", completedTaskCount=" + mCompletedTaskCount +
+                    '}';
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+
+        private final String mName;
+        private final AtomicInteger mThreadNumber = new AtomicInteger(1);
+
+        NamedThreadFactory(final String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, mName + "-" + mThreadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package net.gini.android;
+
+import android.net.Uri;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static net.gini.android.Utils.CHARSET_UTF8;
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * Remembers the uploads of documents together with the URIs of the created Gini documents. When a {@link
+ * DocumentTaskManager} has a store, it doesn't upload the same content again, but resolves to the document which was
+ * created by the first upload. If that document was deleted in the meantime, the content is uploaded again.
+ * </p>
+ * <p>
+ * An upload is identified by a key computed with {@link #computeKey(String, String, String, String)} from the SHA-256
+ * hash of the content, the user who uploaded it, the filename and the document type hint. The same content uploaded
+ * by another user or with another filename or type hint is uploaded again.
+ * </p>
+ * <p>
+ * The store is persisted to the given file, so it survives the death of the app's process. The least recently used
+ * entries are evicted when the store is full. Looking up an entry changes the usage order only in memory, it is written
+ * with the next change of the entries or by {@link #flush()}. The store is thread-safe.
+ * </p>
+ */
+public class UploadDeduplicationStore {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final File mFile;
+    private final Map<String, String> mEntries;
+    private boolean mLoaded;
+    private boolean mUsageOrderChanged;
+
+    /**
+     * @param file The file in which the store is persisted, e.g. in {@link android.content.Context#getFilesDir()}.
+     */
+    public UploadDeduplicationStore(final File file) {
+        this(file, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param file       The file in which the store is persisted.
+     * @param maxEntries The maximal number of remembered documents.
+     */
+    public UploadDeduplicationStore(final File file, final int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        mFile = checkNotNull(file);
+        mEntries = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 hash of the given data, which is used as the key of the store.
+     */
+    public static String computeHash(final byte[] data) {
+        final MessageDigest digest = createDigest();
+        return toHex(digest.digest(data));
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 hash of the given file. The file is read in small chunks.
+     */
+    public static String computeHash(final File file) throws IOException {
+        final MessageDigest digest = createDigest();
+        final FileInputStream inputStream = new FileInputStream(file);
+        try {
+            final FileChannel channel = inputStream.getChannel();
+            final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            inputStream.close();
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Returns the key of an upload, which is the hex encoded SHA-256 hash of all the parameters which influence the
+     * created document.
+     *
+     * @param contentHash The hash of the content computed with {@link #computeHash(byte[])} or {@link
+     *                    #computeHash(File)}.
+     * @param userName    The name of the user who uploads the content or null, if it is not known.
+     * @param filename    The filename with which the content is uploaded or null.
+     * @param doctypeHint The document type hint with which the content is uploaded or null.
+     */
+    public static String computeKey(final String contentHash, @Nullable final String userName,
+                                    @Nullable final String filename, @Nullable final String doctypeHint) {
+        final MessageDigest digest = createDigest();
+        updateDigest(digest, checkNotNull(contentHash));
+        updateDigest(digest, userName);
+        updateDigest(digest, filename);
+        updateDigest(digest, doctypeHint);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Adds a length prefixed value, so neither the boundaries between the values nor null and empty values can be
+     * confused.
+     */
+    private static void updateDigest(final MessageDigest digest, @Nullable final String value) {
+        if (value == null) {
+            digest.update(ByteBuffer.allocate(4).putInt(-1).array());
+            return;
+        }
+        final byte[] bytes = value.getBytes(CHARSET_UTF8);
+        digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+        digest.update(bytes);
+    }
+
+    static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java and Android platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(final byte[] bytes) {
+        final char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Returns the URI of the document which was created by the upload with the given key or null, if there was no such
+     * upload yet. The file is not written, see {@link #flush()}.
+     */
+    @Nullable
+    public synchronized Uri getDocumentUri(final String key) {
+        load();
+        final String documentUri = mEntries.get(key);
+        if (documentUri == null) {
+            return null;
+        }
+        // The access changed the order of the entries.
+        mUsageOrderChanged = true;
+        return Uri.parse(documentUri);
+    }
+
+    public synchronized void put(final String key, final Uri documentUri) {
+        checkNotNull(key);
+        checkNotNull(documentUri);
+        load();
+        mEntries.put(key, documentUri.toString());
+        save();
+    }
+
+    public synchronized void remove(final String key) {
+        load();
+        if (mEntries.remove(key) != null) {
+            save();
+        }
+    }
+
+    /**
+     * Writes the usage order of the entries if it changed since the last write, e.g. before the app is put into the
+     * background. Otherwise the order is written with the next change of the entries.
+     */
+    public synchronized void flush() {
+        if (mUsageOrderChanged) {
+            save();
+        }
+    }
+
+    public synchronized int size() {
+        load();
+        return mEntries.size();
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+        mLoaded = true;
+        mUsageOrderChanged = false;
+        //noinspection ResultOfMethodCallIgnored
+        mFile.delete();
+    }
+
+    /**
+     * Reads the entries from the file on the first access. Must be called while holding the lock of this instance.
+     */
+    private void load() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (!mFile.exists()) {
+            return;
+        }
+        try {
+            final BufferedReader reader =
+                    new BufferedReader(new InputStreamReader(new FileInputStream(mFile), CHARSET_UTF8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final String[] fields = line.split(" ");
+                    // Other lines are the result of an interrupted write and are ignored.
+                    if (fields.length == 2) {
+                        mEntries.put(fields[0], fields[1]);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException ignore) {
+            // The store is an optimization, without its entries the documents are simply uploaded again.
+        }
+    }
+
+    /**
+     * Writes the entries from the least to the most recently used one, so the order is restored by {@link #load()}.
+     * Must be called while holding the lock of this instance.
+     */
+    private void save() {
+        mUsageOrderChanged = false;
+        final StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, String> entry : mEntries.entrySet()) {
+            content.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        final File temporaryFile = new File(mFile.getPath() + TEMPORARY_FILE_SUFFIX);
+        try {
+            final File directory = mFile.getAbsoluteFile().getParentFile();
+            if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+                return;
+            }
+            final FileOutputStream outputStream = new FileOutputStream(temporaryFile);
+            try {
+                outputStream.write(content.toString().getBytes(CHARSET_UTF8));
+                outputStream.getFD().sync();
+            } finally {
+                outputStream.close();
+            }
+            //noinspection ResultOfMethodCallIgnored
+            temporaryFile.renameTo(mFile);
+        } catch (IOException ignore) {
+            // The entries are still used until the process dies.
+        }
+    }
+}
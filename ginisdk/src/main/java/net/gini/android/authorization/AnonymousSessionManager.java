@@ -3,10 +3,14 @@ package net.gini.android.authorization;
 
 import com.android.volley.VolleyError;
 
+import net.gini.android.SdkExecutors;
+import net.gini.android.requests.ContentEncoding;
+
 import org.jetbrains.annotations.Nullable;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.util.UUID;
 import java.util.regex.Pattern;
 
@@ -36,6 +40,11 @@ public class AnonymousSessionManager implements SessionManager {
      */
     private final String mEmailDomain;
 
+    /**
+     * The executors on which the continuations which access the credentials store are run.
+     */
+    private final SdkExecutors mExecutors;
+
     /**
      * The user's current session.
      */
@@ -48,9 +57,18 @@ public class AnonymousSessionManager implements SessionManager {
 
     public AnonymousSessionManager(final String emailDomain, final UserCenterManager userCenterManager,
                                    final CredentialsStore credentialsStore) {
+        this(emailDomain, userCenterManager, credentialsStore, SdkExecutors.boltsBackground());
+    }
+
+    /**
+     * @param executors The executors on which the continuations which access the credentials store are run.
+     */
+    public AnonymousSessionManager(final String emailDomain, final UserCenterManager userCenterManager,
+                                   final CredentialsStore credentialsStore, final SdkExecutors executors) {
         mEmailDomain = checkNotNull(emailDomain);
         mUserCenterManager = checkNotNull(userCenterManager);
         mCredentialsStore = checkNotNull(credentialsStore);
+        mExecutors = checkNotNull(executors);
     }
 
     private synchronized void setSession(Session session) {
@@ -93,7 +111,7 @@ public class AnonymousSessionManager implements SessionManager {
                 }
                 return task;
             }
-        }).continueWith(new Continuation<Session, Object>() {
+        }, mExecutors.getIoExecutor()).continueWith(new Continuation<Session, Object>() {
             @Override
             public Object then(Task<Session> task) throws Exception {
                 if (task.isFaulted()) {
@@ -123,9 +141,11 @@ public class AnonymousSessionManager implements SessionManager {
             if (error.networkResponse != null
                     && error.networkResponse.data != null) {
                 try {
-                    JSONObject responseJson = new JSONObject(new String(error.networkResponse.data, CHARSET_UTF8));
+                    JSONObject responseJson =
+                            new JSONObject(ContentEncoding.readBody(error.networkResponse, CHARSET_UTF8));
                     return responseJson.get("error").equals("invalid_grant");
                 } catch (JSONException ignore) {
+                } catch (IOException ignore) {
                 }
             }
         }
@@ -168,7 +188,7 @@ public class AnonymousSessionManager implements SessionManager {
                                 mCredentialsStore.storeUserCredentials(newCredentials);
                                 return newCredentials;
                             }
-                        });
+                        }, mExecutors.getIoExecutor());
             }
         } else {
             credentialsTask = createUser();
@@ -207,7 +227,7 @@ public class AnonymousSessionManager implements SessionManager {
                 mCredentialsStore.storeUserCredentials(userCredentials);
                 return userCredentials;
             }
-        });
+        }, mExecutors.getIoExecutor());
     }
 
     private String generateUsername() {
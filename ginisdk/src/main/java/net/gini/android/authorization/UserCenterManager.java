@@ -2,6 +2,8 @@ package net.gini.android.authorization;
 
 import android.net.Uri;
 
+import net.gini.android.SdkExecutors;
+
 import org.json.JSONObject;
 
 import bolts.Continuation;
@@ -15,6 +17,7 @@ import static net.gini.android.Utils.checkNotNull;
  */
 public class UserCenterManager {
     final private UserCenterAPICommunicator mUserCenterAPICommunicator;
+    final private SdkExecutors mExecutors;
 
     // An active session for the User Center API.
     private Session mCurrentSession;
@@ -25,7 +28,19 @@ public class UserCenterManager {
      *                                  instance.
      */
     public UserCenterManager(final UserCenterAPICommunicator userCenterAPICommunicator) {
+        this(userCenterAPICommunicator, SdkExecutors.boltsBackground());
+    }
+
+    /**
+     * @param userCenterAPICommunicator An implementation of the UserCenterAPIManager which handles the
+     *                                  communication with the Gini User Center API for this manager
+     *                                  instance.
+     * @param executors                 The executors on which the continuations of the tasks are run.
+     */
+    public UserCenterManager(final UserCenterAPICommunicator userCenterAPICommunicator,
+                             final SdkExecutors executors) {
         mUserCenterAPICommunicator = userCenterAPICommunicator;
+        mExecutors = checkNotNull(executors);
     }
 
     /**
@@ -43,14 +58,14 @@ public class UserCenterManager {
                     public Task<Uri> then(Task<Session> sessionTask) throws Exception {
                         return mUserCenterAPICommunicator.createUser(userCredentials, sessionTask.getResult());
                     }
-                }, Task.BACKGROUND_EXECUTOR)
+                }, mExecutors.getIoExecutor())
                 // And then create the user object from the API response.
                 .onSuccessTask(new Continuation<Uri, Task<User>>() {
                     @Override
                     public Task<User> then(Task<Uri> task) throws Exception {
                         return getUser(task.getResult());
                     }
-                }, Task.BACKGROUND_EXECUTOR);
+                }, mExecutors.getIoExecutor());
     }
 
     public Task<User> getUser(final Uri userUri) {
@@ -61,12 +76,12 @@ public class UserCenterManager {
                 final Session userCenterSession = task.getResult();
                 return mUserCenterAPICommunicator.getUserInfo(userUri, userCenterSession);
             }
-        }, Task.BACKGROUND_EXECUTOR).onSuccess(new Continuation<JSONObject, User>() {
+        }, mExecutors.getIoExecutor()).onSuccess(new Continuation<JSONObject, User>() {
             @Override
             public User then(Task<JSONObject> task) throws Exception {
                 return User.fromApiResponse(task.getResult());
             }
-        }, Task.BACKGROUND_EXECUTOR);
+        }, mExecutors.getCpuExecutor());
     }
 
 
@@ -84,7 +99,7 @@ public class UserCenterManager {
             public Session then(Task<JSONObject> task) throws Exception {
                 return Session.fromAPIResponse(task.getResult());
             }
-        }, Task.BACKGROUND_EXECUTOR);
+        }, mExecutors.getCpuExecutor());
     }
 
     /**
@@ -103,14 +118,14 @@ public class UserCenterManager {
             public Task<String> then(Task<Session> task) throws Exception {
                 return mUserCenterAPICommunicator.getUserId(giniAPISession);
             }
-        }, Task.BACKGROUND_EXECUTOR).onSuccessTask(new Continuation<String, Task<JSONObject>>() {
+        }, mExecutors.getIoExecutor()).onSuccessTask(new Continuation<String, Task<JSONObject>>() {
             @Override
             public Task<JSONObject> then(Task<String> task) throws Exception {
                 final String userId = task.getResult();
                 return mUserCenterAPICommunicator.updateEmail(userId,
                         newEmail, oldEmail, mCurrentSession);
             }
-        }, Task.BACKGROUND_EXECUTOR);
+        }, mExecutors.getIoExecutor());
     }
 
     /**
@@ -138,6 +153,6 @@ public class UserCenterManager {
                 }
                 return session;
             }
-        }, Task.BACKGROUND_EXECUTOR);
+        }, mExecutors.getCpuExecutor());
     }
 }
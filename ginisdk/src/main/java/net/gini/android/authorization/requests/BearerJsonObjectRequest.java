@@ -9,20 +9,23 @@ import com.android.volley.toolbox.HttpHeaderParser;
 import com.android.volley.toolbox.JsonObjectRequest;
 
 import net.gini.android.MediaTypes;
+import net.gini.android.Utils;
 import net.gini.android.authorization.Session;
+import net.gini.android.requests.ContentEncoding;
 
-import org.apache.http.protocol.HTTP;
 import org.jetbrains.annotations.Nullable;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
 public class BearerJsonObjectRequest extends JsonObjectRequest {
     final private Session mSession;
     final private String contentType;
+    private boolean mCompressRequestBody;
+    private byte[] mCompressedBody;
 
     public BearerJsonObjectRequest(int method, String url, JSONObject jsonRequest, Session session, Response.Listener<JSONObject> listener, Response.ErrorListener errorListener, RetryPolicy retryPolicy) {
         this(method, url, jsonRequest, session, listener, errorListener, retryPolicy, null);
@@ -35,16 +38,48 @@ public class BearerJsonObjectRequest extends JsonObjectRequest {
         this.contentType = contentType == null ? super.getBodyContentType() : contentType;
     }
 
+    /**
+     * Enables the gzip compression of the request's body. Bodies smaller than
+     * {@link ContentEncoding#MIN_COMPRESSION_SIZE} are sent uncompressed.
+     */
+    public void setCompressRequestBody(final boolean compressRequestBody) {
+        mCompressRequestBody = compressRequestBody;
+    }
+
     @Override
     public String getBodyContentType() {
         return contentType;
     }
 
+    @Override
+    public byte[] getBody() {
+        final byte[] compressedBody = getCompressedBody();
+        return compressedBody != null ? compressedBody : super.getBody();
+    }
+
+    /**
+     * Returns the compressed body or null, if the body is not compressed. The body is compressed only once, since
+     * both the headers and the body depend on it.
+     */
+    private synchronized byte[] getCompressedBody() {
+        if (mCompressedBody == null && mCompressRequestBody) {
+            final byte[] body = super.getBody();
+            if (body != null && body.length >= ContentEncoding.MIN_COMPRESSION_SIZE) {
+                mCompressedBody = ContentEncoding.gzip(body);
+            }
+        }
+        return mCompressedBody;
+    }
+
     @Override
     public Map<String, String> getHeaders() throws AuthFailureError {
         HashMap<String, String> headers = new HashMap<String, String>();
         headers.put("Accept", String.format("%s, %s", MediaTypes.APPLICATION_JSON, MediaTypes.GINI_JSON_V1));
         headers.put("Authorization", "BEARER " + mSession.getAccessToken());
+        headers.put(ContentEncoding.ACCEPT_ENCODING_HEADER, ContentEncoding.GZIP);
+        if (getCompressedBody() != null) {
+            headers.put(ContentEncoding.CONTENT_ENCODING_HEADER, ContentEncoding.GZIP);
+        }
         return headers;
     }
 
@@ -54,16 +89,16 @@ public class BearerJsonObjectRequest extends JsonObjectRequest {
             final JSONObject jsonObject = createJSONObject(response);
             return Response.success(jsonObject,
                                     HttpHeaderParser.parseCacheHeaders(response));
-        } catch (UnsupportedEncodingException e) {
+        } catch (IOException e) {
             return Response.error(new ParseError(e));
         } catch (JSONException je) {
             return Response.error(new ParseError(je));
         }
     }
 
-    private JSONObject createJSONObject(NetworkResponse response) throws UnsupportedEncodingException, JSONException {
+    private JSONObject createJSONObject(NetworkResponse response) throws IOException, JSONException {
         // The Gini API always uses UTF-8.
-        final String jsonString = new String(response.data, HTTP.UTF_8);
+        final String jsonString = ContentEncoding.readBody(response, Utils.CHARSET_UTF8);
         if (jsonString.length() > 0) {
             return new JSONObject(jsonString);
         } else {
@@ -6,16 +6,22 @@ import static net.gini.android.Utils.mapToUrlEncodedString;
 import android.util.Base64;
 
 import com.android.volley.AuthFailureError;
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
 import com.android.volley.Response;
 import com.android.volley.RetryPolicy;
+import com.android.volley.toolbox.HttpHeaderParser;
 import com.android.volley.toolbox.JsonObjectRequest;
 
 import net.gini.android.MediaTypes;
 import net.gini.android.Utils;
+import net.gini.android.requests.ContentEncoding;
 
 import org.jetbrains.annotations.Nullable;
+import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -44,9 +50,22 @@ public class TokenRequest extends JsonObjectRequest {
         HashMap<String, String> headers = new HashMap<String, String>();
         headers.put("Authorization", "Basic " + mAuthorizationCredentials);
         headers.put("Accept", MediaTypes.APPLICATION_JSON);
+        headers.put(ContentEncoding.ACCEPT_ENCODING_HEADER, ContentEncoding.GZIP);
         return headers;
     }
 
+    @Override
+    protected Response<JSONObject> parseNetworkResponse(NetworkResponse response) {
+        try {
+            return Response.success(new JSONObject(ContentEncoding.readBody(response, Utils.CHARSET_UTF8)),
+                    HttpHeaderParser.parseCacheHeaders(response));
+        } catch (IOException e) {
+            return Response.error(new ParseError(e));
+        } catch (JSONException e) {
+            return Response.error(new ParseError(e));
+        }
+    }
+
     @Override
     public String getBodyContentType() {
         return MediaTypes.APPLICATION_FORM_URLENCODED;
@@ -0,0 +1,332 @@
+package net.gini.android.imaging;
+
+import android.graphics.Bitmap;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+
+import static android.graphics.Bitmap.CompressFormat.JPEG;
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * Encodes bitmaps as JPEGs which fit into a byte budget. The highest JPEG quality between the minimal and the maximal
+ * quality whose JPEG fits into the budget is searched with a binary search. If the JPEG doesn't fit even with the
+ * minimal quality, the bitmap is downscaled step by step, but not below the minimal size of its long edge.
+ * </p>
+ * <p>
+ * The budget is either a number of bytes, a number of bytes per pixel of the original bitmap or both, in which case
+ * the smaller budget is used. The chosen quality and size are reported in the {@link Result}. Encoders are immutable and
+ * can be shared. Encoding is CPU bound, so it should not be done on the main thread.
+ * </p>
+ */
+public class AdaptiveJpegEncoder {
+
+    /**
+     * The default minimal JPEG quality. Lower qualities blur the characters too much for reliable extractions.
+     */
+    public static final int DEFAULT_MIN_QUALITY = 30;
+    /**
+     * The default maximal JPEG quality.
+     */
+    public static final int DEFAULT_MAX_QUALITY = 90;
+    /**
+     * The default minimal length of the long edge in pixels. This is about 150 dpi for an A4 page.
+     */
+    public static final int DEFAULT_MIN_LONG_EDGE = 1600;
+    /**
+     * The factor by which the width and the height are reduced in each downscaling step.
+     */
+    static final float SCALE_STEP = 0.75f;
+
+    /**
+     * Informed about every encoded bitmap, e.g. to log the chosen parameters.
+     */
+    public interface Listener {
+        void onEncoded(Result result);
+    }
+
+    /**
+     * Configures an {@link AdaptiveJpegEncoder}.
+     */
+    public static class Builder {
+
+        private int mMaxBytes;
+        private double mMaxBytesPerPixel;
+        private int mMinQuality = DEFAULT_MIN_QUALITY;
+        private int mMaxQuality = DEFAULT_MAX_QUALITY;
+        private boolean mDownscalingEnabled = true;
+        private int mMinLongEdge = DEFAULT_MIN_LONG_EDGE;
+        private Listener mListener;
+
+        /**
+         * Set the maximal size of the JPEG in bytes.
+         */
+        public Builder setMaxBytes(final int maxBytes) {
+            if (maxBytes <= 0) {
+                throw new IllegalArgumentException("maxBytes must be greater than 0");
+            }
+            mMaxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Set the maximal size of the JPEG in bytes per pixel of the original bitmap, e.g. 0.1.
+         */
+        public Builder setMaxBytesPerPixel(final double maxBytesPerPixel) {
+            if (maxBytesPerPixel <= 0) {
+                throw new IllegalArgumentException("maxBytesPerPixel must be greater than 0");
+            }
+            mMaxBytesPerPixel = maxBytesPerPixel;
+            return this;
+        }
+
+        /**
+         * Set the range of JPEG qualities (between 0 and 100) which are tried.
+         */
+        public Builder setQualityRange(final int minQuality, final int maxQuality) {
+            if (minQuality < 0 || maxQuality > 100 || minQuality > maxQuality) {
+                throw new IllegalArgumentException("Invalid quality range " + minQuality + "-" + maxQuality);
+            }
+            mMinQuality = minQuality;
+            mMaxQuality = maxQuality;
+            return this;
+        }
+
+        /**
+         * Set whether the bitmap may be downscaled if the JPEG doesn't fit into the budget with the minimal quality.
+         * Enabled by default.
+         */
+        public Builder setDownscalingEnabled(final boolean downscalingEnabled) {
+            mDownscalingEnabled = downscalingEnabled;
+            return this;
+        }
+
+        /**
+         * Set the length in pixels below which the long edge of the bitmap is not downscaled.
+         */
+        public Builder setMinLongEdge(final int minLongEdge) {
+            if (minLongEdge <= 0) {
+                throw new IllegalArgumentException("minLongEdge must be greater than 0");
+            }
+            mMinLongEdge = minLongEdge;
+            return this;
+        }
+
+        public Builder setListener(@Nullable final Listener listener) {
+            mListener = listener;
+            return this;
+        }
+
+        public AdaptiveJpegEncoder build() {
+            if (mMaxBytes == 0 && mMaxBytesPerPixel == 0) {
+                throw new IllegalStateException("A byte budget is required");
+            }
+            return new AdaptiveJpegEncoder(this);
+        }
+    }
+
+    /**
+     * The JPEG and the parameters with which it was encoded.
+     */
+    public static class Result {
+
+        private final byte[] mJpeg;
+        private final int mQuality;
+        private final int mWidth;
+        private final int mHeight;
+        private final int mBudget;
+        private final int mEncodingCount;
+
+        Result(final byte[] jpeg, final int quality, final int width, final int height, final int budget,
+               final int encodingCount) {
+            mJpeg = jpeg;
+            mQuality = quality;
+            mWidth = width;
+            mHeight = height;
+            mBudget = budget;
+            mEncodingCount = encodingCount;
+        }
+
+        public byte[] getJpeg() {
+            return mJpeg;
+        }
+
+        public int getQuality() {
+            return mQuality;
+        }
+
+        /**
+         * Returns the width of the JPEG, which is smaller than the bitmap's width if it was downscaled.
+         */
+        public int getWidth() {
+            return mWidth;
+        }
+
+        public int getHeight() {
+            return mHeight;
+        }
+
+        /**
+         * Returns the byte budget which was applied to the bitmap.
+         */
+        public int getBudget() {
+            return mBudget;
+        }
+
+        /**
+         * Returns false, if even the smallest JPEG didn't fit into the budget. That JPEG is returned in this case.
+         */
+        public boolean isWithinBudget() {
+            return mJpeg.length <= mBudget;
+        }
+
+        /**
+         * Returns how often the bitmap was encoded to find the quality.
+         */
+        public int getEncodingCount() {
+            return mEncodingCount;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" + mJpeg.length + " bytes, budget " + mBudget + ", quality " + mQuality + ", "
+                    + mWidth + "x" + mHeight + ", " + mEncodingCount + " encodings}";
+        }
+    }
+
+    /**
+     * Encodes an image with a JPEG quality into a stream and returns the number of written bytes.
+     */
+    interface Compressor {
+        int compress(int quality, ByteArrayOutputStream outputStream);
+    }
+
+    private final int mMaxBytes;
+    private final double mMaxBytesPerPixel;
+    private final int mMinQuality;
+    private final int mMaxQuality;
+    private final boolean mDownscalingEnabled;
+    private final int mMinLongEdge;
+    private final Listener mListener;
+
+    private AdaptiveJpegEncoder(final Builder builder) {
+        mMaxBytes = builder.mMaxBytes;
+        mMaxBytesPerPixel = builder.mMaxBytesPerPixel;
+        mMinQuality = builder.mMinQuality;
+        mMaxQuality = builder.mMaxQuality;
+        mDownscalingEnabled = builder.mDownscalingEnabled;
+        mMinLongEdge = builder.mMinLongEdge;
+        mListener = builder.mListener;
+    }
+
+    /**
+     * Returns the byte budget for a bitmap with the given size.
+     */
+    int getBudget(final int width, final int height) {
+        long budget = mMaxBytes > 0 ? mMaxBytes : Integer.MAX_VALUE;
+        if (mMaxBytesPerPixel > 0) {
+            budget = Math.min(budget, (long) (mMaxBytesPerPixel * width * height));
+        }
+        return (int) Math.max(1, budget);
+    }
+
+    public Result encode(final Bitmap bitmap) {
+        checkNotNull(bitmap);
+        final int budget = getBudget(bitmap.getWidth(), bitmap.getHeight());
+        // All attempts share one stream, its buffer grows only to the largest JPEG.
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(Math.min(budget, 4 * 1024 * 1024));
+        int encodingCount = 0;
+        Bitmap scaledBitmap = bitmap;
+        try {
+            while (true) {
+                final Bitmap currentBitmap = scaledBitmap;
+                final QualitySearch search = searchQuality(new Compressor() {
+                    @Override
+                    public int compress(final int quality, final ByteArrayOutputStream stream) {
+                        stream.reset();
+                        currentBitmap.compress(JPEG, quality, stream);
+                        return stream.size();
+                    }
+                }, budget, mMinQuality, mMaxQuality, outputStream);
+                encodingCount += search.mEncodingCount;
+                final int nextWidth = Math.round(currentBitmap.getWidth() * SCALE_STEP);
+                final int nextHeight = Math.round(currentBitmap.getHeight() * SCALE_STEP);
+                if (search.mFits || !mDownscalingEnabled || Math.max(nextWidth, nextHeight) < mMinLongEdge
+                        || nextWidth < 1 || nextHeight < 1) {
+                    final Result result = new Result(search.mJpeg, search.mQuality, currentBitmap.getWidth(),
+                            currentBitmap.getHeight(), budget, encodingCount);
+                    if (mListener != null) {
+                        mListener.onEncoded(result);
+                    }
+                    return result;
+                }
+                // Scale from the original bitmap to avoid accumulating the filtering errors of several steps.
+                final Bitmap nextBitmap = Bitmap.createScaledBitmap(bitmap, nextWidth, nextHeight, true);
+                if (scaledBitmap != bitmap) {
+                    scaledBitmap.recycle();
+                }
+                scaledBitmap = nextBitmap;
+            }
+        } finally {
+            if (scaledBitmap != bitmap) {
+                scaledBitmap.recycle();
+            }
+        }
+    }
+
+    /**
+     * The outcome of the search for the highest quality which fits into the budget.
+     */
+    static final class QualitySearch {
+        final byte[] mJpeg;
+        final int mQuality;
+        final boolean mFits;
+        final int mEncodingCount;
+
+        QualitySearch(final byte[] jpeg, final int quality, final boolean fits, final int encodingCount) {
+            mJpeg = jpeg;
+            mQuality = quality;
+            mFits = fits;
+            mEncodingCount = encodingCount;
+        }
+    }
+
+    /**
+     * Finds the highest quality between the minimal and the maximal quality whose JPEG fits into the budget. The
+     * maximal quality is tried first, since many documents already fit with it. If none fits, the JPEG with the
+     * minimal quality is returned.
+     */
+    static QualitySearch searchQuality(final Compressor compressor, final int budget, final int minQuality,
+                                       final int maxQuality, final ByteArrayOutputStream outputStream) {
+        int encodingCount = 1;
+        if (compressor.compress(maxQuality, outputStream) <= budget) {
+            return new QualitySearch(outputStream.toByteArray(), maxQuality, true, encodingCount);
+        }
+        if (minQuality == maxQuality) {
+            return new QualitySearch(outputStream.toByteArray(), minQuality, false, encodingCount);
+        }
+        encodingCount++;
+        if (compressor.compress(minQuality, outputStream) > budget) {
+            return new QualitySearch(outputStream.toByteArray(), minQuality, false, encodingCount);
+        }
+        // The JPEG size grows with the quality: minQuality fits, maxQuality doesn't.
+        byte[] bestJpeg = outputStream.toByteArray();
+        int bestQuality = minQuality;
+        int low = minQuality + 1;
+        int high = maxQuality - 1;
+        while (low <= high) {
+            final int quality = (low + high) >>> 1;
+            encodingCount++;
+            if (compressor.compress(quality, outputStream) <= budget) {
+                bestJpeg = outputStream.toByteArray();
+                bestQuality = quality;
+                low = quality + 1;
+            } else {
+                high = quality - 1;
+            }
+        }
+        return new QualitySearch(bestJpeg, bestQuality, true, encodingCount);
+    }
+}
@@ -0,0 +1,340 @@
+package net.gini.android.imaging;
+
+import android.graphics.Bitmap;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * Prepares photos of documents for the upload, so they can be encoded into much smaller JPEGs without losing what
+ * matters for the extractions. The stages run in this order and each can be enabled separately:
+ * </p>
+ * <ol>
+ * <li>Cropping: removes the background around the page, detected as the area of bright rows and columns.</li>
+ * <li>Downscaling: reduces the resolution to the given dpi, assuming the page is A4 and fills the image.</li>
+ * <li>Grayscale: removes the colours, so the JPEG's chroma channels are flat and compress to almost nothing.</li>
+ * <li>Contrast normalization: stretches the luminance, so the text is dark and the paper white.</li>
+ * </ol>
+ * <p>
+ * The geometric stages run first, so the pixel-wise stages touch as few pixels as possible. The given bitmap is never
+ * changed or recycled. Processing is CPU bound, so it should not be done on the main thread. The
+ * {@link net.gini.android.DocumentTaskManager} runs it on its CPU executor.
+ * </p>
+ */
+public class DocumentImagePreprocessor {
+
+    /**
+     * The default resolution of the processed image. It is sufficient for the text recognition of printed documents.
+     */
+    public static final int DEFAULT_TARGET_DPI = 200;
+
+    /**
+     * The long edge of an A4 page in inches.
+     */
+    static final float A4_LONG_EDGE_INCHES = 297f / 25.4f;
+    /**
+     * The length of the long edge of the downscaled copy in which the page is detected.
+     */
+    static final int DETECTION_LONG_EDGE = 256;
+    /**
+     * The share of pixels at each end of the histogram which become black and white when the contrast is normalized.
+     */
+    static final float CONTRAST_CLIP = 0.01f;
+
+    /**
+     * Configures a {@link DocumentImagePreprocessor}. All stages are enabled by default.
+     */
+    public static class Builder {
+
+        private boolean mCroppingEnabled = true;
+        private boolean mDownscalingEnabled = true;
+        private boolean mGrayscaleEnabled = true;
+        private boolean mContrastNormalizationEnabled = true;
+        private int mTargetDpi = DEFAULT_TARGET_DPI;
+
+        public Builder setCroppingEnabled(final boolean croppingEnabled) {
+            mCroppingEnabled = croppingEnabled;
+            return this;
+        }
+
+        public Builder setDownscalingEnabled(final boolean downscalingEnabled) {
+            mDownscalingEnabled = downscalingEnabled;
+            return this;
+        }
+
+        public Builder setGrayscaleEnabled(final boolean grayscaleEnabled) {
+            mGrayscaleEnabled = grayscaleEnabled;
+            return this;
+        }
+
+        public Builder setContrastNormalizationEnabled(final boolean contrastNormalizationEnabled) {
+            mContrastNormalizationEnabled = contrastNormalizationEnabled;
+            return this;
+        }
+
+        /**
+         * Set the resolution to which the image is downscaled. Images with a lower resolution are not upscaled.
+         */
+        public Builder setTargetDpi(final int targetDpi) {
+            if (targetDpi <= 0) {
+                throw new IllegalArgumentException("targetDpi must be greater than 0");
+            }
+            mTargetDpi = targetDpi;
+            return this;
+        }
+
+        public DocumentImagePreprocessor build() {
+            return new DocumentImagePreprocessor(this);
+        }
+    }
+
+    private final boolean mCroppingEnabled;
+    private final boolean mDownscalingEnabled;
+    private final boolean mGrayscaleEnabled;
+    private final boolean mContrastNormalizationEnabled;
+    private final int mTargetDpi;
+
+    private DocumentImagePreprocessor(final Builder builder) {
+        mCroppingEnabled = builder.mCroppingEnabled;
+        mDownscalingEnabled = builder.mDownscalingEnabled;
+        mGrayscaleEnabled = builder.mGrayscaleEnabled;
+        mContrastNormalizationEnabled = builder.mContrastNormalizationEnabled;
+        mTargetDpi = builder.mTargetDpi;
+    }
+
+    /**
+     * Runs the enabled stages.
+     *
+     * @return A new bitmap or the given bitmap, if no stage changed it.
+     */
+    public Bitmap process(final Bitmap bitmap) {
+        checkNotNull(bitmap);
+        Bitmap result = bitmap;
+        if (mCroppingEnabled) {
+            result = replace(bitmap, result, crop(result));
+        }
+        if (mDownscalingEnabled) {
+            result = replace(bitmap, result, downscale(result));
+        }
+        if (mGrayscaleEnabled || mContrastNormalizationEnabled) {
+            result = replace(bitmap, result, adjustPixels(result, result != bitmap));
+        }
+        return result;
+    }
+
+    /**
+     * Recycles the previous result of a stage, unless it is the original bitmap or still used.
+     */
+    private static Bitmap replace(final Bitmap original, final Bitmap previous, final Bitmap next) {
+        if (previous != original && previous != next) {
+            previous.recycle();
+        }
+        return next;
+    }
+
+    private Bitmap crop(final Bitmap bitmap) {
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        final float scale = Math.min(1f, (float) DETECTION_LONG_EDGE / Math.max(width, height));
+        final int detectionWidth = Math.max(1, Math.round(width * scale));
+        final int detectionHeight = Math.max(1, Math.round(height * scale));
+        final Bitmap detectionBitmap = Bitmap.createScaledBitmap(bitmap, detectionWidth, detectionHeight, true);
+        final int[] pixels = new int[detectionWidth * detectionHeight];
+        detectionBitmap.getPixels(pixels, 0, detectionWidth, 0, 0, detectionWidth, detectionHeight);
+        if (detectionBitmap != bitmap) {
+            detectionBitmap.recycle();
+        }
+        final int[] luminances = new int[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            luminances[i] = luminance(pixels[i]);
+        }
+        final int[] bounds = findPageBounds(luminances, detectionWidth, detectionHeight);
+        if (bounds == null) {
+            return bitmap;
+        }
+        final int left = Math.max(0, (int) Math.floor(bounds[0] / scale));
+        final int top = Math.max(0, (int) Math.floor(bounds[1] / scale));
+        final int right = Math.min(width, (int) Math.ceil(bounds[2] / scale));
+        final int bottom = Math.min(height, (int) Math.ceil(bounds[3] / scale));
+        if (left == 0 && top == 0 && right == width && bottom == height) {
+            return bitmap;
+        }
+        return Bitmap.createBitmap(bitmap, left, top, right - left, bottom - top);
+    }
+
+    private Bitmap downscale(final Bitmap bitmap) {
+        final int maxLongEdge = Math.round(A4_LONG_EDGE_INCHES * mTargetDpi);
+        final int longEdge = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (longEdge <= maxLongEdge) {
+            return bitmap;
+        }
+        final float scale = (float) maxLongEdge / longEdge;
+        return Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+    }
+
+    /**
+     * Applies the grayscale and contrast stages row by row, so only one row of pixels is held in memory. Intermediate
+     * bitmaps are changed in place, if possible.
+     */
+    private Bitmap adjustPixels(final Bitmap bitmap, final boolean intermediate) {
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        final int[] row = new int[width];
+        int[] lut = null;
+        if (mContrastNormalizationEnabled) {
+            final int[] histogram = new int[256];
+            for (int y = 0; y < height; y++) {
+                bitmap.getPixels(row, 0, width, 0, y, width, 1);
+                for (int x = 0; x < width; x++) {
+                    histogram[luminance(row[x])]++;
+                }
+            }
+            lut = contrastLut(histogram, CONTRAST_CLIP);
+        }
+        final Bitmap result = intermediate && bitmap.isMutable() && bitmap.getConfig() == Bitmap.Config.ARGB_8888
+                ? bitmap
+                : Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        for (int y = 0; y < height; y++) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            for (int x = 0; x < width; x++) {
+                row[x] = adjustPixel(row[x], lut, mGrayscaleEnabled);
+            }
+            result.setPixels(row, 0, width, 0, y, width, 1);
+        }
+        return result;
+    }
+
+    static int adjustPixel(final int argb, final int[] lut, final boolean grayscale) {
+        final int alpha = argb & 0xff000000;
+        if (grayscale) {
+            int gray = luminance(argb);
+            if (lut != null) {
+                gray = lut[gray];
+            }
+            return alpha | (gray << 16) | (gray << 8) | gray;
+        }
+        // Stretching each channel with the luminance's table keeps the hues.
+        return alpha | (lut[(argb >> 16) & 0xff] << 16) | (lut[(argb >> 8) & 0xff] << 8) | lut[argb & 0xff];
+    }
+
+    /**
+     * Returns the luminance of a colour (ITU-R BT.601) between 0 and 255.
+     */
+    static int luminance(final int argb) {
+        final int red = (argb >> 16) & 0xff;
+        final int green = (argb >> 8) & 0xff;
+        final int blue = argb & 0xff;
+        return (red * 77 + green * 150 + blue * 29) >> 8;
+    }
+
+    /**
+     * Creates a lookup table which maps the luminance below which the given share of pixels lies to 0 and the
+     * luminance above which the same share lies to 255, and the luminances in between linearly.
+     */
+    static int[] contrastLut(final int[] histogram, final float clip) {
+        long total = 0;
+        for (final int count : histogram) {
+            total += count;
+        }
+        final long clipCount = (long) (total * clip);
+        int low = 0;
+        long sum = 0;
+        while (low < 255 && sum + histogram[low] <= clipCount) {
+            sum += histogram[low];
+            low++;
+        }
+        int high = 255;
+        sum = 0;
+        while (high > 0 && sum + histogram[high] <= clipCount) {
+            sum += histogram[high];
+            high--;
+        }
+        final int[] lut = new int[256];
+        if (high <= low) {
+            for (int i = 0; i < 256; i++) {
+                lut[i] = i;
+            }
+            return lut;
+        }
+        for (int i = 0; i < 256; i++) {
+            lut[i] = Math.max(0, Math.min(255, Math.round((i - low) * 255f / (high - low))));
+        }
+        return lut;
+    }
+
+    /**
+     * Finds the page as the bounding box of the rows and columns which are mostly brighter than the background. The
+     * threshold between the page and the background is found with Otsu's method.
+     *
+     * @return The left, top, right and bottom bounds (exclusive) or null, if no page was found.
+     */
+    static int[] findPageBounds(final int[] luminances, final int width, final int height) {
+        final int threshold = otsuThreshold(luminances);
+        final int[] brightInRow = new int[height];
+        final int[] brightInColumn = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (luminances[y * width + x] > threshold) {
+                    brightInRow[y]++;
+                    brightInColumn[x]++;
+                }
+            }
+        }
+        int top = 0;
+        while (top < height && brightInRow[top] * 2 < width) {
+            top++;
+        }
+        int bottom = height;
+        while (bottom > top && brightInRow[bottom - 1] * 2 < width) {
+            bottom--;
+        }
+        int left = 0;
+        while (left < width && brightInColumn[left] * 2 < height) {
+            left++;
+        }
+        int right = width;
+        while (right > left && brightInColumn[right - 1] * 2 < height) {
+            right--;
+        }
+        // A page covering less than a quarter of the image is more likely a misdetection than a real page.
+        if (top >= bottom || left >= right || (bottom - top) * (right - left) * 4 < width * height) {
+            return null;
+        }
+        return new int[]{left, top, right, bottom};
+    }
+
+    static int otsuThreshold(final int[] luminances) {
+        final int[] histogram = new int[256];
+        long weightedSum = 0;
+        for (final int luminance : luminances) {
+            histogram[luminance]++;
+            weightedSum += luminance;
+        }
+        final int total = luminances.length;
+        long backgroundCount = 0;
+        long backgroundSum = 0;
+        double bestVariance = -1;
+        int threshold = 127;
+        for (int i = 0; i < 256; i++) {
+            backgroundCount += histogram[i];
+            if (backgroundCount == 0) {
+                continue;
+            }
+            final long foregroundCount = total - backgroundCount;
+            if (foregroundCount == 0) {
+                break;
+            }
+            backgroundSum += (long) i * histogram[i];
+            final double backgroundMean = (double) backgroundSum / backgroundCount;
+            final double foregroundMean = (double) (weightedSum - backgroundSum) / foregroundCount;
+            final double variance = (double) backgroundCount * foregroundCount
+                    * (backgroundMean - foregroundMean) * (backgroundMean - foregroundMean);
+            if (variance > bestVariance) {
+                bestVariance = variance;
+                threshold = i;
+            }
+        }
+        return threshold;
+    }
+}
@@ -4,6 +4,7 @@ package net.gini.android.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import org.jetbrains.annotations.Nullable;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -66,6 +67,40 @@ public class Box implements Parcelable {
         dest.writeDouble(mHeight);
     }
 
+    /**
+     * Writes an optional box directly into the parcel. Unlike {@link Parcel#writeParcelable(Parcelable, int)} the
+     * class name is not written, which saves most of the space and time for parcels with many boxes.
+     */
+    static void writeToParcel(final Parcel dest, @Nullable final Box box) {
+        if (box == null) {
+            dest.writeInt(0);
+            return;
+        }
+        dest.writeInt(1);
+        box.writeToParcel(dest, 0);
+    }
+
+    /**
+     * Writes the box at the index of the array like {@link #writeToParcel(Parcel, Box)}, so it can be read with
+     * {@link #readFromParcel(Parcel)}.
+     */
+    static void writeToParcel(final Parcel dest, final BoxArray boxes, final int index) {
+        dest.writeInt(1);
+        dest.writeInt(boxes.getPageNumber(index));
+        dest.writeDouble(boxes.getLeft(index));
+        dest.writeDouble(boxes.getTop(index));
+        dest.writeDouble(boxes.getWidth(index));
+        dest.writeDouble(boxes.getHeight(index));
+    }
+
+    /**
+     * Reads a box which was written by {@link #writeToParcel(Parcel, Box)}.
+     */
+    @Nullable
+    static Box readFromParcel(final Parcel in) {
+        return in.readInt() != 0 ? CREATOR.createFromParcel(in) : null;
+    }
+
     public static final Parcelable.Creator<Box> CREATOR = new Parcelable.Creator<Box>() {
 
         public Box createFromParcel(Parcel in) {
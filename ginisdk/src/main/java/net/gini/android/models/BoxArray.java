@@ -0,0 +1,254 @@
+package net.gini.android.models;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * An immutable list of boxes which stores the page numbers and coordinates in parallel primitive arrays instead of
+ * one {@link Box} object per box.
+ * </p>
+ * <p>
+ * The boxes can be read by index without any allocation, or with a {@link Cursor} which can be reused for all boxes
+ * of the array. {@link #get(int)} creates a {@link Box} for APIs which need one. Parcelling writes each array in one
+ * piece, which is much cheaper than parcelling every box on its own.
+ * </p>
+ */
+public class BoxArray implements Parcelable {
+
+    /**
+     * Collects boxes for a {@link BoxArray}.
+     */
+    public static class Builder {
+
+        private int mSize;
+        private int[] mPageNumbers;
+        private double[] mLefts;
+        private double[] mTops;
+        private double[] mWidths;
+        private double[] mHeights;
+
+        public Builder() {
+            this(16);
+        }
+
+        public Builder(final int initialCapacity) {
+            final int capacity = Math.max(1, initialCapacity);
+            mPageNumbers = new int[capacity];
+            mLefts = new double[capacity];
+            mTops = new double[capacity];
+            mWidths = new double[capacity];
+            mHeights = new double[capacity];
+        }
+
+        public Builder add(final int pageNumber, final double left, final double top, final double width,
+                           final double height) {
+            if (mSize == mPageNumbers.length) {
+                final int capacity = mSize * 2;
+                mPageNumbers = Arrays.copyOf(mPageNumbers, capacity);
+                mLefts = Arrays.copyOf(mLefts, capacity);
+                mTops = Arrays.copyOf(mTops, capacity);
+                mWidths = Arrays.copyOf(mWidths, capacity);
+                mHeights = Arrays.copyOf(mHeights, capacity);
+            }
+            mPageNumbers[mSize] = pageNumber;
+            mLefts[mSize] = left;
+            mTops[mSize] = top;
+            mWidths[mSize] = width;
+            mHeights[mSize] = height;
+            mSize++;
+            return this;
+        }
+
+        public Builder add(final Box box) {
+            checkNotNull(box);
+            return add(box.getPageNumber(), box.getLeft(), box.getTop(), box.getWidth(), box.getHeight());
+        }
+
+        /**
+         * Adds a box in the Gini API's JSON format without creating a {@link Box}.
+         */
+        public Builder addFromApiResponse(final JSONObject responseData) throws JSONException {
+            return add(responseData.getInt("page"), responseData.getDouble("left"), responseData.getDouble("top"),
+                    responseData.getDouble("width"), responseData.getDouble("height"));
+        }
+
+        public BoxArray build() {
+            return new BoxArray(Arrays.copyOf(mPageNumbers, mSize), Arrays.copyOf(mLefts, mSize),
+                    Arrays.copyOf(mTops, mSize), Arrays.copyOf(mWidths, mSize), Arrays.copyOf(mHeights, mSize));
+        }
+    }
+
+    /**
+     * A reusable view of one box of a {@link BoxArray}. Move it to another box with {@link #moveTo(int)}.
+     */
+    public static class Cursor {
+
+        private final BoxArray mBoxes;
+        private int mIndex;
+
+        private Cursor(final BoxArray boxes) {
+            mBoxes = boxes;
+        }
+
+        public Cursor moveTo(final int index) {
+            if (index < 0 || index >= mBoxes.size()) {
+                throw new IndexOutOfBoundsException("Index " + index + " of " + mBoxes.size() + " boxes");
+            }
+            mIndex = index;
+            return this;
+        }
+
+        public int getIndex() {
+            return mIndex;
+        }
+
+        public int getPageNumber() {
+            return mBoxes.mPageNumbers[mIndex];
+        }
+
+        public double getLeft() {
+            return mBoxes.mLefts[mIndex];
+        }
+
+        public double getTop() {
+            return mBoxes.mTops[mIndex];
+        }
+
+        public double getWidth() {
+            return mBoxes.mWidths[mIndex];
+        }
+
+        public double getHeight() {
+            return mBoxes.mHeights[mIndex];
+        }
+
+        public boolean contains(final int pageNumber, final double x, final double y) {
+            return mBoxes.contains(mIndex, pageNumber, x, y);
+        }
+
+        public Box toBox() {
+            return mBoxes.get(mIndex);
+        }
+    }
+
+    private final int[] mPageNumbers;
+    private final double[] mLefts;
+    private final double[] mTops;
+    private final double[] mWidths;
+    private final double[] mHeights;
+
+    private BoxArray(final int[] pageNumbers, final double[] lefts, final double[] tops, final double[] widths,
+                     final double[] heights) {
+        mPageNumbers = pageNumbers;
+        mLefts = lefts;
+        mTops = tops;
+        mWidths = widths;
+        mHeights = heights;
+    }
+
+    /**
+     * Creates the array from a JSON array of boxes in the Gini API's format.
+     */
+    public static BoxArray fromApiResponse(final JSONArray responseData) throws JSONException {
+        final int length = responseData.length();
+        final Builder builder = new Builder(length);
+        for (int i = 0; i < length; i++) {
+            builder.addFromApiResponse(responseData.getJSONObject(i));
+        }
+        return builder.build();
+    }
+
+    public static BoxArray fromBoxes(final List<Box> boxes) {
+        final Builder builder = new Builder(boxes.size());
+        for (final Box box : boxes) {
+            builder.add(box);
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return mPageNumbers.length;
+    }
+
+    public int getPageNumber(final int index) {
+        return mPageNumbers[index];
+    }
+
+    public double getLeft(final int index) {
+        return mLefts[index];
+    }
+
+    public double getTop(final int index) {
+        return mTops[index];
+    }
+
+    public double getWidth(final int index) {
+        return mWidths[index];
+    }
+
+    public double getHeight(final int index) {
+        return mHeights[index];
+    }
+
+    /**
+     * Returns true, if the box is on the page and contains the point.
+     */
+    public boolean contains(final int index, final int pageNumber, final double x, final double y) {
+        return mPageNumbers[index] == pageNumber && x >= mLefts[index] && x <= mLefts[index] + mWidths[index]
+                && y >= mTops[index] && y <= mTops[index] + mHeights[index];
+    }
+
+    /**
+     * Creates a {@link Box} with the values of the box at the index.
+     */
+    public Box get(final int index) {
+        return new Box(mPageNumbers[index], mLefts[index], mTops[index], mWidths[index], mHeights[index]);
+    }
+
+    /**
+     * Returns a new cursor which is positioned at the first box.
+     */
+    public Cursor newCursor() {
+        return new Cursor(this);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeIntArray(mPageNumbers);
+        dest.writeDoubleArray(mLefts);
+        dest.writeDoubleArray(mTops);
+        dest.writeDoubleArray(mWidths);
+        dest.writeDoubleArray(mHeights);
+    }
+
+    public static final Parcelable.Creator<BoxArray> CREATOR = new Parcelable.Creator<BoxArray>() {
+
+        public BoxArray createFromParcel(Parcel in) {
+            final int[] pageNumbers = in.createIntArray();
+            final double[] lefts = in.createDoubleArray();
+            final double[] tops = in.createDoubleArray();
+            final double[] widths = in.createDoubleArray();
+            final double[] heights = in.createDoubleArray();
+            return new BoxArray(pageNumbers, lefts, tops, widths, heights);
+        }
+
+        public BoxArray[] newArray(int size) {
+            return new BoxArray[size];
+        }
+    };
+}
@@ -0,0 +1,340 @@
+package net.gini.android.models;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * A spatial index of boxes on the pages of a document, e.g. to find the extraction which was tapped on a page
+ * preview. Each page is divided into a uniform grid of cells and every cell knows the boxes which overlap it, so a
+ * query only checks the boxes near the queried point or area instead of all boxes of the document.
+ * </p>
+ * <p>
+ * The index is immutable and can be queried from any thread. It is a snapshot of the boxes at the time it was built:
+ * if the box of an extraction is changed with {@link Extraction#setBox(Box)}, the index has to be rebuilt.
+ * </p>
+ *
+ * @param <T> The type of the values which are associated with the boxes.
+ */
+public class BoxIndex<T> {
+
+    // Aim for about two boxes per cell, but limit the grid's size for pages with very many boxes.
+    private static final int BOXES_PER_CELL = 2;
+    private static final int MAX_CELLS_PER_SIDE = 128;
+
+    /**
+     * Collects the boxes and values of a {@link BoxIndex}.
+     */
+    public static class Builder<T> {
+
+        private final List<T> mValues = new ArrayList<T>();
+        private int[] mPageNumbers = new int[16];
+        // Left, top, right and bottom of each box.
+        private float[] mBounds = new float[16 * 4];
+
+        public Builder<T> add(final Box box, final T value) {
+            checkNotNull(box);
+            return add(box.getPageNumber(), box.getLeft(), box.getTop(), box.getWidth(), box.getHeight(), value);
+        }
+
+        public Builder<T> add(final int pageNumber, final double left, final double top, final double width,
+                              final double height, final T value) {
+            final int index = mValues.size();
+            if (index == mPageNumbers.length) {
+                mPageNumbers = Arrays.copyOf(mPageNumbers, index * 2);
+                mBounds = Arrays.copyOf(mBounds, index * 2 * 4);
+            }
+            mValues.add(value);
+            mPageNumbers[index] = pageNumber;
+            mBounds[index * 4] = (float) left;
+            mBounds[index * 4 + 1] = (float) top;
+            mBounds[index * 4 + 2] = (float) (left + width);
+            mBounds[index * 4 + 3] = (float) (top + height);
+            return this;
+        }
+
+        /**
+         * Adds the box at the index of the box array.
+         */
+        public Builder<T> add(final BoxArray boxes, final int index, final T value) {
+            return add(boxes.getPageNumber(index), boxes.getLeft(index), boxes.getTop(index), boxes.getWidth(index),
+                    boxes.getHeight(index), value);
+        }
+
+        public BoxIndex<T> build() {
+            final int size = mValues.size();
+            return new BoxIndex<T>(new ArrayList<T>(mValues), Arrays.copyOf(mPageNumbers, size),
+                    Arrays.copyOf(mBounds, size * 4));
+        }
+    }
+
+    private final List<T> mValues;
+    private final float[] mBounds;
+    private final Map<Integer, PageGrid> mPageGrids = new HashMap<Integer, PageGrid>();
+
+    private BoxIndex(final List<T> values, final int[] pageNumbers, final float[] bounds) {
+        mValues = values;
+        mBounds = bounds;
+
+        final Map<Integer, List<Integer>> boxesByPage = new HashMap<Integer, List<Integer>>();
+        for (int i = 0; i < pageNumbers.length; i++) {
+            List<Integer> pageBoxes = boxesByPage.get(pageNumbers[i]);
+            if (pageBoxes == null) {
+                pageBoxes = new ArrayList<Integer>();
+                boxesByPage.put(pageNumbers[i], pageBoxes);
+            }
+            pageBoxes.add(i);
+        }
+        for (final Map.Entry<Integer, List<Integer>> pageBoxes : boxesByPage.entrySet()) {
+            mPageGrids.put(pageBoxes.getKey(), new PageGrid(pageBoxes.getValue()));
+        }
+    }
+
+    /**
+     * Creates an index of the boxes of the specific extractions and of their candidates. Extractions without a box
+     * are not indexed.
+     */
+    public static BoxIndex<Extraction> forExtractions(final Map<String, SpecificExtraction> extractions) {
+        final Builder<Extraction> builder = new Builder<Extraction>();
+        for (final SpecificExtraction extraction : checkNotNull(extractions).values()) {
+            addExtraction(builder, extraction);
+            for (final Extraction candidate : extraction.getCandidate()) {
+                addExtraction(builder, candidate);
+            }
+        }
+        return builder.build();
+    }
+
+    private static void addExtraction(final Builder<Extraction> builder, final Extraction extraction) {
+        final Extraction.State state = extraction.getState();
+        if (state.mBoxes != null) {
+            builder.add(state.mBoxes, state.mBoxIndex, extraction);
+        } else if (state.mBox != null) {
+            builder.add(state.mBox, extraction);
+        }
+    }
+
+    /**
+     * Creates an index of the boxes of the layout's words. The values are the indexes of the words in the layout.
+     */
+    public static BoxIndex<Integer> forLayoutWords(final Layout layout) {
+        final Builder<Integer> builder = new Builder<Integer>();
+        for (int word = 0, count = checkNotNull(layout).getWordCount(); word < count; word++) {
+            builder.add(layout.getPageNumber(layout.getWordPage(word)), layout.getWordLeft(word),
+                    layout.getWordTop(word), layout.getWordWidth(word), layout.getWordHeight(word), word);
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return mValues.size();
+    }
+
+    /**
+     * Returns the values of the boxes which contain the point. The values are ordered by the area of their boxes, so
+     * the first value belongs to the smallest and most specific box.
+     *
+     * @param pageNumber The page number as used by {@link Box#getPageNumber()}.
+     * @param x          The horizontal coordinate in the page's coordinate system.
+     * @param y          The vertical coordinate in the page's coordinate system.
+     */
+    public List<T> findAt(final int pageNumber, final double x, final double y) {
+        final PageGrid grid = mPageGrids.get(pageNumber);
+        if (grid == null || x < grid.mLeft || x > grid.mRight || y < grid.mTop || y > grid.mBottom) {
+            return Collections.emptyList();
+        }
+        final int cell = grid.row(y) * grid.mColumns + grid.column(x);
+        final int[] boxes = new int[grid.mCellStarts[cell + 1] - grid.mCellStarts[cell]];
+        int count = 0;
+        for (int i = grid.mCellStarts[cell]; i < grid.mCellStarts[cell + 1]; i++) {
+            final int box = grid.mCellBoxes[i];
+            final int offset = box * 4;
+            if (x >= mBounds[offset] && x <= mBounds[offset + 2] && y >= mBounds[offset + 1]
+                    && y <= mBounds[offset + 3]) {
+                boxes[count++] = box;
+            }
+        }
+        sortByArea(boxes, count);
+        return toValues(boxes, count);
+    }
+
+    /**
+     * Returns the value of the smallest box which contains the point or null, if no box contains the point.
+     *
+     * @see #findAt(int, double, double)
+     */
+    @Nullable
+    public T findFirstAt(final int pageNumber, final double x, final double y) {
+        final List<T> values = findAt(pageNumber, x, y);
+        return values.isEmpty() ? null : values.get(0);
+    }
+
+    /**
+     * Returns the values of the boxes which overlap or touch the given box, in the order in which they were added.
+     */
+    public List<T> findIntersecting(final Box box) {
+        final PageGrid grid = mPageGrids.get(checkNotNull(box).getPageNumber());
+        if (grid == null) {
+            return Collections.emptyList();
+        }
+        final float left = (float) box.getLeft();
+        final float top = (float) box.getTop();
+        final float right = (float) (box.getLeft() + box.getWidth());
+        final float bottom = (float) (box.getTop() + box.getHeight());
+        if (right < grid.mLeft || left > grid.mRight || bottom < grid.mTop || top > grid.mBottom) {
+            return Collections.emptyList();
+        }
+        int[] boxes = new int[16];
+        int count = 0;
+        final int firstColumn = grid.column(left);
+        final int lastColumn = grid.column(right);
+        final int firstRow = grid.row(top);
+        final int lastRow = grid.row(bottom);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                final int cell = row * grid.mColumns + column;
+                for (int i = grid.mCellStarts[cell]; i < grid.mCellStarts[cell + 1]; i++) {
+                    final int candidate = grid.mCellBoxes[i];
+                    final int offset = candidate * 4;
+                    final float boxLeft = mBounds[offset];
+                    final float boxTop = mBounds[offset + 1];
+                    if (boxLeft > right || mBounds[offset + 2] < left || boxTop > bottom
+                            || mBounds[offset + 3] < top) {
+                        continue;
+                    }
+                    // A box overlapping several cells is reported only by the cell which contains the top left
+                    // corner of the overlap.
+                    if (grid.column(Math.max(left, boxLeft)) != column || grid.row(Math.max(top, boxTop)) != row) {
+                        continue;
+                    }
+                    if (count == boxes.length) {
+                        boxes = Arrays.copyOf(boxes, count * 2);
+                    }
+                    boxes[count++] = candidate;
+                }
+            }
+        }
+        Arrays.sort(boxes, 0, count);
+        return toValues(boxes, count);
+    }
+
+    private List<T> toValues(final int[] boxes, final int count) {
+        final List<T> values = new ArrayList<T>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(mValues.get(boxes[i]));
+        }
+        return values;
+    }
+
+    /**
+     * Sorts the few boxes found at a point by their area with an insertion sort. Boxes with the same area keep their
+     * order.
+     */
+    private void sortByArea(final int[] boxes, final int count) {
+        Arrays.sort(boxes, 0, count);
+        for (int i = 1; i < count; i++) {
+            final int box = boxes[i];
+            final float area = area(box);
+            int j = i - 1;
+            while (j >= 0 && area(boxes[j]) > area) {
+                boxes[j + 1] = boxes[j];
+                j--;
+            }
+            boxes[j + 1] = box;
+        }
+    }
+
+    private float area(final int box) {
+        final int offset = box * 4;
+        return (mBounds[offset + 2] - mBounds[offset]) * (mBounds[offset + 3] - mBounds[offset + 1]);
+    }
+
+    /**
+     * The grid of a page. The boxes of the cells are stored consecutively in one array, ordered by cell.
+     */
+    private class PageGrid {
+
+        private final float mLeft;
+        private final float mTop;
+        private final float mRight;
+        private final float mBottom;
+        private final int mColumns;
+        private final int mRows;
+        private final float mCellWidth;
+        private final float mCellHeight;
+        private final int[] mCellStarts;
+        private final int[] mCellBoxes;
+
+        PageGrid(final List<Integer> boxes) {
+            float left = Float.MAX_VALUE;
+            float top = Float.MAX_VALUE;
+            float right = -Float.MAX_VALUE;
+            float bottom = -Float.MAX_VALUE;
+            for (final int box : boxes) {
+                left = Math.min(left, mBounds[box * 4]);
+                top = Math.min(top, mBounds[box * 4 + 1]);
+                right = Math.max(right, mBounds[box * 4 + 2]);
+                bottom = Math.max(bottom, mBounds[box * 4 + 3]);
+            }
+            mLeft = left;
+            mTop = top;
+            mRight = right;
+            mBottom = bottom;
+
+            final int cellsPerSide = (int) Math.ceil(Math.sqrt((double) boxes.size() / BOXES_PER_CELL));
+            mColumns = Math.max(1, Math.min(MAX_CELLS_PER_SIDE, cellsPerSide));
+            mRows = mColumns;
+            mCellWidth = right > left ? (right - left) / mColumns : 1;
+            mCellHeight = bottom > top ? (bottom - top) / mRows : 1;
+
+            // Count the boxes per cell first, so the boxes can be stored in a single array.
+            mCellStarts = new int[mColumns * mRows + 1];
+            for (final int box : boxes) {
+                forEachCell(box, null);
+            }
+            for (int cell = 0; cell < mColumns * mRows; cell++) {
+                mCellStarts[cell + 1] += mCellStarts[cell];
+            }
+            mCellBoxes = new int[mCellStarts[mColumns * mRows]];
+            final int[] nextPositions = Arrays.copyOf(mCellStarts, mColumns * mRows);
+            for (final int box : boxes) {
+                forEachCell(box, nextPositions);
+            }
+        }
+
+        /**
+         * Counts the box in the cells it overlaps or, if the next positions are given, stores it in these cells.
+         */
+        private void forEachCell(final int box, final int[] nextPositions) {
+            final int offset = box * 4;
+            final int lastColumn = column(mBounds[offset + 2]);
+            final int lastRow = row(mBounds[offset + 3]);
+            for (int row = row(mBounds[offset + 1]); row <= lastRow; row++) {
+                for (int column = column(mBounds[offset]); column <= lastColumn; column++) {
+                    final int cell = row * mColumns + column;
+                    if (nextPositions == null) {
+                        mCellStarts[cell + 1]++;
+                    } else {
+                        mCellBoxes[nextPositions[cell]++] = box;
+                    }
+                }
+            }
+        }
+
+        int column(final double x) {
+            return Math.max(0, Math.min(mColumns - 1, (int) ((x - mLeft) / mCellWidth)));
+        }
+
+        int row(final double y) {
+            return Math.max(0, Math.min(mRows - 1, (int) ((y - mTop) / mCellHeight)));
+        }
+    }
+}
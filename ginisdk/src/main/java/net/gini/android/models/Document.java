@@ -38,6 +38,8 @@ public class Document implements Parcelable {
     }
 
 
+    private static final long NO_CREATION_DATE = Long.MIN_VALUE;
+
     private final String mId;
     private final ProcessingState mState;
     private final Integer mPageCount;
@@ -123,7 +125,8 @@ public class Document implements Parcelable {
         final ProcessingState processingState = ProcessingState.valueOf(in.readString());
         final int pageCount = in.readInt();
         final String fileName = in.readString();
-        final Date creationDate = (Date) in.readSerializable();
+        final long creationTime = in.readLong();
+        final Date creationDate = creationTime != NO_CREATION_DATE ? new Date(creationTime) : null;
         final SourceClassification sourceClassification = SourceClassification.valueOf(
                 in.readString());
         return new Document(documentId, processingState, fileName, pageCount, creationDate,
@@ -141,7 +144,8 @@ public class Document implements Parcelable {
         dest.writeString(getState().toString());
         dest.writeInt(getPageCount());
         dest.writeString(getFilename());
-        dest.writeSerializable(getCreationDate());
+        // Written as a long, since writing the Date as Serializable uses the much slower Java serialization.
+        dest.writeLong(mCreationDate != null ? mCreationDate.getTime() : NO_CREATION_DATE);
         dest.writeString(getSourceClassification().toString());
     }
 
@@ -5,13 +5,17 @@ import android.os.Parcelable;
 
 import org.jetbrains.annotations.Nullable;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 import static net.gini.android.Utils.checkNotNull;
 
 public class Extraction implements Parcelable {
-    private String mValue;
     private final String mEntity;
-    private Box mBox;
-    private boolean mIsDirty;
+    /**
+     * The mutable state is kept in an immutable snapshot which is replaced atomically, so reads don't need a lock and
+     * always see a consistent state.
+     */
+    private final AtomicReference<State> mState;
 
     /**
      * Value object for an extraction from the Gini API.
@@ -22,47 +26,147 @@ public class Extraction implements Parcelable {
      *                      this value marks the extraction as dirty.
      */
     public Extraction(final String value, final String entity, @Nullable Box box) {
-        mValue = checkNotNull(value);
         mEntity = checkNotNull(entity);
-        mBox = box;
-        mIsDirty = false;
+        mState = new AtomicReference<State>(new State(checkNotNull(value), box, null, -1, false, 0));
+    }
+
+    /**
+     * Value object for an extraction from the Gini API whose box is stored in a box array which is shared by all
+     * extractions of a response. The {@link Box} is only created when {@link #getBox()} is called.
+     *
+     * @param value    The extraction's value. Changing this value marks the extraction as dirty.
+     * @param entity   The extraction's entity.
+     * @param boxes    The array which contains the box where the extraction is found.
+     * @param boxIndex The index of the extraction's box in the array.
+     */
+    public Extraction(final String value, final String entity, final BoxArray boxes, final int boxIndex) {
+        mEntity = checkNotNull(entity);
+        mState = new AtomicReference<State>(new State(checkNotNull(value), null, checkBoxIndex(boxes, boxIndex),
+                boxIndex, false, 0));
+    }
+
+    /**
+     * Creates an extraction with the state read by {@link ParcelableExtractions}.
+     */
+    Extraction(final String value, final String entity, @Nullable final Box box, final boolean isDirty,
+               final long version) {
+        mEntity = checkNotNull(entity);
+        mState = new AtomicReference<State>(new State(checkNotNull(value), box, null, -1, isDirty, version));
+    }
+
+    static BoxArray checkBoxIndex(final BoxArray boxes, final int boxIndex) {
+        if (boxIndex < 0 || boxIndex >= checkNotNull(boxes).size()) {
+            throw new IndexOutOfBoundsException("Index " + boxIndex + " of " + boxes.size() + " boxes");
+        }
+        return boxes;
     }
 
     protected Extraction(final Parcel in) {
         mEntity = in.readString();
-        mValue = in.readString();
-        mBox = in.readParcelable(Box.class.getClassLoader());
-        mIsDirty = in.readInt() != 0;
+        final String value = in.readString();
+        final Box box = Box.readFromParcel(in);
+        final boolean isDirty = in.readInt() != 0;
+        final long version = in.readLong();
+        mState = new AtomicReference<State>(new State(value, box, null, -1, isDirty, version));
     }
 
-    public synchronized String getValue() {
-        return mValue;
+    public String getValue() {
+        return mState.get().mValue;
     }
 
-    public synchronized void setValue(final String newValue) {
-        mValue = newValue;
-        mIsDirty = true;
+    public void setValue(final String newValue) {
+        State state;
+        do {
+            state = mState.get();
+        } while (!mState.compareAndSet(state, new State(newValue, state.mBox, state.mBoxes, state.mBoxIndex, true,
+                state.mVersion + 1)));
     }
 
-    public synchronized String getEntity() {
+    public String getEntity() {
         return mEntity;
     }
 
-    public synchronized Box getBox() {
-        return mBox;
+    /**
+     * Returns the box where the extraction is found or null, if the extraction has no box. If the box is stored in a
+     * shared {@link BoxArray}, the {@link Box} is created on the first call and the same instance is returned until the
+     * box is changed. Use {@link #getBoxArray()} to read it without any allocation.
+     */
+    @Nullable
+    public Box getBox() {
+        State state;
+        Box box;
+        do {
+            state = mState.get();
+            if (state.mBox != null || state.mBoxes == null) {
+                return state.mBox;
+            }
+            box = state.mBoxes.get(state.mBoxIndex);
+        } while (!mState.compareAndSet(state, new State(state.mValue, box, state.mBoxes, state.mBoxIndex,
+                state.mIsDirty, state.mVersion)));
+        return box;
+    }
+
+    /**
+     * Returns the array which contains the extraction's box or null, if the box is not stored in an array, e.g. because
+     * it was changed with {@link #setBox(Box)}. The box's index is returned by {@link #getBoxIndex()}.
+     */
+    @Nullable
+    public BoxArray getBoxArray() {
+        return mState.get().mBoxes;
+    }
+
+    /**
+     * Returns the index of the extraction's box in the {@link #getBoxArray()} or -1, if it is not stored in an array.
+     */
+    public int getBoxIndex() {
+        return mState.get().mBoxIndex;
     }
 
-    public synchronized void setBox(Box newBox) {
-        mBox = newBox;
-        mIsDirty = true;
+    public void setBox(Box newBox) {
+        State state;
+        do {
+            state = mState.get();
+        } while (!mState.compareAndSet(state, new State(state.mValue, newBox, null, -1, true, state.mVersion + 1)));
     }
 
-    public synchronized boolean isDirty() {
-        return mIsDirty;
+    public boolean isDirty() {
+        return mState.get().mIsDirty;
     }
 
     public void setIsDirty(boolean isDirty) {
-        mIsDirty = isDirty;
+        State state;
+        do {
+            state = mState.get();
+        } while (!mState.compareAndSet(state, new State(state.mValue, state.mBox, state.mBoxes, state.mBoxIndex,
+                isDirty, state.mVersion)));
+    }
+
+    /**
+     * Returns the edit version of the extraction. The version is increased whenever the value or the box is changed,
+     * so comparing versions is a cheap way to detect changes.
+     */
+    public long getVersion() {
+        return mState.get().mVersion;
+    }
+
+    /**
+     * Marks the extraction as not dirty, but only if it wasn't changed since it had the given version. Used to clear
+     * the dirty flag after the feedback for the extraction was sent without losing changes done in the meantime.
+     *
+     * @param version The version of the extraction which was sent.
+     *
+     * @return true, if the extraction is not dirty anymore.
+     */
+    public boolean clearIsDirty(final long version) {
+        State state;
+        do {
+            state = mState.get();
+            if (state.mVersion != version) {
+                return false;
+            }
+        } while (!mState.compareAndSet(state, new State(state.mValue, state.mBox, state.mBoxes, state.mBoxIndex,
+                false, state.mVersion)));
+        return true;
     }
 
     @Override
@@ -72,10 +176,19 @@ public class Extraction implements Parcelable {
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
+        final State state = mState.get();
         dest.writeString(mEntity);
-        dest.writeString(mValue);
-        dest.writeParcelable(mBox, flags);
-        dest.writeInt(mIsDirty ? 1 : 0);
+        dest.writeString(state.mValue);
+        state.writeBoxToParcel(dest);
+        dest.writeInt(state.mIsDirty ? 1 : 0);
+        dest.writeLong(state.mVersion);
+    }
+
+    /**
+     * Returns a consistent snapshot of the mutable state.
+     */
+    State getState() {
+        return mState.get();
     }
 
     public static final Parcelable.Creator<Extraction> CREATOR = new Parcelable.Creator<Extraction>() {
@@ -89,4 +202,46 @@ public class Extraction implements Parcelable {
         }
 
     };
+
+    /**
+     * The box is either a {@link Box} or the index of a box in a shared {@link BoxArray}. If it is stored in an array,
+     * the {@link Box} caches the box created by {@link Extraction#getBox()}.
+     */
+    static final class State {
+        final String mValue;
+        final Box mBox;
+        final BoxArray mBoxes;
+        final int mBoxIndex;
+        final boolean mIsDirty;
+        final long mVersion;
+
+        private State(final String value, @Nullable final Box box, @Nullable final BoxArray boxes, final int boxIndex,
+                      final boolean isDirty, final long version) {
+            mValue = value;
+            mBox = box;
+            mBoxes = boxes;
+            mBoxIndex = boxIndex;
+            mIsDirty = isDirty;
+            mVersion = version;
+        }
+
+        @Nullable
+        Box getBox() {
+            if (mBox == null && mBoxes != null) {
+                return mBoxes.get(mBoxIndex);
+            }
+            return mBox;
+        }
+
+        /**
+         * Writes the box like {@link Box#writeToParcel(Parcel, Box)} without creating a {@link Box}.
+         */
+        void writeBoxToParcel(final Parcel dest) {
+            if (mBoxes != null) {
+                Box.writeToParcel(dest, mBoxes, mBoxIndex);
+            } else {
+                Box.writeToParcel(dest, mBox);
+            }
+        }
+    }
 }
@@ -0,0 +1,395 @@
+package net.gini.android.models;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.List;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * The layout of a document: the pages with their paragraphs, lines and words, and the regions which were detected on
+ * the pages.
+ * </p>
+ * <p>
+ * Pages, paragraphs, lines and words are identified by their zero based index in the layout. The words of a line, the
+ * lines of a paragraph and the words and lines of a page are consecutive, so they are described by the index of the
+ * first element and the number of elements. The text zones of the Gini API's layout are not kept, their paragraphs
+ * are assigned to the page directly.
+ * </p>
+ * <p>
+ * The coordinates and sizes are stored in primitive arrays and the text of all words in a single char array, so the
+ * layout of a document with many pages needs only a small fraction of the memory of its JSON representation. Methods
+ * which return objects, like {@link #getWordText(int)} or {@link #getWordBox(int)}, create them on every call.
+ * </p>
+ */
+public class Layout {
+
+    /**
+     * A region of a page, e.g. a remittance slip.
+     */
+    public static class Region {
+
+        private final Box mBox;
+        private final String mType;
+
+        Region(final Box box, final String type) {
+            mBox = box;
+            mType = type;
+        }
+
+        public Box getBox() {
+            return mBox;
+        }
+
+        public String getType() {
+            return mType;
+        }
+    }
+
+    // The boxes are stored as consecutive left, top, width and height values.
+    static final int BOX_STRIDE = 4;
+
+    static final byte FLAG_BOLD = 1;
+
+    private final int[] mPageNumbers;
+    private final float[] mPageSizes;
+    private final int[] mPageFirstParagraphs;
+    private final List<List<Region>> mPageRegions;
+
+    private final float[] mParagraphBoxes;
+    private final int[] mParagraphFirstLines;
+
+    private final float[] mLineBoxes;
+    private final int[] mLineFirstWords;
+
+    private final float[] mWordBoxes;
+    private final int[] mWordPages;
+    private final int[] mWordTextOffsets;
+    private final char[] mText;
+    private final float[] mWordFontSizes;
+    private final byte[] mWordFlags;
+    private final int[] mWordFontFamilies;
+    private final String[] mFontFamilies;
+
+    /**
+     * The arrays of first indexes have one more element than there are pages, paragraphs or lines. The last element is
+     * the number of paragraphs, lines or words, so the count of an element is the difference to the next first index.
+     * The same applies to the text offsets of the words.
+     */
+    Layout(final int[] pageNumbers, final float[] pageSizes, final int[] pageFirstParagraphs,
+           final List<List<Region>> pageRegions, final float[] paragraphBoxes, final int[] paragraphFirstLines,
+           final float[] lineBoxes, final int[] lineFirstWords, final float[] wordBoxes, final int[] wordPages,
+           final int[] wordTextOffsets, final char[] text, final float[] wordFontSizes, final byte[] wordFlags,
+           final int[] wordFontFamilies, final String[] fontFamilies) {
+        mPageNumbers = pageNumbers;
+        mPageSizes = pageSizes;
+        mPageFirstParagraphs = pageFirstParagraphs;
+        mPageRegions = pageRegions;
+        mParagraphBoxes = paragraphBoxes;
+        mParagraphFirstLines = paragraphFirstLines;
+        mLineBoxes = lineBoxes;
+        mLineFirstWords = lineFirstWords;
+        mWordBoxes = wordBoxes;
+        mWordPages = wordPages;
+        mWordTextOffsets = wordTextOffsets;
+        mText = text;
+        mWordFontSizes = wordFontSizes;
+        mWordFlags = wordFlags;
+        mWordFontFamilies = wordFontFamilies;
+        mFontFamilies = fontFamilies;
+    }
+
+    /**
+     * Parses the layout from the Gini API's JSON response in a single pass without building a JSON object tree.
+     */
+    public static Layout fromApiResponse(final Reader reader) throws IOException {
+        return new LayoutParser(checkNotNull(reader)).parse();
+    }
+
+    /**
+     * Creates the layout from an already parsed JSON response, as returned by
+     * {@link net.gini.android.DocumentTaskManager#getLayout(Document)}.
+     */
+    public static Layout fromApiResponse(final JSONObject responseData) throws IOException {
+        return fromApiResponse(new StringReader(responseData.toString()));
+    }
+
+    public int getPageCount() {
+        return mPageNumbers.length;
+    }
+
+    /**
+     * Returns the page number as used by the Gini API and {@link Box#getPageNumber()}, starting with 1.
+     */
+    public int getPageNumber(final int page) {
+        return mPageNumbers[page];
+    }
+
+    /**
+     * Returns the index of the page with the given page number or -1, if the layout has no such page.
+     */
+    public int findPage(final int pageNumber) {
+        for (int page = 0; page < mPageNumbers.length; page++) {
+            if (mPageNumbers[page] == pageNumber) {
+                return page;
+            }
+        }
+        return -1;
+    }
+
+    public float getPageWidth(final int page) {
+        return mPageSizes[page * 2];
+    }
+
+    public float getPageHeight(final int page) {
+        return mPageSizes[page * 2 + 1];
+    }
+
+    public int getPageFirstParagraph(final int page) {
+        return mPageFirstParagraphs[page];
+    }
+
+    public int getPageParagraphCount(final int page) {
+        return mPageFirstParagraphs[page + 1] - mPageFirstParagraphs[page];
+    }
+
+    public int getPageFirstLine(final int page) {
+        return mParagraphFirstLines[mPageFirstParagraphs[page]];
+    }
+
+    public int getPageLineCount(final int page) {
+        return mParagraphFirstLines[mPageFirstParagraphs[page + 1]] - getPageFirstLine(page);
+    }
+
+    public int getPageFirstWord(final int page) {
+        return mLineFirstWords[getPageFirstLine(page)];
+    }
+
+    public int getPageWordCount(final int page) {
+        return mLineFirstWords[getPageFirstLine(page) + getPageLineCount(page)] - getPageFirstWord(page);
+    }
+
+    public List<Region> getPageRegions(final int page) {
+        return mPageRegions.get(page);
+    }
+
+    public int getParagraphCount() {
+        return mParagraphFirstLines.length - 1;
+    }
+
+    public int getParagraphFirstLine(final int paragraph) {
+        return mParagraphFirstLines[paragraph];
+    }
+
+    public int getParagraphLineCount(final int paragraph) {
+        return mParagraphFirstLines[paragraph + 1] - mParagraphFirstLines[paragraph];
+    }
+
+    public Box getParagraphBox(final int paragraph) {
+        return createBox(mParagraphBoxes, paragraph, getPageNumber(findPageOfParagraph(paragraph)));
+    }
+
+    public int getLineCount() {
+        return mLineFirstWords.length - 1;
+    }
+
+    public int getLineFirstWord(final int line) {
+        return mLineFirstWords[line];
+    }
+
+    public int getLineWordCount(final int line) {
+        return mLineFirstWords[line + 1] - mLineFirstWords[line];
+    }
+
+    public Box getLineBox(final int line) {
+        return createBox(mLineBoxes, line, getPageNumber(findPageOfLine(line)));
+    }
+
+    /**
+     * Returns the text of the line's words separated by spaces.
+     */
+    public String getLineText(final int line) {
+        final StringBuilder text = new StringBuilder();
+        for (int word = mLineFirstWords[line]; word < mLineFirstWords[line + 1]; word++) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(mText, mWordTextOffsets[word], getWordLength(word));
+        }
+        return text.toString();
+    }
+
+    public int getWordCount() {
+        return mWordPages.length;
+    }
+
+    /**
+     * Returns the index of the word's page.
+     */
+    public int getWordPage(final int word) {
+        return mWordPages[word];
+    }
+
+    public String getWordText(final int word) {
+        return new String(mText, mWordTextOffsets[word], getWordLength(word));
+    }
+
+    /**
+     * Returns the word's text without copying it.
+     */
+    public CharSequence getWordChars(final int word) {
+        return CharBuffer.wrap(mText, mWordTextOffsets[word], getWordLength(word));
+    }
+
+    public int getWordLength(final int word) {
+        return mWordTextOffsets[word + 1] - mWordTextOffsets[word];
+    }
+
+    public float getWordLeft(final int word) {
+        return mWordBoxes[word * BOX_STRIDE];
+    }
+
+    public float getWordTop(final int word) {
+        return mWordBoxes[word * BOX_STRIDE + 1];
+    }
+
+    public float getWordWidth(final int word) {
+        return mWordBoxes[word * BOX_STRIDE + 2];
+    }
+
+    public float getWordHeight(final int word) {
+        return mWordBoxes[word * BOX_STRIDE + 3];
+    }
+
+    public Box getWordBox(final int word) {
+        return createBox(mWordBoxes, word, mPageNumbers[mWordPages[word]]);
+    }
+
+    public float getWordFontSize(final int word) {
+        return mWordFontSizes[word];
+    }
+
+    public boolean isWordBold(final int word) {
+        return (mWordFlags[word] & FLAG_BOLD) != 0;
+    }
+
+    /**
+     * Returns the word's font family or null, if it is not known.
+     */
+    public String getWordFontFamily(final int word) {
+        final int fontFamily = mWordFontFamilies[word];
+        return fontFamily >= 0 ? mFontFamilies[fontFamily] : null;
+    }
+
+    /**
+     * Returns the indexes of the words whose boxes are completely inside the given box, in reading order.
+     */
+    public int[] findWordsInside(final Box box) {
+        return findWords(box, true);
+    }
+
+    /**
+     * Returns the indexes of the words whose boxes overlap the given box, in reading order.
+     */
+    public int[] findWordsIntersecting(final Box box) {
+        return findWords(box, false);
+    }
+
+    /**
+     * Returns the text of the words inside the given box. Words on the same line are separated by spaces and lines
+     * by line breaks.
+     */
+    public String getTextInside(final Box box) {
+        final int[] words = findWordsInside(box);
+        final StringBuilder text = new StringBuilder();
+        int previousLine = -1;
+        for (final int word : words) {
+            final int line = findLineOfWord(word);
+            if (text.length() > 0) {
+                text.append(line != previousLine ? '\n' : ' ');
+            }
+            text.append(mText, mWordTextOffsets[word], getWordLength(word));
+            previousLine = line;
+        }
+        return text.toString();
+    }
+
+    private int[] findWords(final Box box, final boolean inside) {
+        final int page = findPage(checkNotNull(box).getPageNumber());
+        if (page == -1) {
+            return new int[0];
+        }
+        final double left = box.getLeft();
+        final double top = box.getTop();
+        final double right = left + box.getWidth();
+        final double bottom = top + box.getHeight();
+        final int firstWord = getPageFirstWord(page);
+        final int endWord = firstWord + getPageWordCount(page);
+        int[] words = new int[16];
+        int count = 0;
+        for (int word = firstWord; word < endWord; word++) {
+            final int offset = word * BOX_STRIDE;
+            final float wordLeft = mWordBoxes[offset];
+            final float wordTop = mWordBoxes[offset + 1];
+            final float wordRight = wordLeft + mWordBoxes[offset + 2];
+            final float wordBottom = wordTop + mWordBoxes[offset + 3];
+            final boolean matches = inside
+                    ? wordLeft >= left && wordTop >= top && wordRight <= right && wordBottom <= bottom
+                    : wordLeft < right && wordRight > left && wordTop < bottom && wordBottom > top;
+            if (matches) {
+                if (count == words.length) {
+                    final int[] grownWords = new int[count * 2];
+                    System.arraycopy(words, 0, grownWords, 0, count);
+                    words = grownWords;
+                }
+                words[count++] = word;
+            }
+        }
+        final int[] result = new int[count];
+        System.arraycopy(words, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Returns the index of the line containing the word.
+     */
+    public int findLineOfWord(final int word) {
+        return findRange(mLineFirstWords, word);
+    }
+
+    private int findPageOfLine(final int line) {
+        return findPageOfParagraph(findRange(mParagraphFirstLines, line));
+    }
+
+    private int findPageOfParagraph(final int paragraph) {
+        return findRange(mPageFirstParagraphs, paragraph);
+    }
+
+    /**
+     * Finds the range which contains the element with a binary search in the first indexes of the ranges. Empty
+     * ranges have the same first index as their successor and are skipped.
+     */
+    private static int findRange(final int[] firstIndexes, final int element) {
+        int low = 0;
+        int high = firstIndexes.length - 2;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (firstIndexes[middle] <= element) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private static Box createBox(final float[] boxes, final int index, final int pageNumber) {
+        final int offset = index * BOX_STRIDE;
+        return new Box(pageNumber, boxes[offset], boxes[offset + 1], boxes[offset + 2], boxes[offset + 3]);
+    }
+}
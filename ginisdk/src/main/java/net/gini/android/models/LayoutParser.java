@@ -0,0 +1,370 @@
+package net.gini.android.models;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses the Gini API's layout JSON into a {@link Layout} in a single streaming pass. The values are appended to
+ * growing primitive arrays, so no object is kept per word except for the word's text while it is copied into the
+ * shared text buffer.
+ */
+class LayoutParser {
+
+    private final JsonReader mReader;
+
+    private final IntArray mPageNumbers = new IntArray(4);
+    private final FloatArray mPageSizes = new FloatArray(8);
+    private final IntArray mPageFirstParagraphs = new IntArray(4);
+    private final List<List<Layout.Region>> mPageRegions = new ArrayList<List<Layout.Region>>();
+
+    private final FloatArray mParagraphBoxes = new FloatArray(256);
+    private final IntArray mParagraphFirstLines = new IntArray(64);
+
+    private final FloatArray mLineBoxes = new FloatArray(1024);
+    private final IntArray mLineFirstWords = new IntArray(256);
+
+    private final FloatArray mWordBoxes = new FloatArray(4096);
+    private final IntArray mWordPages = new IntArray(1024);
+    private final IntArray mWordTextOffsets = new IntArray(1024);
+    private final FloatArray mWordFontSizes = new FloatArray(1024);
+    private final ByteArray mWordFlags = new ByteArray(1024);
+    private final IntArray mWordFontFamilies = new IntArray(1024);
+    private final Map<String, Integer> mFontFamilyIndexes = new HashMap<String, Integer>();
+    private final List<String> mFontFamilies = new ArrayList<String>();
+
+    private char[] mText = new char[8192];
+    private int mTextLength;
+
+    LayoutParser(final Reader reader) {
+        mReader = new JsonReader(reader);
+    }
+
+    Layout parse() throws IOException {
+        try {
+            mReader.beginObject();
+            while (mReader.hasNext()) {
+                if (mReader.nextName().equals("pages")) {
+                    mReader.beginArray();
+                    while (mReader.hasNext()) {
+                        parsePage();
+                    }
+                    mReader.endArray();
+                } else {
+                    mReader.skipValue();
+                }
+            }
+            mReader.endObject();
+        } finally {
+            mReader.close();
+        }
+
+        mPageFirstParagraphs.add(mParagraphFirstLines.size());
+        mParagraphFirstLines.add(mLineFirstWords.size());
+        mLineFirstWords.add(mWordPages.size());
+        mWordTextOffsets.add(mTextLength);
+        final char[] text = new char[mTextLength];
+        System.arraycopy(mText, 0, text, 0, mTextLength);
+        return new Layout(mPageNumbers.toArray(), mPageSizes.toArray(), mPageFirstParagraphs.toArray(),
+                Collections.unmodifiableList(mPageRegions), mParagraphBoxes.toArray(),
+                mParagraphFirstLines.toArray(), mLineBoxes.toArray(), mLineFirstWords.toArray(),
+                mWordBoxes.toArray(), mWordPages.toArray(), mWordTextOffsets.toArray(), text,
+                mWordFontSizes.toArray(), mWordFlags.toArray(), mWordFontFamilies.toArray(),
+                mFontFamilies.toArray(new String[mFontFamilies.size()]));
+    }
+
+    private void parsePage() throws IOException {
+        final int page = mPageNumbers.size();
+        int pageNumber = page + 1;
+        float width = 0;
+        float height = 0;
+        List<Layout.Region> regions = Collections.emptyList();
+        mPageFirstParagraphs.add(mParagraphFirstLines.size());
+
+        mReader.beginObject();
+        while (mReader.hasNext()) {
+            final String name = mReader.nextName();
+            if (name.equals("number")) {
+                pageNumber = mReader.nextInt();
+            } else if (name.equals("sizeX")) {
+                width = (float) mReader.nextDouble();
+            } else if (name.equals("sizeY")) {
+                height = (float) mReader.nextDouble();
+            } else if (name.equals("textZones")) {
+                mReader.beginArray();
+                while (mReader.hasNext()) {
+                    parseTextZone(page);
+                }
+                mReader.endArray();
+            } else if (name.equals("regions")) {
+                regions = new ArrayList<Layout.Region>();
+                mReader.beginArray();
+                while (mReader.hasNext()) {
+                    // The page number is set when the page is complete, since it may follow the regions.
+                    regions.add(parseRegion());
+                }
+                mReader.endArray();
+            } else {
+                mReader.skipValue();
+            }
+        }
+        mReader.endObject();
+
+        mPageNumbers.add(pageNumber);
+        mPageSizes.add(width);
+        mPageSizes.add(height);
+        final List<Layout.Region> pageRegions = new ArrayList<Layout.Region>(regions.size());
+        for (final Layout.Region region : regions) {
+            final Box box = region.getBox();
+            pageRegions.add(new Layout.Region(new Box(pageNumber, box.getLeft(), box.getTop(), box.getWidth(),
+                    box.getHeight()), region.getType()));
+        }
+        mPageRegions.add(Collections.unmodifiableList(pageRegions));
+    }
+
+    private void parseTextZone(final int page) throws IOException {
+        mReader.beginObject();
+        while (mReader.hasNext()) {
+            if (mReader.nextName().equals("paragraphs")) {
+                mReader.beginArray();
+                while (mReader.hasNext()) {
+                    parseParagraph(page);
+                }
+                mReader.endArray();
+            } else {
+                mReader.skipValue();
+            }
+        }
+        mReader.endObject();
+    }
+
+    private void parseParagraph(final int page) throws IOException {
+        final float[] box = new float[Layout.BOX_STRIDE];
+        mParagraphFirstLines.add(mLineFirstWords.size());
+        mReader.beginObject();
+        while (mReader.hasNext()) {
+            final String name = mReader.nextName();
+            if (name.equals("lines")) {
+                mReader.beginArray();
+                while (mReader.hasNext()) {
+                    parseLine(page);
+                }
+                mReader.endArray();
+            } else if (!parseBoxValue(name, box)) {
+                mReader.skipValue();
+            }
+        }
+        mReader.endObject();
+        mParagraphBoxes.addAll(box);
+    }
+
+    private void parseLine(final int page) throws IOException {
+        final float[] box = new float[Layout.BOX_STRIDE];
+        mLineFirstWords.add(mWordPages.size());
+        mReader.beginObject();
+        while (mReader.hasNext()) {
+            final String name = mReader.nextName();
+            if (name.equals("wds")) {
+                mReader.beginArray();
+                while (mReader.hasNext()) {
+                    parseWord(page);
+                }
+                mReader.endArray();
+            } else if (!parseBoxValue(name, box)) {
+                mReader.skipValue();
+            }
+        }
+        mReader.endObject();
+        mLineBoxes.addAll(box);
+    }
+
+    private void parseWord(final int page) throws IOException {
+        final float[] box = new float[Layout.BOX_STRIDE];
+        float fontSize = 0;
+        byte flags = 0;
+        int fontFamily = -1;
+        mWordTextOffsets.add(mTextLength);
+        mReader.beginObject();
+        while (mReader.hasNext()) {
+            final String name = mReader.nextName();
+            if (name.equals("text")) {
+                appendText(mReader.nextString());
+            } else if (name.equals("fontSize")) {
+                fontSize = (float) mReader.nextDouble();
+            } else if (name.equals("bold")) {
+                if (mReader.nextBoolean()) {
+                    flags |= Layout.FLAG_BOLD;
+                }
+            } else if (name.equals("fontFamily") && mReader.peek() == JsonToken.STRING) {
+                fontFamily = getFontFamilyIndex(mReader.nextString());
+            } else if (!parseBoxValue(name, box)) {
+                mReader.skipValue();
+            }
+        }
+        mReader.endObject();
+        mWordBoxes.addAll(box);
+        mWordPages.add(page);
+        mWordFontSizes.add(fontSize);
+        mWordFlags.add(flags);
+        mWordFontFamilies.add(fontFamily);
+    }
+
+    private Layout.Region parseRegion() throws IOException {
+        final float[] box = new float[Layout.BOX_STRIDE];
+        String type = null;
+        mReader.beginObject();
+        while (mReader.hasNext()) {
+            final String name = mReader.nextName();
+            if (name.equals("type")) {
+                type = mReader.nextString();
+            } else if (!parseBoxValue(name, box)) {
+                mReader.skipValue();
+            }
+        }
+        mReader.endObject();
+        return new Layout.Region(new Box(0, box[0], box[1], box[2], box[3]), type);
+    }
+
+    /**
+     * Reads the value, if the name is one of the box's coordinates "l", "t", "w" or "h".
+     *
+     * @return True, if the value was read.
+     */
+    private boolean parseBoxValue(final String name, final float[] box) throws IOException {
+        if (name.length() != 1) {
+            return false;
+        }
+        final int index;
+        switch (name.charAt(0)) {
+            case 'l':
+                index = 0;
+                break;
+            case 't':
+                index = 1;
+                break;
+            case 'w':
+                index = 2;
+                break;
+            case 'h':
+                index = 3;
+                break;
+            default:
+                return false;
+        }
+        box[index] = (float) mReader.nextDouble();
+        return true;
+    }
+
+    private void appendText(final String text) {
+        final int length = text.length();
+        if (mTextLength + length > mText.length) {
+            final char[] grownText = new char[Math.max(mText.length * 2, mTextLength + length)];
+            System.arraycopy(mText, 0, grownText, 0, mTextLength);
+            mText = grownText;
+        }
+        text.getChars(0, length, mText, mTextLength);
+        mTextLength += length;
+    }
+
+    private int getFontFamilyIndex(final String fontFamily) {
+        Integer index = mFontFamilyIndexes.get(fontFamily);
+        if (index == null) {
+            index = mFontFamilies.size();
+            mFontFamilies.add(fontFamily);
+            mFontFamilyIndexes.put(fontFamily, index);
+        }
+        return index;
+    }
+
+    private static class IntArray {
+
+        private int[] mValues;
+        private int mSize;
+
+        IntArray(final int initialCapacity) {
+            mValues = new int[initialCapacity];
+        }
+
+        void add(final int value) {
+            if (mSize == mValues.length) {
+                final int[] grownValues = new int[mSize * 2];
+                System.arraycopy(mValues, 0, grownValues, 0, mSize);
+                mValues = grownValues;
+            }
+            mValues[mSize++] = value;
+        }
+
+        int size() {
+            return mSize;
+        }
+
+        int[] toArray() {
+            final int[] values = new int[mSize];
+            System.arraycopy(mValues, 0, values, 0, mSize);
+            return values;
+        }
+    }
+
+    private static class FloatArray {
+
+        private float[] mValues;
+        private int mSize;
+
+        FloatArray(final int initialCapacity) {
+            mValues = new float[initialCapacity];
+        }
+
+        void add(final float value) {
+            if (mSize == mValues.length) {
+                final float[] grownValues = new float[mSize * 2];
+                System.arraycopy(mValues, 0, grownValues, 0, mSize);
+                mValues = grownValues;
+            }
+            mValues[mSize++] = value;
+        }
+
+        void addAll(final float[] values) {
+            for (final float value : values) {
+                add(value);
+            }
+        }
+
+        float[] toArray() {
+            final float[] values = new float[mSize];
+            System.arraycopy(mValues, 0, values, 0, mSize);
+            return values;
+        }
+    }
+
+    private static class ByteArray {
+
+        private byte[] mValues;
+        private int mSize;
+
+        ByteArray(final int initialCapacity) {
+            mValues = new byte[initialCapacity];
+        }
+
+        void add(final byte value) {
+            if (mSize == mValues.length) {
+                final byte[] grownValues = new byte[mSize * 2];
+                System.arraycopy(mValues, 0, grownValues, 0, mSize);
+                mValues = grownValues;
+            }
+            mValues[mSize++] = value;
+        }
+
+        byte[] toArray() {
+            final byte[] values = new byte[mSize];
+            System.arraycopy(mValues, 0, values, 0, mSize);
+            return values;
+        }
+    }
+}
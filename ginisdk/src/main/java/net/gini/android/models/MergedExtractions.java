@@ -0,0 +1,84 @@
+package net.gini.android.models;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * The standard and the incubator extractions of a document merged into one map, as returned by
+ * {@link net.gini.android.DocumentTaskManager#getMergedExtractions(Document)}.
+ * </p>
+ * <p>
+ * If both contain an extraction with the same name, the standard extraction is used. The source of every merged
+ * extraction can be looked up with {@link #getSource(String)}, and both sets are still available separately.
+ * </p>
+ */
+public class MergedExtractions {
+
+    /**
+     * The set of extractions an extraction was taken from.
+     */
+    public enum Source {
+        STANDARD,
+        INCUBATOR
+    }
+
+    private final Map<String, SpecificExtraction> mStandardExtractions;
+    private final Map<String, SpecificExtraction> mIncubatorExtractions;
+    private final Map<String, SpecificExtraction> mExtractions;
+    private final Map<String, Source> mSources;
+
+    public MergedExtractions(final Map<String, SpecificExtraction> standardExtractions,
+                             final Map<String, SpecificExtraction> incubatorExtractions) {
+        mStandardExtractions = Collections.unmodifiableMap(checkNotNull(standardExtractions));
+        mIncubatorExtractions = Collections.unmodifiableMap(checkNotNull(incubatorExtractions));
+        final Map<String, SpecificExtraction> extractions = new HashMap<String, SpecificExtraction>(
+                standardExtractions.size() + incubatorExtractions.size());
+        final Map<String, Source> sources = new HashMap<String, Source>(
+                standardExtractions.size() + incubatorExtractions.size());
+        for (final Map.Entry<String, SpecificExtraction> entry : incubatorExtractions.entrySet()) {
+            extractions.put(entry.getKey(), entry.getValue());
+            sources.put(entry.getKey(), Source.INCUBATOR);
+        }
+        for (final Map.Entry<String, SpecificExtraction> entry : standardExtractions.entrySet()) {
+            extractions.put(entry.getKey(), entry.getValue());
+            sources.put(entry.getKey(), Source.STANDARD);
+        }
+        mExtractions = Collections.unmodifiableMap(extractions);
+        mSources = Collections.unmodifiableMap(sources);
+    }
+
+    /**
+     * Returns the merged extractions by their names.
+     */
+    public Map<String, SpecificExtraction> getExtractions() {
+        return mExtractions;
+    }
+
+    @Nullable
+    public SpecificExtraction get(final String name) {
+        return mExtractions.get(name);
+    }
+
+    /**
+     * Returns the set from which the merged extraction with the name was taken or null, if there is no such
+     * extraction.
+     */
+    @Nullable
+    public Source getSource(final String name) {
+        return mSources.get(name);
+    }
+
+    public Map<String, SpecificExtraction> getStandardExtractions() {
+        return mStandardExtractions;
+    }
+
+    public Map<String, SpecificExtraction> getIncubatorExtractions() {
+        return mIncubatorExtractions;
+    }
+}
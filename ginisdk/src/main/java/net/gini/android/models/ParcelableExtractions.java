@@ -0,0 +1,220 @@
+package net.gini.android.models;
+
+import android.os.BadParcelableException;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * Wraps the specific extractions of a document, as returned by
+ * {@link net.gini.android.DocumentTaskManager#getExtractions(Document)}, to pass them in a single compact parcel, e.g.
+ * to another activity:
+ * </p>
+ * <pre>
+ * intent.putExtra(EXTRA_EXTRACTIONS, new ParcelableExtractions(extractions));
+ * ...
+ * final ParcelableExtractions parcelableExtractions = intent.getParcelableExtra(EXTRA_EXTRACTIONS);
+ * final Map&lt;String, SpecificExtraction&gt; extractions = parcelableExtractions.getExtractions();
+ * </pre>
+ * <p>
+ * All strings are written once into a table and referenced by their index, so the entity names and names repeated by
+ * the extractions and their candidates don't increase the parcel's size. The boxes are written without class names.
+ * Candidate lists shared by several extractions, like the amounts of an API response, are written once and stay shared
+ * by the extractions read from the parcel. The parcel starts with a schema version and parcels with an unknown version
+ * are rejected.
+ * </p>
+ */
+public class ParcelableExtractions implements Parcelable {
+
+    static final int SCHEMA_VERSION = 2;
+
+    private final Map<String, SpecificExtraction> mExtractions;
+
+    public ParcelableExtractions(final Map<String, SpecificExtraction> extractions) {
+        mExtractions = checkNotNull(extractions);
+    }
+
+    /**
+     * Returns the extractions. The extractions read from a parcel keep the order in which they were written.
+     */
+    public Map<String, SpecificExtraction> getExtractions() {
+        return mExtractions;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(final Parcel dest, final int flags) {
+        // The extractions and their states are collected first, so the string table contains all values even if the
+        // extractions are changed meanwhile. Candidate lists shared by several extractions are collected once.
+        final StringTable strings = new StringTable();
+        final List<String> keys = new ArrayList<String>(mExtractions.size());
+        final List<String> names = new ArrayList<String>(mExtractions.size());
+        final List<Extraction> extractions = new ArrayList<Extraction>(mExtractions.size());
+        final List<Extraction.State> states = new ArrayList<Extraction.State>(mExtractions.size());
+        final int[] candidateListIndexes = new int[mExtractions.size()];
+        final Map<List<Extraction>, Integer> candidateListIndexesByList =
+                new IdentityHashMap<List<Extraction>, Integer>();
+        final List<Integer> candidateCounts = new ArrayList<Integer>();
+        final List<Extraction> candidates = new ArrayList<Extraction>();
+        final List<Extraction.State> candidateStates = new ArrayList<Extraction.State>();
+        for (final Map.Entry<String, SpecificExtraction> entry : mExtractions.entrySet()) {
+            final SpecificExtraction extraction = entry.getValue();
+            strings.add(entry.getKey());
+            strings.add(extraction.getName());
+            addState(strings, extractions, states, extraction);
+            final List<Extraction> candidateList = extraction.getCandidate();
+            Integer candidateListIndex = candidateListIndexesByList.get(candidateList);
+            if (candidateListIndex == null) {
+                candidateListIndex = candidateCounts.size();
+                candidateListIndexesByList.put(candidateList, candidateListIndex);
+                final List<Extraction> candidateListCopy = new ArrayList<Extraction>(candidateList);
+                for (final Extraction candidate : candidateListCopy) {
+                    addState(strings, candidates, candidateStates, candidate);
+                }
+                candidateCounts.add(candidateListCopy.size());
+            }
+            candidateListIndexes[keys.size()] = candidateListIndex;
+            keys.add(entry.getKey());
+            names.add(extraction.getName());
+        }
+
+        dest.writeInt(SCHEMA_VERSION);
+        strings.writeToParcel(dest);
+        dest.writeInt(candidateCounts.size());
+        int candidateIndex = 0;
+        for (final int candidateCount : candidateCounts) {
+            dest.writeInt(candidateCount);
+            for (int j = 0; j < candidateCount; j++) {
+                writeExtraction(dest, strings, candidates.get(candidateIndex), candidateStates.get(candidateIndex));
+                candidateIndex++;
+            }
+        }
+        dest.writeInt(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            dest.writeInt(strings.indexOf(keys.get(i)));
+            dest.writeInt(strings.indexOf(names.get(i)));
+            writeExtraction(dest, strings, extractions.get(i), states.get(i));
+            dest.writeInt(candidateListIndexes[i]);
+        }
+    }
+
+    private static void addState(final StringTable strings, final List<Extraction> extractions,
+                                 final List<Extraction.State> states, final Extraction extraction) {
+        final Extraction.State state = extraction.getState();
+        strings.add(extraction.getEntity());
+        strings.add(state.mValue);
+        extractions.add(extraction);
+        states.add(state);
+    }
+
+    private static void writeExtraction(final Parcel dest, final StringTable strings, final Extraction extraction,
+                                        final Extraction.State state) {
+        dest.writeInt(strings.indexOf(extraction.getEntity()));
+        dest.writeInt(strings.indexOf(state.mValue));
+        state.writeBoxToParcel(dest);
+        dest.writeInt(state.mIsDirty ? 1 : 0);
+        dest.writeLong(state.mVersion);
+    }
+
+    private static ParcelableExtractions readFromParcel(final Parcel in) {
+        final int schemaVersion = in.readInt();
+        if (schemaVersion != SCHEMA_VERSION) {
+            throw new BadParcelableException("Unsupported extractions parcel version " + schemaVersion);
+        }
+        final String[] strings = StringTable.readFromParcel(in);
+        final int candidateListCount = in.readInt();
+        final List<List<Extraction>> candidateLists = new ArrayList<List<Extraction>>(candidateListCount);
+        for (int i = 0; i < candidateListCount; i++) {
+            final int candidateCount = in.readInt();
+            final List<Extraction> candidates = new ArrayList<Extraction>(candidateCount);
+            for (int j = 0; j < candidateCount; j++) {
+                candidates.add(readExtraction(in, strings));
+            }
+            candidateLists.add(candidates);
+        }
+        final int count = in.readInt();
+        final Map<String, SpecificExtraction> extractions = new LinkedHashMap<String, SpecificExtraction>();
+        for (int i = 0; i < count; i++) {
+            final String key = strings[in.readInt()];
+            final String name = strings[in.readInt()];
+            final String entity = strings[in.readInt()];
+            final String value = strings[in.readInt()];
+            final Box box = Box.readFromParcel(in);
+            final boolean isDirty = in.readInt() != 0;
+            final long version = in.readLong();
+            final List<Extraction> candidates = candidateLists.get(in.readInt());
+            extractions.put(key, new SpecificExtraction(name, value, entity, box, isDirty, version, candidates));
+        }
+        return new ParcelableExtractions(Collections.unmodifiableMap(extractions));
+    }
+
+    private static Extraction readExtraction(final Parcel in, final String[] strings) {
+        final String entity = strings[in.readInt()];
+        final String value = strings[in.readInt()];
+        final Box box = Box.readFromParcel(in);
+        final boolean isDirty = in.readInt() != 0;
+        final long version = in.readLong();
+        return new Extraction(value, entity, box, isDirty, version);
+    }
+
+    public static final Parcelable.Creator<ParcelableExtractions> CREATOR =
+            new Parcelable.Creator<ParcelableExtractions>() {
+
+                public ParcelableExtractions createFromParcel(final Parcel in) {
+                    return readFromParcel(in);
+                }
+
+                public ParcelableExtractions[] newArray(int size) {
+                    return new ParcelableExtractions[size];
+                }
+            };
+
+    /**
+     * The distinct strings of a parcel in the order in which they were added.
+     */
+    private static final class StringTable {
+
+        private final Map<String, Integer> mIndexes = new HashMap<String, Integer>();
+        private final List<String> mStrings = new ArrayList<String>();
+
+        void add(final String string) {
+            if (!mIndexes.containsKey(string)) {
+                mIndexes.put(string, mStrings.size());
+                mStrings.add(string);
+            }
+        }
+
+        int indexOf(final String string) {
+            return mIndexes.get(string);
+        }
+
+        void writeToParcel(final Parcel dest) {
+            dest.writeInt(mStrings.size());
+            for (final String string : mStrings) {
+                dest.writeString(string);
+            }
+        }
+
+        static String[] readFromParcel(final Parcel in) {
+            final String[] strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = in.readString();
+            }
+            return strings;
+        }
+    }
+}
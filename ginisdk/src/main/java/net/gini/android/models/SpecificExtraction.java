@@ -35,6 +35,35 @@ public class SpecificExtraction extends Extraction {
         mCandidates = checkNotNull(candidates);
     }
 
+    /**
+     * Value object for a specific extraction from the Gini API whose box is stored in a box array which is shared by
+     * all extractions of a response.
+     *
+     * @param name       The specific extraction's name, e.g. "amountToPay".
+     * @param value      The extraction's value. Changing this value marks the extraction as dirty.
+     * @param entity     The extraction's entity.
+     * @param boxes      The array which contains the box where the extraction is found.
+     * @param boxIndex   The index of the extraction's box in the array.
+     * @param candidates A list containing other candidates for this specific extraction. Candidates
+     *                   are of the same entity as the found extraction.
+     */
+    public SpecificExtraction(final String name, final String value, final String entity, final BoxArray boxes,
+                              final int boxIndex, final List<Extraction> candidates) {
+        super(value, entity, boxes, boxIndex);
+        mName = checkNotNull(name);
+        mCandidates = checkNotNull(candidates);
+    }
+
+    /**
+     * Creates a specific extraction with the state read by {@link ParcelableExtractions}.
+     */
+    SpecificExtraction(final String name, final String value, final String entity, @Nullable final Box box,
+                       final boolean isDirty, final long version, final List<Extraction> candidates) {
+        super(value, entity, box, isDirty, version);
+        mName = checkNotNull(name);
+        mCandidates = checkNotNull(candidates);
+    }
+
     /**
      * Private constructor to create an extraction from a parceled extraction.
      */
@@ -0,0 +1,103 @@
+package net.gini.android.requests;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.RetryPolicy;
+
+import net.gini.android.MediaTypes;
+import net.gini.android.Utils;
+import net.gini.android.authorization.Session;
+
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A GET request which sends the validators of a previous response in the If-None-Match and If-Modified-Since headers.
+ * A 304 Not Modified response resolves to {@link ConditionalJsonResponse#notModified()} without reading a body.
+ * <p>
+ * The request bypasses Volley's cache, since the caller keeps the validators and the parsed previous response.
+ */
+public class BearerConditionalJsonRequest extends Request<ConditionalJsonResponse> {
+
+    public static final String ETAG_HEADER = "ETag";
+    public static final String LAST_MODIFIED_HEADER = "Last-Modified";
+    public static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+    public static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+
+    private final Session mSession;
+    private final String mETag;
+    private final String mLastModified;
+    private final Response.Listener<ConditionalJsonResponse> mListener;
+
+    public BearerConditionalJsonRequest(String url, Session session, @Nullable String eTag,
+                                        @Nullable String lastModified,
+                                        Response.Listener<ConditionalJsonResponse> listener,
+                                        Response.ErrorListener errorListener, RetryPolicy retryPolicy) {
+        super(Method.GET, url, errorListener);
+        setRetryPolicy(retryPolicy);
+        setShouldCache(false);
+        mSession = session;
+        mETag = eTag;
+        mLastModified = lastModified;
+        mListener = listener;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        HashMap<String, String> headers = new HashMap<String, String>();
+        headers.put("Accept", String.format("%s, %s", MediaTypes.APPLICATION_JSON, MediaTypes.GINI_JSON_V1));
+        headers.put("Authorization", "BEARER " + mSession.getAccessToken());
+        headers.put(ContentEncoding.ACCEPT_ENCODING_HEADER, ContentEncoding.GZIP);
+        if (mETag != null) {
+            headers.put(IF_NONE_MATCH_HEADER, mETag);
+        }
+        if (mLastModified != null) {
+            headers.put(IF_MODIFIED_SINCE_HEADER, mLastModified);
+        }
+        return headers;
+    }
+
+    @Override
+    protected Response<ConditionalJsonResponse> parseNetworkResponse(NetworkResponse response) {
+        if (response.statusCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            return Response.success(ConditionalJsonResponse.notModified(), null);
+        }
+        try {
+            // The Gini API always uses UTF-8.
+            final JSONObject json = new JSONObject(ContentEncoding.readBody(response, Utils.CHARSET_UTF8));
+            return Response.success(new ConditionalJsonResponse(json, getHeader(response, ETAG_HEADER),
+                    getHeader(response, LAST_MODIFIED_HEADER)), null);
+        } catch (IOException e) {
+            return Response.error(new ParseError(e));
+        } catch (JSONException e) {
+            return Response.error(new ParseError(e));
+        }
+    }
+
+    @Override
+    protected void deliverResponse(ConditionalJsonResponse response) {
+        mListener.onResponse(response);
+    }
+
+    @Nullable
+    static String getHeader(final NetworkResponse response, final String name) {
+        if (response.headers == null) {
+            return null;
+        }
+        // Volley keeps the case of the header names as sent by the server.
+        for (final Map.Entry<String, String> header : response.headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey())) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,133 @@
+package net.gini.android.requests;
+
+import android.net.Uri;
+
+import com.android.volley.Response;
+import com.android.volley.RetryPolicy;
+
+import net.gini.android.MediaTypes;
+import net.gini.android.authorization.Session;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Uploads a file like the {@link BearerUploadRequest} uploads a byte array. When it is performed by an {@link
+ * UploadHurlStack}, the file is streamed to the connection. Other stacks receive the whole file as the request's body,
+ * which is only possible for files of at most {@link #MAX_BUFFERED_BODY_LENGTH} bytes.
+ */
+public class BearerFileUploadRequest extends BearerLocationRequest implements FileUploadRequest {
+
+    /**
+     * The maximal length of a file which is read into memory for stacks which don't stream the file.
+     */
+    public static final int MAX_BUFFERED_BODY_LENGTH = 64 * 1024 * 1024;
+
+    private static final byte[] NO_BODY = new byte[0];
+
+    private final File mUploadFile;
+    private final long mUploadLength;
+    private final String mContentType;
+    private final String mAccessToken;
+    private final UploadProgressListener mProgressListener;
+
+    public BearerFileUploadRequest(int method, String url, File uploadFile, String contentType,
+                                   final Session session,
+                                   Response.Listener<Uri> listener,
+                                   Response.ErrorListener errorListener,
+                                   RetryPolicy retryPolicy,
+                                   @Nullable UploadProgressListener progressListener) {
+        super(method, url, null, session, listener, errorListener, retryPolicy);
+
+        mUploadFile = uploadFile;
+        mUploadLength = uploadFile.length();
+        mContentType = contentType;
+        mAccessToken = session.getAccessToken();
+        mProgressListener = progressListener;
+    }
+
+    /**
+     * Returns an empty body if the file is streamed by the connection. Volley only writes the body if it isn't null,
+     * so the empty body lets the connection write the file instead.
+     *
+     * @throws IllegalStateException If the file has to be read into memory, but is larger than {@link
+     *                               #MAX_BUFFERED_BODY_LENGTH} or can't be read.
+     */
+    @Override
+    public byte[] getBody() {
+        if (UploadHurlStack.isPerformedByCurrentThread(this)) {
+            return NO_BODY;
+        }
+        return readFile(mUploadFile, mUploadLength);
+    }
+
+    /**
+     * Reads the file for stacks which don't stream it.
+     *
+     * @throws IllegalStateException If the file is larger than {@link #MAX_BUFFERED_BODY_LENGTH} or can't be read.
+     */
+    static byte[] readFile(final File file, final long length) {
+        if (length > MAX_BUFFERED_BODY_LENGTH) {
+            throw new IllegalStateException("The document " + file + " has " + length
+                    + " bytes, but at most " + MAX_BUFFERED_BODY_LENGTH + " bytes can be uploaded without streaming."
+                    + " Use an UploadHurlStack to stream larger documents.");
+        }
+        try {
+            return readFully(file, length);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read the document " + file, e);
+        }
+    }
+
+    private static byte[] readFully(final File file, final long length) throws IOException {
+        final byte[] data = new byte[(int) length];
+        final FileInputStream inputStream = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < data.length) {
+                final int read = inputStream.read(data, offset, data.length - offset);
+                if (read == -1) {
+                    throw new IOException("Unexpected end of the document " + file);
+                }
+                offset += read;
+            }
+        } finally {
+            inputStream.close();
+        }
+        return data;
+    }
+
+    @Override
+    public File getUploadFile() {
+        return mUploadFile;
+    }
+
+    @Override
+    public long getUploadLength() {
+        return mUploadLength;
+    }
+
+    @Nullable
+    @Override
+    public UploadProgressListener getUploadProgressListener() {
+        return mProgressListener;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        HashMap<String, String> headers = new HashMap<String, String>();
+        headers.put("Accept", String.format("%s, %s", MediaTypes.APPLICATION_JSON, MediaTypes.GINI_JSON_V1));
+        headers.put("Authorization", "BEARER " + mAccessToken);
+        return headers;
+    }
+
+    @Override
+    public String getBodyContentType() {
+        return mContentType;
+    }
+}
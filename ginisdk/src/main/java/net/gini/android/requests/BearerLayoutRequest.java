@@ -0,0 +1,64 @@
+package net.gini.android.requests;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.RetryPolicy;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+import net.gini.android.MediaTypes;
+import net.gini.android.Utils;
+import net.gini.android.authorization.Session;
+import net.gini.android.models.Layout;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Requests the layout of a document and parses the response directly from the (decompressed) body into a
+ * {@link Layout}, without creating a string or a JSON object tree of the whole response.
+ */
+public class BearerLayoutRequest extends Request<Layout> {
+    private final Session mSession;
+    private final Response.Listener<Layout> mListener;
+
+    public BearerLayoutRequest(String url, Session session, Response.Listener<Layout> listener,
+                               Response.ErrorListener errorListener, RetryPolicy retryPolicy) {
+        super(Method.GET, url, errorListener);
+        setRetryPolicy(retryPolicy);
+        mSession = session;
+        mListener = listener;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        HashMap<String, String> headers = new HashMap<String, String>();
+        headers.put("Accept", String.format("%s, %s", MediaTypes.APPLICATION_JSON, MediaTypes.GINI_JSON_V1));
+        headers.put("Authorization", "BEARER " + mSession.getAccessToken());
+        headers.put(ContentEncoding.ACCEPT_ENCODING_HEADER, ContentEncoding.GZIP);
+        return headers;
+    }
+
+    @Override
+    protected Response<Layout> parseNetworkResponse(NetworkResponse response) {
+        try {
+            // The Gini API always uses UTF-8.
+            final Layout layout = Layout.fromApiResponse(
+                    new InputStreamReader(ContentEncoding.openBody(response), Utils.CHARSET_UTF8));
+            return Response.success(layout, HttpHeaderParser.parseCacheHeaders(response));
+        } catch (IOException e) {
+            return Response.error(new ParseError(e));
+        } catch (RuntimeException e) {
+            // The JSON reader throws IllegalStateExceptions and NumberFormatExceptions for unexpected structures.
+            return Response.error(new ParseError(e));
+        }
+    }
+
+    @Override
+    protected void deliverResponse(Layout response) {
+        mListener.onResponse(response);
+    }
+}
@@ -8,25 +8,41 @@ import com.android.volley.RetryPolicy;
 import net.gini.android.MediaTypes;
 import net.gini.android.authorization.Session;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.util.HashMap;
 import java.util.Map;
 
 
-public class BearerUploadRequest extends BearerLocationRequest{
-    private final byte[] mUploadData;
+public class BearerUploadRequest extends BearerLocationRequest implements UploadRequest {
+    // Released when the request is cancelled, so an abandoned upload does not keep the document in memory.
+    private volatile byte[] mUploadData;
+    private final long mUploadLength;
     private final String mContentType;
     private final String mAccessToken;
+    private final UploadProgressListener mProgressListener;
 
     public BearerUploadRequest(int method, String url, byte[] uploadData, String contentType,
                                final Session session,
                                Response.Listener<Uri> listener,
                                Response.ErrorListener errorListener,
                                RetryPolicy retryPolicy) {
+        this(method, url, uploadData, contentType, session, listener, errorListener, retryPolicy, null);
+    }
+
+    public BearerUploadRequest(int method, String url, byte[] uploadData, String contentType,
+                               final Session session,
+                               Response.Listener<Uri> listener,
+                               Response.ErrorListener errorListener,
+                               RetryPolicy retryPolicy,
+                               @Nullable UploadProgressListener progressListener) {
         super(method, url, null, session, listener, errorListener, retryPolicy);
 
         mUploadData = uploadData;
+        mUploadLength = uploadData.length;
         mContentType = contentType;
         mAccessToken = session.getAccessToken();
+        mProgressListener = progressListener;
     }
 
     @Override
@@ -34,6 +50,23 @@ public class BearerUploadRequest extends BearerLocationRequest{
         return mUploadData;
     }
 
+    @Override
+    public long getUploadLength() {
+        return mUploadLength;
+    }
+
+    @Nullable
+    @Override
+    public UploadProgressListener getUploadProgressListener() {
+        return mProgressListener;
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        mUploadData = null;
+    }
+
     @Override
     public Map<String, String> getHeaders() {
         HashMap<String, String> headers = new HashMap<String, String>();
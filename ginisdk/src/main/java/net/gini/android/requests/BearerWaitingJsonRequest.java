@@ -0,0 +1,124 @@
+package net.gini.android.requests;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.RetryPolicy;
+import com.android.volley.VolleyError;
+
+import net.gini.android.MediaTypes;
+import net.gini.android.Utils;
+import net.gini.android.authorization.Session;
+
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A GET request which asks the server with a {@code Prefer: wait=<seconds>} header (RFC 7240) to hold the request
+ * until the resource changes or the wait time expires. A server which honours the preference confirms it with a
+ * Preference-Applied header, which is reported by {@link WaitingJsonResponse#isWaitApplied()}.
+ * <p>
+ * The socket timeout of the retry policy is extended by the wait time, so a held request doesn't time out early.
+ */
+public class BearerWaitingJsonRequest extends Request<WaitingJsonResponse> {
+
+    public static final String PREFER_HEADER = "Prefer";
+    public static final String PREFERENCE_APPLIED_HEADER = "Preference-Applied";
+
+    private final Session mSession;
+    private final int mWaitSeconds;
+    private final Response.Listener<WaitingJsonResponse> mListener;
+
+    public BearerWaitingJsonRequest(String url, Session session, int waitSeconds,
+                                    Response.Listener<WaitingJsonResponse> listener,
+                                    Response.ErrorListener errorListener, RetryPolicy retryPolicy) {
+        super(Method.GET, url, errorListener);
+        if (waitSeconds <= 0) {
+            throw new IllegalArgumentException("waitSeconds must be greater than 0");
+        }
+        setRetryPolicy(new WaitingRetryPolicy(retryPolicy, waitSeconds * 1000));
+        setShouldCache(false);
+        mSession = session;
+        mWaitSeconds = waitSeconds;
+        mListener = listener;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        HashMap<String, String> headers = new HashMap<String, String>();
+        headers.put("Accept", String.format("%s, %s", MediaTypes.APPLICATION_JSON, MediaTypes.GINI_JSON_V1));
+        headers.put("Authorization", "BEARER " + mSession.getAccessToken());
+        headers.put(ContentEncoding.ACCEPT_ENCODING_HEADER, ContentEncoding.GZIP);
+        headers.put(PREFER_HEADER, "wait=" + mWaitSeconds);
+        return headers;
+    }
+
+    @Override
+    protected Response<WaitingJsonResponse> parseNetworkResponse(NetworkResponse response) {
+        try {
+            // The Gini API always uses UTF-8.
+            final JSONObject json = new JSONObject(ContentEncoding.readBody(response, Utils.CHARSET_UTF8));
+            final String preferenceApplied =
+                    BearerConditionalJsonRequest.getHeader(response, PREFERENCE_APPLIED_HEADER);
+            return Response.success(new WaitingJsonResponse(json, isWaitApplied(preferenceApplied)), null);
+        } catch (IOException e) {
+            return Response.error(new ParseError(e));
+        } catch (JSONException e) {
+            return Response.error(new ParseError(e));
+        }
+    }
+
+    @Override
+    protected void deliverResponse(WaitingJsonResponse response) {
+        mListener.onResponse(response);
+    }
+
+    static boolean isWaitApplied(@Nullable final String preferenceApplied) {
+        if (preferenceApplied == null) {
+            return false;
+        }
+        for (final String preference : preferenceApplied.split(",")) {
+            final String name = preference.split("[=;]", 2)[0].trim().toLowerCase(Locale.US);
+            if (name.equals("wait")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the wait time to the timeouts of another retry policy.
+     */
+    private static class WaitingRetryPolicy implements RetryPolicy {
+
+        private final RetryPolicy mRetryPolicy;
+        private final int mWaitMs;
+
+        WaitingRetryPolicy(final RetryPolicy retryPolicy, final int waitMs) {
+            mRetryPolicy = retryPolicy;
+            mWaitMs = waitMs;
+        }
+
+        @Override
+        public int getCurrentTimeout() {
+            return mRetryPolicy.getCurrentTimeout() + mWaitMs;
+        }
+
+        @Override
+        public int getCurrentRetryCount() {
+            return mRetryPolicy.getCurrentRetryCount();
+        }
+
+        @Override
+        public void retry(final VolleyError error) throws VolleyError {
+            mRetryPolicy.retry(error);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package net.gini.android.requests;
+
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONObject;
+
+/**
+ * The response of a conditional GET request: either the JSON body together with the validators of the returned
+ * representation or, if the representation didn't change since the validators sent with the request, only the
+ * information that it was not modified.
+ */
+public class ConditionalJsonResponse {
+
+    private final JSONObject mJson;
+    private final String mETag;
+    private final String mLastModified;
+
+    public ConditionalJsonResponse(@Nullable final JSONObject json, @Nullable final String eTag,
+                                   @Nullable final String lastModified) {
+        mJson = json;
+        mETag = eTag;
+        mLastModified = lastModified;
+    }
+
+    public static ConditionalJsonResponse notModified() {
+        return new ConditionalJsonResponse(null, null, null);
+    }
+
+    /**
+     * Returns true, if the server answered with 304 Not Modified. There is no JSON body in this case.
+     */
+    public boolean isNotModified() {
+        return mJson == null;
+    }
+
+    @Nullable
+    public JSONObject getJson() {
+        return mJson;
+    }
+
+    /**
+     * Returns the value of the response's ETag header or null, if the response had none.
+     */
+    @Nullable
+    public String getETag() {
+        return mETag;
+    }
+
+    /**
+     * Returns the value of the response's Last-Modified header or null, if the response had none.
+     */
+    @Nullable
+    public String getLastModified() {
+        return mLastModified;
+    }
+}
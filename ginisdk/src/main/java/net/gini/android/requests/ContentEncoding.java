@@ -0,0 +1,104 @@
+package net.gini.android.requests;
+
+import com.android.volley.NetworkResponse;
+
+import net.gini.android.transport.Gzip;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * <p>
+ * Helpers for the gzip compression of the bodies of Volley's requests and responses. They adapt the stack-independent
+ * {@link Gzip} helpers of the core module to Volley's {@link NetworkResponse}.
+ * </p>
+ * <p>
+ * Android's HttpURLConnection only decompresses responses transparently if the Accept-Encoding header was not set by
+ * the caller. Requests which set the {@link #ACCEPT_ENCODING_HEADER} explicitly (e.g. to be independent of the HTTP
+ * stack) receive the compressed bytes and have to decompress them with {@link #openBody(NetworkResponse)}.
+ * </p>
+ */
+public final class ContentEncoding {
+
+    public static final String ACCEPT_ENCODING_HEADER = Gzip.ACCEPT_ENCODING_HEADER;
+    public static final String CONTENT_ENCODING_HEADER = Gzip.CONTENT_ENCODING_HEADER;
+    public static final String GZIP = Gzip.GZIP;
+
+    /**
+     * Request bodies smaller than this are not worth compressing, since the gzip header and trailer alone take 18
+     * bytes.
+     */
+    public static final int MIN_COMPRESSION_SIZE = Gzip.MIN_COMPRESSION_SIZE;
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * The upper bound of the initial capacity for decompressed bodies. Larger bodies grow the buffer as they are read.
+     */
+    private static final int MAX_INITIAL_BODY_CAPACITY = 1024 * 1024;
+
+    private ContentEncoding() {
+    }
+
+    /**
+     * Returns true, if the response's body is gzip compressed.
+     */
+    public static boolean isGzipped(final NetworkResponse response) {
+        // Volley keeps the case of the header names as sent by the server, Gzip compares them case-insensitively.
+        return Gzip.isGzipped(response.headers);
+    }
+
+    /**
+     * Opens a stream of the response's body which decompresses the body while it is read, if it is gzip compressed.
+     */
+    public static InputStream openBody(final NetworkResponse response) throws IOException {
+        final InputStream inputStream = new ByteArrayInputStream(response.data != null ? response.data : new byte[0]);
+        if (isGzipped(response)) {
+            return new GZIPInputStream(inputStream, BUFFER_SIZE);
+        }
+        return inputStream;
+    }
+
+    /**
+     * Reads the (decompressed) body of the response as a string.
+     */
+    public static String readBody(final NetworkResponse response, final Charset charset) throws IOException {
+        if (response.data == null) {
+            return "";
+        }
+        if (!isGzipped(response)) {
+            return new String(response.data, charset);
+        }
+        final Reader reader = new InputStreamReader(openBody(response), charset);
+        try {
+            // Compressed JSON usually shrinks by a factor between 5 and 10. Computed with longs to not overflow.
+            final int capacity = (int) Math.min((long) response.data.length * 4, MAX_INITIAL_BODY_CAPACITY);
+            final StringBuilder body = new StringBuilder(capacity);
+            final char[] buffer = new char[BUFFER_SIZE];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                body.append(buffer, 0, read);
+            }
+            return body.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Compresses the given body with gzip.
+     *
+     * @return The compressed body or null, if the body was null.
+     */
+    @Nullable
+    public static byte[] gzip(@Nullable final byte[] body) {
+        return Gzip.compress(body);
+    }
+}
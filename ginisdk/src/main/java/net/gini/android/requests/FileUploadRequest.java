@@ -0,0 +1,12 @@
+package net.gini.android.requests;
+
+import java.io.File;
+
+/**
+ * An {@link UploadRequest} whose body is the content of a file. The {@link UploadHurlStack} streams the file to the
+ * connection in small chunks, so the file is never read into memory as a whole.
+ */
+public interface FileUploadRequest extends UploadRequest {
+
+    File getUploadFile();
+}
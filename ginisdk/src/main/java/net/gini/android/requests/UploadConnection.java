@@ -0,0 +1,459 @@
+package net.gini.android.requests;
+
+import android.os.SystemClock;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.Permission;
+import java.security.Principal;
+import java.security.cert.Certificate;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * <p>
+ * A connection which wraps the connection created by the {@link UploadHurlStack} for an {@link UploadRequest}.
+ * </p>
+ * <p>
+ * The request's body is streamed with a fixed length instead of being buffered by the connection. The body of a
+ * {@link FileUploadRequest} is streamed directly from its file. The number of written bytes is reported to the
+ * request's {@link UploadProgressListener} and the upload is aborted with an {@link InterruptedIOException} as soon
+ * as the request was cancelled.
+ * </p>
+ * <p>
+ * It extends {@link HttpsURLConnection} since Volley casts the connections of https URLs. HTTPS specific methods are
+ * only delegated if the wrapped connection is an HTTPS connection.
+ * </p>
+ */
+class UploadConnection extends HttpsURLConnection {
+
+    /**
+     * The minimal time in milliseconds between two calls of the {@link UploadProgressListener}.
+     */
+    static final long PROGRESS_INTERVAL_MS = 100;
+
+    /**
+     * The body is written in chunks of this size to check for cancellation and report progress in between.
+     */
+    private static final int CHUNK_SIZE = 8 * 1024;
+    /**
+     * Files are mapped in windows of this size to limit the used address space on 32-bit devices.
+     */
+    private static final long MAPPING_SIZE = 8 * 1024 * 1024;
+
+    private final HttpURLConnection mConnection;
+    private final UploadRequest mRequest;
+
+    UploadConnection(final HttpURLConnection connection, final UploadRequest request) {
+        super(connection.getURL());
+        mConnection = connection;
+        mRequest = request;
+    }
+
+    private void checkNotCanceled() throws InterruptedIOException {
+        if (mRequest.isCanceled()) {
+            throw new InterruptedIOException("The upload was cancelled");
+        }
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        checkNotCanceled();
+        final long uploadLength = mRequest.getUploadLength();
+        if (uploadLength <= Integer.MAX_VALUE) {
+            mConnection.setFixedLengthStreamingMode((int) uploadLength);
+        } else {
+            mConnection.setChunkedStreamingMode(0);
+        }
+        final ProgressOutputStream outputStream = new ProgressOutputStream(mConnection.getOutputStream(), uploadLength);
+        if (mRequest instanceof FileUploadRequest) {
+            // Volley writes the request's empty body afterwards and closes the stream.
+            writeFile(((FileUploadRequest) mRequest).getUploadFile(), outputStream);
+        }
+        return outputStream;
+    }
+
+    /**
+     * Writes the file from memory mapped windows, so only one chunk of the file is copied to the heap at a time.
+     */
+    private void writeFile(final File file, final OutputStream outputStream) throws IOException {
+        final FileInputStream inputStream = new FileInputStream(file);
+        try {
+            final FileChannel channel = inputStream.getChannel();
+            final long size = channel.size();
+            if (size != mRequest.getUploadLength()) {
+                throw new IOException("The document " + file + " was changed during the upload");
+            }
+            final byte[] chunk = new byte[CHUNK_SIZE];
+            for (long position = 0; position < size; position += MAPPING_SIZE) {
+                final MappedByteBuffer mapping =
+                        channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPING_SIZE, size - position));
+                while (mapping.hasRemaining()) {
+                    final int length = Math.min(chunk.length, mapping.remaining());
+                    mapping.get(chunk, 0, length);
+                    outputStream.write(chunk, 0, length);
+                }
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    @Override
+    public void connect() throws IOException {
+        checkNotCanceled();
+        mConnection.connect();
+    }
+
+    @Override
+    public int getResponseCode() throws IOException {
+        checkNotCanceled();
+        return mConnection.getResponseCode();
+    }
+
+    @Override
+    public String getResponseMessage() throws IOException {
+        return mConnection.getResponseMessage();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return mConnection.getInputStream();
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return mConnection.getErrorStream();
+    }
+
+    @Override
+    public void disconnect() {
+        mConnection.disconnect();
+    }
+
+    @Override
+    public boolean usingProxy() {
+        return mConnection.usingProxy();
+    }
+
+    @Override
+    public URL getURL() {
+        return mConnection.getURL();
+    }
+
+    @Override
+    public void setRequestMethod(final String method) throws java.net.ProtocolException {
+        mConnection.setRequestMethod(method);
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return mConnection.getRequestMethod();
+    }
+
+    @Override
+    public void setRequestProperty(final String field, final String newValue) {
+        mConnection.setRequestProperty(field, newValue);
+    }
+
+    @Override
+    public void addRequestProperty(final String field, final String newValue) {
+        mConnection.addRequestProperty(field, newValue);
+    }
+
+    @Override
+    public String getRequestProperty(final String field) {
+        return mConnection.getRequestProperty(field);
+    }
+
+    @Override
+    public Map<String, List<String>> getRequestProperties() {
+        return mConnection.getRequestProperties();
+    }
+
+    @Override
+    public void setConnectTimeout(final int timeoutMillis) {
+        mConnection.setConnectTimeout(timeoutMillis);
+    }
+
+    @Override
+    public int getConnectTimeout() {
+        return mConnection.getConnectTimeout();
+    }
+
+    @Override
+    public void setReadTimeout(final int timeoutMillis) {
+        mConnection.setReadTimeout(timeoutMillis);
+    }
+
+    @Override
+    public int getReadTimeout() {
+        return mConnection.getReadTimeout();
+    }
+
+    @Override
+    public void setDoInput(final boolean newValue) {
+        mConnection.setDoInput(newValue);
+    }
+
+    @Override
+    public boolean getDoInput() {
+        return mConnection.getDoInput();
+    }
+
+    @Override
+    public void setDoOutput(final boolean newValue) {
+        mConnection.setDoOutput(newValue);
+    }
+
+    @Override
+    public boolean getDoOutput() {
+        return mConnection.getDoOutput();
+    }
+
+    @Override
+    public void setUseCaches(final boolean newValue) {
+        mConnection.setUseCaches(newValue);
+    }
+
+    @Override
+    public boolean getUseCaches() {
+        return mConnection.getUseCaches();
+    }
+
+    @Override
+    public void setAllowUserInteraction(final boolean newValue) {
+        mConnection.setAllowUserInteraction(newValue);
+    }
+
+    @Override
+    public boolean getAllowUserInteraction() {
+        return mConnection.getAllowUserInteraction();
+    }
+
+    @Override
+    public void setIfModifiedSince(final long newValue) {
+        mConnection.setIfModifiedSince(newValue);
+    }
+
+    @Override
+    public long getIfModifiedSince() {
+        return mConnection.getIfModifiedSince();
+    }
+
+    @Override
+    public void setInstanceFollowRedirects(final boolean followRedirects) {
+        mConnection.setInstanceFollowRedirects(followRedirects);
+    }
+
+    @Override
+    public boolean getInstanceFollowRedirects() {
+        return mConnection.getInstanceFollowRedirects();
+    }
+
+    @Override
+    public void setFixedLengthStreamingMode(final int contentLength) {
+        mConnection.setFixedLengthStreamingMode(contentLength);
+    }
+
+    @Override
+    public void setChunkedStreamingMode(final int chunkLength) {
+        mConnection.setChunkedStreamingMode(chunkLength);
+    }
+
+    @Override
+    public String getHeaderField(final String key) {
+        return mConnection.getHeaderField(key);
+    }
+
+    @Override
+    public String getHeaderField(final int position) {
+        return mConnection.getHeaderField(position);
+    }
+
+    @Override
+    public String getHeaderFieldKey(final int position) {
+        return mConnection.getHeaderFieldKey(position);
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields() {
+        return mConnection.getHeaderFields();
+    }
+
+    @Override
+    public int getHeaderFieldInt(final String field, final int defaultValue) {
+        return mConnection.getHeaderFieldInt(field, defaultValue);
+    }
+
+    @Override
+    public long getHeaderFieldDate(final String field, final long defaultValue) {
+        return mConnection.getHeaderFieldDate(field, defaultValue);
+    }
+
+    @Override
+    public int getContentLength() {
+        return mConnection.getContentLength();
+    }
+
+    @Override
+    public String getContentType() {
+        return mConnection.getContentType();
+    }
+
+    @Override
+    public String getContentEncoding() {
+        return mConnection.getContentEncoding();
+    }
+
+    @Override
+    public long getDate() {
+        return mConnection.getDate();
+    }
+
+    @Override
+    public long getExpiration() {
+        return mConnection.getExpiration();
+    }
+
+    @Override
+    public long getLastModified() {
+        return mConnection.getLastModified();
+    }
+
+    @Override
+    public Object getContent() throws IOException {
+        return mConnection.getContent();
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Object getContent(final Class[] types) throws IOException {
+        return mConnection.getContent(types);
+    }
+
+    @Override
+    public Permission getPermission() throws IOException {
+        return mConnection.getPermission();
+    }
+
+    @Override
+    public String toString() {
+        return mConnection.toString();
+    }
+
+    private HttpsURLConnection getHttpsConnection() {
+        if (!(mConnection instanceof HttpsURLConnection)) {
+            throw new IllegalStateException("Not an HTTPS connection: " + mConnection.getURL());
+        }
+        return (HttpsURLConnection) mConnection;
+    }
+
+    @Override
+    public String getCipherSuite() {
+        return getHttpsConnection().getCipherSuite();
+    }
+
+    @Override
+    public Certificate[] getLocalCertificates() {
+        return getHttpsConnection().getLocalCertificates();
+    }
+
+    @Override
+    public Certificate[] getServerCertificates() throws SSLPeerUnverifiedException {
+        return getHttpsConnection().getServerCertificates();
+    }
+
+    @Override
+    public Principal getPeerPrincipal() throws SSLPeerUnverifiedException {
+        return getHttpsConnection().getPeerPrincipal();
+    }
+
+    @Override
+    public Principal getLocalPrincipal() {
+        return getHttpsConnection().getLocalPrincipal();
+    }
+
+    @Override
+    public void setHostnameVerifier(final HostnameVerifier verifier) {
+        getHttpsConnection().setHostnameVerifier(verifier);
+    }
+
+    @Override
+    public HostnameVerifier getHostnameVerifier() {
+        return getHttpsConnection().getHostnameVerifier();
+    }
+
+    @Override
+    public void setSSLSocketFactory(final SSLSocketFactory socketFactory) {
+        getHttpsConnection().setSSLSocketFactory(socketFactory);
+    }
+
+    @Override
+    public SSLSocketFactory getSSLSocketFactory() {
+        return getHttpsConnection().getSSLSocketFactory();
+    }
+
+    /**
+     * Counts the written bytes, reports them to the request's progress listener and aborts the upload when the
+     * request was cancelled.
+     */
+    private class ProgressOutputStream extends FilterOutputStream {
+
+        private final long mTotalBytes;
+        private long mBytesWritten;
+        private long mLastReportTime;
+
+        ProgressOutputStream(final OutputStream outputStream, final long totalBytes) {
+            super(outputStream);
+            mTotalBytes = totalBytes;
+        }
+
+        @Override
+        public void write(final int oneByte) throws IOException {
+            checkNotCanceled();
+            out.write(oneByte);
+            onBytesWritten(1);
+        }
+
+        @Override
+        public void write(final byte[] buffer, final int offset, final int length) throws IOException {
+            int position = offset;
+            final int end = offset + length;
+            while (position < end) {
+                checkNotCanceled();
+                final int chunkLength = Math.min(CHUNK_SIZE, end - position);
+                out.write(buffer, position, chunkLength);
+                position += chunkLength;
+                onBytesWritten(chunkLength);
+            }
+        }
+
+        private void onBytesWritten(final int count) {
+            mBytesWritten += count;
+            final UploadProgressListener progressListener = mRequest.getUploadProgressListener();
+            if (progressListener == null) {
+                return;
+            }
+            final long now = SystemClock.elapsedRealtime();
+            if (mBytesWritten == mTotalBytes || now - mLastReportTime >= PROGRESS_INTERVAL_MS) {
+                mLastReportTime = now;
+                progressListener.onProgress(mBytesWritten, mTotalBytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package net.gini.android.requests;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Request;
+import com.android.volley.toolbox.HurlStack;
+
+import org.apache.http.HttpResponse;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * A {@link HurlStack} which uses an {@link UploadConnection} for {@link UploadRequest}s. The connection streams the
+ * request's body, reports the upload progress and aborts the upload when the request was cancelled.
+ */
+public class UploadHurlStack extends HurlStack {
+
+    /**
+     * The request which is currently performed by the calling network thread. The {@link #createConnection(URL)}
+     * method does not receive the request, therefore it is handed over with this thread local. A thread performs only
+     * one request at a time, so it is shared by all stacks.
+     */
+    private static final ThreadLocal<Request<?>> CURRENT_REQUEST = new ThreadLocal<Request<?>>();
+
+    public UploadHurlStack() {
+        super();
+    }
+
+    public UploadHurlStack(final UrlRewriter urlRewriter, final SSLSocketFactory sslSocketFactory) {
+        super(urlRewriter, sslSocketFactory);
+    }
+
+    /**
+     * Returns true, if the given request is performed by an upload stack on the calling thread. The body of a {@link
+     * FileUploadRequest} is then streamed from its file by the connection.
+     */
+    static boolean isPerformedByCurrentThread(final Request<?> request) {
+        return CURRENT_REQUEST.get() == request;
+    }
+
+    @Override
+    public HttpResponse performRequest(final Request<?> request, final Map<String, String> additionalHeaders)
+            throws IOException, AuthFailureError {
+        CURRENT_REQUEST.set(request);
+        try {
+            return super.performRequest(request, additionalHeaders);
+        } finally {
+            CURRENT_REQUEST.remove();
+        }
+    }
+
+    @Override
+    protected HttpURLConnection createConnection(final URL url) throws IOException {
+        final HttpURLConnection connection = super.createConnection(url);
+        final Request<?> request = CURRENT_REQUEST.get();
+        if (request instanceof UploadRequest) {
+            return new UploadConnection(connection, (UploadRequest) request);
+        }
+        return connection;
+    }
+}
@@ -0,0 +1,20 @@
+package net.gini.android.requests;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A request which uploads a document. The body of such requests is written by the {@link UploadHurlStack} which
+ * reports the upload's progress and aborts the transfer as soon as the request was cancelled.
+ */
+public interface UploadRequest {
+
+    /**
+     * The size of the request's body in bytes.
+     */
+    long getUploadLength();
+
+    @Nullable
+    UploadProgressListener getUploadProgressListener();
+
+    boolean isCanceled();
+}
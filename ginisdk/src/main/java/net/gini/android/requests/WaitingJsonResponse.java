@@ -0,0 +1,29 @@
+package net.gini.android.requests;
+
+import org.json.JSONObject;
+
+/**
+ * The response of a request which asked the server to wait for a change before answering. Besides the JSON body it
+ * tells whether the server honoured the wait, so a client can fall back to polling if it didn't.
+ */
+public class WaitingJsonResponse {
+
+    private final JSONObject mJson;
+    private final boolean mWaitApplied;
+
+    public WaitingJsonResponse(final JSONObject json, final boolean waitApplied) {
+        mJson = json;
+        mWaitApplied = waitApplied;
+    }
+
+    public JSONObject getJson() {
+        return mJson;
+    }
+
+    /**
+     * Returns true, if the server confirmed with a Preference-Applied header that it waited before answering.
+     */
+    public boolean isWaitApplied() {
+        return mWaitApplied;
+    }
+}
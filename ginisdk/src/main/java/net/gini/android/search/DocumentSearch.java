@@ -0,0 +1,202 @@
+package net.gini.android.search;
+
+import net.gini.android.CancellationHandle;
+import net.gini.android.DocumentPager;
+import net.gini.android.DocumentTaskManager;
+import net.gini.android.SdkExecutors;
+import net.gini.android.models.Document;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import bolts.Continuation;
+import bolts.Task;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * Searches documents in a {@link LocalSearchIndex} and falls back to the Gini API for queries without local results.
+ * </p>
+ * <p>
+ * The documents found by the Gini API are added to the index. To find documents which were created on other devices
+ * or by uploads which didn't retrieve the document, reconcile the index with the Gini API with {@link #reconcile()} or
+ * periodically with {@link #startReconciliation(long)}.
+ * </p>
+ */
+public class DocumentSearch {
+
+    /**
+     * The number of documents which are loaded per request while reconciling.
+     */
+    public static final int RECONCILIATION_PAGE_SIZE = 100;
+
+    private final DocumentTaskManager mDocumentTaskManager;
+    private final LocalSearchIndex mSearchIndex;
+    private final Executor mIoExecutor;
+
+    /**
+     * Stops the periodic reconciliation.
+     */
+    private CancellationHandle mScheduledReconciliation;
+    private Task<Void> mReconciliationTask;
+
+    public DocumentSearch(final DocumentTaskManager documentTaskManager, final LocalSearchIndex searchIndex) {
+        mDocumentTaskManager = checkNotNull(documentTaskManager);
+        mSearchIndex = checkNotNull(searchIndex);
+        mIoExecutor = documentTaskManager.getExecutors().getIoExecutor();
+    }
+
+    /**
+     * Searches the local index. If it has no results, the query is sent to the Gini API.
+     *
+     * @param query The query as entered by the user.
+     * @param limit The maximal number of returned documents.
+     *
+     * @return A task which resolves to the matching documents.
+     */
+    public Task<List<Document>> search(final String query, final int limit) {
+        checkNotNull(query);
+        return searchLocally(query, limit).continueWithTask(new Continuation<List<Document>, Task<List<Document>>>() {
+            @Override
+            public Task<List<Document>> then(Task<List<Document>> task) throws Exception {
+                // A broken index must not break the search.
+                if (!task.isFaulted() && !task.getResult().isEmpty()) {
+                    return task;
+                }
+                return searchRemotely(query, limit);
+            }
+        });
+    }
+
+    /**
+     * Searches only the local index.
+     */
+    public Task<List<Document>> searchLocally(final String query, final int limit) {
+        checkNotNull(query);
+        return Task.call(new Callable<List<Document>>() {
+            @Override
+            public List<Document> call() throws Exception {
+                return mSearchIndex.search(query, limit);
+            }
+        }, mIoExecutor);
+    }
+
+    private Task<List<Document>> searchRemotely(final String query, final int limit) {
+        // The pager is only used for the first page, so it doesn't need to cache more than the prefetched page.
+        final DocumentPager pager = mDocumentTaskManager.searchDocuments(query, null, Math.max(1, limit), 2);
+        return pager.getPage(0).onSuccess(new Continuation<List<Document>, List<Document>>() {
+            @Override
+            public List<Document> then(Task<List<Document>> task) throws Exception {
+                final List<Document> documents = task.getResult();
+                mSearchIndex.indexAll(documents);
+                return documents;
+            }
+        }, mIoExecutor);
+    }
+
+    /**
+     * Loads all documents from the Gini API, adds them to the index and removes the indexed documents which don't
+     * exist anymore. Only documents which were indexed before the reconciliation started are removed, so documents
+     * which are uploaded and indexed in the meantime are kept. If a reconciliation is already running, its task is
+     * returned.
+     *
+     * @return A task which resolves when the index was reconciled.
+     */
+    public synchronized Task<Void> reconcile() {
+        if (mReconciliationTask != null && !mReconciliationTask.isCompleted()) {
+            return mReconciliationTask;
+        }
+        final DocumentPager pager = mDocumentTaskManager.getDocumentPager(RECONCILIATION_PAGE_SIZE, 2);
+        final Set<String> remoteDocumentIds = new HashSet<String>();
+        final Task<Set<String>> indexedDocumentIdsTask = Task.call(new Callable<Set<String>>() {
+            @Override
+            public Set<String> call() throws Exception {
+                return mSearchIndex.getDocumentIds();
+            }
+        }, mIoExecutor);
+        mReconciliationTask = indexedDocumentIdsTask.onSuccessTask(new Continuation<Set<String>, Task<Void>>() {
+            @Override
+            public Task<Void> then(Task<Set<String>> task) throws Exception {
+                return reconcilePage(pager, 0, remoteDocumentIds);
+            }
+        }).onSuccess(new Continuation<Void, Void>() {
+            @Override
+            public Void then(Task<Void> task) throws Exception {
+                final Set<String> removedDocumentIds = indexedDocumentIdsTask.getResult();
+                removedDocumentIds.removeAll(remoteDocumentIds);
+                mSearchIndex.remove(removedDocumentIds);
+                return null;
+            }
+        }, mIoExecutor);
+        return mReconciliationTask;
+    }
+
+    /**
+     * Indexes the page with the given index and continues with the next page, until the last page was indexed. The
+     * pages are requested one after the other without blocking a thread while a page is loaded.
+     */
+    private Task<Void> reconcilePage(final DocumentPager pager, final int pageIndex,
+                                     final Set<String> remoteDocumentIds) {
+        return pager.getPage(pageIndex).onSuccessTask(new Continuation<List<Document>, Task<Void>>() {
+            @Override
+            public Task<Void> then(Task<List<Document>> task) throws Exception {
+                final List<Document> page = task.getResult();
+                for (final Document document : page) {
+                    remoteDocumentIds.add(document.getId());
+                }
+                mSearchIndex.indexAll(page);
+                pager.releasePagesBefore(pageIndex + 1);
+                final int totalCount = pager.getTotalCount();
+                final boolean isLastPage = page.size() < RECONCILIATION_PAGE_SIZE
+                        || (totalCount != DocumentPager.UNKNOWN_TOTAL_COUNT
+                        && (pageIndex + 1) * RECONCILIATION_PAGE_SIZE >= totalCount);
+                if (isLastPage) {
+                    return Task.forResult(null);
+                }
+                return reconcilePage(pager, pageIndex + 1, remoteDocumentIds);
+            }
+        }, mIoExecutor);
+    }
+
+    /**
+     * Reconciles the index now and then periodically, until {@link #stopReconciliation()} is called.
+     *
+     * @param intervalMs The time in milliseconds between the starts of two reconciliations.
+     */
+    public synchronized void startReconciliation(final long intervalMs) {
+        if (intervalMs <= 0) {
+            throw new IllegalArgumentException("intervalMs must be greater than 0");
+        }
+        stopReconciliation();
+        mScheduledReconciliation = new CancellationHandle();
+        reconcilePeriodically(intervalMs, mScheduledReconciliation);
+    }
+
+    /**
+     * Starts a reconciliation and schedules the next one with the shared timer of the {@link SdkExecutors}.
+     */
+    private void reconcilePeriodically(final long intervalMs, final CancellationHandle scheduledReconciliation) {
+        if (scheduledReconciliation.isCancelled()) {
+            return;
+        }
+        reconcile();
+        SdkExecutors.delay(intervalMs, scheduledReconciliation).onSuccess(new Continuation<Void, Void>() {
+            @Override
+            public Void then(Task<Void> task) throws Exception {
+                reconcilePeriodically(intervalMs, scheduledReconciliation);
+                return null;
+            }
+        }, mIoExecutor);
+    }
+
+    public synchronized void stopReconciliation() {
+        if (mScheduledReconciliation != null) {
+            mScheduledReconciliation.cancel();
+            mScheduledReconciliation = null;
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package net.gini.android.search;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import net.gini.android.models.Document;
+import net.gini.android.models.SpecificExtraction;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static net.gini.android.Utils.checkNotNull;
+
+/**
+ * <p>
+ * An on-device full-text index of documents and their extractions, backed by an SQLite FTS4 table. Searching the
+ * index takes a few milliseconds, so it can answer search-as-you-type queries without a request to the Gini API.
+ * </p>
+ * <p>
+ * The index is fed with the documents and extractions which the app retrieves anyway, see {@link
+ * net.gini.android.DocumentTaskManager#setLocalSearchIndex(LocalSearchIndex)}. {@link DocumentSearch} falls back to
+ * the Gini API for queries without local results and reconciles the index with the Gini API.
+ * </p>
+ * <p>
+ * <b>All methods access the database and must not be called on the main thread.</b>
+ * </p>
+ */
+public class LocalSearchIndex {
+
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE_DOCUMENTS = "documents";
+    private static final String TABLE_FTS = "documents_fts";
+
+    private static final String COLUMN_ROW_ID = "_id";
+    private static final String COLUMN_DOCUMENT_ID = "document_id";
+    private static final String COLUMN_STATE = "state";
+    private static final String COLUMN_FILENAME = "filename";
+    private static final String COLUMN_PAGE_COUNT = "page_count";
+    private static final String COLUMN_CREATION_DATE = "creation_date";
+    private static final String COLUMN_SOURCE_CLASSIFICATION = "source_classification";
+    private static final String COLUMN_EXTRACTIONS = "extractions";
+
+    private static final String[] DOCUMENT_COLUMNS = {COLUMN_DOCUMENT_ID, COLUMN_STATE, COLUMN_FILENAME,
+            COLUMN_PAGE_COUNT, COLUMN_CREATION_DATE, COLUMN_SOURCE_CLASSIFICATION};
+
+    private final SQLiteOpenHelper mOpenHelper;
+
+    /**
+     * @param context      Your application's Context instance (Android).
+     * @param databaseName The name of the database file, e.g. "gini-search.db".
+     */
+    public LocalSearchIndex(final Context context, final String databaseName) {
+        mOpenHelper = new OpenHelper(checkNotNull(context), checkNotNull(databaseName));
+    }
+
+    /**
+     * Adds the document to the index or updates it. Extractions which were indexed for the document before are kept.
+     */
+    public void index(final Document document) {
+        index(document, null);
+    }
+
+    /**
+     * Adds the document and its extractions to the index or updates them.
+     *
+     * @param extractions Optional the extractions of the document. If null, the extractions which were indexed for the
+     *                    document before are kept.
+     */
+    public void index(final Document document, @Nullable final Map<String, SpecificExtraction> extractions) {
+        final List<Document> documents = new ArrayList<Document>(1);
+        documents.add(checkNotNull(document));
+        indexAll(documents, extractions);
+    }
+
+    /**
+     * Adds the documents to the index or updates them in a single transaction.
+     */
+    public void indexAll(final Collection<Document> documents) {
+        indexAll(documents, null);
+    }
+
+    private void indexAll(final Collection<Document> documents,
+                          @Nullable final Map<String, SpecificExtraction> extractions) {
+        final SQLiteDatabase database = mOpenHelper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            for (final Document document : documents) {
+                indexDocument(database, document, extractions != null ? extractionsText(extractions) : null);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    private void indexDocument(final SQLiteDatabase database, final Document document,
+                               @Nullable final String extractionsText) {
+        final ContentValues values = new ContentValues();
+        values.put(COLUMN_DOCUMENT_ID, document.getId());
+        values.put(COLUMN_STATE, document.getState().name());
+        values.put(COLUMN_FILENAME, document.getFilename());
+        values.put(COLUMN_PAGE_COUNT, document.getPageCount());
+        values.put(COLUMN_CREATION_DATE, document.getCreationDate().getTime());
+        values.put(COLUMN_SOURCE_CLASSIFICATION, document.getSourceClassification().name());
+        if (extractionsText != null) {
+            values.put(COLUMN_EXTRACTIONS, extractionsText);
+        }
+
+        long rowId = findRowId(database, document.getId());
+        String indexedExtractionsText = extractionsText;
+        if (rowId == -1) {
+            rowId = database.insertOrThrow(TABLE_DOCUMENTS, null, values);
+        } else {
+            database.update(TABLE_DOCUMENTS, values, COLUMN_ROW_ID + " = ?", new String[]{String.valueOf(rowId)});
+            if (indexedExtractionsText == null) {
+                indexedExtractionsText = findExtractionsText(database, rowId);
+            }
+        }
+
+        // FTS tables don't support updates of the docid, so the row is replaced.
+        database.delete(TABLE_FTS, "docid = ?", new String[]{String.valueOf(rowId)});
+        final ContentValues ftsValues = new ContentValues();
+        ftsValues.put("docid", rowId);
+        ftsValues.put(COLUMN_FILENAME, normalize(document.getFilename()));
+        ftsValues.put(COLUMN_EXTRACTIONS, normalize(indexedExtractionsText));
+        database.insertOrThrow(TABLE_FTS, null, ftsValues);
+    }
+
+    private static long findRowId(final SQLiteDatabase database, final String documentId) {
+        final Cursor cursor = database.query(TABLE_DOCUMENTS, new String[]{COLUMN_ROW_ID},
+                COLUMN_DOCUMENT_ID + " = ?", new String[]{documentId}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Nullable
+    private static String findExtractionsText(final SQLiteDatabase database, final long rowId) {
+        final Cursor cursor = database.query(TABLE_DOCUMENTS, new String[]{COLUMN_EXTRACTIONS},
+                COLUMN_ROW_ID + " = ?", new String[]{String.valueOf(rowId)}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Searches the documents whose filename or extraction values contain words which start with every word of the
+     * query, e.g. "tele inv" matches a document "Telekom invoice.jpg".
+     *
+     * @param query The query as entered by the user.
+     * @param limit The maximal number of returned documents.
+     *
+     * @return The matching documents with the most recent documents first. Empty, if the query contains no words.
+     */
+    public List<Document> search(final String query, final int limit) {
+        final String matchExpression = toMatchExpression(checkNotNull(query));
+        final List<Document> documents = new ArrayList<Document>();
+        if (matchExpression == null) {
+            return documents;
+        }
+        final SQLiteDatabase database = mOpenHelper.getReadableDatabase();
+        final StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < DOCUMENT_COLUMNS.length; i++) {
+            sql.append(i > 0 ? ", d." : "d.").append(DOCUMENT_COLUMNS[i]);
+        }
+        sql.append(" FROM ").append(TABLE_DOCUMENTS).append(" d JOIN ").append(TABLE_FTS)
+                .append(" ON ").append(TABLE_FTS).append(".docid = d.").append(COLUMN_ROW_ID)
+                .append(" WHERE ").append(TABLE_FTS).append(" MATCH ? ORDER BY d.").append(COLUMN_CREATION_DATE)
+                .append(" DESC LIMIT ").append(limit);
+        final Cursor cursor = database.rawQuery(sql.toString(), new String[]{matchExpression});
+        try {
+            while (cursor.moveToNext()) {
+                documents.add(documentFromCursor(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return documents;
+    }
+
+    /**
+     * Returns the identifiers of all indexed documents.
+     */
+    public Set<String> getDocumentIds() {
+        final Set<String> documentIds = new HashSet<String>();
+        final Cursor cursor = mOpenHelper.getReadableDatabase()
+                .query(TABLE_DOCUMENTS, new String[]{COLUMN_DOCUMENT_ID}, null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                documentIds.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return documentIds;
+    }
+
+    /**
+     * Removes the documents with the given identifiers from the index, e.g. because they were deleted.
+     */
+    public void remove(final Collection<String> documentIds) {
+        final SQLiteDatabase database = mOpenHelper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            for (final String documentId : documentIds) {
+                final long rowId = findRowId(database, documentId);
+                if (rowId != -1) {
+                    final String[] rowIdArgs = {String.valueOf(rowId)};
+                    database.delete(TABLE_FTS, "docid = ?", rowIdArgs);
+                    database.delete(TABLE_DOCUMENTS, COLUMN_ROW_ID + " = ?", rowIdArgs);
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Removes all documents from the index, e.g. when the user's credentials were deleted.
+     */
+    public void clear() {
+        final SQLiteDatabase database = mOpenHelper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            database.delete(TABLE_FTS, null, null);
+            database.delete(TABLE_DOCUMENTS, null, null);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    public void close() {
+        mOpenHelper.close();
+    }
+
+    private static Document documentFromCursor(final Cursor cursor) {
+        return new Document(cursor.getString(0), Document.ProcessingState.valueOf(cursor.getString(1)),
+                cursor.getString(2), cursor.getInt(3), new Date(cursor.getLong(4)),
+                Document.SourceClassification.valueOf(cursor.getString(5)));
+    }
+
+    private static String extractionsText(final Map<String, SpecificExtraction> extractions) {
+        final StringBuilder text = new StringBuilder();
+        for (final SpecificExtraction extraction : extractions.values()) {
+            if (extraction.getValue() != null) {
+                text.append(extraction.getValue()).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * The FTS "simple" tokenizer only folds the case of ASCII characters, so the text is lower-cased before it is
+     * indexed or queried.
+     */
+    @Nullable
+    private static String normalize(@Nullable final String text) {
+        return text != null ? text.toLowerCase(Locale.US) : null;
+    }
+
+    /**
+     * Converts the query into an FTS expression which matches every word of the query as a prefix. Characters which
+     * are not letters or digits separate words, like the tokenizer does, so the query can't contain FTS operators.
+     *
+     * @return The expression or null, if the query contains no words.
+     */
+    // Visible for testing
+    @Nullable
+    static String toMatchExpression(final String query) {
+        final StringBuilder expression = new StringBuilder();
+        final String normalizedQuery = normalize(query);
+        int wordStart = -1;
+        for (int i = 0; i <= normalizedQuery.length(); i++) {
+            final boolean wordCharacter = i < normalizedQuery.length()
+                    && Character.isLetterOrDigit(normalizedQuery.charAt(i));
+            if (wordCharacter && wordStart == -1) {
+                wordStart = i;
+            } else if (!wordCharacter && wordStart != -1) {
+                if (expression.length() > 0) {
+                    expression.append(' ');
+                }
+                expression.append(normalizedQuery, wordStart, i).append('*');
+                wordStart = -1;
+            }
+        }
+        return expression.length() > 0 ? expression.toString() : null;
+    }
+
+    private static class OpenHelper extends SQLiteOpenHelper {
+
+        OpenHelper(final Context context, final String databaseName) {
+            super(context, databaseName, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onOpen(final SQLiteDatabase database) {
+            super.onOpen(database);
+            // Lets search queries run while documents are indexed.
+            if (!database.isReadOnly()) {
+                database.enableWriteAheadLogging();
+            }
+        }
+
+        @Override
+        public void onCreate(final SQLiteDatabase database) {
+            database.execSQL("CREATE TABLE " + TABLE_DOCUMENTS + " ("
+                    + COLUMN_ROW_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + COLUMN_DOCUMENT_ID + " TEXT NOT NULL UNIQUE, "
+                    + COLUMN_STATE + " TEXT NOT NULL, "
+                    + COLUMN_FILENAME + " TEXT, "
+                    + COLUMN_PAGE_COUNT + " INTEGER NOT NULL, "
+                    + COLUMN_CREATION_DATE + " INTEGER NOT NULL, "
+                    + COLUMN_SOURCE_CLASSIFICATION + " TEXT NOT NULL, "
+                    + COLUMN_EXTRACTIONS + " TEXT)");
+            database.execSQL("CREATE INDEX " + TABLE_DOCUMENTS + "_" + COLUMN_CREATION_DATE + " ON "
+                    + TABLE_DOCUMENTS + " (" + COLUMN_CREATION_DATE + ")");
+            database.execSQL("CREATE VIRTUAL TABLE " + TABLE_FTS + " USING fts4("
+                    + COLUMN_FILENAME + ", " + COLUMN_EXTRACTIONS + ")");
+        }
+
+        @Override
+        public void onUpgrade(final SQLiteDatabase database, final int oldVersion, final int newVersion) {
+            // The index can be rebuilt from the Gini API at any time.
+            database.execSQL("DROP TABLE IF EXISTS " + TABLE_FTS);
+            database.execSQL("DROP TABLE IF EXISTS " + TABLE_DOCUMENTS);
+            onCreate(database);
+        }
+    }
+}